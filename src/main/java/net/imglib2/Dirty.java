@@ -44,4 +44,24 @@ public interface Dirty
 	public boolean isDirty();
 
 	public void setDirty();
+
+	/**
+	 * Set the dirty flag. Setting it to {@code false} is used, e.g., after the
+	 * content has been persisted.
+	 * <p>
+	 * The default implementation can only set the flag. Implementations that
+	 * support clearing it must override this method.
+	 * </p>
+	 *
+	 * @throws UnsupportedOperationException
+	 *             if {@code dirty} is {@code false} and clearing the flag is
+	 *             not supported.
+	 */
+	public default void setDirty( final boolean dirty )
+	{
+		if ( dirty )
+			setDirty();
+		else
+			throw new UnsupportedOperationException( getClass().getName() + " does not support clearing the dirty flag." );
+	}
 }
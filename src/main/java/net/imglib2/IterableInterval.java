@@ -34,6 +34,12 @@
 
 package net.imglib2;
 
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import net.imglib2.stream.CursorSpliterator;
+
 /**
  * An {@link IterableRealInterval} whose elements are located at integer
  * coordinates.
@@ -49,4 +55,42 @@ public interface IterableInterval< T > extends IterableRealInterval< T >, Interv
 
 	@Override
 	public Cursor< T > localizingCursor();
+
+	/**
+	 * Returns a {@link Spliterator} over the elements of this
+	 * {@link IterableInterval}. Each split owns its own {@link Cursor}.
+	 * Implementations should split along the natural structure of their data,
+	 * see {@link CursorSpliterator}.
+	 *
+	 * @return spliterator over all elements.
+	 */
+	@Override
+	public default Spliterator< T > spliterator()
+	{
+		return new CursorSpliterator<>( this );
+	}
+
+	/**
+	 * Returns a sequential {@link Stream} over the elements of this
+	 * {@link IterableInterval}. The elements are reused proxies, as with
+	 * {@link Cursor#get()}.
+	 *
+	 * @return sequential stream over all elements.
+	 */
+	public default Stream< T > stream()
+	{
+		return StreamSupport.stream( spliterator(), false );
+	}
+
+	/**
+	 * Returns a parallel {@link Stream} over the elements of this
+	 * {@link IterableInterval}. The elements are reused proxies, as with
+	 * {@link Cursor#get()}, with one proxy per split.
+	 *
+	 * @return parallel stream over all elements.
+	 */
+	public default Stream< T > parallelStream()
+	{
+		return StreamSupport.stream( spliterator(), true );
+	}
 }
@@ -0,0 +1,539 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.blocks;
+
+import java.lang.reflect.Array;
+
+import net.imglib2.Cursor;
+import net.imglib2.Dirty;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.img.NativeImg;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.CharArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LazyArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.transform.integer.MixedTransform;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.IntervalView;
+import net.imglib2.view.MixedTransformView;
+import net.imglib2.view.Views;
+
+/**
+ * Copies blocks of pixels between a {@link RandomAccessible} and primitive
+ * arrays, e.g. {@code float[]} for {@code FloatType}.
+ * <p>
+ * The array holds the block in flat order, with as many primitive elements per
+ * pixel as the {@link NativeType} uses ({@code 2} for {@code ComplexFloatType}
+ * etc.). If the source is an {@link ArrayImg}, {@link PlanarImg} or
+ * {@link AbstractCellImg} backed by primitive arrays (not by
+ * {@link java.nio.Buffer}s), possibly wrapped in translating views
+ * ({@link Views#translate}, {@link Views#zeroMin}, {@link Views#interval},
+ * ...), each line of the block is copied with {@link System#arraycopy}, and
+ * written data that is {@link Dirty} is flagged as modified. Otherwise, or
+ * where the block is not contained in the image, pixels are copied one by one.
+ * </p>
+ * <p>
+ * The views are resolved once when the {@link PrimitiveBlocks} is created, so
+ * one instance should be reused for copying many blocks. Instances are
+ * thread-safe.
+ * </p>
+ *
+ * @param <T>
+ *            pixel type
+ */
+public class PrimitiveBlocks< T extends NativeType< T > >
+{
+	private final RandomAccessible< T > source;
+
+	/**
+	 * The image underlying {@link #source}, or {@code null} if blocks cannot
+	 * be copied line by line.
+	 */
+	private final NativeImg< T, ? > img;
+
+	/**
+	 * Position in {@link #img} minus position in {@link #source}.
+	 */
+	private final long[] offset;
+
+	/**
+	 * Number of primitive elements per pixel (if {@link #img} is not null).
+	 */
+	private final int entitiesPerPixel;
+
+	private PrimitiveBlocks( final RandomAccessible< T > source )
+	{
+		this.source = source;
+		final int n = source.numDimensions();
+		offset = new long[ n ];
+
+		RandomAccessible< T > s = source;
+		while ( true )
+		{
+			if ( s instanceof IntervalView )
+				s = ( ( IntervalView< T > ) s ).getSource();
+			else if ( s instanceof MixedTransformView && isTranslation( ( ( MixedTransformView< T > ) s ).getTransformToSource(), n ) )
+			{
+				final MixedTransform t = ( ( MixedTransformView< T > ) s ).getTransformToSource();
+				for ( int d = 0; d < n; ++d )
+					offset[ d ] += t.getTranslation( d );
+				s = ( ( MixedTransformView< T > ) s ).getSource();
+			}
+			else
+				break;
+		}
+
+		if ( s instanceof ArrayImg || s instanceof PlanarImg || s instanceof AbstractCellImg )
+		{
+			@SuppressWarnings( "unchecked" )
+			final NativeImg< T, ? > nativeImg = ( NativeImg< T, ? > ) s;
+			final Fraction epp = nativeImg.firstElement().getEntitiesPerPixel();
+			if ( epp.getDenominator() == 1 )
+			{
+				img = nativeImg;
+				entitiesPerPixel = ( int ) epp.getNumerator();
+				return;
+			}
+		}
+		img = null;
+		entitiesPerPixel = 0;
+	}
+
+	/**
+	 * Create a {@link PrimitiveBlocks} for copying blocks from and to
+	 * {@code source}.
+	 */
+	public static < T extends NativeType< T > > PrimitiveBlocks< T > of( final RandomAccessible< T > source )
+	{
+		return new PrimitiveBlocks<>( source );
+	}
+
+	/**
+	 * Copy the pixels in {@code interval} into the primitive array
+	 * {@code dest}, in flat order.
+	 *
+	 * @param interval
+	 *            block to copy.
+	 * @param dest
+	 *            primitive array of the type used by {@code T}, with room for
+	 *            at least the whole block.
+	 */
+	public void copy( final Interval interval, final Object dest )
+	{
+		transfer( interval, dest, true );
+	}
+
+	/**
+	 * Write the primitive array {@code src}, holding pixels in flat order, into
+	 * {@code interval}.
+	 *
+	 * @param interval
+	 *            block to write.
+	 * @param src
+	 *            primitive array of the type used by {@code T}, holding at
+	 *            least the whole block.
+	 */
+	public void write( final Interval interval, final Object src )
+	{
+		transfer( interval, src, false );
+	}
+
+	private void transfer( final Interval interval, final Object array, final boolean toArray )
+	{
+		final int n = source.numDimensions();
+		if ( interval.numDimensions() != n )
+			throw new IllegalArgumentException( "Interval has " + interval.numDimensions() + " dimensions, expected " + n + "." );
+		if ( Intervals.numElements( interval ) == 0 )
+			return;
+
+		if ( img != null )
+		{
+			final long[] min = new long[ n ];
+			final long[] max = new long[ n ];
+			boolean contained = true;
+			for ( int d = 0; d < n; ++d )
+			{
+				min[ d ] = interval.min( d ) + offset[ d ];
+				max[ d ] = interval.max( d ) + offset[ d ];
+				contained &= min[ d ] >= 0 && max[ d ] < img.dimension( d );
+			}
+			if ( contained )
+			{
+				checkLength( array, Intervals.numElements( interval ) * entitiesPerPixel );
+				final long[] arrayDims = Intervals.dimensionsAsLongArray( interval );
+				if ( img instanceof ArrayImg )
+				{
+					final Object data = img.update( null );
+					final Object storage = primitiveStorage( data );
+					if ( storage != null )
+					{
+						copyRegion( storage, new long[ n ], Intervals.dimensionsAsLongArray( img ), min, max, array, min, arrayDims, toArray );
+						if ( !toArray )
+							markDirty( data );
+						return;
+					}
+				}
+				else if ( img instanceof PlanarImg )
+				{
+					if ( copyPlanar( ( PlanarImg< T, ? > ) img, min, max, array, arrayDims, toArray ) )
+						return;
+				}
+				else
+				{
+					if ( copyCells( ( AbstractCellImg< T, ?, ?, ? > ) img, min, max, array, arrayDims, toArray ) )
+						return;
+				}
+			}
+		}
+
+		copyPixels( interval, array, toArray );
+	}
+
+	private boolean copyPlanar( final PlanarImg< T, ? > planar, final long[] min, final long[] max, final Object array, final long[] arrayDims, final boolean toArray )
+	{
+		final int n = min.length;
+		final long[] planeDims = new long[ n ];
+		planeDims[ 0 ] = planar.dimension( 0 );
+		for ( int d = 1; d < n; ++d )
+			planeDims[ d ] = d == 1 ? planar.dimension( 1 ) : 1;
+
+		{
+			final long[] pos = min.clone();
+			do
+			{
+				final Object plane = planar.getPlane( planeIndex( planar, pos ) );
+				// reading an unallocated lazy plane would allocate it
+				if ( toArray && plane instanceof LazyArrayDataAccess && !( ( LazyArrayDataAccess< ? > ) plane ).isAllocated() )
+					return false;
+				if ( primitiveStorage( plane ) == null )
+					return false;
+			}
+			while ( nextPlane( pos, min, max ) );
+		}
+
+		final long[] pos = min.clone();
+		final long[] planeMin = new long[ n ];
+		final long[] regionMin = min.clone();
+		final long[] regionMax = max.clone();
+		do
+		{
+			for ( int d = 2; d < n; ++d )
+				planeMin[ d ] = regionMin[ d ] = regionMax[ d ] = pos[ d ];
+			final Object plane = planar.getPlane( planeIndex( planar, pos ) );
+			copyRegion( primitiveStorage( plane ), planeMin, planeDims, regionMin, regionMax, array, min, arrayDims, toArray );
+			if ( !toArray )
+				markDirty( plane );
+		}
+		while ( nextPlane( pos, min, max ) );
+		return true;
+	}
+
+	private static int planeIndex( final PlanarImg< ?, ? > planar, final long[] pos )
+	{
+		int index = 0;
+		for ( int d = pos.length - 1; d >= 2; --d )
+			index = index * ( int ) planar.dimension( d ) + ( int ) pos[ d ];
+		return index;
+	}
+
+	/**
+	 * Move {@code pos} to the next plane in {@code [min, max]}. Return false if
+	 * there is none.
+	 */
+	private static boolean nextPlane( final long[] pos, final long[] min, final long[] max )
+	{
+		for ( int d = 2; d < pos.length; ++d )
+		{
+			if ( ++pos[ d ] <= max[ d ] )
+				return true;
+			pos[ d ] = min[ d ];
+		}
+		return false;
+	}
+
+	private boolean copyCells( final AbstractCellImg< T, ?, ?, ? > cellImg, final long[] min, final long[] max, final Object array, final long[] arrayDims, final boolean toArray )
+	{
+		final int n = min.length;
+		final CellGrid grid = cellImg.getCellGrid();
+		final long[] gridMin = new long[ n ];
+		final long[] gridMax = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			gridMin[ d ] = grid.getCellPosition( min[ d ], d );
+			gridMax[ d ] = grid.getCellPosition( max[ d ], d );
+		}
+
+		final RandomAccess< ? extends Cell< ? > > cells = cellImg.getCells().randomAccess();
+		{
+			final long[] gridPos = gridMin.clone();
+			do
+			{
+				cells.setPosition( gridPos );
+				final Object data = cells.get().getData();
+				// reading an unallocated lazy cell would allocate it
+				if ( toArray && data instanceof LazyArrayDataAccess && !( ( LazyArrayDataAccess< ? > ) data ).isAllocated() )
+					return false;
+				if ( primitiveStorage( data ) == null )
+					return false;
+			}
+			while ( nextCell( gridPos, gridMin, gridMax ) );
+		}
+
+		final long[] gridPos = gridMin.clone();
+		final long[] cellMin = new long[ n ];
+		final long[] cellDims = new long[ n ];
+		final long[] regionMin = new long[ n ];
+		final long[] regionMax = new long[ n ];
+		do
+		{
+			cells.setPosition( gridPos );
+			final Cell< ? > cell = cells.get();
+			final Object data = cell.getData();
+			for ( int d = 0; d < n; ++d )
+			{
+				cellMin[ d ] = cell.min( d );
+				cellDims[ d ] = cell.dimension( d );
+				regionMin[ d ] = Math.max( min[ d ], cellMin[ d ] );
+				regionMax[ d ] = Math.min( max[ d ], cellMin[ d ] + cellDims[ d ] - 1 );
+			}
+			copyRegion( primitiveStorage( data ), cellMin, cellDims, regionMin, regionMax, array, min, arrayDims, toArray );
+			if ( !toArray )
+				markDirty( data );
+		}
+		while ( nextCell( gridPos, gridMin, gridMax ) );
+		return true;
+	}
+
+	/**
+	 * Move {@code gridPos} to the next cell in {@code [gridMin, gridMax]}.
+	 * Return false if there is none.
+	 */
+	private static boolean nextCell( final long[] gridPos, final long[] gridMin, final long[] gridMax )
+	{
+		for ( int d = 0; d < gridPos.length; ++d )
+		{
+			if ( ++gridPos[ d ] <= gridMax[ d ] )
+				return true;
+			gridPos[ d ] = gridMin[ d ];
+		}
+		return false;
+	}
+
+	/**
+	 * Flag {@code data} as modified if it is {@link Dirty}, because writing
+	 * its storage array directly bypasses the accessors that set the flag.
+	 */
+	private static void markDirty( final Object data )
+	{
+		if ( data instanceof Dirty )
+			( ( Dirty ) data ).setDirty();
+	}
+
+	/**
+	 * The primitive array backing {@code data}, or {@code null} if {@code data}
+	 * is not an {@link ArrayDataAccess} backed by a primitive array (but, e.g.,
+	 * by a {@link java.nio.Buffer}).
+	 */
+	private static Object primitiveStorage( final Object data )
+	{
+		if ( !( data instanceof ArrayDataAccess ) )
+			return null;
+		final Object storage = ( ( ArrayDataAccess< ? > ) data ).getCurrentStorageArray();
+		if ( storage == null || !storage.getClass().isArray() || !storage.getClass().getComponentType().isPrimitive() )
+			return null;
+		return storage;
+	}
+
+	/**
+	 * Copy the region {@code [min, max]} line by line between a storage array
+	 * covering {@code storageDims} pixels at {@code storageMin}, and an array
+	 * covering {@code arrayDims} pixels at {@code arrayMin}.
+	 */
+	private void copyRegion(
+			final Object storage, final long[] storageMin, final long[] storageDims,
+			final long[] min, final long[] max,
+			final Object array, final long[] arrayMin, final long[] arrayDims,
+			final boolean toArray )
+	{
+		if ( storage.getClass() != array.getClass() )
+			throw new IllegalArgumentException( "Expected " + storage.getClass().getSimpleName() + " for this pixel type, but got " + array.getClass().getSimpleName() + "." );
+		final int n = min.length;
+		final int lineLength = ( int ) ( max[ 0 ] - min[ 0 ] + 1 ) * entitiesPerPixel;
+		final long[] pos = min.clone();
+		while ( true )
+		{
+			long storageIndex = 0;
+			long arrayIndex = 0;
+			for ( int d = n - 1; d >= 0; --d )
+			{
+				storageIndex = storageIndex * storageDims[ d ] + pos[ d ] - storageMin[ d ];
+				arrayIndex = arrayIndex * arrayDims[ d ] + pos[ d ] - arrayMin[ d ];
+			}
+			if ( toArray )
+				System.arraycopy( storage, ( int ) storageIndex * entitiesPerPixel, array, ( int ) arrayIndex * entitiesPerPixel, lineLength );
+			else
+				System.arraycopy( array, ( int ) arrayIndex * entitiesPerPixel, storage, ( int ) storageIndex * entitiesPerPixel, lineLength );
+
+			int d = 1;
+			for ( ; d < n; ++d )
+			{
+				if ( ++pos[ d ] <= max[ d ] )
+					break;
+				pos[ d ] = min[ d ];
+			}
+			if ( d >= n )
+				return;
+		}
+	}
+
+	/**
+	 * Copy pixel by pixel, through an {@link ArrayImg} wrapping the array.
+	 */
+	private void copyPixels( final Interval interval, final Object array, final boolean toArray )
+	{
+		final IntervalView< T > block = Views.interval( source, interval );
+		final T type = block.firstElement().createVariable();
+		final long[] dims = Intervals.dimensionsAsLongArray( interval );
+		checkLength( array, type.getEntitiesPerPixel().mulCeil( Intervals.numElements( interval ) ) );
+		final NativeImg< T, ? > wrapped = type.createSuitableNativeImg( new WrappingFactory<>( array ), dims );
+
+		final Cursor< T > blockCursor = Views.flatIterable( block ).cursor();
+		final Cursor< T > arrayCursor = wrapped.cursor();
+		while ( arrayCursor.hasNext() )
+		{
+			if ( toArray )
+				arrayCursor.next().set( blockCursor.next() );
+			else
+				blockCursor.next().set( arrayCursor.next() );
+		}
+	}
+
+	private static void checkLength( final Object array, final long minLength )
+	{
+		if ( array == null || !array.getClass().isArray() )
+			throw new IllegalArgumentException( "Expected a primitive array, but got " + array + "." );
+		final int length = Array.getLength( array );
+		if ( length < minLength )
+			throw new IllegalArgumentException( "Array of length " + length + " is too small for block of " + minLength + " elements." );
+	}
+
+	/**
+	 * {@link ArrayImgFactory} that wraps a given primitive array instead of
+	 * allocating a new one.
+	 */
+	private static class WrappingFactory< T extends NativeType< T > > extends ArrayImgFactory< T >
+	{
+		private final Object array;
+
+		WrappingFactory( final Object array )
+		{
+			this.array = array;
+		}
+
+		private < P > P array( final Class< P > arrayClass )
+		{
+			if ( !arrayClass.isInstance( array ) )
+				throw new IllegalArgumentException( "Expected " + arrayClass.getSimpleName() + " for this pixel type, but got " + array.getClass().getSimpleName() + "." );
+			return arrayClass.cast( array );
+		}
+
+		@Override
+		public ArrayImg< T, ByteArray > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+		{
+			return new ArrayImg<>( new ByteArray( array( byte[].class ) ), dimensions, entitiesPerPixel );
+		}
+
+		@Override
+		public ArrayImg< T, CharArray > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+		{
+			return new ArrayImg<>( new CharArray( array( char[].class ) ), dimensions, entitiesPerPixel );
+		}
+
+		@Override
+		public ArrayImg< T, DoubleArray > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+		{
+			return new ArrayImg<>( new DoubleArray( array( double[].class ) ), dimensions, entitiesPerPixel );
+		}
+
+		@Override
+		public ArrayImg< T, FloatArray > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+		{
+			return new ArrayImg<>( new FloatArray( array( float[].class ) ), dimensions, entitiesPerPixel );
+		}
+
+		@Override
+		public ArrayImg< T, IntArray > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+		{
+			return new ArrayImg<>( new IntArray( array( int[].class ) ), dimensions, entitiesPerPixel );
+		}
+
+		@Override
+		public ArrayImg< T, LongArray > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+		{
+			return new ArrayImg<>( new LongArray( array( long[].class ) ), dimensions, entitiesPerPixel );
+		}
+
+		@Override
+		public ArrayImg< T, ShortArray > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+		{
+			return new ArrayImg<>( new ShortArray( array( short[].class ) ), dimensions, entitiesPerPixel );
+		}
+	}
+
+	private static boolean isTranslation( final MixedTransform t, final int n )
+	{
+		if ( t.numSourceDimensions() != n || t.numTargetDimensions() != n )
+			return false;
+		for ( int d = 0; d < n; ++d )
+			if ( t.getComponentZero( d ) || t.getComponentMapping( d ) != d || t.getComponentInversion( d ) )
+				return false;
+		return true;
+	}
+}
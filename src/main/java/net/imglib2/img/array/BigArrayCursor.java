@@ -0,0 +1,165 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.array;
+
+import net.imglib2.AbstractCursor;
+import net.imglib2.Cursor;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * {@link Cursor} on a {@link BigArrayImg}. Steps through the chunks with
+ * {@link NativeType#incIndex()} and only switches the container when a chunk
+ * boundary is crossed.
+ *
+ * @param <T>
+ */
+public class BigArrayCursor< T extends NativeType< T > > extends AbstractCursor< T > implements BigArrayImg.BigArraySampler
+{
+	protected final T type;
+
+	protected final BigArrayImg< T, ? > img;
+
+	protected final long lastIndex;
+
+	/**
+	 * flat index of the current pixel.
+	 */
+	protected long index;
+
+	protected int chunkIndex;
+
+	protected BigArrayCursor( final BigArrayCursor< T > cursor )
+	{
+		super( cursor.numDimensions() );
+
+		this.img = cursor.img;
+		this.type = img.createLinkedType();
+		this.lastIndex = cursor.lastIndex;
+		this.index = cursor.index;
+		this.chunkIndex = cursor.chunkIndex;
+
+		type.updateContainer( this );
+		type.updateIndex( cursor.type.getIndex() );
+	}
+
+	public BigArrayCursor( final BigArrayImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+
+		this.img = img;
+		this.type = img.createLinkedType();
+		this.lastIndex = img.size() - 1;
+
+		reset();
+	}
+
+	@Override
+	public int getChunkIndex()
+	{
+		return chunkIndex;
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return index < lastIndex;
+	}
+
+	@Override
+	public void fwd()
+	{
+		++index;
+		if ( type.getIndex() == img.chunkMask )
+		{
+			++chunkIndex;
+			type.updateIndex( 0 );
+			type.updateContainer( this );
+		}
+		else
+			type.incIndex();
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		index += steps;
+		final int c = index < 0 ? 0 : ( int ) ( index >>> img.chunkShift );
+		if ( c != chunkIndex )
+		{
+			chunkIndex = c;
+			type.updateContainer( this );
+		}
+		type.updateIndex( ( int ) ( index - ( ( long ) c << img.chunkShift ) ) );
+	}
+
+	@Override
+	public void reset()
+	{
+		index = -1;
+		chunkIndex = 0;
+		type.updateIndex( -1 );
+		type.updateContainer( this );
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		return IntervalIndexer.indexToPosition( index, img.dim, d );
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		IntervalIndexer.indexToPosition( index, img.dim, position );
+	}
+
+	@Override
+	public BigArrayCursor< T > copy()
+	{
+		return new BigArrayCursor< T >( this );
+	}
+
+	@Override
+	public BigArrayCursor< T > copyCursor()
+	{
+		return copy();
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.array;
+
+import java.util.List;
+
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.Interval;
+import net.imglib2.img.AbstractNativeImg;
+import net.imglib2.img.Img;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * This {@link Img} stores an image in a list of linear arrays of basic types,
+ * each holding the same power-of-two number of pixels (only the last chunk may
+ * be smaller). Pixels are addressed by a long flat index that is split into a
+ * chunk index and an index within the chunk by shift and mask. Iteration is in
+ * {@link FlatIterationOrder}, like {@link ArrayImg}, but the total number of
+ * pixels is not limited to {@link Integer#MAX_VALUE}.
+ *
+ * @param <T>
+ * @param <A>
+ */
+public class BigArrayImg< T extends NativeType< T >, A > extends AbstractNativeImg< T, A >
+{
+	/**
+	 * Samplers that access a {@link BigArrayImg} report the chunk they
+	 * currently point into.
+	 */
+	public interface BigArraySampler
+	{
+		/**
+		 * @return index of the chunk the sampler currently points into.
+		 */
+		public int getChunkIndex();
+	}
+
+	final long[] steps, dim;
+
+	final int chunkShift;
+
+	final int chunkMask;
+
+	private final List< A > chunks;
+
+	/**
+	 * @param chunks
+	 *            the data, each chunk holding {@code 2^chunkShift} pixels,
+	 *            except for the last one which may hold less.
+	 * @param dim
+	 *            dimensions of the image
+	 * @param chunkShift
+	 *            log2 of the number of pixels per chunk
+	 * @param entitiesPerPixel
+	 */
+	public BigArrayImg( final List< A > chunks, final long[] dim, final int chunkShift, final Fraction entitiesPerPixel )
+	{
+		super( dim, entitiesPerPixel );
+		if ( chunkShift < 0 || chunkShift > 30 )
+			throw new IllegalArgumentException( "chunkShift must be in [0, 30]: " + chunkShift );
+		if ( chunks.size() != numChunks( numPixels, chunkShift ) )
+			throw new IllegalArgumentException( "Expected " + numChunks( numPixels, chunkShift ) + " chunks, got " + chunks.size() );
+
+		this.dim = dim.clone();
+		this.steps = new long[ n ];
+		IntervalIndexer.createAllocationSteps( dim, this.steps );
+		this.chunkShift = chunkShift;
+		this.chunkMask = ( 1 << chunkShift ) - 1;
+		this.chunks = chunks;
+	}
+
+	/**
+	 * @return the number of chunks of {@code 2^chunkShift} pixels needed to
+	 *         store {@code numPixels} pixels.
+	 */
+	public static int numChunks( final long numPixels, final int chunkShift )
+	{
+		if ( numPixels == 0 )
+			return 0;
+		final long numChunks = ( ( numPixels - 1 ) >>> chunkShift ) + 1;
+		if ( numChunks > Integer.MAX_VALUE )
+			throw new RuntimeException( "Number of chunks too big: " + numChunks + " > " + Integer.MAX_VALUE );
+		return ( int ) numChunks;
+	}
+
+	/**
+	 * @return log2 of the number of pixels per chunk.
+	 */
+	public int getChunkShift()
+	{
+		return chunkShift;
+	}
+
+	/**
+	 * @return the number of chunks.
+	 */
+	public int numChunks()
+	{
+		return chunks.size();
+	}
+
+	/**
+	 * @return the data of chunk {@code i}.
+	 */
+	public A getChunk( final int i )
+	{
+		return chunks.get( i );
+	}
+
+	@Override
+	public A update( final Object o )
+	{
+		return chunks.get( ( ( BigArraySampler ) o ).getChunkIndex() );
+	}
+
+	@Override
+	public BigArrayCursor< T > cursor()
+	{
+		return new BigArrayCursor< T >( this );
+	}
+
+	@Override
+	public BigArrayLocalizingCursor< T > localizingCursor()
+	{
+		return new BigArrayLocalizingCursor< T >( this );
+	}
+
+	@Override
+	public BigArrayRandomAccess< T > randomAccess()
+	{
+		return new BigArrayRandomAccess< T >( this );
+	}
+
+	@Override
+	public BigArrayRandomAccess< T > randomAccess( final Interval interval )
+	{
+		return randomAccess();
+	}
+
+	@Override
+	public FlatIterationOrder iterationOrder()
+	{
+		return new FlatIterationOrder( this );
+	}
+
+	@Override
+	public BigArrayImgFactory< T > factory()
+	{
+		return new BigArrayImgFactory< T >( chunkShift );
+	}
+
+	@Override
+	public BigArrayImg< T, ? > copy()
+	{
+		final BigArrayImg< T, ? > copy = factory().create( dimension, firstElement().createVariable() );
+
+		final BigArrayCursor< T > source = this.cursor();
+		final BigArrayCursor< T > target = copy.cursor();
+
+		while ( source.hasNext() )
+			target.next().set( source.next() );
+
+		return copy;
+	}
+}
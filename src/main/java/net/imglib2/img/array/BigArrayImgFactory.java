@@ -0,0 +1,167 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.array;
+
+import java.util.ArrayList;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.AbstractImg;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.CharArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for {@link BigArrayImg BigArrayImgs}. The image is split into chunks
+ * of {@code 2^chunkShift} pixels, each stored in its own primitive array.
+ *
+ * @param <T>
+ */
+public class BigArrayImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	/**
+	 * Default log2 of the number of pixels per chunk (16M pixels).
+	 */
+	public static final int DEFAULT_CHUNK_SHIFT = 24;
+
+	private final int chunkShift;
+
+	public BigArrayImgFactory( final int chunkShift )
+	{
+		if ( chunkShift < 0 || chunkShift > 30 )
+			throw new IllegalArgumentException( "chunkShift must be in [0, 30]: " + chunkShift );
+		this.chunkShift = chunkShift;
+	}
+
+	public BigArrayImgFactory()
+	{
+		this( DEFAULT_CHUNK_SHIFT );
+	}
+
+	public int getChunkShift()
+	{
+		return chunkShift;
+	}
+
+	@Override
+	public BigArrayImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( BigArrayImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	/**
+	 * Creates the chunks for an image of the given dimensions. Every chunk but
+	 * the last must hold a whole number of entities.
+	 */
+	private < A extends ArrayDataAccess< A > > BigArrayImg< T, A > createInstance( final long[] dimensions, final A creator, final Fraction entitiesPerPixel )
+	{
+		final long numPixels = AbstractImg.numElements( dimensions );
+		final int numChunks = BigArrayImg.numChunks( numPixels, chunkShift );
+		final long chunkSize = 1l << chunkShift;
+
+		if ( ( chunkSize * entitiesPerPixel.getNumerator() ) % entitiesPerPixel.getDenominator() != 0 )
+			throw new IllegalArgumentException( "Chunks of 2^" + chunkShift + " pixels do not hold a whole number of entities for " + entitiesPerPixel.getNumerator() + "/" + entitiesPerPixel.getDenominator() + " entities per pixel" );
+
+		final long entitiesPerChunk = entitiesPerPixel.mulCeil( chunkSize );
+		if ( entitiesPerChunk > Integer.MAX_VALUE )
+			throw new RuntimeException( "Number of entities per chunk too big, use a smaller chunkShift: " + entitiesPerChunk + " > " + Integer.MAX_VALUE );
+
+		final ArrayList< A > chunks = new ArrayList<>( numChunks );
+		for ( int i = 0; i < numChunks - 1; ++i )
+			chunks.add( creator.createArray( ( int ) entitiesPerChunk ) );
+		if ( numChunks > 0 )
+			chunks.add( creator.createArray( ( int ) entitiesPerPixel.mulCeil( numPixels - ( ( long ) ( numChunks - 1 ) << chunkShift ) ) ) );
+
+		return new BigArrayImg<>( chunks, dimensions, chunkShift, entitiesPerPixel );
+	}
+
+	@Override
+	public BigArrayImg< T, ByteArray > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( dimensions, new ByteArray( 1 ), entitiesPerPixel );
+	}
+
+	@Override
+	public BigArrayImg< T, CharArray > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( dimensions, new CharArray( 1 ), entitiesPerPixel );
+	}
+
+	@Override
+	public BigArrayImg< T, DoubleArray > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( dimensions, new DoubleArray( 1 ), entitiesPerPixel );
+	}
+
+	@Override
+	public BigArrayImg< T, FloatArray > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( dimensions, new FloatArray( 1 ), entitiesPerPixel );
+	}
+
+	@Override
+	public BigArrayImg< T, IntArray > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( dimensions, new IntArray( 1 ), entitiesPerPixel );
+	}
+
+	@Override
+	public BigArrayImg< T, LongArray > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( dimensions, new LongArray( 1 ), entitiesPerPixel );
+	}
+
+	@Override
+	public BigArrayImg< T, ShortArray > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( dimensions, new ShortArray( 1 ), entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new BigArrayImgFactory( chunkShift );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
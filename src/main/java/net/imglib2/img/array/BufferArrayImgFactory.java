@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.array;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.AbstractImg;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for {@link ArrayImg ArrayImgs} that store their data off-heap in a
+ * direct {@link java.nio.ByteBuffer} (see
+ * {@link net.imglib2.img.basictypeaccess.nio.BufferAccess}).
+ *
+ * <p>
+ * The buffer size is limited to {@code Integer.MAX_VALUE} bytes, so the
+ * maximum number of entities depends on the primitive type. Note that
+ * {@link ArrayImg#copy()} creates a copy on the Java heap.
+ * </p>
+ */
+public class BufferArrayImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	@Override
+	public ArrayImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( ArrayImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	public static int numEntitiesRangeCheck( final long[] dimensions, final Fraction entitiesPerPixel, final int numBytesPerEntity )
+	{
+		final long numEntities = entitiesPerPixel.mulCeil( AbstractImg.numElements( dimensions ) );
+
+		if ( numEntities * numBytesPerEntity > Integer.MAX_VALUE )
+			throw new RuntimeException( "Number of bytes in Container too big, use for example BufferCellImgFactory instead: " + numEntities * numBytesPerEntity + " > " + Integer.MAX_VALUE );
+
+		return ( int ) numEntities;
+	}
+
+	@Override
+	public ArrayImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final int numEntities = numEntitiesRangeCheck( dimensions, entitiesPerPixel, ByteBufferAccess.NUM_BYTES_PER_ENTITY );
+
+		return new ArrayImg<>( new ByteBufferAccess( numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final int numEntities = numEntitiesRangeCheck( dimensions, entitiesPerPixel, CharBufferAccess.NUM_BYTES_PER_ENTITY );
+
+		return new ArrayImg<>( new CharBufferAccess( numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final int numEntities = numEntitiesRangeCheck( dimensions, entitiesPerPixel, DoubleBufferAccess.NUM_BYTES_PER_ENTITY );
+
+		return new ArrayImg<>( new DoubleBufferAccess( numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final int numEntities = numEntitiesRangeCheck( dimensions, entitiesPerPixel, FloatBufferAccess.NUM_BYTES_PER_ENTITY );
+
+		return new ArrayImg<>( new FloatBufferAccess( numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final int numEntities = numEntitiesRangeCheck( dimensions, entitiesPerPixel, IntBufferAccess.NUM_BYTES_PER_ENTITY );
+
+		return new ArrayImg<>( new IntBufferAccess( numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final int numEntities = numEntitiesRangeCheck( dimensions, entitiesPerPixel, LongBufferAccess.NUM_BYTES_PER_ENTITY );
+
+		return new ArrayImg<>( new LongBufferAccess( numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ArrayImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		final int numEntities = numEntitiesRangeCheck( dimensions, entitiesPerPixel, ShortBufferAccess.NUM_BYTES_PER_ENTITY );
+
+		return new ArrayImg<>( new ShortBufferAccess( numEntities ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new BufferArrayImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
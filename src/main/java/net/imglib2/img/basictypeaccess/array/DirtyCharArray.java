@@ -78,4 +78,10 @@ public class DirtyCharArray extends AbstractCharArray< DirtyCharArray > implemen
 	{
 		dirty = true;
 	}
+
+	@Override
+	public void setDirty( final boolean dirty )
+	{
+		this.dirty = dirty;
+	}
 }
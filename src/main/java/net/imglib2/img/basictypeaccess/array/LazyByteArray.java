@@ -0,0 +1,122 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.array;
+
+import java.util.Arrays;
+
+/**
+ * A {@link ByteArray} that allocates its {@code byte[]} only when an element is
+ * set to something other than its constant value, or when
+ * {@link #getCurrentStorageArray()} is called. Until then, all elements read
+ * as the constant.
+ */
+public class LazyByteArray extends ByteArray implements LazyArrayDataAccess< ByteArray >
+{
+	private final int numEntities;
+
+	private final byte constant;
+
+	private volatile boolean allocated;
+
+	public LazyByteArray( final int numEntities, final byte constant )
+	{
+		super( ( byte[] ) null );
+		this.numEntities = numEntities;
+		this.constant = constant;
+	}
+
+	public LazyByteArray( final int numEntities )
+	{
+		this( numEntities, ( byte ) 0 );
+	}
+
+	private synchronized void allocate()
+	{
+		if ( !allocated )
+		{
+			final byte[] array = new byte[ numEntities ];
+			if ( constant != 0 )
+				Arrays.fill( array, constant );
+			data = array;
+			allocated = true;
+		}
+	}
+
+	@Override
+	public byte getValue( final int index )
+	{
+		return allocated ? data[ index ] : constant;
+	}
+
+	@Override
+	public void setValue( final int index, final byte value )
+	{
+		if ( !allocated )
+		{
+			if ( value == constant )
+				return;
+			allocate();
+		}
+		data[ index ] = value;
+	}
+
+	@Override
+	public byte[] getCurrentStorageArray()
+	{
+		if ( !allocated )
+			allocate();
+		return data;
+	}
+
+	@Override
+	public boolean isAllocated()
+	{
+		return allocated;
+	}
+
+	/**
+	 * @return the value of all elements until the array is allocated.
+	 */
+	public byte getConstant()
+	{
+		return constant;
+	}
+
+	@Override
+	public LazyByteArray createArray( final int numEntities )
+	{
+		return new LazyByteArray( numEntities, constant );
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.array;
+
+import java.util.Arrays;
+
+/**
+ * A {@link DoubleArray} that allocates its {@code double[]} only when an element is
+ * set to something other than its constant value, or when
+ * {@link #getCurrentStorageArray()} is called. Until then, all elements read
+ * as the constant.
+ */
+public class LazyDoubleArray extends DoubleArray implements LazyArrayDataAccess< DoubleArray >
+{
+	private final int numEntities;
+
+	private final double constant;
+
+	private volatile boolean allocated;
+
+	public LazyDoubleArray( final int numEntities, final double constant )
+	{
+		super( ( double[] ) null );
+		this.numEntities = numEntities;
+		this.constant = constant;
+	}
+
+	public LazyDoubleArray( final int numEntities )
+	{
+		this( numEntities, ( double ) 0 );
+	}
+
+	private synchronized void allocate()
+	{
+		if ( !allocated )
+		{
+			final double[] array = new double[ numEntities ];
+			if ( Double.doubleToRawLongBits( constant ) != 0 )
+				Arrays.fill( array, constant );
+			data = array;
+			allocated = true;
+		}
+	}
+
+	@Override
+	public double getValue( final int index )
+	{
+		return allocated ? data[ index ] : constant;
+	}
+
+	@Override
+	public void setValue( final int index, final double value )
+	{
+		if ( !allocated )
+		{
+			if ( Double.doubleToRawLongBits( value ) == Double.doubleToRawLongBits( constant ) )
+				return;
+			allocate();
+		}
+		data[ index ] = value;
+	}
+
+	@Override
+	public double[] getCurrentStorageArray()
+	{
+		if ( !allocated )
+			allocate();
+		return data;
+	}
+
+	@Override
+	public boolean isAllocated()
+	{
+		return allocated;
+	}
+
+	/**
+	 * @return the value of all elements until the array is allocated.
+	 */
+	public double getConstant()
+	{
+		return constant;
+	}
+
+	@Override
+	public LazyDoubleArray createArray( final int numEntities )
+	{
+		return new LazyDoubleArray( numEntities, constant );
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Common base of the {@link BufferAccess} implementations. Holds the
+ * {@link ByteBuffer} and a typed view on it. Buffers are not
+ * {@link java.io.Serializable}, so the content is written and read explicitly.
+ *
+ * @param <A>
+ *            the concrete access type
+ * @param <B>
+ *            the typed view on the {@link ByteBuffer}
+ */
+public abstract class AbstractBufferAccess< A extends AbstractBufferAccess< A, B >, B extends Buffer > implements BufferAccess< A >
+{
+	private static final long serialVersionUID = 1L;
+
+	protected transient ByteBuffer bytes;
+
+	protected transient B data;
+
+	public AbstractBufferAccess( final ByteBuffer bytes )
+	{
+		setBuffer( bytes );
+	}
+
+	/**
+	 * Allocate a direct {@link ByteBuffer} in native byte order that can hold
+	 * {@code numEntities} entities of {@code numBytesPerEntity} bytes each.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the number of bytes exceeds {@code Integer.MAX_VALUE}.
+	 */
+	public static ByteBuffer allocateDirect( final int numEntities, final int numBytesPerEntity ) throws IllegalArgumentException
+	{
+		final long numBytes = ( long ) numEntities * numBytesPerEntity;
+		if ( numBytes > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Number of bytes in buffer too large: " + numBytes + " > " + Integer.MAX_VALUE );
+		return ByteBuffer.allocateDirect( ( int ) numBytes ).order( ByteOrder.nativeOrder() );
+	}
+
+	/**
+	 * Create the typed view on {@code buffer}.
+	 */
+	protected abstract B view( final ByteBuffer buffer );
+
+	@Override
+	public ByteBuffer getBuffer()
+	{
+		return bytes;
+	}
+
+	@Override
+	public B getCurrentStorageArray()
+	{
+		return data;
+	}
+
+	private void setBuffer( final ByteBuffer buffer )
+	{
+		this.bytes = buffer;
+		this.data = view( buffer.duplicate().order( buffer.order() ) );
+	}
+
+	private void writeObject( final ObjectOutputStream out ) throws IOException
+	{
+		out.defaultWriteObject();
+		final ByteBuffer source = bytes.duplicate();
+		source.clear();
+		final byte[] content = new byte[ source.capacity() ];
+		source.get( content );
+		out.writeBoolean( bytes.isDirect() );
+		out.writeBoolean( bytes.order() == ByteOrder.BIG_ENDIAN );
+		out.writeObject( content );
+	}
+
+	private void readObject( final ObjectInputStream in ) throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		final boolean isDirect = in.readBoolean();
+		final ByteOrder order = in.readBoolean() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+		final byte[] content = ( byte[] ) in.readObject();
+		final ByteBuffer buffer = isDirect ? ByteBuffer.allocateDirect( content.length ) : ByteBuffer.allocate( content.length );
+		buffer.put( content ).clear();
+		setBuffer( buffer.order( order ) );
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.basictypeaccess.nio;
+
+import java.nio.ByteBuffer;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+
+/**
+ * Basic type access whose storage is a {@link ByteBuffer} rather than a Java
+ * array. Accesses created through {@link #createArray(int)} allocate a direct
+ * buffer in native byte order, i.e. the pixel data lives outside of the Java
+ * heap and is not scanned by the garbage collector. Wrapping an existing
+ * buffer (e.g. one obtained from native code) does not copy the data.
+ *
+ * <p>
+ * {@link #getCurrentStorageArray()} returns the typed view on the buffer (e.g.
+ * a {@link java.nio.FloatBuffer} for {@link FloatBufferAccess}).
+ * </p>
+ *
+ * @param <A>
+ *            the concrete access type
+ */
+public interface BufferAccess< A > extends ArrayDataAccess< A >
+{
+	/**
+	 * Get the {@link ByteBuffer} that stores the data of this access.
+	 *
+	 * @return the underlying byte buffer.
+	 */
+	public ByteBuffer getBuffer();
+
+	/**
+	 * @return how many bytes are used to store one entity.
+	 */
+	public int getNumBytesPerEntity();
+
+	/**
+	 * Create a new access of the same type that uses {@code buffer} as
+	 * storage.
+	 *
+	 * @param buffer
+	 *            the buffer to wrap.
+	 * @return a new access wrapping {@code buffer}.
+	 */
+	public A newInstance( ByteBuffer buffer );
+}
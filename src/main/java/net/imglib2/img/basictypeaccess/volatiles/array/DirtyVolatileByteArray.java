@@ -78,4 +78,10 @@ public class DirtyVolatileByteArray extends AbstractVolatileByteArray< DirtyVola
 	{
 		dirty = true;
 	}
+
+	@Override
+	public void setDirty( final boolean dirty )
+	{
+		this.dirty = dirty;
+	}
 }
@@ -78,4 +78,10 @@ public class DirtyVolatileIntArray extends AbstractVolatileIntArray< DirtyVolati
 	{
 		dirty = true;
 	}
+
+	@Override
+	public void setDirty( final boolean dirty )
+	{
+		this.dirty = dirty;
+	}
 }
@@ -78,4 +78,10 @@ public class DirtyVolatileLongArray extends AbstractVolatileLongArray< DirtyVola
 	{
 		dirty = true;
 	}
+
+	@Override
+	public void setDirty( final boolean dirty )
+	{
+		this.dirty = dirty;
+	}
 }
@@ -34,12 +34,19 @@
 
 package net.imglib2.img.cell;
 
+import java.util.Spliterator;
+
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.Interval;
 import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccessible;
 import net.imglib2.img.AbstractNativeImg;
 import net.imglib2.img.Img;
+import net.imglib2.stream.CursorSpliterator;
 import net.imglib2.type.NativeType;
 import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.iteration.SubIntervalIterable;
 
 /**
  * Abstract superclass for {@link Img} types that divide their underlying data
@@ -54,16 +61,30 @@ public abstract class AbstractCellImg<
 				C extends Cell< A >,
 				I extends RandomAccessible< C > & IterableInterval< C > >
 		extends AbstractNativeImg< T, A >
+		implements SubIntervalIterable< T >
 {
 	protected final CellGrid grid;
 
 	protected final I cells;
 
+	protected final CellTraversal traversal;
+
 	public AbstractCellImg( final CellGrid grid, final I imgOfCells, final Fraction entitiesPerPixel )
+	{
+		this( grid, imgOfCells, entitiesPerPixel, CellTraversal.Order.FLAT );
+	}
+
+	/**
+	 * @param order
+	 *            the order in which cursors visit the cells, see
+	 *            {@link CellTraversal}.
+	 */
+	public AbstractCellImg( final CellGrid grid, final I imgOfCells, final Fraction entitiesPerPixel, final CellTraversal.Order order )
 	{
 		super( grid.getImgDimensions(), entitiesPerPixel );
 		this.grid = grid;
 		this.cells = imgOfCells;
+		this.traversal = CellTraversal.create( order, grid );
 	}
 
 	/**
@@ -104,12 +125,63 @@ public abstract class AbstractCellImg<
 		return new CellRandomAccess<>( this );
 	}
 
+	/**
+	 * Returns a {@link Spliterator} that splits at cell boundaries, if
+	 * possible.
+	 */
+	@Override
+	public Spliterator< T > spliterator()
+	{
+		return new CursorSpliterator<>( cursor(), 0, size(),
+				i -> traversal.firstIterationIndex( traversal.rankOfIterationIndex( i ) ) );
+	}
+
 	@Override
 	public CellIterationOrder iterationOrder()
 	{
 		return new CellIterationOrder( this );
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean supportsOptimizedCursor( final Interval interval )
+	{
+		return !Intervals.isEmpty( interval ) && Intervals.contains( this, interval );
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Object subIntervalIterationOrder( final Interval interval )
+	{
+		return new FlatIterationOrder( interval );
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CellSubIntervalCursor< T, C > cursor( final Interval interval )
+	{
+		assert supportsOptimizedCursor( interval );
+
+		return new CellSubIntervalCursor<>( this, interval );
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CellSubIntervalCursor< T, C > localizingCursor( final Interval interval )
+	{
+		assert supportsOptimizedCursor( interval );
+
+		return new CellSubIntervalCursor<>( this, interval );
+	}
+
 	/**
 	 * Get the underlying image of cells which gives access to the individual
 	 * {@link Cell}s through Cursors and RandomAccesses.
@@ -134,6 +206,17 @@ public abstract class AbstractCellImg<
 		return grid;
 	}
 
+	/**
+	 * Get the {@link CellTraversal} which defines the order in which cursors
+	 * visit the cells of this image.
+	 *
+	 * @return the cell traversal.
+	 */
+	public CellTraversal getCellTraversal()
+	{
+		return traversal;
+	}
+
 	protected void copyDataTo( final AbstractCellImg< T, ?, ?, ? > copy )
 	{
 		final CellCursor< T, C > source = this.cursor();
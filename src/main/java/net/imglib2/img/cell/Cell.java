@@ -60,6 +60,12 @@ public class Cell< A > implements Serializable
 
 	private final int numPixels;
 
+	/**
+	 * log2 of {@link #steps}, or {@code null} if not all dimensions are powers
+	 * of two. Used to compute positions from indices by shifting and masking.
+	 */
+	private final int[] stepShifts;
+
 	private final A data;
 
 	public Cell( final int[] dimensions, final long[] min, final A data )
@@ -75,6 +81,7 @@ public class Cell< A > implements Serializable
 			max[ d ] = min[ d ] + dimensions[ d ] - 1;
 
 		numPixels = ( int ) Intervals.numElements( dimensions );
+		stepShifts = CellGrid.shifts( dimensions ) == null ? null : CellGrid.shifts( steps );
 
 		this.data = data;
 	}
@@ -96,11 +103,19 @@ public class Cell< A > implements Serializable
 
 	public long indexToGlobalPosition( final int index, final int d )
 	{
+		if ( stepShifts != null )
+			return ( ( index >> stepShifts[ d ] ) & ( dimensions[ d ] - 1 ) ) + min[ d ];
 		return IntervalIndexer.indexToPosition( index, dimensions, steps, d ) + min[ d ];
 	}
 
 	public void indexToGlobalPosition( final int index, final long[] position )
 	{
+		if ( stepShifts != null )
+		{
+			for ( int d = 0; d < position.length; ++d )
+				position[ d ] = ( ( index >> stepShifts[ d ] ) & ( dimensions[ d ] - 1 ) ) + min[ d ];
+			return;
+		}
 		IntervalIndexer.indexToPosition( index, dimensions, position );
 		for ( int d = 0; d < position.length; ++d )
 			position[ d ] += min[ d ];
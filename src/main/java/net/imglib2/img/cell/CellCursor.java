@@ -36,10 +36,19 @@ package net.imglib2.img.cell;
 
 import net.imglib2.AbstractCursor;
 import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
 import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
 
 /**
  * {@link Cursor} on a {@link AbstractCellImg}.
+ * <p>
+ * Cells are visited in the order given by the {@link CellTraversal} of the
+ * image. {@link #jumpFwd(long)} computes the target cell directly from the
+ * traversal, so its cost does not depend on the number of cells skipped.
+ * Besides pixels, the cursor can also step through whole cells, see
+ * {@link #nextCell()} and {@link #jumpToCell(long)}.
+ * </p>
  *
  * @author Tobias Pietzsch
  */
@@ -49,7 +58,20 @@ public class CellCursor< T extends NativeType< T >, C extends Cell< ? > >
 {
 	protected final T type;
 
-	protected final Cursor< C > cursorOnCells;
+	protected final RandomAccess< C > cellAccess;
+
+	protected final CellTraversal traversal;
+
+	protected final long[] gridDimensions;
+
+	/**
+	 * Rank of the current cell in the traversal.
+	 */
+	protected long cellRank;
+
+	protected final long lastCellRank;
+
+	private final long[] tmpCellGridPosition;
 
 	protected int lastIndexInCell;
 
@@ -59,18 +81,17 @@ public class CellCursor< T extends NativeType< T >, C extends Cell< ? > >
 	 */
 	protected int index;
 
-	/**
-	 * Caches cursorOnCells.hasNext().
-	 */
-	protected boolean isNotLastCell;
-
 	protected CellCursor( final CellCursor< T, C > cursor )
 	{
 		super( cursor.numDimensions() );
 
 		this.type = cursor.type.duplicateTypeOnSameNativeImg();
-		this.cursorOnCells = cursor.cursorOnCells.copyCursor();
-		isNotLastCell = cursor.isNotLastCell;
+		this.cellAccess = cursor.cellAccess.copyRandomAccess();
+		this.traversal = cursor.traversal;
+		this.gridDimensions = cursor.gridDimensions;
+		this.lastCellRank = cursor.lastCellRank;
+		this.tmpCellGridPosition = new long[ n ];
+		cellRank = cursor.cellRank;
 		lastIndexInCell = cursor.lastIndexInCell;
 		index = cursor.index;
 
@@ -83,7 +104,11 @@ public class CellCursor< T extends NativeType< T >, C extends Cell< ? > >
 		super( img.numDimensions() );
 
 		this.type = img.createLinkedType();
-		this.cursorOnCells = img.getCells().cursor();
+		this.cellAccess = img.getCells().randomAccess();
+		this.traversal = img.getCellTraversal();
+		this.gridDimensions = img.getCellGrid().getGridDimensions();
+		this.lastCellRank = traversal.numCells() - 1;
+		this.tmpCellGridPosition = new long[ n ];
 
 		reset();
 	}
@@ -91,7 +116,7 @@ public class CellCursor< T extends NativeType< T >, C extends Cell< ? > >
 	@Override
 	public C getCell()
 	{
-		return cursorOnCells.get();
+		return cellAccess.get();
 	}
 
 	@Override
@@ -115,23 +140,71 @@ public class CellCursor< T extends NativeType< T >, C extends Cell< ? > >
 	@Override
 	public boolean hasNext()
 	{
-		return ( index < lastIndexInCell ) || isNotLastCell;
+		return ( index < lastIndexInCell ) || ( cellRank < lastCellRank );
 	}
 
 	@Override
 	public void jumpFwd( final long steps )
 	{
-		long newIndex = index + steps;
-		while ( newIndex > lastIndexInCell )
+		final long newIndex = index + steps;
+		if ( newIndex <= lastIndexInCell )
+			index = ( int ) newIndex;
+		else
 		{
-			newIndex -= lastIndexInCell + 1;
-			cursorOnCells.fwd();
-			isNotLastCell = cursorOnCells.hasNext();
-			lastIndexInCell = ( int ) ( getCell().size() - 1 );
+			final long iterationIndex = traversal.firstIterationIndex( cellRank ) + newIndex;
+			final long rank = traversal.rankOfIterationIndex( iterationIndex );
+			moveToCell( rank );
+			index = ( int ) ( iterationIndex - traversal.firstIterationIndex( rank ) );
 		}
-		index = ( int ) newIndex;
 		type.updateIndex( index );
-		type.updateContainer( this );
+	}
+
+	/**
+	 * @return the flat index of the current cell in the cell grid.
+	 */
+	public long getCellIndex()
+	{
+		return traversal.cellIndex( cellRank );
+	}
+
+	/**
+	 * @return whether there are cells after the current one.
+	 */
+	public boolean hasNextCell()
+	{
+		return cellRank < lastCellRank;
+	}
+
+	/**
+	 * Skip the remaining pixels of the current cell. The cursor is placed right
+	 * before the first pixel of the next cell, i.e., the next {@link #fwd()}
+	 * moves to the first pixel of that cell.
+	 *
+	 * @return the next cell.
+	 */
+	public C nextCell()
+	{
+		moveToCell( cellRank + 1 );
+		index = -1;
+		type.updateIndex( index );
+		return getCell();
+	}
+
+	/**
+	 * Place the cursor right before the first pixel of the cell with the given
+	 * flat index in the cell grid, i.e., the next {@link #fwd()} moves to the
+	 * first pixel of that cell. This may also move backwards.
+	 *
+	 * @param cellIndex
+	 *            flat index of the cell.
+	 * @return the cell.
+	 */
+	public C jumpToCell( final long cellIndex )
+	{
+		moveToCell( traversal.rank( cellIndex ) );
+		index = -1;
+		type.updateIndex( index );
+		return getCell();
 	}
 
 	@Override
@@ -139,7 +212,7 @@ public class CellCursor< T extends NativeType< T >, C extends Cell< ? > >
 	{
 		if ( ++index > lastIndexInCell )
 		{
-			moveToNextCell();
+			moveToCell( cellRank + 1 );
 			index = 0;
 		}
 		type.updateIndex( index );
@@ -148,8 +221,9 @@ public class CellCursor< T extends NativeType< T >, C extends Cell< ? > >
 	@Override
 	public void reset()
 	{
-		cursorOnCells.reset();
-		moveToNextCell();
+		cellRank = -1;
+		moveToCell( 0 );
+		index = -1;
 		type.updateIndex( index );
 	}
 
@@ -172,15 +246,17 @@ public class CellCursor< T extends NativeType< T >, C extends Cell< ? > >
 	}
 
 	/**
-	 * Move cursor right before the first element of the next cell. Update type
-	 * and index variables.
+	 * Move cellAccess to the cell with the given rank. Update type container
+	 * and cell variables, but not the index.
 	 */
-	private void moveToNextCell()
+	private void moveToCell( final long rank )
 	{
-		cursorOnCells.fwd();
-		isNotLastCell = cursorOnCells.hasNext();
+		if ( rank == cellRank )
+			return;
+		cellRank = rank;
+		IntervalIndexer.indexToPosition( traversal.cellIndex( rank ), gridDimensions, tmpCellGridPosition );
+		cellAccess.setPosition( tmpCellGridPosition );
 		lastIndexInCell = ( int ) ( getCell().size() - 1 );
-		index = -1;
 		type.updateContainer( this );
 	}
 }
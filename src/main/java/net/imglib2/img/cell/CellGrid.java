@@ -9,6 +9,11 @@ import net.imglib2.util.Util;
 /**
  * Defines {@link AbstractCellImg} geometry and translates between image, cell,
  * and grid coordinates.
+ * <p>
+ * If all cell dimensions are powers of two (see {@link #isPowerOfTwo()}),
+ * image coordinates are translated to grid coordinates by shifting instead of
+ * dividing.
+ * </p>
  *
  * @author Tobias Pietzsch
  */
@@ -24,6 +29,18 @@ public class CellGrid
 
 	private final int[] borderSize;
 
+	/**
+	 * log2 of {@link #cellDimensions}, or {@code null} if not all cell
+	 * dimensions are powers of two.
+	 */
+	private final int[] cellShifts;
+
+	/**
+	 * allocation steps of the image, i.e., the number of pixels in a
+	 * hyper-slice of the image below each dimension.
+	 */
+	private final long[] imgSteps;
+
 	private final int hashcode;
 
 	public CellGrid(
@@ -41,6 +58,9 @@ public class CellGrid
 			numCells[ d ] = ( dimensions[ d ] - 1 ) / cellDimensions[ d ] + 1;
 			borderSize[ d ] = ( int ) ( dimensions[ d ] - ( numCells[ d ] - 1 ) * cellDimensions[ d ] );
 		}
+		cellShifts = shifts( cellDimensions );
+		imgSteps = new long[ n ];
+		IntervalIndexer.createAllocationSteps( dimensions, imgSteps );
 		hashcode = 31 * Arrays.hashCode( dimensions ) + Arrays.hashCode( cellDimensions );
 	}
 
@@ -51,9 +71,36 @@ public class CellGrid
 		cellDimensions = grid.cellDimensions.clone();
 		numCells = grid.numCells.clone();
 		borderSize = grid.borderSize.clone();
+		cellShifts = grid.cellShifts;
+		imgSteps = grid.imgSteps;
 		hashcode = grid.hashcode;
 	}
 
+	/**
+	 * @return log2 of each of the given sizes, or {@code null} if not all of
+	 *         them are powers of two.
+	 */
+	static int[] shifts( final int[] sizes )
+	{
+		final int[] shifts = new int[ sizes.length ];
+		for ( int d = 0; d < sizes.length; ++d )
+		{
+			if ( Integer.bitCount( sizes[ d ] ) != 1 )
+				return null;
+			shifts[ d ] = Integer.numberOfTrailingZeros( sizes[ d ] );
+		}
+		return shifts;
+	}
+
+	/**
+	 * @return whether all cell dimensions are powers of two, in which case
+	 *         grid coordinates are computed by shifting rather than dividing.
+	 */
+	public boolean isPowerOfTwo()
+	{
+		return cellShifts != null;
+	}
+
 	public int numDimensions()
 	{
 		return n;
@@ -210,8 +257,12 @@ public class CellGrid
 	 */
 	public void getCellPosition( final long[] position, final long[] cellPos )
 	{
-		for ( int d = 0; d < n; ++d )
-			cellPos[ d ] = position[ d ] / cellDimensions[ d ];
+		if ( cellShifts != null )
+			for ( int d = 0; d < n; ++d )
+				cellPos[ d ] = position[ d ] >> cellShifts[ d ];
+		else
+			for ( int d = 0; d < n; ++d )
+				cellPos[ d ] = position[ d ] / cellDimensions[ d ];
 	}
 
 	/**
@@ -224,8 +275,77 @@ public class CellGrid
 	 */
 	public void getCellPosition( final long[] position, final Positionable cellPos )
 	{
-		for ( int d = 0; d < n; ++d )
-			cellPos.setPosition( position[ d ] / cellDimensions[ d ], d );
+		if ( cellShifts != null )
+			for ( int d = 0; d < n; ++d )
+				cellPos.setPosition( position[ d ] >> cellShifts[ d ], d );
+		else
+			for ( int d = 0; d < n; ++d )
+				cellPos.setPosition( position[ d ] / cellDimensions[ d ], d );
+	}
+
+	/**
+	 * Get the grid coordinate in dimension {@code d} of the cell containing
+	 * image coordinate {@code position}.
+	 *
+	 * @param position
+	 *            image coordinate in dimension {@code d}.
+	 * @param d
+	 *            dimension
+	 * @return grid coordinate of the cell.
+	 */
+	public long getCellPosition( final long position, final int d )
+	{
+		return cellShifts != null ? position >> cellShifts[ d ] : position / cellDimensions[ d ];
+	}
+
+	/**
+	 * Compute the iteration index of the first pixel of a cell, that is, the
+	 * number of pixels in all cells preceding it. This assumes that cells are
+	 * iterated in flat order, and pixels within each cell in flat order, as in
+	 * {@link CellIterationOrder}.
+	 *
+	 * @param cellGridPosition
+	 *            grid coordinates of the cell.
+	 * @return iteration index of the first pixel of the cell.
+	 */
+	public long cellToIterationIndex( final long[] cellGridPosition )
+	{
+		long index = 0;
+		long cellSlice = 1;
+		for ( int d = n - 1; d >= 0; --d )
+		{
+			final long g = cellGridPosition[ d ];
+			index += g * cellDimensions[ d ] * imgSteps[ d ] * cellSlice;
+			cellSlice *= ( g + 1 == numCells[ d ] ) ? borderSize[ d ] : cellDimensions[ d ];
+		}
+		return index;
+	}
+
+	/**
+	 * Find the cell containing the pixel with the given iteration index. This
+	 * is the inverse of {@link #cellToIterationIndex(long[])}, and makes the
+	 * same assumptions about iteration order.
+	 *
+	 * @param iterationIndex
+	 *            iteration index of a pixel in the image.
+	 * @param cellGridPosition
+	 *            grid coordinates of the cell containing the pixel are
+	 *            written here.
+	 * @return the index of the pixel within the cell.
+	 */
+	public int iterationIndexToCell( final long iterationIndex, final long[] cellGridPosition )
+	{
+		long remainder = iterationIndex;
+		long cellSlice = 1;
+		for ( int d = n - 1; d >= 0; --d )
+		{
+			final long pixelsPerGridStep = cellDimensions[ d ] * imgSteps[ d ] * cellSlice;
+			final long g = Math.min( remainder / pixelsPerGridStep, numCells[ d ] - 1 );
+			cellGridPosition[ d ] = g;
+			remainder -= g * pixelsPerGridStep;
+			cellSlice *= ( g + 1 == numCells[ d ] ) ? borderSize[ d ] : cellDimensions[ d ];
+		}
+		return ( int ) remainder;
 	}
 
 	@Override
@@ -55,7 +55,8 @@ import net.imglib2.util.Intervals;
  * Factory for creating {@link AbstractCellImg CellImgs}. The cell dimensions
  * for a standard cell can be supplied in the constructor of the factory. If no
  * cell dimensions are given, the factory creates cells of size <em>10 x 10 x
- * ... x 10</em>.
+ * ... x 10</em>. Optionally, a {@link CellTraversal.Order} can be given that
+ * defines the order in which cursors of the created images visit the cells.
  *
  * @author Tobias Pietzsch
  */
@@ -63,15 +64,23 @@ public class CellImgFactory< T extends NativeType< T > > extends NativeImgFactor
 {
 	private final int[] defaultCellDimensions;
 
+	private final CellTraversal.Order order;
+
 	public CellImgFactory()
 	{
 		this( 10 );
 	}
 
 	public CellImgFactory( final int... cellDimensions )
+	{
+		this( CellTraversal.Order.FLAT, cellDimensions );
+	}
+
+	public CellImgFactory( final CellTraversal.Order order, final int... cellDimensions )
 	{
 		defaultCellDimensions = cellDimensions.clone();
 		verifyDimensions( defaultCellDimensions );
+		this.order = order;
 	}
 
 	/**
@@ -194,7 +203,7 @@ public class CellImgFactory< T extends NativeType< T > > extends NativeImgFactor
 	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
 	{
 		if ( NativeType.class.isInstance( type ) )
-			return new CellImgFactory( defaultCellDimensions );
+			return new CellImgFactory( order, defaultCellDimensions );
 		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
 	}
 
@@ -208,7 +217,28 @@ public class CellImgFactory< T extends NativeType< T > > extends NativeImgFactor
 		final int[] cellDimensions = getCellDimensions( defaultCellDimensions, n, entitiesPerPixel );
 
 		final CellGrid grid = new CellGrid( dimensions, cellDimensions );
-		final long[] gridDimensions = new long[ grid.numDimensions() ];
+		final ListImg< Cell< A > > cells = createCells( grid, creator, entitiesPerPixel );
+
+		return new CellImg<>( this, grid, cells, entitiesPerPixel, order );
+	}
+
+	/**
+	 * Create a {@link ListImg} of {@link Cell Cells} covering {@code grid}.
+	 * The data of each cell is created by {@code creator}.
+	 *
+	 * @param grid
+	 *            the layout of the cells
+	 * @param creator
+	 *            used to create the data of each cell
+	 * @param entitiesPerPixel
+	 * @return image of cells
+	 */
+	static < A extends ArrayDataAccess< A > >
+			ListImg< Cell< A > >
+			createCells( final CellGrid grid, final A creator, final Fraction entitiesPerPixel )
+	{
+		final int n = grid.numDimensions();
+		final long[] gridDimensions = new long[ n ];
 		grid.gridDimensions( gridDimensions );
 
 		final Cell< A > type = new Cell<>( new int[] { 1 }, new long[] { 1 }, null );
@@ -227,6 +257,6 @@ public class CellImgFactory< T extends NativeType< T > > extends NativeImgFactor
 			cellCursor.set( new Cell<>( cellDims, cellMin, data ) );
 		}
 
-		return new CellImg<>( this, grid, cells, entitiesPerPixel );
+		return cells;
 	}
 }
@@ -36,7 +36,8 @@ package net.imglib2.img.cell;
 
 /**
  * Iteration order for a {@link CellImg}. A {@link CellImg} is iterated cell by
- * cell, where each cell is iterated in flat iteration order.
+ * cell, in the order given by its {@link CellTraversal}, where each cell is
+ * iterated in flat iteration order.
  *
  * @author Tobias Pietzsch
  */
@@ -51,7 +52,8 @@ public class CellIterationOrder
 
 	/**
 	 * To be equal an object has to be a {@link CellIterationOrder} on a
-	 * {@link CellImg} of the same dimensions and cell-dimensions.
+	 * {@link CellImg} of the same dimensions, cell-dimensions, and cell traversal
+	 * order.
 	 *
 	 * @return true, if obj is a compatible {@link CellIterationOrder}.
 	 */
@@ -63,6 +65,7 @@ public class CellIterationOrder
 
 		final AbstractCellImg< ?, ?, ?, ? > other = ( ( CellIterationOrder ) obj ).img;
 		return other.getCellGrid().equals( img.getCellGrid() )
+				&& other.getCellTraversal().getOrder() == img.getCellTraversal().getOrder()
 				&& other.getCells().iterationOrder().equals( img.getCells().iterationOrder() );
 	}
 }
@@ -36,10 +36,18 @@ package net.imglib2.img.cell;
 
 import net.imglib2.AbstractLocalizingCursor;
 import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
 import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
 
 /**
  * Localizing {@link Cursor} on a {@link AbstractCellImg}.
+ * <p>
+ * Like {@link CellCursor}, it visits cells in the order given by the
+ * {@link CellTraversal} of the image, jumps forward in constant time and can
+ * step through whole cells, see {@link #nextCell()} and
+ * {@link #jumpToCell(long)}.
+ * </p>
  *
  * @author Tobias Pietzsch
  */
@@ -49,7 +57,20 @@ public class CellLocalizingCursor< T extends NativeType< T >, C extends Cell< ?
 {
 	protected final T type;
 
-	protected final Cursor< C > cursorOnCells;
+	protected final RandomAccess< C > cellAccess;
+
+	protected final CellTraversal traversal;
+
+	protected final long[] gridDimensions;
+
+	/**
+	 * Rank of the current cell in the traversal.
+	 */
+	protected long cellRank;
+
+	protected final long lastCellRank;
+
+	private final long[] tmpCellGridPosition;
 
 	protected int lastIndexInCell;
 
@@ -63,21 +84,20 @@ public class CellLocalizingCursor< T extends NativeType< T >, C extends Cell< ?
 	 */
 	protected int index;
 
-	/**
-	 * Caches cursorOnCells.hasNext().
-	 */
-	protected boolean isNotLastCell;
-
 	protected CellLocalizingCursor( final CellLocalizingCursor< T, C > cursor )
 	{
 		super( cursor.numDimensions() );
 
 		this.type = cursor.type.duplicateTypeOnSameNativeImg();
-		this.cursorOnCells = cursor.cursorOnCells.copyCursor();
+		this.cellAccess = cursor.cellAccess.copyRandomAccess();
 		this.currentCellMin = cursor.currentCellMin;
 		this.currentCellMax = cursor.currentCellMax;
+		this.traversal = cursor.traversal;
+		this.gridDimensions = cursor.gridDimensions;
+		this.lastCellRank = cursor.lastCellRank;
+		this.tmpCellGridPosition = new long[ n ];
 
-		isNotLastCell = cursor.isNotLastCell;
+		cellRank = cursor.cellRank;
 		lastIndexInCell = cursor.lastIndexInCell;
 		for ( int d = 0; d < n; ++d )
 			position[ d ] = cursor.position[ d ];
@@ -92,9 +112,13 @@ public class CellLocalizingCursor< T extends NativeType< T >, C extends Cell< ?
 		super( img.numDimensions() );
 
 		this.type = img.createLinkedType();
-		this.cursorOnCells = img.getCells().cursor();
+		this.cellAccess = img.getCells().randomAccess();
 		this.currentCellMin = null;
 		this.currentCellMax = null;
+		this.traversal = img.getCellTraversal();
+		this.gridDimensions = img.getCellGrid().getGridDimensions();
+		this.lastCellRank = traversal.numCells() - 1;
+		this.tmpCellGridPosition = new long[ n ];
 
 		reset();
 	}
@@ -102,7 +126,7 @@ public class CellLocalizingCursor< T extends NativeType< T >, C extends Cell< ?
 	@Override
 	public C getCell()
 	{
-		return cursorOnCells.get();
+		return cellAccess.get();
 	}
 
 	@Override
@@ -126,30 +150,66 @@ public class CellLocalizingCursor< T extends NativeType< T >, C extends Cell< ?
 	@Override
 	public boolean hasNext()
 	{
-		return isNotLastCell || ( index < lastIndexInCell );
+		return ( cellRank < lastCellRank ) || ( index < lastIndexInCell );
 	}
 
 	@Override
 	public void jumpFwd( final long steps )
 	{
-		long newIndex = index + steps;
-		while ( newIndex > lastIndexInCell )
+		final long newIndex = index + steps;
+		if ( newIndex <= lastIndexInCell )
+			index = ( int ) newIndex;
+		else
 		{
-			newIndex -= lastIndexInCell + 1;
-			cursorOnCells.fwd();
-			isNotLastCell = cursorOnCells.hasNext();
-			lastIndexInCell = ( int ) ( getCell().size() - 1 );
+			final long iterationIndex = traversal.firstIterationIndex( cellRank ) + newIndex;
+			final long rank = traversal.rankOfIterationIndex( iterationIndex );
+			moveToCell( rank );
+			index = ( int ) ( iterationIndex - traversal.firstIterationIndex( rank ) );
 		}
+		getCell().indexToGlobalPosition( index, position );
+		type.updateIndex( index );
+	}
 
-		final C cell = getCell();
-		currentCellMin = cell.min;
-		currentCellMax = cell.max;
+	/**
+	 * @return the flat index of the current cell in the cell grid.
+	 */
+	public long getCellIndex()
+	{
+		return traversal.cellIndex( cellRank );
+	}
 
-		index = ( int ) newIndex;
-		cell.indexToGlobalPosition( index, position );
+	/**
+	 * @return whether there are cells after the current one.
+	 */
+	public boolean hasNextCell()
+	{
+		return cellRank < lastCellRank;
+	}
 
-		type.updateIndex( index );
-		type.updateContainer( this );
+	/**
+	 * Skip the remaining pixels of the current cell. The cursor is placed right
+	 * before the first pixel of the next cell, i.e., the next {@link #fwd()}
+	 * moves to the first pixel of that cell.
+	 *
+	 * @return the next cell.
+	 */
+	public C nextCell()
+	{
+		return jumpToRank( cellRank + 1 );
+	}
+
+	/**
+	 * Place the cursor right before the first pixel of the cell with the given
+	 * flat index in the cell grid, i.e., the next {@link #fwd()} moves to the
+	 * first pixel of that cell. This may also move backwards.
+	 *
+	 * @param cellIndex
+	 *            flat index of the cell.
+	 * @return the cell.
+	 */
+	public C jumpToCell( final long cellIndex )
+	{
+		return jumpToRank( traversal.rank( cellIndex ) );
 	}
 
 	@Override
@@ -157,7 +217,8 @@ public class CellLocalizingCursor< T extends NativeType< T >, C extends Cell< ?
 	{
 		if ( ++index > lastIndexInCell )
 		{
-			moveToNextCell();
+			moveToCell( cellRank + 1 );
+			resetPositionInCell();
 			index = 0;
 		}
 		type.updateIndex( index );
@@ -174,30 +235,50 @@ public class CellLocalizingCursor< T extends NativeType< T >, C extends Cell< ?
 	@Override
 	public void reset()
 	{
-		cursorOnCells.reset();
-		moveToNextCell();
+		cellRank = -1;
+		jumpToRank( 0 );
+	}
+
+	/**
+	 * Move cursor right before the first element of the cell with the given
+	 * rank. Update type, position, and index variables.
+	 */
+	private C jumpToRank( final long rank )
+	{
+		moveToCell( rank );
+		resetPositionInCell();
 		index = -1;
 		type.updateIndex( index );
+		return getCell();
 	}
 
 	/**
-	 * Move cursor right before the first element of the next cell. Update type,
-	 * position, and index variables.
+	 * Move cellAccess to the cell with the given rank. Update type and cell
+	 * variables, but not the index or position.
 	 */
-	private void moveToNextCell()
+	private void moveToCell( final long rank )
 	{
-		cursorOnCells.fwd();
-		isNotLastCell = cursorOnCells.hasNext();
-		final C cell = getCell();
+		if ( rank == cellRank )
+			return;
+		cellRank = rank;
+		IntervalIndexer.indexToPosition( traversal.cellIndex( rank ), gridDimensions, tmpCellGridPosition );
+		cellAccess.setPosition( tmpCellGridPosition );
 
+		final C cell = getCell();
 		lastIndexInCell = ( int ) ( cell.size() - 1 );
 		currentCellMin = cell.min;
 		currentCellMax = cell.max;
 
+		type.updateContainer( this );
+	}
+
+	/**
+	 * Set position right before the first element of the current cell.
+	 */
+	private void resetPositionInCell()
+	{
 		position[ 0 ] = currentCellMin[ 0 ] - 1;
 		for ( int d = 1; d < n; ++d )
 			position[ d ] = currentCellMin[ d ];
-
-		type.updateContainer( this );
 	}
 }
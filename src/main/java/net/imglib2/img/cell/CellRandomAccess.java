@@ -185,7 +185,7 @@ public class CellRandomAccess< T extends NativeType< T >, C extends Cell< ? > >
 		position[ d ] += distance;
 		if ( position[ d ] < currentCellMin[ d ] || position[ d ] > currentCellMax[ d ] )
 		{
-			randomAccessOnCells.setPosition( position[ d ] / cellDims[ d ], d );
+			randomAccessOnCells.setPosition( grid.getCellPosition( position[ d ], d ), d );
 			updatePosition( position[ d ] < 0 || position[ d ] >= dimensions[ d ] );
 		}
 		type.updateIndex( index );
@@ -198,7 +198,7 @@ public class CellRandomAccess< T extends NativeType< T >, C extends Cell< ? > >
 		position[ d ] += distance;
 		if ( position[ d ] < currentCellMin[ d ] || position[ d ] > currentCellMax[ d ] )
 		{
-			randomAccessOnCells.setPosition( position[ d ] / cellDims[ d ], d );
+			randomAccessOnCells.setPosition( grid.getCellPosition( position[ d ], d ), d );
 			updatePosition( position[ d ] < 0 || position[ d ] >= dimensions[ d ] );
 		}
 		type.updateIndex( index );
@@ -216,7 +216,7 @@ public class CellRandomAccess< T extends NativeType< T >, C extends Cell< ? > >
 				position[ d ] += pos;
 				if ( position[ d ] < currentCellMin[ d ] || position[ d ] > currentCellMax[ d ] )
 				{
-					randomAccessOnCells.setPosition( position[ d ] / cellDims[ d ], d );
+					randomAccessOnCells.setPosition( grid.getCellPosition( position[ d ], d ), d );
 					boolean movedOutOfBounds = position[ d ] < 0 || position[ d ] >= dimensions[ d ];
 
 					for ( ++d; d < n; ++d )
@@ -227,7 +227,7 @@ public class CellRandomAccess< T extends NativeType< T >, C extends Cell< ? > >
 							position[ d ] += pos2;
 							if ( position[ d ] < currentCellMin[ d ] || position[ d ] > currentCellMax[ d ] )
 							{
-								randomAccessOnCells.setPosition( position[ d ] / cellDims[ d ], d );
+								randomAccessOnCells.setPosition( grid.getCellPosition( position[ d ], d ), d );
 								movedOutOfBounds |= position[ d ] < 0 || position[ d ] >= dimensions[ d ];
 							}
 						}
@@ -251,7 +251,7 @@ public class CellRandomAccess< T extends NativeType< T >, C extends Cell< ? > >
 				position[ d ] += distance[ d ];
 				if ( position[ d ] < currentCellMin[ d ] || position[ d ] > currentCellMax[ d ] )
 				{
-					randomAccessOnCells.setPosition( position[ d ] / cellDims[ d ], d );
+					randomAccessOnCells.setPosition( grid.getCellPosition( position[ d ], d ), d );
 					boolean movedOutOfBounds = position[ d ] < 0 || position[ d ] >= dimensions[ d ];
 
 					for ( ++d; d < n; ++d )
@@ -261,7 +261,7 @@ public class CellRandomAccess< T extends NativeType< T >, C extends Cell< ? > >
 							position[ d ] += distance[ d ];
 							if ( position[ d ] < currentCellMin[ d ] || position[ d ] > currentCellMax[ d ] )
 							{
-								randomAccessOnCells.setPosition( position[ d ] / cellDims[ d ], d );
+								randomAccessOnCells.setPosition( grid.getCellPosition( position[ d ], d ), d );
 								movedOutOfBounds |= position[ d ] < 0 || position[ d ] >= dimensions[ d ];
 							}
 						}
@@ -285,7 +285,7 @@ public class CellRandomAccess< T extends NativeType< T >, C extends Cell< ? > >
 				position[ d ] += distance[ d ];
 				if ( position[ d ] < currentCellMin[ d ] || position[ d ] > currentCellMax[ d ] )
 				{
-					randomAccessOnCells.setPosition( position[ d ] / cellDims[ d ], d );
+					randomAccessOnCells.setPosition( grid.getCellPosition( position[ d ], d ), d );
 					boolean movedOutOfBounds = position[ d ] < 0 || position[ d ] >= dimensions[ d ];
 
 					for ( ++d; d < n; ++d )
@@ -295,7 +295,7 @@ public class CellRandomAccess< T extends NativeType< T >, C extends Cell< ? > >
 							position[ d ] += distance[ d ];
 							if ( position[ d ] < currentCellMin[ d ] || position[ d ] > currentCellMax[ d ] )
 							{
-								randomAccessOnCells.setPosition( position[ d ] / cellDims[ d ], d );
+								randomAccessOnCells.setPosition( grid.getCellPosition( position[ d ], d ), d );
 								movedOutOfBounds |= position[ d ] < 0 || position[ d ] >= dimensions[ d ];
 							}
 						}
@@ -315,7 +315,7 @@ public class CellRandomAccess< T extends NativeType< T >, C extends Cell< ? > >
 		position[ d ] = pos;
 		if ( pos < currentCellMin[ d ] || pos > currentCellMax[ d ] )
 		{
-			randomAccessOnCells.setPosition( pos / cellDims[ d ], d );
+			randomAccessOnCells.setPosition( grid.getCellPosition( pos, d ), d );
 			updatePosition( position[ d ] < 0 || position[ d ] >= dimensions[ d ] );
 		}
 		type.updateIndex( index );
@@ -328,7 +328,7 @@ public class CellRandomAccess< T extends NativeType< T >, C extends Cell< ? > >
 		position[ d ] = pos;
 		if ( pos < currentCellMin[ d ] || pos > currentCellMax[ d ] )
 		{
-			randomAccessOnCells.setPosition( pos / cellDims[ d ], d );
+			randomAccessOnCells.setPosition( grid.getCellPosition( pos, d ), d );
 			updatePosition( position[ d ] < 0 || position[ d ] >= dimensions[ d ] );
 		}
 		type.updateIndex( index );
@@ -346,7 +346,7 @@ public class CellRandomAccess< T extends NativeType< T >, C extends Cell< ? > >
 				position[ d ] = pos;
 				if ( position[ d ] < currentCellMin[ d ] || position[ d ] > currentCellMax[ d ] )
 				{
-					randomAccessOnCells.setPosition( position[ d ] / cellDims[ d ], d );
+					randomAccessOnCells.setPosition( grid.getCellPosition( position[ d ], d ), d );
 					boolean movedOutOfBounds = position[ d ] < 0 || position[ d ] >= dimensions[ d ];
 
 					for ( ++d; d < n; ++d )
@@ -357,7 +357,7 @@ public class CellRandomAccess< T extends NativeType< T >, C extends Cell< ? > >
 							position[ d ] = posInner;
 							if ( position[ d ] < currentCellMin[ d ] || position[ d ] > currentCellMax[ d ] )
 							{
-								randomAccessOnCells.setPosition( position[ d ] / cellDims[ d ], d );
+								randomAccessOnCells.setPosition( grid.getCellPosition( position[ d ], d ), d );
 								movedOutOfBounds |= position[ d ] < 0 || position[ d ] >= dimensions[ d ];
 							}
 						}
@@ -399,7 +399,7 @@ public class CellRandomAccess< T extends NativeType< T >, C extends Cell< ? > >
 				position[ d ] = pos[ d ];
 				if ( pos[ d ] < currentCellMin[ d ] || pos[ d ] > currentCellMax[ d ] )
 				{
-					randomAccessOnCells.setPosition( pos[ d ] / cellDims[ d ], d );
+					randomAccessOnCells.setPosition( grid.getCellPosition( pos[ d ], d ), d );
 					movedOutOfBounds |= pos[ d ] < 0 || pos[ d ] >= dimensions[ d ];
 				}
 			}
@@ -418,7 +418,7 @@ public class CellRandomAccess< T extends NativeType< T >, C extends Cell< ? > >
 				position[ d ] = pos[ d ];
 				if ( position[ d ] < currentCellMin[ d ] || position[ d ] > currentCellMax[ d ] )
 				{
-					randomAccessOnCells.setPosition( position[ d ] / cellDims[ d ], d );
+					randomAccessOnCells.setPosition( grid.getCellPosition( position[ d ], d ), d );
 					boolean movedOutOfBounds = position[ d ] < 0 || position[ d ] >= dimensions[ d ];
 
 					for ( ++d; d < n; ++d )
@@ -428,7 +428,7 @@ public class CellRandomAccess< T extends NativeType< T >, C extends Cell< ? > >
 							position[ d ] = pos[ d ];
 							if ( position[ d ] < currentCellMin[ d ] || position[ d ] > currentCellMax[ d ] )
 							{
-								randomAccessOnCells.setPosition( position[ d ] / cellDims[ d ], d );
+								randomAccessOnCells.setPosition( grid.getCellPosition( position[ d ], d ), d );
 								movedOutOfBounds |= position[ d ] < 0 || position[ d ] >= dimensions[ d ];
 							}
 						}
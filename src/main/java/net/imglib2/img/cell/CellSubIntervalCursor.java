@@ -0,0 +1,240 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.AbstractLocalizingCursor;
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * {@link Cursor} iterating an {@link Interval} of an {@link AbstractCellImg}
+ * in flat order.
+ * <p>
+ * Within a cell, a line of the interval is traversed by incrementing the index
+ * into the cell data. The cell is looked up only when the line leaves it or a
+ * new line starts. The cursor always knows its position, so it is used for
+ * both {@link AbstractCellImg#cursor(Interval)} and
+ * {@link AbstractCellImg#localizingCursor(Interval)}.
+ * </p>
+ *
+ * @param <T>
+ *            pixel type
+ * @param <C>
+ *            cell type
+ */
+public class CellSubIntervalCursor< T extends NativeType< T >, C extends Cell< ? > >
+		extends AbstractLocalizingCursor< T >
+		implements AbstractCellImg.CellImgSampler< C >
+{
+	protected final T type;
+
+	protected final CellGrid grid;
+
+	protected final RandomAccess< C > cellAccess;
+
+	/**
+	 * Min and max of the iterated interval.
+	 */
+	protected final long[] min;
+
+	protected final long[] max;
+
+	protected final long[] dimensions;
+
+	/**
+	 * Index of the current pixel in the iteration.
+	 */
+	protected long iterationIndex;
+
+	protected final long lastIterationIndex;
+
+	/**
+	 * Index of the current pixel in the current cell.
+	 */
+	protected int index;
+
+	/**
+	 * Last position in dimension 0 within the current cell and interval.
+	 */
+	protected long lineEndInCell;
+
+	protected CellSubIntervalCursor( final CellSubIntervalCursor< T, C > cursor )
+	{
+		super( cursor.numDimensions() );
+
+		this.type = cursor.type.duplicateTypeOnSameNativeImg();
+		this.grid = cursor.grid;
+		this.cellAccess = cursor.cellAccess.copyRandomAccess();
+		this.min = cursor.min;
+		this.max = cursor.max;
+		this.dimensions = cursor.dimensions;
+		this.lastIterationIndex = cursor.lastIterationIndex;
+		iterationIndex = cursor.iterationIndex;
+		index = cursor.index;
+		lineEndInCell = cursor.lineEndInCell;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = cursor.position[ d ];
+
+		type.updateContainer( this );
+		type.updateIndex( index );
+	}
+
+	public CellSubIntervalCursor( final AbstractCellImg< T, ?, C, ? > img, final Interval interval )
+	{
+		super( img.numDimensions() );
+
+		this.type = img.createLinkedType();
+		this.grid = img.getCellGrid();
+		this.cellAccess = img.getCells().randomAccess();
+		this.min = new long[ n ];
+		this.max = new long[ n ];
+		this.dimensions = new long[ n ];
+		interval.min( min );
+		interval.max( max );
+		interval.dimensions( dimensions );
+		long size = 1;
+		for ( int d = 0; d < n; ++d )
+			size *= dimensions[ d ];
+		this.lastIterationIndex = size - 1;
+
+		reset();
+	}
+
+	@Override
+	public C getCell()
+	{
+		return cellAccess.get();
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public CellSubIntervalCursor< T, C > copy()
+	{
+		return new CellSubIntervalCursor<>( this );
+	}
+
+	@Override
+	public CellSubIntervalCursor< T, C > copyCursor()
+	{
+		return copy();
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return iterationIndex < lastIterationIndex;
+	}
+
+	@Override
+	public void fwd()
+	{
+		++iterationIndex;
+		if ( position[ 0 ] < lineEndInCell )
+		{
+			++position[ 0 ];
+			type.updateIndex( ++index );
+		}
+		else if ( position[ 0 ] < max[ 0 ] )
+		{
+			// continue the line in the next cell
+			++position[ 0 ];
+			cellAccess.fwd( 0 );
+			enterCell();
+		}
+		else
+		{
+			position[ 0 ] = min[ 0 ];
+			for ( int d = 1; d < n; ++d )
+			{
+				if ( ++position[ d ] <= max[ d ] )
+					break;
+				position[ d ] = min[ d ];
+			}
+			locateCell();
+		}
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		iterationIndex += steps;
+		IntervalIndexer.indexToPositionWithOffset( iterationIndex, dimensions, min, position );
+		locateCell();
+	}
+
+	@Override
+	public void reset()
+	{
+		iterationIndex = -1;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = min[ d ];
+		locateCell();
+
+		// move right before the first pixel
+		--position[ 0 ];
+		type.updateIndex( --index );
+	}
+
+	/**
+	 * Move {@link #cellAccess} to the cell containing the current position.
+	 */
+	private void locateCell()
+	{
+		for ( int d = 0; d < n; ++d )
+			cellAccess.setPosition( grid.getCellPosition( position[ d ], d ), d );
+		enterCell();
+	}
+
+	/**
+	 * Update type and cell variables after {@link #cellAccess} moved to the
+	 * cell containing the current position.
+	 */
+	private void enterCell()
+	{
+		final C cell = getCell();
+		index = cell.globalPositionToIndex( position );
+		lineEndInCell = Math.min( max[ 0 ], cell.min[ 0 ] + cell.dimensions[ 0 ] - 1 );
+		type.updateContainer( this );
+		type.updateIndex( index );
+	}
+}
@@ -0,0 +1,344 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * The order in which the cells of an {@link AbstractCellImg} are visited by
+ * its cursors. Pixels within each cell are always visited in flat order.
+ * <p>
+ * Cells are identified by their flat index in the cell grid, and the
+ * traversal maps between that index and the <em>rank</em> of the cell, i.e.,
+ * its position in the traversal. It also maps between ranks and the
+ * iteration indices of the pixels in each cell.
+ * </p>
+ * <p>
+ * Besides flat order, the cells can be traversed along a Morton (Z-order) or
+ * Hilbert curve through the cell grid. Cells that are close in the grid are
+ * then visited close together in time, which is friendlier to cell caches
+ * for operations that read neighbouring cells. For grids whose extents are
+ * not powers of two, the curve through the enclosing power-of-two grid is
+ * used, skipping the cells outside the image.
+ * </p>
+ */
+public abstract class CellTraversal
+{
+	public enum Order
+	{
+		/**
+		 * Cells in flat order, dimension 0 fastest.
+		 */
+		FLAT,
+
+		/**
+		 * Cells along a Morton (Z-order) curve.
+		 */
+		MORTON,
+
+		/**
+		 * Cells along a Hilbert curve.
+		 */
+		HILBERT
+	}
+
+	protected final CellGrid grid;
+
+	protected final long[] gridDimensions;
+
+	protected final long numCells;
+
+	protected CellTraversal( final CellGrid grid )
+	{
+		this.grid = grid;
+		this.gridDimensions = grid.getGridDimensions();
+		long size = 1;
+		for ( final long g : gridDimensions )
+			size *= g;
+		this.numCells = size;
+	}
+
+	/**
+	 * Create a {@link CellTraversal} of {@code grid} in the given order.
+	 */
+	public static CellTraversal create( final Order order, final CellGrid grid )
+	{
+		return order == Order.FLAT ? new Flat( grid ) : new Curve( order, grid );
+	}
+
+	public abstract Order getOrder();
+
+	/**
+	 * @return the number of cells in the grid.
+	 */
+	public long numCells()
+	{
+		return numCells;
+	}
+
+	/**
+	 * @return the flat grid index of the cell visited at {@code rank}.
+	 */
+	public abstract long cellIndex( long rank );
+
+	/**
+	 * @return the rank of the cell with the flat grid index
+	 *         {@code cellIndex}.
+	 */
+	public abstract long rank( long cellIndex );
+
+	/**
+	 * @return the iteration index of the first pixel of the cell visited at
+	 *         {@code rank}.
+	 */
+	public abstract long firstIterationIndex( long rank );
+
+	/**
+	 * @return the rank of the cell containing the pixel with the given
+	 *         iteration index.
+	 */
+	public abstract long rankOfIterationIndex( long iterationIndex );
+
+	/**
+	 * Cells in flat order. All mappings are computed from the grid.
+	 */
+	static class Flat extends CellTraversal
+	{
+		Flat( final CellGrid grid )
+		{
+			super( grid );
+		}
+
+		@Override
+		public Order getOrder()
+		{
+			return Order.FLAT;
+		}
+
+		@Override
+		public long cellIndex( final long rank )
+		{
+			return rank;
+		}
+
+		@Override
+		public long rank( final long cellIndex )
+		{
+			return cellIndex;
+		}
+
+		@Override
+		public long firstIterationIndex( final long rank )
+		{
+			final long[] cellGridPosition = new long[ gridDimensions.length ];
+			IntervalIndexer.indexToPosition( rank, gridDimensions, cellGridPosition );
+			return grid.cellToIterationIndex( cellGridPosition );
+		}
+
+		@Override
+		public long rankOfIterationIndex( final long iterationIndex )
+		{
+			final long[] cellGridPosition = new long[ gridDimensions.length ];
+			grid.iterationIndexToCell( iterationIndex, cellGridPosition );
+			return IntervalIndexer.positionToIndex( cellGridPosition, gridDimensions );
+		}
+	}
+
+	/**
+	 * Cells along a space-filling curve. The mappings are precomputed tables.
+	 */
+	static class Curve extends CellTraversal
+	{
+		private final Order order;
+
+		private final int[] rankToCell;
+
+		private final int[] cellToRank;
+
+		/**
+		 * Iteration index of the first pixel of the cell at each rank, with
+		 * the total number of pixels appended.
+		 */
+		private final long[] firstIterationIndex;
+
+		Curve( final Order order, final CellGrid grid )
+		{
+			super( grid );
+			if ( numCells > Integer.MAX_VALUE )
+				throw new IllegalArgumentException( "Too many cells for " + order + " traversal: " + numCells );
+			this.order = order;
+
+			final int n = gridDimensions.length;
+			long maxDim = 1;
+			for ( final long g : gridDimensions )
+				maxDim = Math.max( maxDim, g );
+			final int bits = 64 - Long.numberOfLeadingZeros( maxDim - 1 );
+			if ( bits * n > 63 )
+				throw new IllegalArgumentException( "Cell grid too large for " + order + " traversal." );
+
+			final int size = ( int ) numCells;
+			final long[] codes = new long[ size ];
+			final long[] position = new long[ n ];
+			for ( int i = 0; i < size; ++i )
+			{
+				IntervalIndexer.indexToPosition( i, gridDimensions, position );
+				codes[ i ] = order == Order.MORTON ? mortonIndex( position, bits ) : hilbertIndex( position, bits );
+			}
+			rankToCell = IntStream.range( 0, size ).boxed()
+					.sorted( Comparator.comparingLong( i -> codes[ i ] ) )
+					.mapToInt( Integer::intValue ).toArray();
+
+			cellToRank = new int[ size ];
+			firstIterationIndex = new long[ size + 1 ];
+			final long[] cellMin = new long[ n ];
+			final int[] cellDims = new int[ n ];
+			for ( int r = 0; r < size; ++r )
+			{
+				cellToRank[ rankToCell[ r ] ] = r;
+				grid.getCellDimensions( rankToCell[ r ], cellMin, cellDims );
+				long cellSize = 1;
+				for ( final int c : cellDims )
+					cellSize *= c;
+				firstIterationIndex[ r + 1 ] = firstIterationIndex[ r ] + cellSize;
+			}
+		}
+
+		@Override
+		public Order getOrder()
+		{
+			return order;
+		}
+
+		@Override
+		public long cellIndex( final long rank )
+		{
+			return rankToCell[ ( int ) rank ];
+		}
+
+		@Override
+		public long rank( final long cellIndex )
+		{
+			return cellToRank[ ( int ) cellIndex ];
+		}
+
+		@Override
+		public long firstIterationIndex( final long rank )
+		{
+			return firstIterationIndex[ ( int ) rank ];
+		}
+
+		@Override
+		public long rankOfIterationIndex( final long iterationIndex )
+		{
+			// largest rank with firstIterationIndex[ rank ] <= iterationIndex
+			int lo = 0;
+			int hi = firstIterationIndex.length - 2;
+			while ( lo < hi )
+			{
+				final int mid = ( lo + hi + 1 ) >>> 1;
+				if ( firstIterationIndex[ mid ] <= iterationIndex )
+					lo = mid;
+				else
+					hi = mid - 1;
+			}
+			return lo;
+		}
+	}
+
+	/**
+	 * Compute the Morton (Z-order) index of a position, interleaving
+	 * {@code bits} bits of every coordinate, dimension 0 least significant.
+	 */
+	static long mortonIndex( final long[] position, final int bits )
+	{
+		final int n = position.length;
+		long index = 0;
+		for ( int b = 0; b < bits; ++b )
+			for ( int d = 0; d < n; ++d )
+				index |= ( ( position[ d ] >> b ) & 1 ) << ( b * n + d );
+		return index;
+	}
+
+	/**
+	 * Compute the index of a position along the Hilbert curve through a cube
+	 * of side length {@code 2^bits}. This uses the transpose algorithm of J.
+	 * Skilling, "Programming the Hilbert curve", AIP Conf. Proc. 707, 2004.
+	 */
+	static long hilbertIndex( final long[] position, final int bits )
+	{
+		final int n = position.length;
+		if ( bits == 0 )
+			return 0;
+		final long[] x = position.clone();
+		final long m = 1L << ( bits - 1 );
+
+		// inverse undo excess work
+		for ( long q = m; q > 1; q >>= 1 )
+		{
+			final long p = q - 1;
+			for ( int i = 0; i < n; ++i )
+			{
+				if ( ( x[ i ] & q ) != 0 )
+					x[ 0 ] ^= p;
+				else
+				{
+					final long t = ( x[ 0 ] ^ x[ i ] ) & p;
+					x[ 0 ] ^= t;
+					x[ i ] ^= t;
+				}
+			}
+		}
+
+		// Gray encode
+		for ( int i = 1; i < n; ++i )
+			x[ i ] ^= x[ i - 1 ];
+		long t = 0;
+		for ( long q = m; q > 1; q >>= 1 )
+			if ( ( x[ n - 1 ] & q ) != 0 )
+				t ^= q - 1;
+		for ( int i = 0; i < n; ++i )
+			x[ i ] ^= t;
+
+		// interleave the transposed bits, most significant first
+		long index = 0;
+		for ( int b = bits - 1; b >= 0; --b )
+			for ( int i = 0; i < n; ++i )
+				index = ( index << 1 ) | ( ( x[ i ] >> b ) & 1 );
+		return index;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.Dirty;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.cache.LruCellCache;
+import net.imglib2.img.cell.compress.CompressedCellStore;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * A {@link LazyCellImg} that keeps cold cells compressed in memory. A small
+ * working set of hot cells is held decompressed in a {@link LruCellCache}.
+ * Cells are decompressed when they are touched by a cursor or random access,
+ * and modified cells are compressed again when they are evicted from the
+ * working set. Use {@link CompressedCellImgFactory} to create instances.
+ *
+ * <p>
+ * The working set should be large enough to hold all cells that are accessed
+ * simultaneously, e.g., by several cursors. A cell that is evicted while a
+ * sampler still uses it is not lost: its data is handed out again when the
+ * cell is requested, and compressed once it is no longer reachable (see
+ * {@link CompressedCellStore}).
+ * </p>
+ *
+ * @param <T>
+ *            the pixel type
+ * @param <A>
+ *            the underlying native access type
+ */
+public class CompressedCellImg< T extends NativeType< T >, A extends ArrayDataAccess< A > & Dirty > extends LazyCellImg< T, A >
+{
+	private final CompressedCellImgFactory< T > factory;
+
+	private final CompressedCellStore< A > store;
+
+	private final LruCellCache< Cell< A > > hotCells;
+
+	public CompressedCellImg(
+			final CompressedCellImgFactory< T > factory,
+			final CellGrid grid,
+			final Fraction entitiesPerPixel,
+			final CompressedCellStore< A > store,
+			final LruCellCache< Cell< A > > hotCells )
+	{
+		super( grid, entitiesPerPixel, hotCells );
+		this.factory = factory;
+		this.store = store;
+		this.hotCells = hotCells;
+	}
+
+	/**
+	 * Compress all modified cells of the working set, and evicted cells that
+	 * were modified after eviction. The cells stay in the working set.
+	 */
+	public void compressAll()
+	{
+		hotCells.forEach( ( cell, index ) -> {
+			if ( cell.getData().isDirty() )
+			{
+				cell.getData().setDirty( false );
+				store.write( index, cell );
+			}
+		} );
+		store.writeEvicted();
+	}
+
+	/**
+	 * @return the store that holds the compressed cells.
+	 */
+	public CompressedCellStore< A > getStore()
+	{
+		return store;
+	}
+
+	/**
+	 * @return the cache that holds the decompressed working set.
+	 */
+	public LruCellCache< Cell< A > > getHotCells()
+	{
+		return hotCells;
+	}
+
+	@Override
+	public CompressedCellImgFactory< T > factory()
+	{
+		return factory;
+	}
+
+	@Override
+	public CompressedCellImg< T, ? > copy()
+	{
+		final CompressedCellImg< T, ? > copy = factory().create( dimension, firstElement().createVariable() );
+		copyDataTo( copy );
+		return copy;
+	}
+}
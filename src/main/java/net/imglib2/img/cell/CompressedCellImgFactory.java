@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.Dirty;
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.DirtyByteArray;
+import net.imglib2.img.basictypeaccess.array.DirtyCharArray;
+import net.imglib2.img.basictypeaccess.array.DirtyDoubleArray;
+import net.imglib2.img.basictypeaccess.array.DirtyFloatArray;
+import net.imglib2.img.basictypeaccess.array.DirtyIntArray;
+import net.imglib2.img.basictypeaccess.array.DirtyLongArray;
+import net.imglib2.img.basictypeaccess.array.DirtyShortArray;
+import net.imglib2.img.cell.cache.LruCellCache;
+import net.imglib2.img.cell.compress.CellCodec;
+import net.imglib2.img.cell.compress.CompressedCellStore;
+import net.imglib2.img.cell.compress.LZ4StyleCodec;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for creating {@link CompressedCellImg CompressedCellImgs}. The cell
+ * dimensions for a standard cell, the {@link CellCodec}, and the number of
+ * decompressed cells to keep in the working set can be supplied in the
+ * constructor of the factory. By default, the factory uses an
+ * {@link LZ4StyleCodec}, a working set of 64 cells, and cells of size
+ * <em>64 x 64 x ... x 64</em>. For label and mask data, a
+ * {@link net.imglib2.img.cell.compress.RunLengthCodec} usually compresses
+ * better.
+ */
+public class CompressedCellImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	private final CellCodec codec;
+
+	private final int maxHotCells;
+
+	private final int[] defaultCellDimensions;
+
+	public CompressedCellImgFactory()
+	{
+		this( new LZ4StyleCodec(), 64, 64 );
+	}
+
+	public CompressedCellImgFactory( final CellCodec codec, final int maxHotCells, final int... cellDimensions )
+	{
+		this.codec = codec;
+		this.maxHotCells = maxHotCells;
+		defaultCellDimensions = cellDimensions.clone();
+		CellImgFactory.verifyDimensions( defaultCellDimensions );
+		if ( maxHotCells < 1 )
+			throw new IllegalArgumentException( "maxHotCells < 1" );
+	}
+
+	@Override
+	public CompressedCellImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( CompressedCellImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public CompressedCellImg< T, DirtyByteArray > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new DirtyByteArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CompressedCellImg< T, DirtyCharArray > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new DirtyCharArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CompressedCellImg< T, DirtyShortArray > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new DirtyShortArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CompressedCellImg< T, DirtyIntArray > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new DirtyIntArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CompressedCellImg< T, DirtyLongArray > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new DirtyLongArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CompressedCellImg< T, DirtyFloatArray > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new DirtyFloatArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CompressedCellImg< T, DirtyDoubleArray > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new DirtyDoubleArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new CompressedCellImgFactory( codec, maxHotCells, defaultCellDimensions );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	private < A extends ArrayDataAccess< A > & Dirty >
+			CompressedCellImg< T, A >
+			createInstance( final A creator, final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		CellImgFactory.verifyDimensions( dimensions );
+
+		final int n = dimensions.length;
+		final int[] cellDimensions = CellImgFactory.getCellDimensions( defaultCellDimensions, n, entitiesPerPixel );
+
+		final CellGrid grid = new CellGrid( dimensions, cellDimensions );
+		final CompressedCellStore< A > store = new CompressedCellStore<>( grid, entitiesPerPixel, creator, codec );
+		final LruCellCache< Cell< A > > hotCells = new LruCellCache<>( store, maxHotCells );
+		hotCells.setEvictionListener( ( cell, index ) -> store.evict( index, cell ) );
+
+		return new CompressedCellImg<>( this, grid, entitiesPerPixel, store, hotCells );
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.LazyArrayDataAccess;
+import net.imglib2.img.list.AbstractLongListImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
+
+/**
+ * A cell image that can be written by several threads at once and allocates
+ * memory only for the cells that are written to.
+ * <p>
+ * {@link Cell} objects are created on first access and published with a
+ * compare-and-set on an {@link AtomicReferenceArray}, so every thread sees the
+ * same cell without locking. Their storage is a {@link LazyArrayDataAccess},
+ * which allocates its array when the first element is set to a non-default
+ * value. Reading an untouched region therefore does not allocate anything,
+ * and no pre-allocation pass is needed for huge, mostly-empty outputs.
+ * </p>
+ * <p>
+ * Threads may write concurrently to disjoint pixels. For types with less than
+ * one entity per pixel (e.g. {@code BitType}) neighbouring pixels share an
+ * entity, so threads should then write disjoint cells.
+ * </p>
+ *
+ * @see ConcurrentCellImgFactory
+ */
+public class ConcurrentCellImg< T extends NativeType< T >, A extends ArrayDataAccess< A > >
+		extends AbstractCellImg< T, A, Cell< A >, ConcurrentCellImg.ConcurrentCells< A > >
+{
+	private final ConcurrentCellImgFactory< T > factory;
+
+	/**
+	 * @param creator
+	 *            creates the storage of each cell. It should be a
+	 *            {@link LazyArrayDataAccess} for cells to be allocated on
+	 *            first write.
+	 */
+	public ConcurrentCellImg( final ConcurrentCellImgFactory< T > factory, final CellGrid grid, final A creator, final Fraction entitiesPerPixel, final CellTraversal.Order order )
+	{
+		super( grid, new ConcurrentCells<>( grid, creator, entitiesPerPixel ), entitiesPerPixel, order );
+		this.factory = factory;
+	}
+
+	@Override
+	public ImgFactory< T > factory()
+	{
+		return factory;
+	}
+
+	@Override
+	public ConcurrentCellImg< T, A > copy()
+	{
+		@SuppressWarnings( "unchecked" )
+		final ConcurrentCellImg< T, A > copy = ( ConcurrentCellImg< T, A > ) factory().create( dimension, firstElement().createVariable() );
+		copyDataTo( copy );
+		return copy;
+	}
+
+	/**
+	 * @return the number of cells whose storage has been allocated.
+	 */
+	public long numAllocatedCells()
+	{
+		return cells.numAllocatedCells();
+	}
+
+	/**
+	 * The cells of a {@link ConcurrentCellImg}, created on first access.
+	 */
+	public static final class ConcurrentCells< A extends ArrayDataAccess< A > > extends AbstractLongListImg< Cell< A > >
+	{
+		private final CellGrid grid;
+
+		private final A creator;
+
+		private final Fraction entitiesPerPixel;
+
+		private final AtomicReferenceArray< Cell< A > > cells;
+
+		public ConcurrentCells( final CellGrid grid, final A creator, final Fraction entitiesPerPixel )
+		{
+			super( grid.getGridDimensions() );
+			final long numCells = Intervals.numElements( grid.getGridDimensions() );
+			if ( numCells > Integer.MAX_VALUE )
+				throw new IllegalArgumentException( "Number of cells too large. Use larger cell size." );
+			this.grid = grid;
+			this.creator = creator;
+			this.entitiesPerPixel = entitiesPerPixel;
+			this.cells = new AtomicReferenceArray<>( ( int ) numCells );
+		}
+
+		@Override
+		protected Cell< A > get( final long index )
+		{
+			final int i = ( int ) index;
+			final Cell< A > cell = cells.get( i );
+			if ( cell != null )
+				return cell;
+
+			final Cell< A > created = createCell( index );
+			return cells.compareAndSet( i, null, created ) ? created : cells.get( i );
+		}
+
+		private Cell< A > createCell( final long index )
+		{
+			final int n = grid.numDimensions();
+			final long[] cellMin = new long[ n ];
+			final int[] cellDims = new int[ n ];
+			grid.getCellDimensions( index, cellMin, cellDims );
+			final A data = creator.createArray( ( int ) entitiesPerPixel.mulCeil( Intervals.numElements( cellDims ) ) );
+			return new Cell<>( cellDims, cellMin, data );
+		}
+
+		/**
+		 * @return the number of cells whose storage has been allocated.
+		 */
+		public long numAllocatedCells()
+		{
+			long count = 0;
+			for ( int i = 0; i < cells.length(); ++i )
+			{
+				final Cell< A > cell = cells.get( i );
+				if ( cell != null && !( cell.getData() instanceof LazyArrayDataAccess && !( ( LazyArrayDataAccess< ? > ) cell.getData() ).isAllocated() ) )
+					++count;
+			}
+			return count;
+		}
+
+		@Override
+		protected void set( final long index, final Cell< A > value )
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public ImgFactory< Cell< A > > factory()
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Img< Cell< A > > copy()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.CharArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LazyByteArray;
+import net.imglib2.img.basictypeaccess.array.LazyCharArray;
+import net.imglib2.img.basictypeaccess.array.LazyDoubleArray;
+import net.imglib2.img.basictypeaccess.array.LazyFloatArray;
+import net.imglib2.img.basictypeaccess.array.LazyIntArray;
+import net.imglib2.img.basictypeaccess.array.LazyLongArray;
+import net.imglib2.img.basictypeaccess.array.LazyShortArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for creating {@link ConcurrentCellImg ConcurrentCellImgs}, cell
+ * images that allocate cells on first write and support concurrent writers.
+ * The cell dimensions for a standard cell can be supplied in the constructor
+ * of the factory. If no cell dimensions are given, the factory creates cells
+ * of size <em>10 x 10 x ... x 10</em>.
+ */
+public class ConcurrentCellImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	private final int[] defaultCellDimensions;
+
+	private final CellTraversal.Order order;
+
+	public ConcurrentCellImgFactory()
+	{
+		this( 10 );
+	}
+
+	public ConcurrentCellImgFactory( final int... cellDimensions )
+	{
+		this( CellTraversal.Order.FLAT, cellDimensions );
+	}
+
+	public ConcurrentCellImgFactory( final CellTraversal.Order order, final int... cellDimensions )
+	{
+		defaultCellDimensions = cellDimensions.clone();
+		CellImgFactory.verifyDimensions( defaultCellDimensions );
+		this.order = order;
+	}
+
+	@Override
+	public ConcurrentCellImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( ConcurrentCellImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public ConcurrentCellImg< T, ByteArray > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new LazyByteArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ConcurrentCellImg< T, CharArray > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new LazyCharArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ConcurrentCellImg< T, ShortArray > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new LazyShortArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ConcurrentCellImg< T, IntArray > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new LazyIntArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ConcurrentCellImg< T, LongArray > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new LazyLongArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ConcurrentCellImg< T, FloatArray > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new LazyFloatArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public ConcurrentCellImg< T, DoubleArray > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new LazyDoubleArray( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new ConcurrentCellImgFactory( order, defaultCellDimensions );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	private < A extends ArrayDataAccess< A > >
+			ConcurrentCellImg< T, A >
+			createInstance( final A creator, final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		CellImgFactory.verifyDimensions( dimensions );
+
+		final int n = dimensions.length;
+		final int[] cellDimensions = CellImgFactory.getCellDimensions( defaultCellDimensions, n, entitiesPerPixel );
+
+		final CellGrid grid = new CellGrid( dimensions, cellDimensions );
+		return new ConcurrentCellImg<>( this, grid, creator, entitiesPerPixel, order );
+	}
+}
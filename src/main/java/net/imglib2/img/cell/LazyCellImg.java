@@ -14,7 +14,9 @@ import net.imglib2.util.Fraction;
 /**
  * A {@link AbstractCellImg} that obtains its Cells lazily when they are
  * accessed. Cells are obtained by a {@link Get} method that is provided by the
- * user. Typically this is some kind of cache.
+ * user. Typically this is some kind of cache, see for example
+ * {@link net.imglib2.img.cell.cache.LruCellCache} and
+ * {@link net.imglib2.img.cell.cache.SoftRefCellCache}.
  *
  * @param <T>
  *            the pixel type
@@ -34,7 +36,18 @@ public class LazyCellImg< T extends NativeType< T >, A >
 
 	public LazyCellImg( final CellGrid grid, final T type, final Get< Cell< A > > get )
 	{
-		super( grid, new LazyCells<>( grid.getGridDimensions(), get ), type.getEntitiesPerPixel() );
+		this( grid, type, CellTraversal.Order.FLAT, get );
+	}
+
+	/**
+	 * @param order
+	 *            the order in which cursors visit the cells, see
+	 *            {@link CellTraversal}. For cached cells, a space-filling
+	 *            curve keeps consecutively loaded cells close together.
+	 */
+	public LazyCellImg( final CellGrid grid, final T type, final CellTraversal.Order order, final Get< Cell< A > > get )
+	{
+		super( grid, new LazyCells<>( grid.getGridDimensions(), get ), type.getEntitiesPerPixel(), order );
 		try
 		{
 			linkType( type, this );
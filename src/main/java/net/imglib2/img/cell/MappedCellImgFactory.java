@@ -0,0 +1,267 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.img.basictypeaccess.nio.BufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ByteBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.CharBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.DoubleBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.FloatBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.IntBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.LongBufferAccess;
+import net.imglib2.img.basictypeaccess.nio.ShortBufferAccess;
+import net.imglib2.img.list.ListImg;
+import net.imglib2.img.list.ListLocalizingCursor;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
+
+/**
+ * Factory for creating {@link CellImg CellImgs} whose cells are views into a
+ * memory-mapped file. Pixel data is not loaded up front; the operating system
+ * pages it in and out on demand, so images much larger than the available
+ * memory can be opened.
+ *
+ * <p>
+ * The file stores the cells one after another in flat iteration order of the
+ * {@link CellGrid}. Each cell is stored in flat iteration order, using the
+ * specified {@link ByteOrder}. Consecutive cells are grouped into regions of
+ * at most {@code Integer.MAX_VALUE} bytes which are mapped with a single
+ * {@link FileChannel#map(MapMode, long, long)} call each.
+ * </p>
+ *
+ * <p>
+ * With {@link MapMode#READ_WRITE} the file is created or grown as required
+ * and modifications are written back to the file. With
+ * {@link MapMode#READ_ONLY} the file must already exist and writing to the
+ * image fails. {@link CellImg#copy()} and {@link CellImg#factory()} of the
+ * created images refer to an in-memory {@link CellImgFactory} with the same
+ * cell dimensions, so that the mapped file is never aliased by a second
+ * image.
+ * </p>
+ */
+public class MappedCellImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	private final Path file;
+
+	private final MapMode mode;
+
+	private final ByteOrder byteOrder;
+
+	private final int[] defaultCellDimensions;
+
+	public MappedCellImgFactory( final Path file, final int... cellDimensions )
+	{
+		this( file, MapMode.READ_WRITE, ByteOrder.nativeOrder(), cellDimensions );
+	}
+
+	public MappedCellImgFactory( final Path file, final MapMode mode, final ByteOrder byteOrder, final int... cellDimensions )
+	{
+		this.file = file;
+		this.mode = mode;
+		this.byteOrder = byteOrder;
+		defaultCellDimensions = cellDimensions.clone();
+		CellImgFactory.verifyDimensions( defaultCellDimensions );
+	}
+
+	@Override
+	public CellImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( CellImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public CellImg< T, ByteBufferAccess > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new ByteBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, CharBufferAccess > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new CharBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, ShortBufferAccess > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new ShortBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, IntBufferAccess > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new IntBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, LongBufferAccess > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new LongBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, FloatBufferAccess > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new FloatBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public CellImg< T, DoubleBufferAccess > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		return createInstance( new DoubleBufferAccess( 1 ), dimensions, entitiesPerPixel );
+	}
+
+	/**
+	 * Mapping a second image onto the same file is almost never intended,
+	 * therefore this returns an in-memory {@link CellImgFactory}.
+	 */
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new CellImgFactory( defaultCellDimensions );
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+
+	private < A extends BufferAccess< A > >
+			CellImg< T, A >
+			createInstance( final A creator, final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		CellImgFactory.verifyDimensions( dimensions );
+
+		final int n = dimensions.length;
+		final int[] cellDimensions = CellImgFactory.getCellDimensions( defaultCellDimensions, n, entitiesPerPixel );
+		final long bytesPerCell = entitiesPerPixel.mulCeil( Intervals.numElements( cellDimensions ) ) * creator.getNumBytesPerEntity();
+		if ( bytesPerCell > Integer.MAX_VALUE )
+			throw new IllegalArgumentException( "Number of bytes in cell too large. Use smaller cell size." );
+
+		final CellGrid grid = new CellGrid( dimensions, cellDimensions );
+		final ListImg< Cell< A > > cells;
+		try
+		{
+			cells = mapCells( grid, creator, entitiesPerPixel );
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( e );
+		}
+
+		return new CellImg<>( new CellImgFactory< T >( defaultCellDimensions ), grid, cells, entitiesPerPixel );
+	}
+
+	private < A extends BufferAccess< A > >
+			ListImg< Cell< A > >
+			mapCells( final CellGrid grid, final A creator, final Fraction entitiesPerPixel ) throws IOException
+	{
+		final int n = grid.numDimensions();
+		final long[] gridDimensions = new long[ n ];
+		grid.gridDimensions( gridDimensions );
+
+		final Cell< A > type = new Cell<>( new int[] { 1 }, new long[] { 1 }, null );
+		final ListImg< Cell< A > > cells = new ListImg<>( gridDimensions, type );
+
+		final long[] cellGridPosition = new long[ n ];
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		final int bytesPerEntity = creator.getNumBytesPerEntity();
+		final long totalBytes = totalBytes( grid, entitiesPerPixel, bytesPerEntity );
+
+		try (final FileChannel channel = mode == MapMode.READ_ONLY
+				? FileChannel.open( file, StandardOpenOption.READ )
+				: FileChannel.open( file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE ))
+		{
+			// the mapped region and the offset of the current cell within it
+			ByteBuffer region = null;
+			long regionStart = 0;
+			long offset = 0;
+
+			final ListLocalizingCursor< Cell< A > > cellCursor = cells.localizingCursor();
+			while ( cellCursor.hasNext() )
+			{
+				cellCursor.fwd();
+				cellCursor.localize( cellGridPosition );
+				grid.getCellDimensions( cellGridPosition, cellMin, cellDims );
+				final int cellBytes = ( int ) ( entitiesPerPixel.mulCeil( Intervals.numElements( cellDims ) ) * bytesPerEntity );
+
+				if ( region == null || offset + cellBytes > regionStart + region.capacity() )
+				{
+					regionStart = offset;
+					region = channel.map( mode, regionStart, Math.min( Integer.MAX_VALUE, totalBytes - regionStart ) );
+				}
+
+				final ByteBuffer slice = region.duplicate();
+				slice.position( ( int ) ( offset - regionStart ) );
+				slice.limit( ( int ) ( offset - regionStart ) + cellBytes );
+				final A data = creator.newInstance( slice.slice().order( byteOrder ) );
+				cellCursor.set( new Cell<>( cellDims, cellMin, data ) );
+
+				offset += cellBytes;
+			}
+		}
+
+		return cells;
+	}
+
+	/**
+	 * Compute the file size, i.e., the sum of the sizes of all cells in bytes.
+	 */
+	private static long totalBytes( final CellGrid grid, final Fraction entitiesPerPixel, final int bytesPerEntity )
+	{
+		final int n = grid.numDimensions();
+		final long numCells = Intervals.numElements( grid.getGridDimensions() );
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		long bytes = 0;
+		for ( long i = 0; i < numCells; ++i )
+		{
+			grid.getCellDimensions( i, cellMin, cellDims );
+			bytes += entitiesPerPixel.mulCeil( Intervals.numElements( cellDims ) ) * bytesPerEntity;
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import net.imglib2.img.cell.LazyCellImg.Get;
+
+/**
+ * Base class for {@link CellCache} implementations. Takes care of loading
+ * missing values through the wrapped loader {@link Get} such that concurrent
+ * requests for the same key trigger only one load; all requesters wait for
+ * and receive the same value.
+ *
+ * <p>
+ * Subclasses implement storage and eviction policy in {@link #peek(long)},
+ * {@link #insert(long, Object)}, {@link #invalidate(long)}, and
+ * {@link #invalidateAll()}.
+ * </p>
+ *
+ * @param <V>
+ *            value type
+ */
+public abstract class AbstractCellCache< V > implements CellCache< V >
+{
+	protected final Get< V > loader;
+
+	protected final CacheStats stats;
+
+	private final ConcurrentHashMap< Long, FutureTask< V > > loading;
+
+	public AbstractCellCache( final Get< V > loader )
+	{
+		this.loader = loader;
+		this.stats = new CacheStats();
+		this.loading = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Look up {@code index} in the cache storage. Implementations should
+	 * update their eviction order if appropriate.
+	 *
+	 * @return the cached value or {@code null}.
+	 */
+	protected abstract V peek( long index );
+
+	/**
+	 * Put a freshly loaded value into the cache storage and evict values if
+	 * necessary.
+	 */
+	protected abstract void insert( long index, V value );
+
+	@Override
+	public V get( final long index )
+	{
+		final V cached = peek( index );
+		if ( cached != null )
+		{
+			stats.hit();
+			return cached;
+		}
+		stats.miss();
+
+		final Long key = index;
+		final FutureTask< V > task = new FutureTask<>( () -> {
+			// another thread may have finished loading between our peek and
+			// winning the race for the loading slot.
+			V value = peek( index );
+			if ( value == null )
+			{
+				stats.load();
+				value = loader.get( index );
+				insert( index, value );
+			}
+			return value;
+		} );
+		FutureTask< V > existing = loading.putIfAbsent( key, task );
+		if ( existing == null )
+		{
+			existing = task;
+			try
+			{
+				task.run();
+			}
+			finally
+			{
+				loading.remove( key, task );
+			}
+		}
+		return waitFor( existing );
+	}
+
+	@Override
+	public void put( final long index, final V value )
+	{
+		insert( index, value );
+	}
+
+	@Override
+	public CacheStats getStats()
+	{
+		return stats;
+	}
+
+	private static < V > V waitFor( final FutureTask< V > task )
+	{
+		boolean interrupted = false;
+		try
+		{
+			while ( true )
+			{
+				try
+				{
+					return task.get();
+				}
+				catch ( final InterruptedException e )
+				{
+					interrupted = true;
+				}
+				catch ( final ExecutionException e )
+				{
+					final Throwable cause = e.getCause();
+					if ( cause instanceof RuntimeException )
+						throw ( RuntimeException ) cause;
+					if ( cause instanceof Error )
+						throw ( Error ) cause;
+					throw new RuntimeException( cause );
+				}
+			}
+		}
+		finally
+		{
+			if ( interrupted )
+				Thread.currentThread().interrupt();
+		}
+	}
+}
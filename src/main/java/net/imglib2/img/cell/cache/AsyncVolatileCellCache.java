@@ -0,0 +1,587 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.LongToDoubleFunction;
+import java.util.function.ObjLongConsumer;
+
+import net.imglib2.img.basictypeaccess.volatiles.VolatileArrayDataAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.LazyCellImg;
+import net.imglib2.img.cell.LazyCellImg.Get;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
+
+/**
+ * {@link CellCache} for a {@link LazyCellImg} that never blocks on loading. If
+ * a requested cell is not cached, a placeholder cell with invalid data (see
+ * {@link VolatileArrayDataAccess#isValid()}) is returned immediately and the
+ * cell is enqueued for loading. A fixed number of worker threads load the
+ * enqueued cells and replace the placeholders in the cache.
+ *
+ * <p>
+ * Pending requests are loaded in order of increasing priority value, and in
+ * request order among equal priorities. The priority function can be changed
+ * at any time with {@link #setPriority(LongToDoubleFunction)}, which reorders
+ * all pending requests, e.g., to load the cells nearest to the current view
+ * first. {@link #cancelPending()} drops all requests that have not been
+ * started.
+ * </p>
+ *
+ * <p>
+ * If the loader fails, the failure is reported to the failure listener (see
+ * {@link #setFailureListener(ObjLongConsumer)}) and is available from
+ * {@link #getFailure(long)}. The placeholder stays in the cache and the cell
+ * is enqueued again on the next request, up to {@value #MAX_ATTEMPTS} failed
+ * attempts in total. After that, the cell is not loaded again until it is
+ * invalidated.
+ * </p>
+ *
+ * <p>
+ * Exceptions thrown by the load or failure listener do not stop the worker
+ * threads. The first one is available from {@link #getListenerFailure()}.
+ * </p>
+ *
+ * <p>
+ * Placeholder cells of the same size share their (invalid) data. Placeholders
+ * are meant to be read, not written.
+ * </p>
+ *
+ * @param <A>
+ *            volatile access type
+ */
+public class AsyncVolatileCellCache< A extends VolatileArrayDataAccess< A > > implements CellCache< Cell< A > >
+{
+	/**
+	 * Maximum number of attempts to load a cell.
+	 */
+	public static final int MAX_ATTEMPTS = 3;
+
+	private final CellGrid grid;
+
+	private final Fraction entitiesPerPixel;
+
+	private final A creator;
+
+	private final Get< Cell< A > > loader;
+
+	private final CellCache< Cell< A > > cache;
+
+	private final ConcurrentHashMap< Integer, A > invalidData;
+
+	private final ReentrantLock lock;
+
+	private final Condition notEmpty;
+
+	private final PriorityQueue< Request > queue;
+
+	/**
+	 * All requests that are enqueued or being loaded.
+	 */
+	private final HashMap< Long, Request > pending;
+
+	/**
+	 * Failed load attempts of cells that have not been loaded since.
+	 */
+	private final HashMap< Long, Failure > failures;
+
+	private LongToDoubleFunction priority;
+
+	private long sequence;
+
+	private volatile LongConsumer loadListener;
+
+	private volatile ObjLongConsumer< ? super Throwable > failureListener;
+
+	/**
+	 * The first exception thrown by a listener.
+	 */
+	private final AtomicReference< Throwable > listenerFailure;
+
+	private volatile boolean shutdown;
+
+	private final ArrayList< Thread > workers;
+
+	/**
+	 * Create a cache with a {@link SoftRefCellCache} holding the loaded cells.
+	 *
+	 * @param grid
+	 *            layout of the cells
+	 * @param entitiesPerPixel
+	 * @param creator
+	 *            used to create the data of placeholder cells
+	 * @param loader
+	 *            loads (valid) cells
+	 * @param numThreads
+	 *            number of worker threads
+	 */
+	public AsyncVolatileCellCache(
+			final CellGrid grid,
+			final Fraction entitiesPerPixel,
+			final A creator,
+			final Get< Cell< A > > loader,
+			final int numThreads )
+	{
+		this( grid, entitiesPerPixel, creator, loader, SoftRefCellCache::new, numThreads );
+	}
+
+	/**
+	 * Create a cache. The cache holding loaded cells and placeholders is
+	 * created by {@code cacheFactory}, e.g., {@code g -> new LruCellCache<>( g, 1000 )}.
+	 *
+	 * @param grid
+	 *            layout of the cells
+	 * @param entitiesPerPixel
+	 * @param creator
+	 *            used to create the data of placeholder cells
+	 * @param loader
+	 *            loads (valid) cells
+	 * @param cacheFactory
+	 *            creates the cache given the placeholder loader
+	 * @param numThreads
+	 *            number of worker threads
+	 */
+	public AsyncVolatileCellCache(
+			final CellGrid grid,
+			final Fraction entitiesPerPixel,
+			final A creator,
+			final Get< Cell< A > > loader,
+			final Function< Get< Cell< A > >, ? extends CellCache< Cell< A > > > cacheFactory,
+			final int numThreads )
+	{
+		this.grid = grid;
+		this.entitiesPerPixel = entitiesPerPixel;
+		this.creator = creator;
+		this.loader = loader;
+		this.cache = cacheFactory.apply( this::createPlaceholder );
+		this.invalidData = new ConcurrentHashMap<>();
+		this.lock = new ReentrantLock();
+		this.notEmpty = lock.newCondition();
+		this.queue = new PriorityQueue<>();
+		this.pending = new HashMap<>();
+		this.failures = new HashMap<>();
+		this.listenerFailure = new AtomicReference<>();
+		this.priority = index -> 0;
+		this.sequence = 0;
+		this.shutdown = false;
+
+		workers = new ArrayList<>();
+		for ( int i = 0; i < numThreads; ++i )
+		{
+			final Thread worker = new Thread( this::work, "AsyncVolatileCellCache-" + i );
+			worker.setDaemon( true );
+			worker.start();
+			workers.add( worker );
+		}
+	}
+
+	/**
+	 * Get the cell for {@code index}. If it is not loaded yet, a placeholder
+	 * cell with invalid data is returned and the cell is enqueued for loading.
+	 */
+	@Override
+	public Cell< A > get( final long index )
+	{
+		final Cell< A > cell = cache.get( index );
+		if ( !cell.getData().isValid() )
+			enqueue( index );
+		return cell;
+	}
+
+	@Override
+	public Cell< A > getIfPresent( final long index )
+	{
+		return cache.getIfPresent( index );
+	}
+
+	@Override
+	public void put( final long index, final Cell< A > value )
+	{
+		cache.put( index, value );
+	}
+
+	/**
+	 * Remove the cell for {@code index} from the cache. Previous failures to
+	 * load it are forgotten, so it is loaded again on the next request.
+	 */
+	@Override
+	public void invalidate( final long index )
+	{
+		lock.lock();
+		try
+		{
+			failures.remove( index );
+		}
+		finally
+		{
+			lock.unlock();
+		}
+		cache.invalidate( index );
+	}
+
+	/**
+	 * Remove all cells from the cache. Previous failures to load cells are
+	 * forgotten.
+	 */
+	@Override
+	public void invalidateAll()
+	{
+		lock.lock();
+		try
+		{
+			failures.clear();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+		cache.invalidateAll();
+	}
+
+	@Override
+	public CacheStats getStats()
+	{
+		return cache.getStats();
+	}
+
+	/**
+	 * Enqueue the cell for {@code index} for loading, if it is neither loaded
+	 * nor already pending.
+	 */
+	public void prefetch( final long index )
+	{
+		get( index );
+	}
+
+	/**
+	 * Set the priority function. Pending requests are loaded in order of
+	 * increasing {@code priority.applyAsDouble( index )}. All pending
+	 * requests are reordered according to the new function.
+	 */
+	public void setPriority( final LongToDoubleFunction priority )
+	{
+		lock.lock();
+		try
+		{
+			this.priority = priority;
+			final ArrayList< Request > requests = new ArrayList<>( queue );
+			queue.clear();
+			for ( final Request r : requests )
+			{
+				r.priority = priority.applyAsDouble( r.index );
+				queue.add( r );
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Remove all requests that have not been started. The placeholders of the
+	 * cancelled cells are removed from the cache, such that the cells are
+	 * enqueued again when they are requested the next time.
+	 */
+	public void cancelPending()
+	{
+		lock.lock();
+		try
+		{
+			for ( final Request r : queue )
+			{
+				pending.remove( r.index );
+				final Cell< A > cell = cache.getIfPresent( r.index );
+				if ( cell != null && !cell.getData().isValid() )
+					cache.invalidate( r.index );
+			}
+			queue.clear();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of requests that are enqueued or being loaded.
+	 */
+	public int numPending()
+	{
+		lock.lock();
+		try
+		{
+			return pending.size();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Set a listener that is notified with the index of every cell that has
+	 * been loaded, e.g., to trigger repainting.
+	 */
+	public void setLoadListener( final LongConsumer listener )
+	{
+		this.loadListener = listener;
+	}
+
+	/**
+	 * Set a listener that is notified with the exception and the index of
+	 * every failed attempt to load a cell.
+	 */
+	public void setFailureListener( final ObjLongConsumer< ? super Throwable > listener )
+	{
+		this.failureListener = listener;
+	}
+
+	/**
+	 * @return the exception of the last failed attempt to load the cell for
+	 *         {@code index}, or {@code null} if the cell has not failed to
+	 *         load since it was last loaded or invalidated.
+	 */
+	public Throwable getFailure( final long index )
+	{
+		lock.lock();
+		try
+		{
+			final Failure f = failures.get( index );
+			return f == null ? null : f.cause;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the first exception thrown by the load or failure listener, or
+	 *         {@code null} if no listener has failed.
+	 */
+	public Throwable getListenerFailure()
+	{
+		return listenerFailure.get();
+	}
+
+	/**
+	 * Stop all worker threads. Pending requests are dropped.
+	 */
+	public void shutdown()
+	{
+		shutdown = true;
+		for ( final Thread worker : workers )
+			worker.interrupt();
+	}
+
+	private Cell< A > createPlaceholder( final long index )
+	{
+		final long[] cellMin = new long[ grid.numDimensions() ];
+		final int[] cellDims = new int[ grid.numDimensions() ];
+		grid.getCellDimensions( index, cellMin, cellDims );
+		final int numEntities = ( int ) entitiesPerPixel.mulCeil( Intervals.numElements( cellDims ) );
+		final A data = invalidData.computeIfAbsent( numEntities, n -> creator.createArray( n, false ) );
+		return new Cell<>( cellDims, cellMin, data );
+	}
+
+	private void enqueue( final long index )
+	{
+		lock.lock();
+		try
+		{
+			final Failure f = failures.get( index );
+			if ( !pending.containsKey( index ) && ( f == null || f.attempts < MAX_ATTEMPTS ) )
+			{
+				final Request r = new Request( index, priority.applyAsDouble( index ), sequence++ );
+				pending.put( index, r );
+				queue.add( r );
+				notEmpty.signal();
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private Request take() throws InterruptedException
+	{
+		lock.lock();
+		try
+		{
+			while ( queue.isEmpty() )
+				notEmpty.await();
+			return queue.poll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private void work()
+	{
+		while ( !shutdown )
+		{
+			final Request r;
+			try
+			{
+				r = take();
+			}
+			catch ( final InterruptedException e )
+			{
+				continue;
+			}
+
+			Cell< A > cell = cache.getIfPresent( r.index );
+			boolean loaded = false;
+			Throwable failure = null;
+			try
+			{
+				if ( cell == null || !cell.getData().isValid() )
+				{
+					cell = loader.get( r.index );
+					cache.put( r.index, cell );
+					loaded = true;
+				}
+			}
+			catch ( final Throwable t )
+			{
+				// the placeholder stays, the cell is enqueued again on the
+				// next request until MAX_ATTEMPTS is reached
+				failure = t;
+			}
+			finally
+			{
+				lock.lock();
+				try
+				{
+					pending.remove( r.index );
+					if ( failure != null )
+						failures.computeIfAbsent( r.index, i -> new Failure() ).add( failure );
+					else if ( loaded )
+						failures.remove( r.index );
+				}
+				finally
+				{
+					lock.unlock();
+				}
+			}
+
+			if ( loaded )
+			{
+				// a placeholder may have been created concurrently, e.g. after
+				// the previous one was evicted. Replace it.
+				final Cell< A > current = cache.getIfPresent( r.index );
+				if ( current != null && !current.getData().isValid() )
+					cache.put( r.index, cell );
+
+				final LongConsumer listener = loadListener;
+				if ( listener != null )
+					callListener( () -> listener.accept( r.index ) );
+			}
+			else if ( failure != null )
+			{
+				final ObjLongConsumer< ? super Throwable > listener = failureListener;
+				final Throwable t = failure;
+				if ( listener != null )
+					callListener( () -> listener.accept( t, r.index ) );
+			}
+		}
+	}
+
+	/**
+	 * Call a listener. A failing listener must not stop the worker thread, so
+	 * its exception is recorded instead, if it is the first one.
+	 */
+	private void callListener( final Runnable call )
+	{
+		try
+		{
+			call.run();
+		}
+		catch ( final Throwable t )
+		{
+			listenerFailure.compareAndSet( null, t );
+		}
+	}
+
+	private static final class Failure
+	{
+		int attempts;
+
+		Throwable cause;
+
+		void add( final Throwable t )
+		{
+			++attempts;
+			cause = t;
+		}
+	}
+
+	private static final class Request implements Comparable< Request >
+	{
+		final long index;
+
+		double priority;
+
+		final long sequence;
+
+		Request( final long index, final double priority, final long sequence )
+		{
+			this.index = index;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo( final Request o )
+		{
+			final int c = Double.compare( priority, o.priority );
+			return c != 0 ? c : Long.compare( sequence, o.sequence );
+		}
+	}
+}
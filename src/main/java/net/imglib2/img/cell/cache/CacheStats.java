@@ -0,0 +1,123 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit, miss, load, and eviction counters of a {@link CellCache}.
+ */
+public class CacheStats
+{
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong loads = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @return number of requests that were answered from the cache.
+	 */
+	public long hitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return number of requests that were not answered from the cache.
+	 */
+	public long missCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return number of times the underlying loader was called. This may be
+	 *         less than {@link #missCount()} if concurrent requests for the
+	 *         same key waited for a single load.
+	 */
+	public long loadCount()
+	{
+		return loads.get();
+	}
+
+	/**
+	 * @return number of values that were removed by the eviction policy.
+	 */
+	public long evictionCount()
+	{
+		return evictions.get();
+	}
+
+	public void reset()
+	{
+		hits.set( 0 );
+		misses.set( 0 );
+		loads.set( 0 );
+		evictions.set( 0 );
+	}
+
+	void hit()
+	{
+		hits.incrementAndGet();
+	}
+
+	void miss()
+	{
+		misses.incrementAndGet();
+	}
+
+	void load()
+	{
+		loads.incrementAndGet();
+	}
+
+	void evict()
+	{
+		evictions.incrementAndGet();
+	}
+
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName()
+				+ "( hits = " + hitCount()
+				+ ", misses = " + missCount()
+				+ ", loads = " + loadCount()
+				+ ", evictions = " + evictionCount() + " )";
+	}
+}
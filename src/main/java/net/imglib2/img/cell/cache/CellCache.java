@@ -0,0 +1,78 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell.cache;
+
+import net.imglib2.img.cell.LazyCellImg;
+import net.imglib2.img.cell.LazyCellImg.Get;
+
+/**
+ * A cache that can be put in front of the {@link Get} of a
+ * {@link LazyCellImg}. It is itself a {@link Get}, so it can be passed to the
+ * {@link LazyCellImg} constructor in place of the loader it wraps.
+ *
+ * @param <V>
+ *            value type, typically a {@link net.imglib2.img.cell.Cell}
+ */
+public interface CellCache< V > extends Get< V >
+{
+	/**
+	 * Get the value for {@code index} if it is currently cached. Does not load
+	 * and does not affect statistics or eviction order.
+	 *
+	 * @return the cached value or {@code null}.
+	 */
+	public V getIfPresent( long index );
+
+	/**
+	 * Insert or replace the value for {@code index} without loading it. This
+	 * is subject to the eviction policy like a loaded value.
+	 */
+	public void put( long index, V value );
+
+	/**
+	 * Remove the value for {@code index} from the cache.
+	 */
+	public void invalidate( long index );
+
+	/**
+	 * Remove all values from the cache.
+	 */
+	public void invalidateAll();
+
+	/**
+	 * @return hit, miss, and eviction counters of this cache.
+	 */
+	public CacheStats getStats();
+}
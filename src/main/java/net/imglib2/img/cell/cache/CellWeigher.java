@@ -0,0 +1,76 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell.cache;
+
+import java.lang.reflect.Array;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.nio.BufferAccess;
+import net.imglib2.img.cell.Cell;
+
+/**
+ * {@link Weigher} that estimates the number of bytes occupied by the data of a
+ * {@link Cell}. Supports {@link ArrayDataAccess} (primitive arrays) and
+ * {@link BufferAccess}. For other access types, one byte per pixel is
+ * assumed.
+ */
+public class CellWeigher implements Weigher< Cell< ? > >
+{
+	@Override
+	public long weigh( final Cell< ? > cell )
+	{
+		final Object data = cell.getData();
+		if ( data instanceof BufferAccess )
+			return ( ( BufferAccess< ? > ) data ).getBuffer().capacity();
+		if ( data instanceof ArrayDataAccess )
+		{
+			final Object array = ( ( ArrayDataAccess< ? > ) data ).getCurrentStorageArray();
+			if ( array != null && array.getClass().isArray() )
+				return Array.getLength( array ) * bytesPerElement( array.getClass().getComponentType() );
+		}
+		return cell.size();
+	}
+
+	private static int bytesPerElement( final Class< ? > c )
+	{
+		if ( c == byte.class || c == boolean.class )
+			return 1;
+		if ( c == char.class || c == short.class )
+			return 2;
+		if ( c == int.class || c == float.class )
+			return 4;
+		return 8;
+	}
+}
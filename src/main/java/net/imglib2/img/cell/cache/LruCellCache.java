@@ -0,0 +1,188 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.function.ObjLongConsumer;
+
+import net.imglib2.img.cell.LazyCellImg.Get;
+
+/**
+ * {@link CellCache} with least-recently-used eviction. The cache is bounded by
+ * the sum of the weights of its values, as computed by a {@link Weigher}. With
+ * {@link #LruCellCache(Get, int)}, every value has weight 1, i.e., the number
+ * of cached values is bounded. To bound the memory occupied by cached cells,
+ * use a {@link CellWeigher} and a maximum weight in bytes.
+ *
+ * <p>
+ * The most recently inserted value is never evicted, even if its weight alone
+ * exceeds the maximum.
+ * </p>
+ *
+ * @param <V>
+ *            value type
+ */
+public class LruCellCache< V > extends AbstractCellCache< V >
+{
+	/**
+	 * Values in eviction order, i.e., the least recently used value first.
+	 */
+	private final LinkedHashMap< Long, V > map;
+
+	private final Weigher< ? super V > weigher;
+
+	private final long maxWeight;
+
+	private long weight;
+
+	private ObjLongConsumer< ? super V > evictionListener;
+
+	/**
+	 * Create a cache that holds at most {@code maxEntries} values.
+	 */
+	public LruCellCache( final Get< V > loader, final int maxEntries )
+	{
+		this( loader, maxEntries, v -> 1 );
+	}
+
+	/**
+	 * Create a cache that holds values with a total weight of at most
+	 * {@code maxWeight}.
+	 */
+	public LruCellCache( final Get< V > loader, final long maxWeight, final Weigher< ? super V > weigher )
+	{
+		super( loader );
+		this.map = new LinkedHashMap<>();
+		this.weigher = weigher;
+		this.maxWeight = maxWeight;
+		this.weight = 0;
+		this.evictionListener = null;
+	}
+
+	/**
+	 * Set a listener that is called with every value (and its index) that is
+	 * evicted. The listener is called while holding the lock of this cache,
+	 * so it should return quickly.
+	 */
+	public synchronized void setEvictionListener( final ObjLongConsumer< ? super V > listener )
+	{
+		this.evictionListener = listener;
+	}
+
+	/**
+	 * Call {@code action} for every cached value (and its index), in eviction
+	 * order. The eviction order is not modified.
+	 */
+	public synchronized void forEach( final ObjLongConsumer< ? super V > action )
+	{
+		for ( final Entry< Long, V > entry : map.entrySet() )
+			action.accept( entry.getValue(), entry.getKey() );
+	}
+
+	@Override
+	public synchronized V getIfPresent( final long index )
+	{
+		return map.get( index );
+	}
+
+	@Override
+	protected synchronized V peek( final long index )
+	{
+		// move to the end of the insertion order, which is the eviction order
+		final V value = map.remove( index );
+		if ( value != null )
+			map.put( index, value );
+		return value;
+	}
+
+	@Override
+	protected synchronized void insert( final long index, final V value )
+	{
+		final V previous = map.remove( index );
+		map.put( index, value );
+		if ( previous != null )
+			weight -= weigher.weigh( previous );
+		weight += weigher.weigh( value );
+
+		final Iterator< Entry< Long, V > > it = map.entrySet().iterator();
+		while ( weight > maxWeight && map.size() > 1 )
+		{
+			final Entry< Long, V > eldest = it.next();
+			weight -= weigher.weigh( eldest.getValue() );
+			it.remove();
+			stats.evict();
+			if ( evictionListener != null )
+				evictionListener.accept( eldest.getValue(), eldest.getKey() );
+		}
+	}
+
+	@Override
+	public synchronized void invalidate( final long index )
+	{
+		final V value = map.remove( index );
+		if ( value != null )
+			weight -= weigher.weigh( value );
+	}
+
+	@Override
+	public synchronized void invalidateAll()
+	{
+		map.clear();
+		weight = 0;
+	}
+
+	/**
+	 * @return the number of cached values.
+	 */
+	public synchronized int size()
+	{
+		return map.size();
+	}
+
+	/**
+	 * @return the sum of the weights of all cached values.
+	 */
+	public synchronized long weight()
+	{
+		return weight;
+	}
+
+	public long maxWeight()
+	{
+		return maxWeight;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell.cache;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.imglib2.img.cell.LazyCellImg.Get;
+
+/**
+ * {@link CellCache} that holds its values through {@link SoftReference
+ * SoftReferences}. The cache is not bounded explicitly; values are evicted by
+ * the garbage collector when memory runs low. Values cleared by the garbage
+ * collector are counted as evictions.
+ *
+ * @param <V>
+ *            value type
+ */
+public class SoftRefCellCache< V > extends AbstractCellCache< V >
+{
+	private final ConcurrentHashMap< Long, Entry< V > > map;
+
+	private final ReferenceQueue< V > queue;
+
+	public SoftRefCellCache( final Get< V > loader )
+	{
+		super( loader );
+		this.map = new ConcurrentHashMap<>();
+		this.queue = new ReferenceQueue<>();
+	}
+
+	@Override
+	public V getIfPresent( final long index )
+	{
+		final Entry< V > entry = map.get( index );
+		return entry == null ? null : entry.get();
+	}
+
+	@Override
+	protected V peek( final long index )
+	{
+		return getIfPresent( index );
+	}
+
+	@Override
+	protected void insert( final long index, final V value )
+	{
+		cleanUp();
+		map.put( index, new Entry<>( index, value, queue ) );
+	}
+
+	@Override
+	public void invalidate( final long index )
+	{
+		final Entry< V > entry = map.remove( index );
+		if ( entry != null )
+			entry.clear();
+	}
+
+	@Override
+	public void invalidateAll()
+	{
+		map.clear();
+		cleanUp();
+	}
+
+	/**
+	 * Remove entries whose values have been cleared by the garbage collector.
+	 */
+	public void cleanUp()
+	{
+		Entry< ? > entry;
+		while ( ( entry = ( Entry< ? > ) queue.poll() ) != null )
+			if ( map.remove( entry.index, entry ) )
+				stats.evict();
+	}
+
+	/**
+	 * @return the number of entries, including entries whose values have been
+	 *         cleared but not yet removed.
+	 */
+	public int size()
+	{
+		return map.size();
+	}
+
+	private static final class Entry< V > extends SoftReference< V >
+	{
+		final Long index;
+
+		Entry( final long index, final V value, final ReferenceQueue< V > queue )
+		{
+			super( value, queue );
+			this.index = index;
+		}
+	}
+}
@@ -0,0 +1,459 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell.cache;
+
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.imglib2.Dirty;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.LazyCellImg;
+import net.imglib2.img.cell.LazyCellImg.Get;
+import net.imglib2.img.list.ListCursor;
+
+/**
+ * {@link CellCache} for a {@link LazyCellImg} with {@link Dirty} cell data
+ * that persists modified cells. Cells are held in a {@link LruCellCache}. When
+ * a dirty cell is evicted, or when {@link #flush()} is called, it is queued
+ * for writing. Clean cells are never written.
+ *
+ * <p>
+ * A background thread writes queued cells in batches, in order of increasing
+ * index. The dirty flag of a cell is cleared right before it is written, so
+ * modifications during writing mark the cell dirty again. Cells that are
+ * requested while they are queued for writing are taken from the queue
+ * instead of being loaded, so no modifications are lost.
+ * </p>
+ *
+ * <p>
+ * The cell data must support clearing the dirty flag, i.e., override
+ * {@link Dirty#setDirty(boolean)}. This is checked when a cell is loaded.
+ * </p>
+ *
+ * <p>
+ * If the {@link CellWriter} fails, the write is retried up to
+ * {@value #MAX_ATTEMPTS} times in total, waiting
+ * {@value #RETRY_DELAY_MILLIS} ms before the first retry and doubling the
+ * delay for every further retry. A cell that could not be written
+ * stays dirty and is kept by the cache, so {@link #get(long)} returns it
+ * instead of loading stale data. It is queued again by the next
+ * {@link #flush()}. The first failure is rethrown by the next
+ * {@link #flushAndWait()}.
+ * </p>
+ *
+ * @param <A>
+ *            access type
+ */
+public class WriteBackCellCache< A extends Dirty > implements CellCache< Cell< A > >
+{
+	private final Get< Cell< A > > loader;
+
+	private final CellWriter< ? super Cell< A > > writer;
+
+	private final LruCellCache< Cell< A > > cache;
+
+	/**
+	 * Maximum number of consecutive attempts to write a cell.
+	 */
+	public static final int MAX_ATTEMPTS = 3;
+
+	/**
+	 * Delay before the first retry of a failed write, in milliseconds.
+	 */
+	public static final long RETRY_DELAY_MILLIS = 100;
+
+	private final ConcurrentSkipListMap< Long, Cell< A > > queued;
+
+	/**
+	 * Evicted cells that could not be written.
+	 */
+	private final ConcurrentSkipListMap< Long, Cell< A > > failed;
+
+	/**
+	 * Number of failed attempts to write the queued cell of an index. Only
+	 * accessed by the writer thread.
+	 */
+	private final HashMap< Long, Integer > attempts;
+
+	/**
+	 * {@link System#nanoTime()} before which the queued cell of an index is
+	 * not written again after a failed attempt. Only accessed by the writer
+	 * thread.
+	 */
+	private final HashMap< Long, Long > retryAt;
+
+	private final ReentrantLock lock;
+
+	private final Condition changed;
+
+	private Throwable failure;
+
+	private volatile boolean shutdown;
+
+	private final Thread writerThread;
+
+	/**
+	 * Create a cache that holds at most {@code maxEntries} cells.
+	 */
+	public WriteBackCellCache( final Get< Cell< A > > loader, final CellWriter< ? super Cell< A > > writer, final int maxEntries )
+	{
+		this( loader, writer, maxEntries, v -> 1 );
+	}
+
+	/**
+	 * Create a cache that holds cells with a total weight of at most
+	 * {@code maxWeight}.
+	 */
+	public WriteBackCellCache( final Get< Cell< A > > loader, final CellWriter< ? super Cell< A > > writer, final long maxWeight, final Weigher< ? super Cell< A > > weigher )
+	{
+		this.loader = loader;
+		this.writer = writer;
+		this.cache = new LruCellCache<>( this::load, maxWeight, weigher );
+		this.queued = new ConcurrentSkipListMap<>();
+		this.failed = new ConcurrentSkipListMap<>();
+		this.attempts = new HashMap<>();
+		this.retryAt = new HashMap<>();
+		this.lock = new ReentrantLock();
+		this.changed = lock.newCondition();
+		this.failure = null;
+		this.shutdown = false;
+
+		cache.setEvictionListener( ( cell, index ) -> {
+			if ( cell.getData().isDirty() )
+				enqueue( index, cell );
+		} );
+
+		writerThread = new Thread( this::work, "WriteBackCellCache" );
+		writerThread.setDaemon( true );
+		writerThread.start();
+	}
+
+	@Override
+	public Cell< A > get( final long index )
+	{
+		return cache.get( index );
+	}
+
+	@Override
+	public Cell< A > getIfPresent( final long index )
+	{
+		Cell< A > cell = cache.getIfPresent( index );
+		if ( cell == null )
+			cell = queued.get( index );
+		return cell != null ? cell : failed.get( index );
+	}
+
+	@Override
+	public void put( final long index, final Cell< A > value )
+	{
+		cache.put( index, value );
+	}
+
+	/**
+	 * Remove the cell for {@code index} from the cache, discarding any
+	 * modifications that have not been queued for writing, including those
+	 * of a cell that could not be written.
+	 */
+	@Override
+	public void invalidate( final long index )
+	{
+		failed.remove( index );
+		cache.invalidate( index );
+	}
+
+	/**
+	 * Remove all cells from the cache, discarding any modifications that have
+	 * not been queued for writing, including those of cells that could not be
+	 * written.
+	 */
+	@Override
+	public void invalidateAll()
+	{
+		failed.clear();
+		cache.invalidateAll();
+	}
+
+	@Override
+	public CacheStats getStats()
+	{
+		return cache.getStats();
+	}
+
+	/**
+	 * Queue all dirty cells for writing, without waiting for the writes to
+	 * complete. The cells stay in the cache. Cells that could not be written
+	 * before are queued again.
+	 */
+	public void flush()
+	{
+		for ( final Entry< Long, Cell< A > > entry : failed.entrySet() )
+			enqueue( entry.getKey(), entry.getValue() );
+		cache.forEach( ( cell, index ) -> {
+			if ( cell.getData().isDirty() )
+				enqueue( index, cell );
+		} );
+	}
+
+	/**
+	 * Queue all dirty cells for writing and wait until all queued cells have
+	 * been written, or have failed {@value #MAX_ATTEMPTS} times.
+	 *
+	 * @throws InterruptedException
+	 * @throws RuntimeException
+	 *             if the {@link CellWriter} failed since the last call. An
+	 *             {@link Error} thrown by the writer is rethrown as is.
+	 */
+	public void flushAndWait() throws InterruptedException
+	{
+		flush();
+		lock.lock();
+		try
+		{
+			while ( !queued.isEmpty() )
+				changed.await();
+			if ( failure != null )
+			{
+				final Throwable e = failure;
+				failure = null;
+				if ( e instanceof RuntimeException )
+					throw ( RuntimeException ) e;
+				if ( e instanceof Error )
+					throw ( Error ) e;
+				throw new RuntimeException( e );
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Write all dirty cells and stop the writer thread.
+	 *
+	 * @throws InterruptedException
+	 */
+	public void close() throws InterruptedException
+	{
+		try
+		{
+			flushAndWait();
+		}
+		finally
+		{
+			shutdown = true;
+			writerThread.interrupt();
+		}
+	}
+
+	/**
+	 * Write all dirty cells of a {@link CellImg} and clear their dirty flags.
+	 * The index of a cell is its flat index in the grid.
+	 */
+	public static < A extends Dirty > void writeDirtyCells( final CellImg< ?, A > img, final CellWriter< ? super Cell< A > > writer )
+	{
+		final ListCursor< Cell< A > > cursor = img.getCells().cursor();
+		for ( long index = 0; cursor.hasNext(); ++index )
+		{
+			final Cell< A > cell = cursor.next();
+			if ( cell.getData().isDirty() )
+			{
+				clearDirty( cell.getData() );
+				writer.write( index, cell );
+			}
+		}
+	}
+
+	/**
+	 * Clear the dirty flag of {@code data}.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if {@code data} does not support clearing the dirty flag.
+	 */
+	private static void clearDirty( final Dirty data )
+	{
+		try
+		{
+			data.setDirty( false );
+		}
+		catch ( final UnsupportedOperationException e )
+		{
+			throw new IllegalArgumentException( "Cell data " + data.getClass().getName() + " does not support clearing the dirty flag.", e );
+		}
+	}
+
+	private Cell< A > load( final long index )
+	{
+		Cell< A > cell = queued.get( index );
+		if ( cell == null )
+			cell = failed.remove( index );
+		if ( cell != null )
+			return cell;
+
+		// a freshly loaded cell is clean. This also checks that the dirty flag
+		// can be cleared, before the cell can be modified.
+		cell = loader.get( index );
+		clearDirty( cell.getData() );
+		return cell;
+	}
+
+	private void enqueue( final long index, final Cell< A > cell )
+	{
+		queued.put( index, cell );
+		failed.remove( index, cell );
+		lock.lock();
+		try
+		{
+			changed.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private void work()
+	{
+		long delay = 0;
+		while ( !shutdown )
+		{
+			lock.lock();
+			try
+			{
+				// wait for the next retry, or for new cells
+				if ( delay > 0 )
+					changed.awaitNanos( delay );
+				while ( queued.isEmpty() )
+					changed.await();
+			}
+			catch ( final InterruptedException e )
+			{
+				continue;
+			}
+			finally
+			{
+				lock.unlock();
+			}
+
+			delay = writeBatch();
+
+			lock.lock();
+			try
+			{
+				changed.signalAll();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Write all queued cells that are not waiting for a retry.
+	 *
+	 * @return nanoseconds until the next retry is due, or 0 if no retry is
+	 *         pending.
+	 */
+	private long writeBatch()
+	{
+		final long now = System.nanoTime();
+		long delay = Long.MAX_VALUE;
+		for ( final Entry< Long, Cell< A > > entry : queued.entrySet() )
+		{
+			final Long index = entry.getKey();
+			final Cell< A > cell = entry.getValue();
+			final Long due = retryAt.get( index );
+			if ( due != null && due - now > 0 )
+			{
+				delay = Math.min( delay, due - now );
+				continue;
+			}
+
+			Throwable error = null;
+			try
+			{
+				clearDirty( cell.getData() );
+				writer.write( index, cell );
+			}
+			catch ( final Throwable t )
+			{
+				error = t;
+			}
+
+			if ( error == null )
+			{
+				attempts.remove( index );
+				retryAt.remove( index );
+				queued.remove( index, cell );
+				continue;
+			}
+
+			cell.getData().setDirty();
+			final int n = attempts.getOrDefault( index, 0 ) + 1;
+			if ( n < MAX_ATTEMPTS )
+			{
+				final long backoff = TimeUnit.MILLISECONDS.toNanos( RETRY_DELAY_MILLIS << ( n - 1 ) );
+				attempts.put( index, n );
+				retryAt.put( index, now + backoff );
+				delay = Math.min( delay, backoff );
+			}
+			else
+			{
+				// keep the cell reachable until the next flush()
+				attempts.remove( index );
+				retryAt.remove( index );
+				failed.put( index, cell );
+				queued.remove( index, cell );
+				lock.lock();
+				try
+				{
+					if ( failure == null )
+						failure = error;
+				}
+				finally
+				{
+					lock.unlock();
+				}
+			}
+		}
+		return delay == Long.MAX_VALUE ? 0 : delay;
+	}
+}
@@ -0,0 +1,323 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell.compress;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.imglib2.Dirty;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.LazyCellImg.Get;
+import net.imglib2.img.cell.cache.CellWriter;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
+
+/**
+ * In-memory store of compressed cells. Acts as the loader ({@link Get}) and
+ * {@link CellWriter} for a cache of decompressed cells. Cells that have never
+ * been written, or that contain only zeros, are not stored at all and are
+ * created zero-filled when requested.
+ *
+ * <p>
+ * Cells evicted from the cache should be passed to {@link #evict(long, Cell)}.
+ * Samplers may still hold and modify the data of an evicted cell. The store
+ * therefore keeps track of evicted data as long as it is reachable, and
+ * {@link #get(long)} hands out the same data again instead of a decompressed
+ * copy. Once the evicted data is no longer reachable, its storage array is
+ * compressed again if it was modified after eviction.
+ * </p>
+ *
+ * @param <A>
+ *            access type, must be backed by a primitive array
+ */
+public class CompressedCellStore< A extends ArrayDataAccess< A > & Dirty > implements Get< Cell< A > >, CellWriter< Cell< A > >
+{
+	private final CellGrid grid;
+
+	private final Fraction entitiesPerPixel;
+
+	private final A creator;
+
+	private final CellCodec codec;
+
+	private final ConcurrentHashMap< Long, byte[] > compressed;
+
+	/**
+	 * Data of evicted cells that may still be reachable.
+	 */
+	private final ConcurrentHashMap< Long, EvictedData< A > > evicted;
+
+	private final ReferenceQueue< A > collected;
+
+	public CompressedCellStore( final CellGrid grid, final Fraction entitiesPerPixel, final A creator, final CellCodec codec )
+	{
+		this.grid = grid;
+		this.entitiesPerPixel = entitiesPerPixel;
+		this.creator = creator;
+		this.codec = codec;
+		this.compressed = new ConcurrentHashMap<>();
+		this.evicted = new ConcurrentHashMap<>();
+		this.collected = new ReferenceQueue<>();
+	}
+
+	/**
+	 * Get the cell for {@code index}. If the data of the cell was evicted but
+	 * is still reachable, it is returned again. Otherwise the cell is
+	 * decompressed.
+	 */
+	@Override
+	public Cell< A > get( final long index )
+	{
+		final int n = grid.numDimensions();
+		final long[] cellMin = new long[ n ];
+		final int[] cellDims = new int[ n ];
+		grid.getCellDimensions( index, cellMin, cellDims );
+
+		processCollected();
+		final EvictedData< A > ref = evicted.remove( index );
+		if ( ref != null )
+		{
+			final A data = ref.get();
+			if ( data != null )
+				return new Cell<>( cellDims, cellMin, data );
+			writeIfModified( index, ref.storage );
+		}
+
+		final A data = creator.createArray( ( int ) entitiesPerPixel.mulCeil( Intervals.numElements( cellDims ) ) );
+		final byte[] bytes = compressed.get( index );
+		if ( bytes != null )
+		{
+			final Object array = data.getCurrentStorageArray();
+			fromBytes( decode( bytes, array ), array );
+		}
+		data.setDirty( false );
+		return new Cell<>( cellDims, cellMin, data );
+	}
+
+	@Override
+	public void write( final long index, final Cell< A > cell )
+	{
+		writeStorage( index, cell.getData().getCurrentStorageArray() );
+	}
+
+	/**
+	 * Handle the eviction of {@code cell} from the cache: compress it if it is
+	 * dirty, and keep track of its data until it is no longer reachable.
+	 */
+	public void evict( final long index, final Cell< A > cell )
+	{
+		processCollected();
+		final A data = cell.getData();
+		if ( data.isDirty() )
+		{
+			data.setDirty( false );
+			write( index, cell );
+		}
+		evicted.put( index, new EvictedData<>( index, data, collected ) );
+	}
+
+	/**
+	 * Compress the data of all evicted cells that are still reachable and
+	 * have been modified after eviction.
+	 */
+	public void writeEvicted()
+	{
+		processCollected();
+		evicted.forEach( ( index, ref ) -> {
+			final A data = ref.get();
+			if ( data != null && data.isDirty() )
+			{
+				data.setDirty( false );
+				writeStorage( index, ref.storage );
+			}
+		} );
+	}
+
+	/**
+	 * Compress the storage of evicted data that has become unreachable, if it
+	 * was modified after eviction.
+	 */
+	private void processCollected()
+	{
+		for ( Object ref; ( ref = collected.poll() ) != null; )
+		{
+			@SuppressWarnings( "unchecked" )
+			final EvictedData< A > e = ( EvictedData< A > ) ref;
+			if ( evicted.remove( e.index, e ) )
+				writeIfModified( e.index, e.storage );
+		}
+	}
+
+	private void writeIfModified( final long index, final Object array )
+	{
+		final byte[] raw = toBytes( array );
+		final byte[] bytes = compressed.get( index );
+		final boolean modified = bytes == null
+				? !isZero( raw )
+				: !Arrays.equals( raw, decode( bytes, array ) );
+		if ( modified )
+			writeStorage( index, array );
+	}
+
+	private void writeStorage( final long index, final Object array )
+	{
+		final byte[] raw = toBytes( array );
+		if ( isZero( raw ) )
+			compressed.remove( index );
+		else
+			compressed.put( index, codec.encode( raw, bytesPerElement( array ) ) );
+	}
+
+	/**
+	 * Decode {@code bytes} into raw bytes for a storage array like
+	 * {@code array}.
+	 */
+	private byte[] decode( final byte[] bytes, final Object array )
+	{
+		final int w = bytesPerElement( array );
+		final byte[] raw = new byte[ Array.getLength( array ) * w ];
+		codec.decode( bytes, raw, w );
+		return raw;
+	}
+
+	/**
+	 * Weak reference to the data of an evicted cell, holding on to its
+	 * storage array, which is compressed again if the data is collected
+	 * after being modified.
+	 */
+	private static class EvictedData< A > extends WeakReference< A >
+	{
+		final long index;
+
+		final Object storage;
+
+		EvictedData( final long index, final A data, final ReferenceQueue< A > queue )
+		{
+			super( data, queue );
+			this.index = index;
+			this.storage = ( ( ArrayDataAccess< ? > ) data ).getCurrentStorageArray();
+		}
+	}
+
+	/**
+	 * @return the number of stored (non-zero) cells.
+	 */
+	public int numStoredCells()
+	{
+		return compressed.size();
+	}
+
+	/**
+	 * @return the total size of the compressed data in bytes.
+	 */
+	public long compressedBytes()
+	{
+		long sum = 0;
+		for ( final byte[] bytes : compressed.values() )
+			sum += bytes.length;
+		return sum;
+	}
+
+	private static boolean isZero( final byte[] raw )
+	{
+		for ( final byte b : raw )
+			if ( b != 0 )
+				return false;
+		return true;
+	}
+
+	private static int bytesPerElement( final Object array )
+	{
+		if ( array instanceof byte[] )
+			return 1;
+		if ( array instanceof char[] || array instanceof short[] )
+			return 2;
+		if ( array instanceof int[] || array instanceof float[] )
+			return 4;
+		if ( array instanceof long[] || array instanceof double[] )
+			return 8;
+		throw new IllegalArgumentException( "unsupported storage array " + array.getClass() );
+	}
+
+	private static byte[] toBytes( final Object array )
+	{
+		if ( array instanceof byte[] )
+			return ( ( byte[] ) array ).clone();
+		final int length = Array.getLength( array );
+		final ByteBuffer buffer = ByteBuffer.allocate( length * bytesPerElement( array ) ).order( ByteOrder.nativeOrder() );
+		if ( array instanceof char[] )
+			buffer.asCharBuffer().put( ( char[] ) array );
+		else if ( array instanceof short[] )
+			buffer.asShortBuffer().put( ( short[] ) array );
+		else if ( array instanceof int[] )
+			buffer.asIntBuffer().put( ( int[] ) array );
+		else if ( array instanceof float[] )
+			buffer.asFloatBuffer().put( ( float[] ) array );
+		else if ( array instanceof long[] )
+			buffer.asLongBuffer().put( ( long[] ) array );
+		else
+			buffer.asDoubleBuffer().put( ( double[] ) array );
+		return buffer.array();
+	}
+
+	private static void fromBytes( final byte[] raw, final Object array )
+	{
+		if ( array instanceof byte[] )
+		{
+			System.arraycopy( raw, 0, array, 0, raw.length );
+			return;
+		}
+		final ByteBuffer buffer = ByteBuffer.wrap( raw ).order( ByteOrder.nativeOrder() );
+		if ( array instanceof char[] )
+			buffer.asCharBuffer().get( ( char[] ) array );
+		else if ( array instanceof short[] )
+			buffer.asShortBuffer().get( ( short[] ) array );
+		else if ( array instanceof int[] )
+			buffer.asIntBuffer().get( ( int[] ) array );
+		else if ( array instanceof float[] )
+			buffer.asFloatBuffer().get( ( float[] ) array );
+		else if ( array instanceof long[] )
+			buffer.asLongBuffer().get( ( long[] ) array );
+		else
+			buffer.asDoubleBuffer().get( ( double[] ) array );
+	}
+}
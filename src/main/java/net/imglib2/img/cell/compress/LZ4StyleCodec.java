@@ -0,0 +1,180 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell.compress;
+
+import java.util.Arrays;
+
+/**
+ * Fast LZ77 {@link CellCodec} using the sequence format of LZ4 blocks: each
+ * sequence consists of a token (4 bits literal length, 4 bits match length),
+ * optional extra length bytes, the literals, a 2-byte little-endian match
+ * offset, and optional extra match length bytes. The last sequence consists
+ * of literals only.
+ *
+ * <p>
+ * Matches are found with a single-entry hash table over 4-byte sequences,
+ * favouring speed over compression ratio. The element size is ignored.
+ * </p>
+ */
+public class LZ4StyleCodec implements CellCodec
+{
+	private static final int MIN_MATCH = 4;
+
+	private static final int MAX_OFFSET = 0xffff;
+
+	private static final int HASH_BITS = 12;
+
+	@Override
+	public byte[] encode( final byte[] src, final int bytesPerElement )
+	{
+		final int n = src.length;
+		final byte[] out = new byte[ n + n / 255 + 16 ];
+		final int[] table = new int[ 1 << HASH_BITS ];
+		Arrays.fill( table, -1 );
+
+		int op = 0;
+		int anchor = 0;
+		int ip = 0;
+		while ( ip <= n - MIN_MATCH )
+		{
+			final int seq = read32( src, ip );
+			final int h = hash( seq );
+			final int ref = table[ h ];
+			table[ h ] = ip;
+			if ( ref >= 0 && ip - ref <= MAX_OFFSET && read32( src, ref ) == seq )
+			{
+				int len = MIN_MATCH;
+				while ( ip + len < n && src[ ref + len ] == src[ ip + len ] )
+					++len;
+				op = writeSequence( src, anchor, ip - anchor, out, op, ip - ref, len );
+				ip += len;
+				anchor = ip;
+			}
+			else
+				++ip;
+		}
+		op = writeSequence( src, anchor, n - anchor, out, op, 0, 0 );
+		return Arrays.copyOf( out, op );
+	}
+
+	@Override
+	public void decode( final byte[] encoded, final byte[] data, final int bytesPerElement )
+	{
+		int ip = 0;
+		int op = 0;
+		while ( ip < encoded.length )
+		{
+			final int token = encoded[ ip++ ] & 0xff;
+
+			int literals = token >>> 4;
+			if ( literals == 15 )
+			{
+				int b;
+				do
+				{
+					b = encoded[ ip++ ] & 0xff;
+					literals += b;
+				}
+				while ( b == 255 );
+			}
+			System.arraycopy( encoded, ip, data, op, literals );
+			ip += literals;
+			op += literals;
+
+			if ( ip >= encoded.length )
+				break;
+
+			final int offset = ( encoded[ ip ] & 0xff ) | ( ( encoded[ ip + 1 ] & 0xff ) << 8 );
+			ip += 2;
+
+			int len = token & 0x0f;
+			if ( len == 15 )
+			{
+				int b;
+				do
+				{
+					b = encoded[ ip++ ] & 0xff;
+					len += b;
+				}
+				while ( b == 255 );
+			}
+			len += MIN_MATCH;
+
+			// byte-wise copy, because source and target may overlap
+			for ( int ref = op - offset; len > 0; --len )
+				data[ op++ ] = data[ ref++ ];
+		}
+	}
+
+	private static int writeSequence( final byte[] src, final int literalStart, final int literals, final byte[] out, int op, final int offset, final int matchLength )
+	{
+		final int extraMatch = matchLength - MIN_MATCH;
+		final int token = ( Math.min( literals, 15 ) << 4 ) | ( matchLength == 0 ? 0 : Math.min( extraMatch, 15 ) );
+		out[ op++ ] = ( byte ) token;
+		if ( literals >= 15 )
+			op = writeLength( literals - 15, out, op );
+		System.arraycopy( src, literalStart, out, op, literals );
+		op += literals;
+		if ( matchLength > 0 )
+		{
+			out[ op++ ] = ( byte ) offset;
+			out[ op++ ] = ( byte ) ( offset >>> 8 );
+			if ( extraMatch >= 15 )
+				op = writeLength( extraMatch - 15, out, op );
+		}
+		return op;
+	}
+
+	private static int writeLength( int length, final byte[] out, int op )
+	{
+		while ( length >= 255 )
+		{
+			out[ op++ ] = ( byte ) 255;
+			length -= 255;
+		}
+		out[ op++ ] = ( byte ) length;
+		return op;
+	}
+
+	private static int read32( final byte[] src, final int i )
+	{
+		return ( src[ i ] & 0xff ) | ( ( src[ i + 1 ] & 0xff ) << 8 ) | ( ( src[ i + 2 ] & 0xff ) << 16 ) | ( src[ i + 3 ] << 24 );
+	}
+
+	private static int hash( final int seq )
+	{
+		return ( seq * -1640531535 ) >>> ( 32 - HASH_BITS );
+	}
+}
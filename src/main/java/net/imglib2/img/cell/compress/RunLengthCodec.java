@@ -0,0 +1,121 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell.compress;
+
+import java.util.Arrays;
+
+/**
+ * Run-length {@link CellCodec} on elements of {@code bytesPerElement} bytes.
+ * Each run of identical elements is stored as its length (variable-length
+ * encoded) followed by the element bytes. This works very well for label and
+ * mask data with large uniform regions.
+ */
+public class RunLengthCodec implements CellCodec
+{
+	@Override
+	public byte[] encode( final byte[] data, final int w )
+	{
+		final int numElements = data.length / w;
+		// worst case: every run has length 1 (one byte of length)
+		byte[] out = new byte[ 16 + numElements * ( w + 1 ) ];
+		int op = 0;
+		int i = 0;
+		while ( i < numElements )
+		{
+			int j = i + 1;
+			while ( j < numElements && equalElements( data, i * w, j * w, w ) )
+				++j;
+			final int run = j - i;
+			if ( op + 5 + w > out.length )
+				out = Arrays.copyOf( out, out.length * 2 );
+			op = writeVarInt( run, out, op );
+			System.arraycopy( data, i * w, out, op, w );
+			op += w;
+			i = j;
+		}
+		return Arrays.copyOf( out, op );
+	}
+
+	@Override
+	public void decode( final byte[] encoded, final byte[] data, final int w )
+	{
+		int ip = 0;
+		int op = 0;
+		while ( ip < encoded.length )
+		{
+			int run = 0;
+			int shift = 0;
+			byte b;
+			do
+			{
+				b = encoded[ ip++ ];
+				run |= ( b & 0x7f ) << shift;
+				shift += 7;
+			}
+			while ( b < 0 );
+
+			if ( w == 1 )
+			{
+				Arrays.fill( data, op, op + run, encoded[ ip ] );
+				op += run;
+			}
+			else
+			{
+				for ( int r = 0; r < run; ++r, op += w )
+					System.arraycopy( encoded, ip, data, op, w );
+			}
+			ip += w;
+		}
+	}
+
+	private static boolean equalElements( final byte[] data, final int i, final int j, final int w )
+	{
+		for ( int k = 0; k < w; ++k )
+			if ( data[ i + k ] != data[ j + k ] )
+				return false;
+		return true;
+	}
+
+	private static int writeVarInt( int value, final byte[] out, int op )
+	{
+		while ( ( value & ~0x7f ) != 0 )
+		{
+			out[ op++ ] = ( byte ) ( ( value & 0x7f ) | 0x80 );
+			value >>>= 7;
+		}
+		out[ op++ ] = ( byte ) value;
+		return op;
+	}
+}
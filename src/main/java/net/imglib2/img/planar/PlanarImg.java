@@ -35,6 +35,7 @@
 package net.imglib2.img.planar;
 
 import java.util.ArrayList;
+import java.util.Spliterator;
 
 import net.imglib2.Cursor;
 import net.imglib2.FlatIterationOrder;
@@ -43,6 +44,8 @@ import net.imglib2.img.AbstractNativeImg;
 import net.imglib2.img.NativeImg;
 import net.imglib2.img.basictypeaccess.PlanarAccess;
 import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.LazyArrayDataAccess;
+import net.imglib2.stream.CursorSpliterator;
 import net.imglib2.type.NativeType;
 import net.imglib2.util.Fraction;
 import net.imglib2.util.Intervals;
@@ -55,6 +58,13 @@ import net.imglib2.view.iteration.SubIntervalIterable;
  * The {@link PlanarImg} provides access to the underlying data arrays via the
  * {@link #getPlane(int)} method.
  * </p>
+ * <p>
+ * Planes may be {@link LazyArrayDataAccess lazy}, i.e. read as a constant
+ * and only allocated when first written to (see
+ * {@link PlanarImgFactory#PlanarImgFactory(boolean)}). A constant plane can
+ * be installed with {@link #setPlane(int, ArrayDataAccess)}, e.g.
+ * {@code setPlane( i, new LazyFloatArray( numEntities, value ) )}.
+ * </p>
  *
  * @author Jan Funke
  * @author Stephan Preibisch
@@ -263,6 +273,17 @@ public class PlanarImg< T extends NativeType< T >, A extends ArrayDataAccess< A
 		return new PlanarRandomAccess< T >( this );
 	}
 
+	/**
+	 * Returns a {@link Spliterator} that splits at plane boundaries, if
+	 * possible.
+	 */
+	@Override
+	public Spliterator< T > spliterator()
+	{
+		final long planeSize = ( n > 1 ) ? dimension[ 0 ] * dimension[ 1 ] : dimension[ 0 ];
+		return new CursorSpliterator<>( cursor(), 0, size(), i -> i - i % planeSize );
+	}
+
 	@Override
 	public FlatIterationOrder iterationOrder()
 	{
@@ -281,10 +302,22 @@ public class PlanarImg< T extends NativeType< T >, A extends ArrayDataAccess< A
 		mirror.set( no, plane );
 	}
 
+	/**
+	 * @return whether the data array of plane {@code no} has been allocated.
+	 *         This is only ever {@code false} for
+	 *         {@link LazyArrayDataAccess lazy} planes that were not yet
+	 *         written to.
+	 */
+	public boolean isPlaneAllocated( final int no )
+	{
+		final A plane = mirror.get( no );
+		return !( plane instanceof LazyArrayDataAccess ) || ( ( LazyArrayDataAccess< ? > ) plane ).isAllocated();
+	}
+
 	@Override
 	public PlanarImgFactory< T > factory()
 	{
-		return new PlanarImgFactory< T >();
+		return new PlanarImgFactory< T >( numSlices > 0 && mirror.get( 0 ) instanceof LazyArrayDataAccess );
 	}
 
 	@Override
@@ -307,8 +340,7 @@ public class PlanarImg< T extends NativeType< T >, A extends ArrayDataAccess< A
 	@Override
 	public boolean supportsOptimizedCursor( final Interval interval )
 	{
-		// we want to optimize exactly one plane
-		return Intervals.contains( this, interval ) && correspondsToPlane( interval );
+		return !Intervals.isEmpty( interval ) && Intervals.contains( this, interval );
 	}
 
 	/**
@@ -328,7 +360,9 @@ public class PlanarImg< T extends NativeType< T >, A extends ArrayDataAccess< A
 	{
 		assert ( supportsOptimizedCursor( interval ) );
 
-		return new PlanarPlaneSubsetCursor< T >( this, interval );
+		if ( correspondsToPlane( interval ) )
+			return new PlanarPlaneSubsetCursor< T >( this, interval );
+		return new PlanarSubIntervalCursor< T >( this, interval );
 	}
 
 	private boolean correspondsToPlane( final Interval interval )
@@ -360,6 +394,8 @@ public class PlanarImg< T extends NativeType< T >, A extends ArrayDataAccess< A
 	{
 		assert ( supportsOptimizedCursor( interval ) );
 
-		return new PlanarPlaneSubsetLocalizingCursor< T >( this, interval );
+		if ( correspondsToPlane( interval ) )
+			return new PlanarPlaneSubsetLocalizingCursor< T >( this, interval );
+		return new PlanarSubIntervalCursor< T >( this, interval );
 	}
 }
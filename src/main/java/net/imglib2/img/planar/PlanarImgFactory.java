@@ -43,6 +43,13 @@ import net.imglib2.img.basictypeaccess.array.CharArray;
 import net.imglib2.img.basictypeaccess.array.DoubleArray;
 import net.imglib2.img.basictypeaccess.array.FloatArray;
 import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LazyByteArray;
+import net.imglib2.img.basictypeaccess.array.LazyCharArray;
+import net.imglib2.img.basictypeaccess.array.LazyDoubleArray;
+import net.imglib2.img.basictypeaccess.array.LazyFloatArray;
+import net.imglib2.img.basictypeaccess.array.LazyIntArray;
+import net.imglib2.img.basictypeaccess.array.LazyLongArray;
+import net.imglib2.img.basictypeaccess.array.LazyShortArray;
 import net.imglib2.img.basictypeaccess.array.LongArray;
 import net.imglib2.img.basictypeaccess.array.ShortArray;
 import net.imglib2.type.NativeType;
@@ -58,6 +65,32 @@ import net.imglib2.util.Fraction;
  */
 public class PlanarImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
 {
+	private final boolean lazy;
+
+	/**
+	 * @param lazy
+	 *            if {@code true}, planes are allocated only when they are first
+	 *            written to (see {@link LazyFloatArray} etc.). Until then they
+	 *            read as zero and use no memory.
+	 */
+	public PlanarImgFactory( final boolean lazy )
+	{
+		this.lazy = lazy;
+	}
+
+	public PlanarImgFactory()
+	{
+		this( false );
+	}
+
+	/**
+	 * @return whether planes are allocated only when first written to.
+	 */
+	public boolean isLazy()
+	{
+		return lazy;
+	}
+
 	@Override
 	public PlanarImg< T, ? > create( final long[] dim, final T type )
 	{
@@ -67,43 +100,43 @@ public class PlanarImgFactory< T extends NativeType< T > > extends NativeImgFact
 	@Override
 	public NativeImg< T, ByteArray > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
 	{
-		return new PlanarImg< T, ByteArray >( new ByteArray( 1 ), dimensions, entitiesPerPixel );
+		return new PlanarImg< T, ByteArray >( lazy ? new LazyByteArray( 1 ) : new ByteArray( 1 ), dimensions, entitiesPerPixel );
 	}
 
 	@Override
 	public NativeImg< T, CharArray > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
 	{
-		return new PlanarImg< T, CharArray >( new CharArray( 1 ), dimensions, entitiesPerPixel );
+		return new PlanarImg< T, CharArray >( lazy ? new LazyCharArray( 1 ) : new CharArray( 1 ), dimensions, entitiesPerPixel );
 	}
 
 	@Override
 	public NativeImg< T, DoubleArray > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
 	{
-		return new PlanarImg< T, DoubleArray >( new DoubleArray( 1 ), dimensions, entitiesPerPixel );
+		return new PlanarImg< T, DoubleArray >( lazy ? new LazyDoubleArray( 1 ) : new DoubleArray( 1 ), dimensions, entitiesPerPixel );
 	}
 
 	@Override
 	public NativeImg< T, FloatArray > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
 	{
-		return new PlanarImg< T, FloatArray >( new FloatArray( 1 ), dimensions, entitiesPerPixel );
+		return new PlanarImg< T, FloatArray >( lazy ? new LazyFloatArray( 1 ) : new FloatArray( 1 ), dimensions, entitiesPerPixel );
 	}
 
 	@Override
 	public NativeImg< T, IntArray > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
 	{
-		return new PlanarImg< T, IntArray >( new IntArray( 1 ), dimensions, entitiesPerPixel );
+		return new PlanarImg< T, IntArray >( lazy ? new LazyIntArray( 1 ) : new IntArray( 1 ), dimensions, entitiesPerPixel );
 	}
 
 	@Override
 	public NativeImg< T, LongArray > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
 	{
-		return new PlanarImg< T, LongArray >( new LongArray( 1 ), dimensions, entitiesPerPixel );
+		return new PlanarImg< T, LongArray >( lazy ? new LazyLongArray( 1 ) : new LongArray( 1 ), dimensions, entitiesPerPixel );
 	}
 
 	@Override
 	public NativeImg< T, ShortArray > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
 	{
-		return new PlanarImg< T, ShortArray >( new ShortArray( 1 ), dimensions, entitiesPerPixel );
+		return new PlanarImg< T, ShortArray >( lazy ? new LazyShortArray( 1 ) : new ShortArray( 1 ), dimensions, entitiesPerPixel );
 	}
 
 	@SuppressWarnings( { "unchecked", "rawtypes" } )
@@ -111,7 +144,7 @@ public class PlanarImgFactory< T extends NativeType< T > > extends NativeImgFact
 	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
 	{
 		if ( NativeType.class.isInstance( type ) )
-			return new PlanarImgFactory();
+			return new PlanarImgFactory( lazy );
 		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
 	}
 }
@@ -0,0 +1,224 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.planar;
+
+import net.imglib2.AbstractLocalizingCursor;
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * {@link Cursor} iterating an arbitrary {@link Interval} of a
+ * {@link PlanarImg} in flat order.
+ * <p>
+ * Within a line of the interval, the cursor only increments the index into
+ * the current plane. The plane is looked up when a new line starts in
+ * another plane. The cursor always knows its position, so it is used for
+ * both {@link PlanarImg#cursor(Interval)} and
+ * {@link PlanarImg#localizingCursor(Interval)} (unless the interval is a
+ * single plane, see {@link PlanarPlaneSubsetCursor}).
+ * </p>
+ *
+ * @param <T>
+ *            pixel type
+ */
+public class PlanarSubIntervalCursor< T extends NativeType< T > >
+		extends AbstractLocalizingCursor< T >
+		implements PlanarImg.PlanarContainerSampler
+{
+	private final T type;
+
+	private final PlanarImg< T, ? > container;
+
+	/**
+	 * Min and max of the iterated interval.
+	 */
+	private final long[] min;
+
+	private final long[] max;
+
+	private final long[] dimensions;
+
+	/**
+	 * Index of the current pixel in the iteration.
+	 */
+	private long iterationIndex;
+
+	private final long lastIterationIndex;
+
+	/**
+	 * Index of the current plane.
+	 */
+	private int sliceIndex;
+
+	/**
+	 * Index of the current pixel in the current plane.
+	 */
+	private int index;
+
+	protected PlanarSubIntervalCursor( final PlanarSubIntervalCursor< T > cursor )
+	{
+		super( cursor.numDimensions() );
+
+		container = cursor.container;
+		this.type = container.createLinkedType();
+		min = cursor.min;
+		max = cursor.max;
+		dimensions = cursor.dimensions;
+		lastIterationIndex = cursor.lastIterationIndex;
+		iterationIndex = cursor.iterationIndex;
+		sliceIndex = cursor.sliceIndex;
+		index = cursor.index;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = cursor.position[ d ];
+
+		type.updateContainer( this );
+		type.updateIndex( index );
+	}
+
+	public PlanarSubIntervalCursor( final PlanarImg< T, ? > container, final Interval interval )
+	{
+		super( container.numDimensions() );
+
+		this.type = container.createLinkedType();
+		this.container = container;
+		min = new long[ n ];
+		max = new long[ n ];
+		dimensions = new long[ n ];
+		interval.min( min );
+		interval.max( max );
+		interval.dimensions( dimensions );
+		long size = 1;
+		for ( int d = 0; d < n; ++d )
+			size *= dimensions[ d ];
+		lastIterationIndex = size - 1;
+
+		reset();
+	}
+
+	@Override
+	public int getCurrentSliceIndex()
+	{
+		return sliceIndex;
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public PlanarSubIntervalCursor< T > copy()
+	{
+		return new PlanarSubIntervalCursor<>( this );
+	}
+
+	@Override
+	public PlanarSubIntervalCursor< T > copyCursor()
+	{
+		return copy();
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return iterationIndex < lastIterationIndex;
+	}
+
+	@Override
+	public void fwd()
+	{
+		++iterationIndex;
+		if ( position[ 0 ] < max[ 0 ] )
+		{
+			++position[ 0 ];
+			type.updateIndex( ++index );
+		}
+		else
+		{
+			position[ 0 ] = min[ 0 ];
+			for ( int d = 1; d < n; ++d )
+			{
+				if ( ++position[ d ] <= max[ d ] )
+					break;
+				position[ d ] = min[ d ];
+			}
+			locate();
+		}
+	}
+
+	@Override
+	public void jumpFwd( final long steps )
+	{
+		iterationIndex += steps;
+		IntervalIndexer.indexToPositionWithOffset( iterationIndex, dimensions, min, position );
+		locate();
+	}
+
+	@Override
+	public void reset()
+	{
+		iterationIndex = -1;
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = min[ d ];
+		sliceIndex = -1;
+		locate();
+
+		// move right before the first pixel
+		--position[ 0 ];
+		type.updateIndex( --index );
+	}
+
+	/**
+	 * Update slice and index from the current position.
+	 */
+	private void locate()
+	{
+		int slice = 0;
+		for ( int d = n - 1; d >= 2; --d )
+			slice = slice * ( int ) container.dimension( d ) + ( int ) position[ d ];
+		if ( slice != sliceIndex )
+		{
+			sliceIndex = slice;
+			type.updateContainer( this );
+		}
+		index = ( int ) position[ 0 ];
+		if ( n > 1 )
+			index += ( int ) ( position[ 1 ] * container.dimension( 0 ) );
+		type.updateIndex( index );
+	}
+}
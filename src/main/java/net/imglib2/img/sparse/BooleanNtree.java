@@ -35,24 +35,32 @@
 package net.imglib2.img.sparse;
 
 /**
- * BitAccess based on a {@link Ntree}{@code<Boolean>}.
+ * BitAccess based on a {@link PrimitiveNtree}.
  *
  * @author Tobias Pietzsch
  */
-public final class BooleanNtree implements NtreeAccess< Boolean, BooleanNtree >
+public final class BooleanNtree implements NtreeAccess< BooleanNtree >
 {
 	private final long[] position;
 
-	private final Ntree< Boolean > data;
+	private final PrimitiveNtree data;
 
-	public BooleanNtree( final long[] dimenions, final long[] position, final boolean value )
+	/**
+	 * Standard constructor called by factory
+	 *
+	 * @param dimensions
+	 *            The dimensions of the tree
+	 * @param value
+	 *            Uniform value of created nodes of the tree
+	 */
+	public BooleanNtree( final long[] dimensions, final long[] position, final boolean value )
 	{
-		this.data = new Ntree< Boolean >( dimenions, value );
+		this.data = new PrimitiveNtree( dimensions, value ? 1 : 0 );
 		this.position = position;
 	}
 
 	/* Copy constructor */
-	private BooleanNtree( final Ntree< Boolean > data, final long[] position )
+	BooleanNtree( final PrimitiveNtree data, final long[] position )
 	{
 		this.data = data;
 		this.position = position;
@@ -61,17 +69,17 @@ public final class BooleanNtree implements NtreeAccess< Boolean, BooleanNtree >
 	public boolean getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return data.getValue( position ) != 0;
 	}
 
 	public void setValue( final int index, final boolean value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		data.setValue( position, value ? 1 : 0 );
 	}
 
 	@Override
-	public Ntree< Boolean > getCurrentStorageNtree()
+	public PrimitiveNtree getCurrentStorageNtree()
 	{
 		return data;
 	}
@@ -37,24 +37,32 @@ package net.imglib2.img.sparse;
 import net.imglib2.img.basictypeaccess.ByteAccess;
 
 /**
- * ByteAccess based on a {@link Ntree}{@code<Byte>}.
+ * ByteAccess based on a {@link PrimitiveNtree}.
  *
  * @author Tobias Pietzsch
  */
-public final class ByteNtree implements ByteAccess, NtreeAccess< Byte, ByteNtree >
+public final class ByteNtree implements ByteAccess, NtreeAccess< ByteNtree >
 {
 	private final long[] position;
 
-	private final Ntree< Byte > data;
+	private final PrimitiveNtree data;
 
-	public ByteNtree( final long[] dimenions, final long[] position, final Byte value )
+	/**
+	 * Standard constructor called by factory
+	 *
+	 * @param dimensions
+	 *            The dimensions of the tree
+	 * @param value
+	 *            Uniform value of created nodes of the tree
+	 */
+	public ByteNtree( final long[] dimensions, final long[] position, final byte value )
 	{
-		this.data = new Ntree< Byte >( dimenions, value );
+		this.data = new PrimitiveNtree( dimensions, value );
 		this.position = position;
 	}
 
 	/* Copy constructor */
-	private ByteNtree( final Ntree< Byte > data, final long[] position )
+	ByteNtree( final PrimitiveNtree data, final long[] position )
 	{
 		this.data = data;
 		this.position = position;
@@ -64,18 +72,18 @@ public final class ByteNtree implements ByteAccess, NtreeAccess< Byte, ByteNtree
 	public byte getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return ( byte ) data.getValue( position );
 	}
 
 	@Override
 	public void setValue( final int index, final byte value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		data.setValue( position, value );
 	}
 
 	@Override
-	public Ntree< Byte > getCurrentStorageNtree()
+	public PrimitiveNtree getCurrentStorageNtree()
 	{
 		return data;
 	}
@@ -37,24 +37,32 @@ package net.imglib2.img.sparse;
 import net.imglib2.img.basictypeaccess.CharAccess;
 
 /**
- * CharAccess based on a {@link Ntree}{@code<Char>}.
+ * CharAccess based on a {@link PrimitiveNtree}.
  *
  * @author Tobias Pietzsch
  */
-public final class CharNtree implements CharAccess, NtreeAccess< Character, CharNtree >
+public final class CharNtree implements CharAccess, NtreeAccess< CharNtree >
 {
 	private final long[] position;
 
-	private final Ntree< Character > data;
+	private final PrimitiveNtree data;
 
-	public CharNtree( final long[] dimenions, final long[] position, final Character value )
+	/**
+	 * Standard constructor called by factory
+	 *
+	 * @param dimensions
+	 *            The dimensions of the tree
+	 * @param value
+	 *            Uniform value of created nodes of the tree
+	 */
+	public CharNtree( final long[] dimensions, final long[] position, final char value )
 	{
-		this.data = new Ntree< Character >( dimenions, value );
+		this.data = new PrimitiveNtree( dimensions, value );
 		this.position = position;
 	}
 
 	/* Copy constructor */
-	private CharNtree( final Ntree< Character > data, final long[] position )
+	CharNtree( final PrimitiveNtree data, final long[] position )
 	{
 		this.data = data;
 		this.position = position;
@@ -64,18 +72,18 @@ public final class CharNtree implements CharAccess, NtreeAccess< Character, Char
 	public char getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return ( char ) data.getValue( position );
 	}
 
 	@Override
 	public void setValue( final int index, final char value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		data.setValue( position, value );
 	}
 
 	@Override
-	public Ntree< Character > getCurrentStorageNtree()
+	public PrimitiveNtree getCurrentStorageNtree()
 	{
 		return data;
 	}
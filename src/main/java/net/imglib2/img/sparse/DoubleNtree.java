@@ -37,45 +37,53 @@ package net.imglib2.img.sparse;
 import net.imglib2.img.basictypeaccess.DoubleAccess;
 
 /**
- * DoubleAccess based on a {@link Ntree}{@code<Double>}.
+ * DoubleAccess based on a {@link PrimitiveNtree}.
  *
  * @author Tobias Pietzsch
  */
-public final class DoubleNtree implements DoubleAccess, NtreeAccess< Double, DoubleNtree >
+public final class DoubleNtree implements DoubleAccess, NtreeAccess< DoubleNtree >
 {
 	private final long[] position;
 
-	private final Ntree< Double > data;
+	private final PrimitiveNtree data;
 
-	public DoubleNtree( final long[] dimenions, final long[] position, final Double value )
+	/**
+	 * Standard constructor called by factory
+	 *
+	 * @param dimensions
+	 *            The dimensions of the tree
+	 * @param value
+	 *            Uniform value of created nodes of the tree
+	 */
+	public DoubleNtree( final long[] dimensions, final long[] position, final double value )
 	{
-		this.data = new Ntree< Double >( dimenions, value );
+		this.data = new PrimitiveNtree( dimensions, Double.doubleToRawLongBits( value ) );
 		this.position = position;
 	}
 
 	/* Copy constructor */
-	private DoubleNtree( final Ntree< Double > data, final long[] pos )
+	DoubleNtree( final PrimitiveNtree data, final long[] position )
 	{
 		this.data = data;
-		this.position = pos;
+		this.position = position;
 	}
 
 	@Override
 	public double getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return Double.longBitsToDouble( data.getValue( position ) );
 	}
 
 	@Override
 	public void setValue( final int index, final double value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		data.setValue( position, Double.doubleToRawLongBits( value ) );
 	}
 
 	@Override
-	public Ntree< Double > getCurrentStorageNtree()
+	public PrimitiveNtree getCurrentStorageNtree()
 	{
 		return data;
 	}
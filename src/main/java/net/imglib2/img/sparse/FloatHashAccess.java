@@ -0,0 +1,92 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import net.imglib2.img.basictypeaccess.FloatAccess;
+import net.imglib2.img.sparse.HashImg.IndexProvider;
+
+/**
+ * FloatAccess based on a {@link PrimitiveHashMap}.
+ */
+public final class FloatHashAccess implements FloatAccess, HashAccess< FloatHashAccess >
+{
+	private final IndexProvider indexProvider;
+
+	private final PrimitiveHashMap data;
+
+	/**
+	 * Standard constructor called by factory
+	 *
+	 * @param background
+	 *            value of pixels that are not stored
+	 */
+	public FloatHashAccess( final float background )
+	{
+		this( new PrimitiveHashMap( Float.floatToRawIntBits( background ) ), null );
+	}
+
+	/* Copy constructor */
+	FloatHashAccess( final PrimitiveHashMap data, final IndexProvider indexProvider )
+	{
+		this.data = data;
+		this.indexProvider = indexProvider;
+	}
+
+	@Override
+	public float getValue( final int index )
+	{
+		// ignore index, get flat index from RandomAccess/Cursor
+		return Float.intBitsToFloat( ( int ) data.getValue( indexProvider.getIndex() ) );
+	}
+
+	@Override
+	public void setValue( final int index, final float value )
+	{
+		// ignore index, get flat index from RandomAccess/Cursor
+		data.setValue( indexProvider.getIndex(), Float.floatToRawIntBits( value ) );
+	}
+
+	@Override
+	public PrimitiveHashMap getCurrentStorageMap()
+	{
+		return data;
+	}
+
+	@Override
+	public FloatHashAccess createInstance( final IndexProvider indexProvider )
+	{
+		return new FloatHashAccess( data, indexProvider );
+	}
+}
@@ -37,46 +37,53 @@ package net.imglib2.img.sparse;
 import net.imglib2.img.basictypeaccess.FloatAccess;
 
 /**
- * FloatAccess based on a {@link Ntree}{@code<Float>}.
+ * FloatAccess based on a {@link PrimitiveNtree}.
  *
  * @author Tobias Pietzsch
  */
-public final class FloatNtree implements FloatAccess, NtreeAccess< Float, FloatNtree >
+public final class FloatNtree implements FloatAccess, NtreeAccess< FloatNtree >
 {
 	private final long[] position;
 
-	private final Ntree< Float > data;
+	private final PrimitiveNtree data;
 
-	public FloatNtree( final long[] dimenions, final long[] position, final Float value )
+	/**
+	 * Standard constructor called by factory
+	 *
+	 * @param dimensions
+	 *            The dimensions of the tree
+	 * @param value
+	 *            Uniform value of created nodes of the tree
+	 */
+	public FloatNtree( final long[] dimensions, final long[] position, final float value )
 	{
-		this.data = new Ntree< Float >( dimenions, value );
+		this.data = new PrimitiveNtree( dimensions, Float.floatToRawIntBits( value ) );
 		this.position = position;
 	}
 
 	/* Copy constructor */
-	private FloatNtree( final Ntree< Float > data, final long[] position )
+	FloatNtree( final PrimitiveNtree data, final long[] position )
 	{
 		this.data = data;
 		this.position = position;
-
 	}
 
 	@Override
 	public float getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return Float.intBitsToFloat( ( int ) data.getValue( position ) );
 	}
 
 	@Override
 	public void setValue( final int index, final float value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		data.setValue( position, Float.floatToRawIntBits( value ) );
 	}
 
 	@Override
-	public Ntree< Float > getCurrentStorageNtree()
+	public PrimitiveNtree getCurrentStorageNtree()
 	{
 		return data;
 	}
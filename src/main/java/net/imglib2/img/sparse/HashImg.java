@@ -0,0 +1,154 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.AbstractNativeImg;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * Sparse image that stores only non-background pixels, in a
+ * {@link PrimitiveHashMap} keyed by flat index. Storage, copying and sparse
+ * iteration (see {@link #sparseCursor()}) cost O(number of stored pixels),
+ * whereas {@link #cursor()} visits every pixel like for any other
+ * {@link net.imglib2.img.Img}. This suits data that is almost entirely
+ * background, e.g. point annotations; for data with large uniform regions
+ * {@link NtreeImg} is the better choice.
+ *
+ * @param <T>
+ * @param <A>
+ */
+public final class HashImg< T extends NativeType< T >, A extends HashAccess< A > > extends AbstractNativeImg< T, A > implements SparseIterable< T >
+{
+	/**
+	 * Samplers on a {@link HashImg} provide the flat index of the pixel they
+	 * point at.
+	 */
+	public static interface IndexProvider
+	{
+		long getIndex();
+	}
+
+	final long[] steps, dim;
+
+	final A data;
+
+	public HashImg( final A data, final long[] dim, final Fraction entitiesPerPixel )
+	{
+		super( dim, entitiesPerPixel );
+
+		this.dim = dim.clone();
+		this.steps = new long[ n ];
+		IntervalIndexer.createAllocationSteps( dim, steps );
+		this.data = data;
+	}
+
+	// updater is the RandomAccess / Cursor etc
+	// each call creates a new access wrapper
+	@Override
+	public A update( final Object updater )
+	{
+		return data.createInstance( ( IndexProvider ) updater );
+	}
+
+	@Override
+	public HashRandomAccess< T > randomAccess()
+	{
+		return new HashRandomAccess< T >( this );
+	}
+
+	@Override
+	public HashCursor< T > cursor()
+	{
+		return new HashCursor< T >( this );
+	}
+
+	@Override
+	public HashCursor< T > localizingCursor()
+	{
+		return cursor();
+	}
+
+	/**
+	 * Create a cursor visiting only the stored (non-background) pixels, in no
+	 * particular order. Values of visited pixels may be changed, including to
+	 * the background, but setting pixels that are not stored while the cursor
+	 * is in use invalidates it.
+	 */
+	@Override
+	public HashSparseCursor< T > sparseCursor()
+	{
+		return new HashSparseCursor< T >( this );
+	}
+
+	@Override
+	public long numStoredPixels()
+	{
+		return data.getCurrentStorageMap().size();
+	}
+
+	@Override
+	public HashImgFactory< T > factory()
+	{
+		return new HashImgFactory< T >();
+	}
+
+	@Override
+	public HashImg< T, ? > copy()
+	{
+		final HashImg< T, ? > copy = factory().create( dimension, firstElement().createVariable() );
+
+		final HashSparseCursor< T > source = sparseCursor();
+		final RandomAccess< T > target = copy.randomAccess();
+
+		while ( source.hasNext() )
+		{
+			source.fwd();
+			target.setPosition( source );
+			target.get().set( source.get() );
+		}
+
+		return copy;
+	}
+
+	@Override
+	public FlatIterationOrder iterationOrder()
+	{
+		return new FlatIterationOrder( this );
+	}
+}
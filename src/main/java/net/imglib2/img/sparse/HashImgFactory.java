@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.NativeImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Factory for {@link HashImg HashImgs}. The background value is zero.
+ *
+ * @param <T>
+ */
+public class HashImgFactory< T extends NativeType< T > > extends NativeImgFactory< T >
+{
+	@Override
+	public HashImg< T, ? > create( final long[] dim, final T type )
+	{
+		return ( HashImg< T, ? > ) type.createSuitableNativeImg( this, dim );
+	}
+
+	@Override
+	public HashImg< T, ByteHashAccess > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new HashImg< T, ByteHashAccess >( new ByteHashAccess( ( byte ) 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public HashImg< T, CharHashAccess > createCharInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new HashImg< T, CharHashAccess >( new CharHashAccess( ( char ) 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public HashImg< T, ShortHashAccess > createShortInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new HashImg< T, ShortHashAccess >( new ShortHashAccess( ( short ) 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public HashImg< T, IntHashAccess > createIntInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new HashImg< T, IntHashAccess >( new IntHashAccess( 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public HashImg< T, LongHashAccess > createLongInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new HashImg< T, LongHashAccess >( new LongHashAccess( 0 ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public HashImg< T, FloatHashAccess > createFloatInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new HashImg< T, FloatHashAccess >( new FloatHashAccess( 0.0f ), dimensions, entitiesPerPixel );
+	}
+
+	@Override
+	public HashImg< T, DoubleHashAccess > createDoubleInstance( final long[] dimensions, final Fraction entitiesPerPixel )
+	{
+		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
+			throw new RuntimeException( "not implemented" );
+
+		return new HashImg< T, DoubleHashAccess >( new DoubleHashAccess( 0.0d ), dimensions, entitiesPerPixel );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	@Override
+	public < S > ImgFactory< S > imgFactory( final S type ) throws IncompatibleTypeException
+	{
+		if ( NativeType.class.isInstance( type ) )
+			return new HashImgFactory();
+		throw new IncompatibleTypeException( this, type.getClass().getCanonicalName() + " does not implement NativeType." );
+	}
+}
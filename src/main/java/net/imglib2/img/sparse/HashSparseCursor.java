@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import net.imglib2.AbstractCursor;
+import net.imglib2.Cursor;
+import net.imglib2.img.sparse.HashImg.IndexProvider;
+import net.imglib2.type.NativeType;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * {@link Cursor} visiting only the stored pixels of a {@link HashImg}, in the
+ * order of the slots of its {@link PrimitiveHashMap}.
+ *
+ * @param <T>
+ */
+public final class HashSparseCursor< T extends NativeType< T > > extends AbstractCursor< T > implements IndexProvider
+{
+	private final HashImg< T, ? > img;
+
+	private final PrimitiveHashMap map;
+
+	private final T type;
+
+	private int nextSlot;
+
+	private long index;
+
+	public HashSparseCursor( final HashImg< T, ? > img )
+	{
+		super( img.numDimensions() );
+
+		this.img = img;
+		this.map = img.data.getCurrentStorageMap();
+		this.type = img.createLinkedType();
+
+		reset();
+		type.updateContainer( this );
+	}
+
+	private HashSparseCursor( final HashSparseCursor< T > cursor )
+	{
+		super( cursor.numDimensions() );
+
+		this.img = cursor.img;
+		this.map = cursor.map;
+		this.type = img.createLinkedType();
+		this.nextSlot = cursor.nextSlot;
+		this.index = cursor.index;
+
+		type.updateContainer( this );
+	}
+
+	@Override
+	public long getIndex()
+	{
+		return index;
+	}
+
+	@Override
+	public T get()
+	{
+		return type;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return nextSlot >= 0;
+	}
+
+	@Override
+	public void fwd()
+	{
+		index = map.keyAt( nextSlot );
+		nextSlot = map.nextStoredSlot( nextSlot + 1 );
+	}
+
+	@Override
+	public void reset()
+	{
+		index = -1;
+		nextSlot = map.nextStoredSlot( 0 );
+	}
+
+	@Override
+	public long getLongPosition( final int d )
+	{
+		return IntervalIndexer.indexToPosition( index, img.dim, d );
+	}
+
+	@Override
+	public void localize( final long[] position )
+	{
+		IntervalIndexer.indexToPosition( index, img.dim, position );
+	}
+
+	@Override
+	public HashSparseCursor< T > copy()
+	{
+		return new HashSparseCursor< T >( this );
+	}
+
+	@Override
+	public HashSparseCursor< T > copyCursor()
+	{
+		return copy();
+	}
+}
@@ -37,16 +37,15 @@ package net.imglib2.img.sparse;
 import net.imglib2.img.basictypeaccess.IntAccess;
 
 /**
- * IntAccess based on a {@link Ntree}{@code<Integer>}.
+ * IntAccess based on a {@link PrimitiveNtree}.
  *
  * @author Tobias Pietzsch
  */
-public final class IntNtree implements IntAccess, NtreeAccess< Integer, IntNtree >
+public final class IntNtree implements IntAccess, NtreeAccess< IntNtree >
 {
-
 	private final long[] position;
 
-	private final Ntree< Integer > data;
+	private final PrimitiveNtree data;
 
 	/**
 	 * Standard constructor called by factory
@@ -58,14 +57,12 @@ public final class IntNtree implements IntAccess, NtreeAccess< Integer, IntNtree
 	 */
 	public IntNtree( final long[] dimensions, final long[] position, final int value )
 	{
-		this.data = new Ntree< Integer >( dimensions, value );
-
+		this.data = new PrimitiveNtree( dimensions, value );
 		this.position = position;
-
 	}
 
 	/* Copy constructor */
-	private IntNtree( final Ntree< Integer > data, final long[] position )
+	IntNtree( final PrimitiveNtree data, final long[] position )
 	{
 		this.data = data;
 		this.position = position;
@@ -75,18 +72,18 @@ public final class IntNtree implements IntAccess, NtreeAccess< Integer, IntNtree
 	public int getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return ( int ) data.getValue( position );
 	}
 
 	@Override
 	public void setValue( final int index, final int value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		data.setValue( position, value );
 	}
 
 	@Override
-	public Ntree< Integer > getCurrentStorageNtree()
+	public PrimitiveNtree getCurrentStorageNtree()
 	{
 		return data;
 	}
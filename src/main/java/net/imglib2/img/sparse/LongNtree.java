@@ -37,16 +37,15 @@ package net.imglib2.img.sparse;
 import net.imglib2.img.basictypeaccess.LongAccess;
 
 /**
- * LongAccess based on a {@link Ntree}{@code<Longeger>}.
+ * LongAccess based on a {@link PrimitiveNtree}.
  *
  * @author Tobias Pietzsch
  */
-public final class LongNtree implements LongAccess, NtreeAccess< Long, LongNtree >
+public final class LongNtree implements LongAccess, NtreeAccess< LongNtree >
 {
-
 	private final long[] position;
 
-	private final Ntree< Long > data;
+	private final PrimitiveNtree data;
 
 	/**
 	 * Standard constructor called by factory
@@ -58,12 +57,12 @@ public final class LongNtree implements LongAccess, NtreeAccess< Long, LongNtree
 	 */
 	public LongNtree( final long[] dimensions, final long[] position, final long value )
 	{
-		this.data = new Ntree< Long >( dimensions, value );
-
+		this.data = new PrimitiveNtree( dimensions, value );
 		this.position = position;
 	}
 
-	public LongNtree( final Ntree< Long > data, final long[] position )
+	/* Copy constructor */
+	LongNtree( final PrimitiveNtree data, final long[] position )
 	{
 		this.data = data;
 		this.position = position;
@@ -73,18 +72,18 @@ public final class LongNtree implements LongAccess, NtreeAccess< Long, LongNtree
 	public long getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return data.getValue( position );
 	}
 
 	@Override
 	public void setValue( final int index, final long value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		data.setValue( position, value );
 	}
 
 	@Override
-	public Ntree< Long > getCurrentStorageNtree()
+	public PrimitiveNtree getCurrentStorageNtree()
 	{
 		return data;
 	}
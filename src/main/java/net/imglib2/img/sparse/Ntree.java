@@ -35,7 +35,8 @@
 package net.imglib2.img.sparse;
 
 /**
- * N-dimensional equivalent of a quad/oct-tree.
+ * N-dimensional equivalent of a quad/oct-tree. The accesses of
+ * {@link NtreeImg} use the more compact {@link PrimitiveNtree} instead.
  * 
  * @author Tobias Pietzsch
  */
@@ -34,10 +34,10 @@
 
 package net.imglib2.img.sparse;
 
-public interface NtreeAccess< L extends Comparable< L >, A extends NtreeAccess< L, A > >
+public interface NtreeAccess< A extends NtreeAccess< A > >
 {
 
-	Ntree< L > getCurrentStorageNtree();
+	PrimitiveNtree getCurrentStorageNtree();
 
 	A createInstance( long[] pos );
 }
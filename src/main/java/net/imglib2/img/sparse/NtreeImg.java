@@ -37,16 +37,19 @@ package net.imglib2.img.sparse;
 import java.io.Serializable;
 
 import net.imglib2.FlatIterationOrder;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.AbstractNativeImg;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.type.NativeType;
 import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
 
 /**
  * @author Tobias Pietzsch
  * 
  */
-public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< ?, A >> extends AbstractNativeImg< T, A > implements Serializable
+public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< A >> extends AbstractNativeImg< T, A > implements Serializable
 {
 
 	/**
@@ -118,17 +121,63 @@ public final class NtreeImg< T extends NativeType< T >, A extends NtreeAccess< ?
 	@Override
 	public NtreeImg< T, A > copy()
 	{
-		// TODO: More efficient way to create a copy of the img
 		@SuppressWarnings( "unchecked" )
-		final NtreeImg< T, A > copy = ( NtreeImg< T, A > ) factory().create( dimension, firstElement().createVariable() );
+		final NtreeImg< T, A > copy = ( NtreeImg< T, A > ) new NtreeImgFactory< T >( new PrimitiveNtree( data.getCurrentStorageNtree() ) ).create( dimension, firstElement().createVariable() );
+		return copy;
+	}
 
-		final NtreeCursor< T > source = this.cursor();
-		final NtreeCursor< T > target = copy.cursor();
+	/**
+	 * Replace the content of this image by the values of a dense source of the
+	 * same dimensions. The tree is built bottom-up, so uniform regions are never
+	 * expanded, which is much faster than copying pixel by pixel with a cursor.
+	 * 
+	 * @param source
+	 *            dense image providing the values. Its min is mapped to the
+	 *            origin of this image.
+	 */
+	public void build( final RandomAccessibleInterval< T > source )
+	{
+		if ( !Intervals.equalDimensions( this, source ) )
+			throw new IllegalArgumentException( "Dimensions of source do not match." );
+
+		// values are converted to their bit representation by writing them
+		// into a single pixel image of the same type
+		final long[] origin = new long[ n ];
+		final long[] scratchDimensions = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			scratchDimensions[ d ] = 1;
+		@SuppressWarnings( "unchecked" )
+		final NtreeImg< T, ? > scratch = ( NtreeImg< T, ? > ) factory().create( scratchDimensions, firstElement().createVariable() );
+		final PrimitiveNtree scratchTree = scratch.data.getCurrentStorageNtree();
+		final T t = scratch.firstElement();
+
+		final RandomAccess< T > in = source.randomAccess();
+		final long[] min = Intervals.minAsLongArray( source );
+		final long[] pos = new long[ n ];
+		data.getCurrentStorageNtree().build( position -> {
+			for ( int d = 0; d < n; ++d )
+				pos[ d ] = position[ d ] + min[ d ];
+			in.setPosition( pos );
+			t.set( in.get() );
+			return scratchTree.getValue( origin );
+		} );
+	}
 
-		while ( source.hasNext() )
-			target.next().set( source.next() );
+	/**
+	 * Trim the underlying tree to the nodes actually in use. Worthwhile after
+	 * many writes that merged regions.
+	 */
+	public void compact()
+	{
+		data.getCurrentStorageNtree().compact();
+	}
 
-		return copy;
+	/**
+	 * @return the number of nodes in the underlying tree.
+	 */
+	public int numNodes()
+	{
+		return data.getCurrentStorageNtree().numNodes();
 	}
 
 	@Override
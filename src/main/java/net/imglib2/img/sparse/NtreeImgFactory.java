@@ -34,11 +34,13 @@
 
 package net.imglib2.img.sparse;
 
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.ImgFactory;
 import net.imglib2.img.NativeImgFactory;
 import net.imglib2.type.NativeType;
 import net.imglib2.util.Fraction;
+import net.imglib2.util.Intervals;
 
 /**
  * @author Tobias Pietzsch
@@ -46,19 +48,49 @@ import net.imglib2.util.Fraction;
  */
 public class NtreeImgFactory< T extends NativeType< T >> extends NativeImgFactory< T >
 {
+	/**
+	 * Tree backing the created images, or {@code null} to create a new tree
+	 * for every image.
+	 */
+	private final PrimitiveNtree ntree;
+
+	public NtreeImgFactory()
+	{
+		this( null );
+	}
+
+	/**
+	 * Create images backed by {@code ntree} (see {@link NtreeImg#copy()}).
+	 */
+	NtreeImgFactory( final PrimitiveNtree ntree )
+	{
+		this.ntree = ntree;
+	}
+
 	@Override
 	public NtreeImg< T, ? > create( final long[] dim, final T type )
 	{
 		return ( NtreeImg< T, ? > ) type.createSuitableNativeImg( this, dim );
 	}
 
+	/**
+	 * Create an {@link NtreeImg} holding the values of a dense source (see
+	 * {@link NtreeImg#build(RandomAccessibleInterval)}).
+	 */
+	public NtreeImg< T, ? > createFromDense( final RandomAccessibleInterval< T > source, final T type )
+	{
+		final NtreeImg< T, ? > img = create( Intervals.dimensionsAsLongArray( source ), type );
+		img.build( source );
+		return img;
+	}
+
 	@Override
 	public NtreeImg< T, ByteNtree > createByteInstance( final long[] dimensions, final Fraction entitiesPerPixel )
 	{
 		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
 			throw new RuntimeException( "not implemented" );
 
-		return new NtreeImg< T, ByteNtree >( new ByteNtree( dimensions, new long[ dimensions.length ], ( byte ) 0 ), dimensions, entitiesPerPixel );
+		return new NtreeImg< T, ByteNtree >( ntree != null ? new ByteNtree( ntree, new long[ dimensions.length ] ) : new ByteNtree( dimensions, new long[ dimensions.length ], ( byte ) 0 ), dimensions, entitiesPerPixel );
 	}
 
 	@Override
@@ -67,7 +99,7 @@ public class NtreeImgFactory< T extends NativeType< T >> extends NativeImgFactor
 		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
 			throw new RuntimeException( "not implemented" );
 
-		return new NtreeImg< T, CharNtree >( new CharNtree( dimensions, new long[ dimensions.length ], ( char ) 0 ), dimensions, entitiesPerPixel );
+		return new NtreeImg< T, CharNtree >( ntree != null ? new CharNtree( ntree, new long[ dimensions.length ] ) : new CharNtree( dimensions, new long[ dimensions.length ], ( char ) 0 ), dimensions, entitiesPerPixel );
 	}
 
 	@Override
@@ -76,7 +108,7 @@ public class NtreeImgFactory< T extends NativeType< T >> extends NativeImgFactor
 		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
 			throw new RuntimeException( "not implemented" );
 
-		return new NtreeImg< T, ShortNtree >( new ShortNtree( dimensions, new long[ dimensions.length ], ( short ) 0 ), dimensions, entitiesPerPixel );
+		return new NtreeImg< T, ShortNtree >( ntree != null ? new ShortNtree( ntree, new long[ dimensions.length ] ) : new ShortNtree( dimensions, new long[ dimensions.length ], ( short ) 0 ), dimensions, entitiesPerPixel );
 	}
 
 	@Override
@@ -85,7 +117,7 @@ public class NtreeImgFactory< T extends NativeType< T >> extends NativeImgFactor
 		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
 			throw new RuntimeException( "not implemented" );
 
-		return new NtreeImg< T, IntNtree >( new IntNtree( dimensions, new long[ dimensions.length ], 0 ), dimensions, entitiesPerPixel );
+		return new NtreeImg< T, IntNtree >( ntree != null ? new IntNtree( ntree, new long[ dimensions.length ] ) : new IntNtree( dimensions, new long[ dimensions.length ], 0 ), dimensions, entitiesPerPixel );
 	}
 
 	@Override
@@ -94,7 +126,7 @@ public class NtreeImgFactory< T extends NativeType< T >> extends NativeImgFactor
 		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
 			throw new RuntimeException( "not implemented" );
 
-		return new NtreeImg< T, LongNtree >( new LongNtree( dimensions, new long[ dimensions.length ], 0 ), dimensions, entitiesPerPixel );
+		return new NtreeImg< T, LongNtree >( ntree != null ? new LongNtree( ntree, new long[ dimensions.length ] ) : new LongNtree( dimensions, new long[ dimensions.length ], 0 ), dimensions, entitiesPerPixel );
 	}
 
 	@Override
@@ -103,7 +135,7 @@ public class NtreeImgFactory< T extends NativeType< T >> extends NativeImgFactor
 		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
 			throw new RuntimeException( "not implemented" );
 
-		return new NtreeImg< T, FloatNtree >( new FloatNtree( dimensions, new long[ dimensions.length ], 0.0f ), dimensions, entitiesPerPixel );
+		return new NtreeImg< T, FloatNtree >( ntree != null ? new FloatNtree( ntree, new long[ dimensions.length ] ) : new FloatNtree( dimensions, new long[ dimensions.length ], 0.0f ), dimensions, entitiesPerPixel );
 	}
 
 	@Override
@@ -112,7 +144,7 @@ public class NtreeImgFactory< T extends NativeType< T >> extends NativeImgFactor
 		if ( entitiesPerPixel.getNumerator() != entitiesPerPixel.getDenominator() )
 			throw new RuntimeException( "not implemented" );
 
-		return new NtreeImg< T, DoubleNtree >( new DoubleNtree( dimensions, new long[ dimensions.length ], 0.0d ), dimensions, entitiesPerPixel );
+		return new NtreeImg< T, DoubleNtree >( ntree != null ? new DoubleNtree( ntree, new long[ dimensions.length ] ) : new DoubleNtree( dimensions, new long[ dimensions.length ], 0.0d ), dimensions, entitiesPerPixel );
 	}
 
 	@SuppressWarnings( { "unchecked", "rawtypes" } )
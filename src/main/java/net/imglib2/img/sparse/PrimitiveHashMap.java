@@ -0,0 +1,267 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from non-negative {@code long} keys (flat pixel
+ * indices) to raw {@code long} value bits. Keys mapped to the background
+ * value are not stored, so memory is proportional to the number of
+ * non-background pixels. Removed entries leave a tombstone, which keeps the
+ * slots of the remaining entries stable until the next rehash.
+ */
+public final class PrimitiveHashMap
+{
+	private static final long FREE = -1;
+
+	private static final long REMOVED = -2;
+
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private final long background;
+
+	private long[] keys;
+
+	private long[] values;
+
+	private int mask;
+
+	/**
+	 * number of stored entries.
+	 */
+	private int size;
+
+	/**
+	 * number of slots that are not {@link #FREE} (entries and tombstones).
+	 */
+	private int used;
+
+	/**
+	 * @param background
+	 *            value bits of pixels that are not stored.
+	 */
+	public PrimitiveHashMap( final long background )
+	{
+		this.background = background;
+		allocate( 16 );
+	}
+
+	/**
+	 * Copy constructor. Create a deep copy of map.
+	 */
+	public PrimitiveHashMap( final PrimitiveHashMap map )
+	{
+		synchronized ( map )
+		{
+			background = map.background;
+			keys = map.keys.clone();
+			values = map.values.clone();
+			mask = map.mask;
+			size = map.size;
+			used = map.used;
+		}
+	}
+
+	private void allocate( final int capacity )
+	{
+		keys = new long[ capacity ];
+		Arrays.fill( keys, FREE );
+		values = new long[ capacity ];
+		mask = capacity - 1;
+		used = 0;
+	}
+
+	private static int hash( final long key )
+	{
+		long h = key;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdl;
+		h ^= h >>> 33;
+		return ( int ) h;
+	}
+
+	/**
+	 * @return slot of key, or -1 if key is not stored.
+	 */
+	private int find( final long key )
+	{
+		for ( int i = hash( key ) & mask;; i = ( i + 1 ) & mask )
+		{
+			final long k = keys[ i ];
+			if ( k == key )
+				return i;
+			if ( k == FREE )
+				return -1;
+		}
+	}
+
+	private void rehash( final int capacity )
+	{
+		final long[] oldKeys = keys;
+		final long[] oldValues = values;
+		allocate( capacity );
+		for ( int j = 0; j < oldKeys.length; ++j )
+		{
+			final long key = oldKeys[ j ];
+			if ( key >= 0 )
+			{
+				int i = hash( key ) & mask;
+				while ( keys[ i ] != FREE )
+					i = ( i + 1 ) & mask;
+				keys[ i ] = key;
+				values[ i ] = oldValues[ j ];
+				++used;
+			}
+		}
+	}
+
+	/**
+	 * @return the value bits of pixels that are not stored.
+	 */
+	public long getBackground()
+	{
+		return background;
+	}
+
+	/**
+	 * Get the value stored for key.
+	 * 
+	 * @return value bits for key, or the background if key is not stored.
+	 */
+	public synchronized long getValue( final long key )
+	{
+		final int i = find( key );
+		return i < 0 ? background : values[ i ];
+	}
+
+	/**
+	 * Set the value for key. Setting the background removes the entry.
+	 */
+	public synchronized void setValue( final long key, final long value )
+	{
+		if ( value == background )
+		{
+			final int i = find( key );
+			if ( i >= 0 )
+			{
+				keys[ i ] = REMOVED;
+				--size;
+			}
+			return;
+		}
+
+		int tombstone = -1;
+		int i = hash( key ) & mask;
+		for ( ;; i = ( i + 1 ) & mask )
+		{
+			final long k = keys[ i ];
+			if ( k == key )
+			{
+				values[ i ] = value;
+				return;
+			}
+			if ( k == FREE )
+				break;
+			if ( k == REMOVED && tombstone < 0 )
+				tombstone = i;
+		}
+
+		if ( tombstone >= 0 )
+			i = tombstone;
+		else
+			++used;
+		keys[ i ] = key;
+		values[ i ] = value;
+		++size;
+
+		if ( used > LOAD_FACTOR * keys.length )
+		{
+			int capacity = keys.length;
+			while ( size > LOAD_FACTOR * capacity / 2 )
+				capacity <<= 1;
+			if ( capacity <= 0 )
+				throw new RuntimeException( "Number of stored pixels too big: " + size );
+			rehash( capacity );
+		}
+	}
+
+	/**
+	 * @return the number of stored entries.
+	 */
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return the number of slots, that is, the exclusive upper bound for
+	 *         slot indices.
+	 */
+	public synchronized int capacity()
+	{
+		return keys.length;
+	}
+
+	/**
+	 * Find the first slot holding an entry, starting from slot.
+	 * 
+	 * @return index of the slot, or -1 if there is none.
+	 */
+	public synchronized int nextStoredSlot( final int slot )
+	{
+		for ( int i = slot; i < keys.length; ++i )
+			if ( keys[ i ] >= 0 )
+				return i;
+		return -1;
+	}
+
+	/**
+	 * @return the key stored at slot, or a negative value if the slot is empty.
+	 */
+	public synchronized long keyAt( final int slot )
+	{
+		return keys[ slot ];
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public synchronized void clear()
+	{
+		allocate( 16 );
+		size = 0;
+	}
+}
@@ -0,0 +1,422 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
+
+/**
+ * N-dimensional equivalent of a quad/oct-tree, like {@link Ntree}, but with
+ * all nodes kept in a flat pool of primitive arrays instead of node objects.
+ * Node values are stored as raw {@code long} bits, so the same pool can back
+ * any primitive type. The children of a node occupy a contiguous block of
+ * {@code 2^n} nodes; blocks released by merging are recycled, and
+ * {@link #compact()} drops them altogether.
+ */
+public final class PrimitiveNtree
+{
+	private static final int NO_CHILDREN = -1;
+
+	/**
+	 * number of dimensions.
+	 */
+	final int n;
+
+	/**
+	 * maximum depth of the tree.
+	 */
+	final int numTreeLevels;
+
+	/**
+	 * how many children (if any) each node has.
+	 */
+	final int numChildren;
+
+	/**
+	 * dimensions of tree
+	 */
+	final long[] dimensions;
+
+	/**
+	 * index of the first child of each node, or {@link #NO_CHILDREN}.
+	 */
+	private int[] firstChild;
+
+	/**
+	 * index of the parent of each node, or -1 for the root.
+	 */
+	private int[] parent;
+
+	/**
+	 * value of each node.
+	 */
+	private long[] values;
+
+	/**
+	 * number of node slots in use (including slots in free blocks).
+	 */
+	private int size;
+
+	/**
+	 * first indices of child blocks that can be reused.
+	 */
+	private int[] freeBlocks;
+
+	private int numFreeBlocks;
+
+	/**
+	 * Create a ntree structure capable of representing an array of the given
+	 * dimensions. Initially, the tree contains only a root node and represents
+	 * an array of uniform values.
+	 * 
+	 * @param dimensions
+	 *            of the array
+	 * @param value
+	 *            uniform value of all pixels in the array
+	 */
+	public PrimitiveNtree( final long[] dimensions, final long value )
+	{
+		this.n = dimensions.length;
+		this.dimensions = dimensions.clone();
+
+		long maxdim = 0;
+		for ( int d = 0; d < n; ++d )
+			maxdim = Math.max( maxdim, dimensions[ d ] );
+		this.numTreeLevels = ( int ) Math.ceil( Math.log( maxdim ) / Math.log( 2 ) ) + 1;
+
+		this.numChildren = 1 << n;
+
+		firstChild = new int[ 1 + numChildren ];
+		parent = new int[ 1 + numChildren ];
+		values = new long[ 1 + numChildren ];
+		freeBlocks = new int[ 4 ];
+		clear( value );
+	}
+
+	/**
+	 * Copy constructor. Create a deep copy of ntree.
+	 */
+	public PrimitiveNtree( final PrimitiveNtree ntree )
+	{
+		synchronized ( ntree )
+		{
+			n = ntree.n;
+			numTreeLevels = ntree.numTreeLevels;
+			numChildren = ntree.numChildren;
+			dimensions = ntree.dimensions;
+			firstChild = ntree.firstChild.clone();
+			parent = ntree.parent.clone();
+			values = ntree.values.clone();
+			size = ntree.size;
+			freeBlocks = ntree.freeBlocks.clone();
+			numFreeBlocks = ntree.numFreeBlocks;
+		}
+	}
+
+	/**
+	 * Reset the tree to a single root node with the given value.
+	 */
+	private void clear( final long value )
+	{
+		size = 1;
+		numFreeBlocks = 0;
+		firstChild[ 0 ] = NO_CHILDREN;
+		parent[ 0 ] = -1;
+		values[ 0 ] = value;
+	}
+
+	/**
+	 * Allocate a block of {@link #numChildren} leaf nodes with the given
+	 * parent and value.
+	 * 
+	 * @return index of the first node of the block.
+	 */
+	private int allocateBlock( final int parentNode, final long value )
+	{
+		final int block;
+		if ( numFreeBlocks > 0 )
+			block = freeBlocks[ --numFreeBlocks ];
+		else
+		{
+			block = size;
+			size += numChildren;
+			if ( size > values.length )
+			{
+				final int capacity = Math.min( Integer.MAX_VALUE - 8, Math.max( size, values.length + ( values.length >> 1 ) ) );
+				if ( capacity < size )
+					throw new RuntimeException( "Number of nodes too big: " + size );
+				firstChild = Arrays.copyOf( firstChild, capacity );
+				parent = Arrays.copyOf( parent, capacity );
+				values = Arrays.copyOf( values, capacity );
+			}
+		}
+		for ( int i = block; i < block + numChildren; ++i )
+		{
+			firstChild[ i ] = NO_CHILDREN;
+			parent[ i ] = parentNode;
+			values[ i ] = value;
+		}
+		return block;
+	}
+
+	private void freeBlock( final int block )
+	{
+		if ( numFreeBlocks == freeBlocks.length )
+			freeBlocks = Arrays.copyOf( freeBlocks, 2 * freeBlocks.length );
+		freeBlocks[ numFreeBlocks++ ] = block;
+	}
+
+	private int childIndex( final long[] position, final int l )
+	{
+		final long bitmask = 1l << l;
+		int childindex = 0;
+		for ( int d = 0; d < n; ++d )
+			if ( ( position[ d ] & bitmask ) != 0 )
+				childindex |= 1 << d;
+		return childindex;
+	}
+
+	/**
+	 * Get the lowest-level node containing position. Note that position is not
+	 * necessarily the only pixel inside the node.
+	 * 
+	 * @param position
+	 *            a position inside the image.
+	 * @return index of the lowest-level node containing position.
+	 */
+	synchronized int getNode( final long[] position )
+	{
+		int current = 0;
+		for ( int l = numTreeLevels - 2; l >= 0; --l )
+		{
+			final int children = firstChild[ current ];
+			if ( children == NO_CHILDREN )
+				break;
+			current = children + childIndex( position, l );
+		}
+		return current;
+	}
+
+	/**
+	 * Get the value at position.
+	 * 
+	 * @param position
+	 *            a position inside the image.
+	 * @return value bits stored at position.
+	 */
+	public synchronized long getValue( final long[] position )
+	{
+		return values[ getNode( position ) ];
+	}
+
+	/**
+	 * Set the value at position. If necessary, new nodes will be created. If
+	 * possible, nodes will be merged.
+	 * 
+	 * @param position
+	 *            a position inside the image.
+	 * @param value
+	 *            value bits to store at position.
+	 */
+	public synchronized void setValue( final long[] position, final long value )
+	{
+		int current = 0;
+		for ( int l = numTreeLevels - 2; l >= 0; --l )
+		{
+			if ( firstChild[ current ] == NO_CHILDREN )
+			{
+				if ( values[ current ] == value )
+					return;
+				final int block = allocateBlock( current, values[ current ] );
+				firstChild[ current ] = block;
+			}
+			current = firstChild[ current ] + childIndex( position, l );
+		}
+		if ( values[ current ] == value )
+			return;
+		values[ current ] = value;
+		mergeUpwards( current );
+	}
+
+	/**
+	 * If all the children of the parent of node are leaves with the same
+	 * value, remove them all. Repeat for the parent.
+	 */
+	private void mergeUpwards( final int node )
+	{
+		int current = node;
+		while ( parent[ current ] >= 0 )
+		{
+			final int p = parent[ current ];
+			final int block = firstChild[ p ];
+			final long value = values[ block ];
+			for ( int i = block; i < block + numChildren; ++i )
+				if ( firstChild[ i ] != NO_CHILDREN || values[ i ] != value )
+					return;
+			values[ p ] = value;
+			firstChild[ p ] = NO_CHILDREN;
+			freeBlock( block );
+			current = p;
+		}
+	}
+
+	/**
+	 * @return the number of nodes in the tree.
+	 */
+	public synchronized int numNodes()
+	{
+		return size - numFreeBlocks * numChildren;
+	}
+
+	/**
+	 * @return the number of node slots allocated in the pool.
+	 */
+	public synchronized int capacity()
+	{
+		return values.length;
+	}
+
+	/**
+	 * Renumber the nodes in breadth-first order and trim the pool to the
+	 * number of nodes actually in the tree.
+	 */
+	public synchronized void compact()
+	{
+		final int numNodes = numNodes();
+		final int[] newFirstChild = new int[ numNodes ];
+		final int[] newParent = new int[ numNodes ];
+		final long[] newValues = new long[ numNodes ];
+		final int[] oldIndex = new int[ numNodes ];
+
+		newParent[ 0 ] = -1;
+		newValues[ 0 ] = values[ 0 ];
+		oldIndex[ 0 ] = 0;
+		int next = 1;
+		for ( int i = 0; i < next; ++i )
+		{
+			final int block = firstChild[ oldIndex[ i ] ];
+			if ( block == NO_CHILDREN )
+				newFirstChild[ i ] = NO_CHILDREN;
+			else
+			{
+				newFirstChild[ i ] = next;
+				for ( int c = 0; c < numChildren; ++c, ++next )
+				{
+					oldIndex[ next ] = block + c;
+					newParent[ next ] = i;
+					newValues[ next ] = values[ block + c ];
+				}
+			}
+		}
+
+		firstChild = newFirstChild;
+		parent = newParent;
+		values = newValues;
+		size = numNodes;
+		numFreeBlocks = 0;
+	}
+
+	/**
+	 * Replace the content of the tree by the values of a dense source. The
+	 * tree is built bottom-up, so uniform regions never get expanded. This is
+	 * much faster than setting pixels one by one.
+	 * 
+	 * @param source
+	 *            provides the value bits for each position inside the
+	 *            dimensions of the tree. The position array passed to the
+	 *            source is reused and must not be modified or retained.
+	 */
+	public synchronized void build( final ToLongFunction< long[] > source )
+	{
+		clear( 0 );
+		final int levels = numTreeLevels;
+		final long[][] mins = new long[ levels ][ n ];
+		final boolean[][] inside = new boolean[ levels ][ numChildren ];
+		build( 0, levels - 1, mins, inside, source );
+		compact();
+	}
+
+	private void build( final int node, final int level, final long[][] mins, final boolean[][] inside, final ToLongFunction< long[] > source )
+	{
+		final long[] min = mins[ level ];
+		if ( level == 0 )
+		{
+			values[ node ] = source.applyAsLong( min );
+			return;
+		}
+
+		final int block = allocateBlock( node, 0 );
+		firstChild[ node ] = block;
+
+		final long[] childMin = mins[ level - 1 ];
+		final boolean[] childInside = inside[ level ];
+		final long half = 1l << ( level - 1 );
+		for ( int i = 0; i < numChildren; ++i )
+		{
+			boolean isInside = true;
+			for ( int d = 0; d < n; ++d )
+			{
+				childMin[ d ] = ( ( i >> d ) & 1 ) == 0 ? min[ d ] : min[ d ] + half;
+				if ( childMin[ d ] >= dimensions[ d ] )
+					isInside = false;
+			}
+			childInside[ i ] = isInside;
+			if ( isInside )
+				build( block + i, level - 1, mins, inside, source );
+		}
+
+		// the first child always lies inside
+		final long value = values[ block ];
+		boolean uniform = true;
+		for ( int i = 0; i < numChildren && uniform; ++i )
+			if ( childInside[ i ] && ( firstChild[ block + i ] != NO_CHILDREN || values[ block + i ] != value ) )
+				uniform = false;
+
+		values[ node ] = value;
+		if ( uniform )
+		{
+			firstChild[ node ] = NO_CHILDREN;
+			freeBlock( block );
+		}
+		else
+		{
+			// children outside the image get the value of the first child to
+			// allow for merging later on
+			for ( int i = 1; i < numChildren; ++i )
+				if ( !childInside[ i ] )
+					values[ block + i ] = value;
+		}
+	}
+}
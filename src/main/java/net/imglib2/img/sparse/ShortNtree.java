@@ -37,23 +37,32 @@ package net.imglib2.img.sparse;
 import net.imglib2.img.basictypeaccess.ShortAccess;
 
 /**
- * 
+ * ShortAccess based on a {@link PrimitiveNtree}.
+ *
  * @author Tobias Pietzsch
  */
-public final class ShortNtree implements ShortAccess, NtreeAccess< Short, ShortNtree >
+public final class ShortNtree implements ShortAccess, NtreeAccess< ShortNtree >
 {
-
 	private final long[] position;
 
-	private final Ntree< Short > data;
+	private final PrimitiveNtree data;
 
-	public ShortNtree( final long[] dimenions, final long[] position, final short value )
+	/**
+	 * Standard constructor called by factory
+	 *
+	 * @param dimensions
+	 *            The dimensions of the tree
+	 * @param value
+	 *            Uniform value of created nodes of the tree
+	 */
+	public ShortNtree( final long[] dimensions, final long[] position, final short value )
 	{
-		this.data = new Ntree< Short >( dimenions, value );
+		this.data = new PrimitiveNtree( dimensions, value );
 		this.position = position;
 	}
 
-	public ShortNtree( final Ntree< Short > data, final long[] position )
+	/* Copy constructor */
+	ShortNtree( final PrimitiveNtree data, final long[] position )
 	{
 		this.data = data;
 		this.position = position;
@@ -63,18 +72,18 @@ public final class ShortNtree implements ShortAccess, NtreeAccess< Short, ShortN
 	public short getValue( final int index )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		return data.getNode( position ).getValue();
+		return ( short ) data.getValue( position );
 	}
 
 	@Override
 	public void setValue( final int index, final short value )
 	{
 		// ignore index, get tree position from RandomAccess/Cursor
-		data.createNodeWithValue( position, value );
+		data.setValue( position, value );
 	}
 
 	@Override
-	public Ntree< Short > getCurrentStorageNtree()
+	public PrimitiveNtree getCurrentStorageNtree()
 	{
 		return data;
 	}
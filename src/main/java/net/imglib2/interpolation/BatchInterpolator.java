@@ -0,0 +1,105 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation;
+
+import net.imglib2.RealRandomAccess;
+import net.imglib2.interpolation.neighborsearch.NearestNeighborSearchBatchInterpolator;
+import net.imglib2.interpolation.neighborsearch.NearestNeighborSearchInterpolator;
+import net.imglib2.interpolation.randomaccess.NLinearBatchInterpolator;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolator;
+import net.imglib2.interpolation.randomaccess.NearestNeighborBatchInterpolator;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolator;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Evaluates an interpolated {@link RealType} function at many points in one
+ * call, writing the real values to a primitive array. This avoids one
+ * {@link RealRandomAccess#setPosition(double[]) setPosition} and one
+ * {@link RealRandomAccess#get() get} call per point, and lets
+ * implementations run tight loops without per-point allocation.
+ * <p>
+ * {@link #of(RealRandomAccess)} provides a batch view of any
+ * {@link RealRandomAccess} of {@link RealType}.
+ * </p>
+ */
+public interface BatchInterpolator
+{
+	/**
+	 * Interpolate at {@code count} points.
+	 *
+	 * @param positions
+	 *            coordinate {@code d} of point {@code i} is at
+	 *            {@code positions[ offset + i * stride + d ]}.
+	 * @param offset
+	 *            index of the first coordinate of the first point.
+	 * @param stride
+	 *            distance between the first coordinates of consecutive
+	 *            points, at least the number of dimensions.
+	 * @param values
+	 *            the value at point {@code i} is written to
+	 *            {@code values[ valuesOffset + i ]}.
+	 * @param valuesOffset
+	 *            index of the value of the first point.
+	 * @param count
+	 *            number of points.
+	 */
+	void interpolate( double[] positions, int offset, int stride, double[] values, int valuesOffset, int count );
+
+	/**
+	 * Interpolate at the points {@code positions[ i ]}, writing the value at
+	 * point {@code i} to {@code values[ i ]}.
+	 */
+	void interpolate( double[][] positions, double[] values );
+
+	/**
+	 * Get a {@link BatchInterpolator} for {@code access}. For the
+	 * interpolators of this library that have a batch implementation, that
+	 * implementation is used. Otherwise the points are interpolated one by one
+	 * on a copy of {@code access}. The position of {@code access} is not
+	 * changed by the returned {@link BatchInterpolator}.
+	 */
+	static BatchInterpolator of( final RealRandomAccess< ? extends RealType< ? > > access )
+	{
+		if ( access instanceof BatchInterpolator )
+			return ( BatchInterpolator ) access;
+		if ( access instanceof NLinearInterpolator )
+			return new NLinearBatchInterpolator( ( NLinearInterpolator< ? extends RealType< ? > > ) access );
+		if ( access instanceof NearestNeighborInterpolator )
+			return new NearestNeighborBatchInterpolator( ( NearestNeighborInterpolator< ? extends RealType< ? > > ) access );
+		if ( access instanceof NearestNeighborSearchInterpolator )
+			return new NearestNeighborSearchBatchInterpolator( ( NearestNeighborSearchInterpolator< ? extends RealType< ? > > ) access );
+		return new PointwiseBatchInterpolator( access.copyRealRandomAccess() );
+	}
+}
@@ -37,20 +37,22 @@ package net.imglib2.interpolation.neighborsearch;
 import net.imglib2.RealPoint;
 import net.imglib2.RealRandomAccess;
 import net.imglib2.Sampler;
+import net.imglib2.interpolation.BatchInterpolator;
 import net.imglib2.neighborsearch.KNearestNeighborSearch;
 import net.imglib2.type.numeric.RealType;
 
 /**
  * {@link RealRandomAccess} to a {@link KNearestNeighborSearch} whose sample
  * value is generated by weighting the <em>k</em> nearest neighbors of a query
- * real coordinate by their inverse distance to an arbitrary power p.
+ * real coordinate by their inverse distance to an arbitrary power p. Many
+ * points can be interpolated in one call through {@link BatchInterpolator}.
  * 
  * @param <T>
  * 
  * @author Stephan Preibisch
  * @author Stephan Saalfeld
  */
-public class InverseDistanceWeightingInterpolator< T extends RealType< T > > extends RealPoint implements RealRandomAccess< T >
+public class InverseDistanceWeightingInterpolator< T extends RealType< T > > extends RealPoint implements RealRandomAccess< T >, BatchInterpolator
 {
 	final static protected double minThreshold = Double.MIN_VALUE * 1000;
 
@@ -64,6 +66,11 @@ public class InverseDistanceWeightingInterpolator< T extends RealType< T > > ext
 
 	final double p2;
 
+	/**
+	 * Query point of batch interpolation.
+	 */
+	final private RealPoint query;
+
 	/**
 	 * Creates a new {@link InverseDistanceWeightingInterpolator} based on a
 	 * {@link KNearestNeighborSearch}.
@@ -82,6 +89,7 @@ public class InverseDistanceWeightingInterpolator< T extends RealType< T > > ext
 		this.search = search;
 		this.p = p;
 		p2 = p / 2.0;
+		query = new RealPoint( n );
 
 		search.search( this );
 		this.value = search.getSampler( 0 ).get().copy();
@@ -93,32 +101,79 @@ public class InverseDistanceWeightingInterpolator< T extends RealType< T > > ext
 	{
 		search.search( this );
 
-		if ( numNeighbors == 1 || search.getSquareDistance( 0 ) / search.getSquareDistance( 1 ) < minThreshold )
+		if ( isExact() )
 			value.set( search.getSampler( 0 ).get() );
 		else
+			value.setReal( weightedMean() );
+
+		return value;
+	}
+
+	@Override
+	public void interpolate( final double[] positions, final int offset, final int stride, final double[] values, final int valuesOffset, final int count )
+	{
+		for ( int i = 0; i < count; ++i )
+		{
+			final int o = offset + i * stride;
+			for ( int d = 0; d < n; ++d )
+				query.setPosition( positions[ o + d ], d );
+			search.search( query );
+
+			if ( isExact() )
+				values[ valuesOffset + i ] = search.getSampler( 0 ).get().getRealDouble();
+			else
+				values[ valuesOffset + i ] = weightedMean();
+		}
+	}
+
+	@Override
+	public void interpolate( final double[][] positions, final double[] values )
+	{
+		for ( int i = 0; i < positions.length; ++i )
 		{
-			double sumIntensity = 0;
-			double sumWeights = 0;
+			query.setPosition( positions[ i ] );
+			search.search( query );
+
+			if ( isExact() )
+				values[ i ] = search.getSampler( 0 ).get().getRealDouble();
+			else
+				values[ i ] = weightedMean();
+		}
+	}
+
+	/**
+	 * Whether the nearest neighbor of the last search is so much closer than
+	 * the second nearest that its value is taken as is.
+	 */
+	private boolean isExact()
+	{
+		return numNeighbors == 1 || search.getSquareDistance( 0 ) / search.getSquareDistance( 1 ) < minThreshold;
+	}
 
-			for ( int i = 0; i < numNeighbors; ++i )
-			{
-				final Sampler< T > sampler = search.getSampler( i );
+	/**
+	 * Inverse distance weighted mean of the neighbors of the last search.
+	 */
+	private double weightedMean()
+	{
+		double sumIntensity = 0;
+		double sumWeights = 0;
 
-				if ( sampler == null )
-					break;
+		for ( int i = 0; i < numNeighbors; ++i )
+		{
+			final Sampler< T > sampler = search.getSampler( i );
 
-				final T t = sampler.get();
+			if ( sampler == null )
+				break;
 
-				final double weight = computeWeight( search.getSquareDistance( i ) );
+			final T t = sampler.get();
 
-				sumWeights += weight;
-				sumIntensity += t.getRealDouble() * weight;
-			}
+			final double weight = computeWeight( search.getSquareDistance( i ) );
 
-			value.setReal( sumIntensity / sumWeights );
+			sumWeights += weight;
+			sumIntensity += t.getRealDouble() * weight;
 		}
 
-		return value;
+		return sumIntensity / sumWeights;
 	}
 
 	protected double computeWeight( final double squareDistance )
@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.neighborsearch;
+
+import net.imglib2.RealPoint;
+import net.imglib2.interpolation.BatchInterpolator;
+import net.imglib2.neighborsearch.NearestNeighborSearch;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * {@link BatchInterpolator} performing nearest neighbor interpolation by a
+ * {@link NearestNeighborSearch}, like {@link NearestNeighborSearchInterpolator}.
+ */
+public class NearestNeighborSearchBatchInterpolator implements BatchInterpolator
+{
+	private final NearestNeighborSearch< ? extends RealType< ? > > search;
+
+	private final RealPoint query;
+
+	private final int n;
+
+	/**
+	 * @param search
+	 *            is used directly, not copied.
+	 */
+	public NearestNeighborSearchBatchInterpolator( final NearestNeighborSearch< ? extends RealType< ? > > search )
+	{
+		this.search = search;
+		this.n = search.numDimensions();
+		this.query = new RealPoint( n );
+	}
+
+	/**
+	 * Create a {@link BatchInterpolator} on a copy of the search of
+	 * {@code interpolator}.
+	 */
+	public NearestNeighborSearchBatchInterpolator( final NearestNeighborSearchInterpolator< ? extends RealType< ? > > interpolator )
+	{
+		this( interpolator.search.copy() );
+	}
+
+	@Override
+	public void interpolate( final double[] positions, final int offset, final int stride, final double[] values, final int valuesOffset, final int count )
+	{
+		for ( int i = 0; i < count; ++i )
+		{
+			final int o = offset + i * stride;
+			for ( int d = 0; d < n; ++d )
+				query.setPosition( positions[ o + d ], d );
+			search.search( query );
+			values[ valuesOffset + i ] = search.getSampler().get().getRealDouble();
+		}
+	}
+
+	@Override
+	public void interpolate( final double[][] positions, final double[] values )
+	{
+		for ( int i = 0; i < positions.length; ++i )
+		{
+			query.setPosition( positions[ i ] );
+			search.search( query );
+			values[ i ] = search.getSampler().get().getRealDouble();
+		}
+	}
+}
@@ -0,0 +1,306 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.cell.LazyCellImg;
+import net.imglib2.img.cell.cache.SoftRefCellCache;
+import net.imglib2.loops.LineChunks;
+import net.imglib2.loops.LoopBuilder;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Computes the coefficients of the B-spline of order 2 to 5 that interpolates
+ * an image, by recursive (IIR) prefiltering along every dimension with
+ * mirrored boundaries (Unser, Aldroubi and Eden, 1991). The coefficients are
+ * interpolated by {@link BSplineInterpolator}.
+ * <p>
+ * {@link #compute(RandomAccessibleInterval, int, ForkJoinPool)} filters the
+ * whole image up front, processing the lines of each dimension in parallel.
+ * {@link #lazy(RandomAccessibleInterval, int, int...)} computes the
+ * coefficients cell by cell when they are first accessed, from the cell
+ * padded by a margin that lets the truncated filters converge, and keeps them
+ * in a {@link SoftRefCellCache}.
+ * </p>
+ */
+public class BSplineCoefficients
+{
+	/**
+	 * Filter responses below this are ignored when truncating the recursive
+	 * filters.
+	 */
+	private static final double TOLERANCE = 1e-10;
+
+	/**
+	 * The poles of the prefilter for the B-spline of the given order.
+	 */
+	public static double[] poles( final int order )
+	{
+		switch ( order )
+		{
+		case 2:
+			return new double[] { Math.sqrt( 8.0 ) - 3.0 };
+		case 3:
+			return new double[] { Math.sqrt( 3.0 ) - 2.0 };
+		case 4:
+			return new double[] {
+					Math.sqrt( 664.0 - Math.sqrt( 438976.0 ) ) + Math.sqrt( 304.0 ) - 19.0,
+					Math.sqrt( 664.0 + Math.sqrt( 438976.0 ) ) - Math.sqrt( 304.0 ) - 19.0 };
+		case 5:
+			return new double[] {
+					Math.sqrt( 135.0 / 2.0 - Math.sqrt( 17745.0 / 4.0 ) ) + Math.sqrt( 105.0 / 4.0 ) - 13.0 / 2.0,
+					Math.sqrt( 135.0 / 2.0 + Math.sqrt( 17745.0 / 4.0 ) ) - Math.sqrt( 105.0 / 4.0 ) - 13.0 / 2.0 };
+		default:
+			throw new IllegalArgumentException( "B-spline order must be between 2 and 5, but is " + order + "." );
+		}
+	}
+
+	/**
+	 * The number of samples after which the response of the prefilter for
+	 * the given order has decayed below the tolerance.
+	 */
+	public static int horizon( final int order )
+	{
+		double maxPole = 0;
+		for ( final double z : poles( order ) )
+			maxPole = Math.max( maxPole, Math.abs( z ) );
+		return ( int ) Math.ceil( Math.log( TOLERANCE ) / Math.log( maxPole ) );
+	}
+
+	/**
+	 * Compute the coefficients for {@code source} into a new image with the
+	 * same interval.
+	 *
+	 * @param pool
+	 *            the lines of each dimension are filtered in parallel in this
+	 *            pool.
+	 */
+	public static < T extends RealType< T > > RandomAccessibleInterval< DoubleType > compute( final RandomAccessibleInterval< T > source, final int order, final ForkJoinPool pool )
+	{
+		final double[] poles = poles( order );
+		final long[] dimensions = Intervals.dimensionsAsLongArray( source );
+		final Img< DoubleType > img = Intervals.numElements( source ) <= Integer.MAX_VALUE
+				? new ArrayImgFactory< DoubleType >().create( dimensions, new DoubleType() )
+				: new CellImgFactory< DoubleType >( 64 ).create( dimensions, new DoubleType() );
+		final RandomAccessibleInterval< DoubleType > coefficients = Views.translate( img, Intervals.minAsLongArray( source ) );
+
+		LoopBuilder.setImages( source, coefficients ).multiThreaded( pool ).forEachPixel( ( s, c ) -> c.set( s.getRealDouble() ) );
+		for ( int d = 0; d < source.numDimensions(); ++d )
+		{
+			final int dim = d;
+			LineChunks.forEachLine( coefficients, d, pool, () -> lineFilter( coefficients, dim, poles ) );
+		}
+		return coefficients;
+	}
+
+	/**
+	 * Compute the coefficients for {@code source} lazily, cell by cell, when
+	 * they are first accessed. The result differs from
+	 * {@link #compute(RandomAccessibleInterval, int, ForkJoinPool)} only by
+	 * the truncation of the filters.
+	 *
+	 * @param cellDimensions
+	 *            dimensions of the cells of the result.
+	 */
+	public static < T extends RealType< T > > RandomAccessibleInterval< DoubleType > lazy( final RandomAccessibleInterval< T > source, final int order, final int... cellDimensions )
+	{
+		final double[] poles = poles( order );
+		final int margin = horizon( order );
+		final int n = source.numDimensions();
+		final int[] cellDims = CellImgFactory.getCellDimensions( cellDimensions, n, new DoubleType().getEntitiesPerPixel() );
+		final CellGrid grid = new CellGrid( Intervals.dimensionsAsLongArray( source ), cellDims );
+		final RandomAccessible< T > extended = Views.extendMirrorSingle( source );
+		final long[] sourceMin = Intervals.minAsLongArray( source );
+
+		final LazyCellImg.Get< Cell< DoubleArray > > loader = index -> {
+			final long[] cellMin = new long[ n ];
+			final int[] dims = new int[ n ];
+			grid.getCellDimensions( index, cellMin, dims );
+			return new Cell<>( dims, cellMin, computeCell( extended, sourceMin, cellMin, dims, margin, poles ) );
+		};
+		final LazyCellImg< DoubleType, DoubleArray > img = new LazyCellImg<>( grid, new DoubleType(), new SoftRefCellCache<>( loader ) );
+		return Views.translate( img, sourceMin );
+	}
+
+	/**
+	 * Compute the coefficients of one cell from the values of the (extended)
+	 * source in the cell padded by {@code margin} on all sides.
+	 */
+	private static < T extends RealType< T > > DoubleArray computeCell( final RandomAccessible< T > source, final long[] sourceMin, final long[] cellMin, final int[] cellDims, final int margin, final double[] poles )
+	{
+		final int n = cellDims.length;
+		final int[] padded = new int[ n ];
+		final long[] min = new long[ n ];
+		final long[] max = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+		{
+			padded[ d ] = cellDims[ d ] + 2 * margin;
+			min[ d ] = sourceMin[ d ] + cellMin[ d ] - margin;
+			max[ d ] = min[ d ] + padded[ d ] - 1;
+		}
+
+		final double[] block = new double[ ( int ) Intervals.numElements( padded ) ];
+		final Cursor< T > c = Views.flatIterable( Views.interval( source, new FinalInterval( min, max ) ) ).cursor();
+		for ( int i = 0; i < block.length; ++i )
+			block[ i ] = c.next().getRealDouble();
+
+		int stride = 1;
+		for ( int d = 0; d < n; ++d )
+		{
+			final int length = padded[ d ];
+			final double[] line = new double[ length ];
+			final int numLines = block.length / length;
+			for ( int l = 0; l < numLines; ++l )
+			{
+				// offset of the first element of the l-th line along d
+				final int offset = ( l / stride ) * stride * length + l % stride;
+				for ( int i = 0; i < length; ++i )
+					line[ i ] = block[ offset + i * stride ];
+				filterLine( line, poles );
+				for ( int i = 0; i < length; ++i )
+					block[ offset + i * stride ] = line[ i ];
+			}
+			stride *= length;
+		}
+
+		final int[] cellSize = cellDims.clone();
+		final double[] data = new double[ ( int ) Intervals.numElements( cellSize ) ];
+		final long[] pos = new long[ n ];
+		for ( int i = 0; i < data.length; ++i )
+		{
+			IntervalIndexer.indexToPosition( i, cellSize, pos );
+			int j = 0;
+			for ( int d = n - 1; d >= 0; --d )
+				j = j * padded[ d ] + ( int ) pos[ d ] + margin;
+			data[ i ] = block[ j ];
+		}
+		return new DoubleArray( data );
+	}
+
+	/**
+	 * Replace the samples in {@code c} by the B-spline coefficients along
+	 * this line, with mirrored boundaries.
+	 */
+	static void filterLine( final double[] c, final double[] poles )
+	{
+		final int length = c.length;
+		if ( length == 1 )
+			return;
+
+		double gain = 1;
+		for ( final double z : poles )
+			gain *= ( 1 - z ) * ( 1 - 1 / z );
+		for ( int i = 0; i < length; ++i )
+			c[ i ] *= gain;
+
+		for ( final double z : poles )
+		{
+			c[ 0 ] = initialCausal( c, z );
+			for ( int i = 1; i < length; ++i )
+				c[ i ] += z * c[ i - 1 ];
+			c[ length - 1 ] = ( z / ( z * z - 1 ) ) * ( z * c[ length - 2 ] + c[ length - 1 ] );
+			for ( int i = length - 2; i >= 0; --i )
+				c[ i ] = z * ( c[ i + 1 ] - c[ i ] );
+		}
+	}
+
+	private static double initialCausal( final double[] c, final double z )
+	{
+		final int length = c.length;
+		final int horizon = ( int ) Math.ceil( Math.log( TOLERANCE ) / Math.log( Math.abs( z ) ) );
+		if ( horizon < length )
+		{
+			double zn = z;
+			double sum = c[ 0 ];
+			for ( int i = 1; i < horizon; ++i )
+			{
+				sum += zn * c[ i ];
+				zn *= z;
+			}
+			return sum;
+		}
+
+		// exact mirrored sum
+		final double iz = 1 / z;
+		double zn = z;
+		double z2n = Math.pow( z, length - 1 );
+		double sum = c[ 0 ] + z2n * c[ length - 1 ];
+		z2n *= z2n * iz;
+		for ( int i = 1; i < length - 1; ++i )
+		{
+			sum += ( zn + z2n ) * c[ i ];
+			zn *= z;
+			z2n *= iz;
+		}
+		return sum / ( 1 - zn * zn );
+	}
+
+	/**
+	 * Filters the line along dimension {@code d} starting at every position
+	 * it is called with.
+	 */
+	private static Consumer< long[] > lineFilter( final RandomAccessibleInterval< DoubleType > coefficients, final int d, final double[] poles )
+	{
+		final int length = ( int ) coefficients.dimension( d );
+		final double[] line = new double[ length ];
+		final RandomAccess< DoubleType > a = coefficients.randomAccess();
+		return position -> {
+			a.setPosition( position );
+			for ( int i = 0; i < length; ++i, a.fwd( d ) )
+				line[ i ] = a.get().get();
+			filterLine( line, poles );
+			a.setPosition( position );
+			for ( int i = 0; i < length; ++i, a.fwd( d ) )
+				a.get().set( line[ i ] );
+		};
+	}
+}
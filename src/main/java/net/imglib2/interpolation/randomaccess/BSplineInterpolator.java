@@ -0,0 +1,233 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealPoint;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+
+/**
+ * n-dimensional B-spline interpolation of order 2 to 5 on precomputed
+ * coefficients (see {@link BSplineCoefficients}).
+ * <p>
+ * The kernel is separable: for every dimension, the {@code order + 1} weights
+ * are evaluated from piecewise polynomials, and the interpolated value is the
+ * sum of the coefficients in the support weighted by the products of their
+ * per-dimension weights.
+ * </p>
+ *
+ * @see BSplineInterpolatorFactory
+ */
+public class BSplineInterpolator< T extends RealType< T > > extends RealPoint implements RealRandomAccess< T >
+{
+	protected final int order;
+
+	protected final RandomAccess< DoubleType > coefficients;
+
+	protected final T interpolatedValue;
+
+	protected final double minValue, maxValue;
+
+	/**
+	 * {@code weights[ d ][ i ]} is the weight of the i-th tap in dimension d.
+	 */
+	protected final double[][] weights;
+
+	protected final long[] start;
+
+	protected final int[] tap;
+
+	protected final double[] products;
+
+	/**
+	 * @param coefficients
+	 *            B-spline coefficients of the given order, defined everywhere
+	 *            the interpolator is used (e.g., extended by mirroring).
+	 * @param type
+	 *            type of the interpolated values. The values are clipped to
+	 *            its range.
+	 */
+	public BSplineInterpolator( final RandomAccessible< DoubleType > coefficients, final int order, final T type )
+	{
+		super( coefficients.numDimensions() );
+		if ( order < 2 || order > 5 )
+			throw new IllegalArgumentException( "B-spline order must be between 2 and 5, but is " + order + "." );
+		this.order = order;
+		this.coefficients = coefficients.randomAccess();
+		this.interpolatedValue = type.createVariable();
+		this.minValue = type.getMinValue();
+		this.maxValue = type.getMaxValue();
+		weights = new double[ n ][ order + 1 ];
+		start = new long[ n ];
+		tap = new int[ n ];
+		products = new double[ n + 1 ];
+		products[ n ] = 1;
+	}
+
+	protected BSplineInterpolator( final BSplineInterpolator< T > interpolator )
+	{
+		super( interpolator );
+		this.order = interpolator.order;
+		this.coefficients = interpolator.coefficients.copyRandomAccess();
+		this.interpolatedValue = interpolator.interpolatedValue.copy();
+		this.minValue = interpolator.minValue;
+		this.maxValue = interpolator.maxValue;
+		weights = new double[ n ][ order + 1 ];
+		start = new long[ n ];
+		tap = new int[ n ];
+		products = new double[ n + 1 ];
+		products[ n ] = 1;
+	}
+
+	@Override
+	public T get()
+	{
+		for ( int d = 0; d < n; ++d )
+		{
+			final double x = position[ d ];
+			// odd orders are centered between samples, even orders on a sample
+			final long first = ( ( order & 1 ) == 1 ? ( long ) Math.floor( x ) : ( long ) Math.floor( x + 0.5 ) ) - order / 2;
+			start[ d ] = first;
+			final double[] w = weights[ d ];
+			for ( int i = 0; i <= order; ++i )
+				w[ i ] = kernel( order, x - ( first + i ) );
+		}
+
+		coefficients.setPosition( start );
+		for ( int d = n - 1; d >= 0; --d )
+		{
+			tap[ d ] = 0;
+			products[ d ] = products[ d + 1 ] * weights[ d ][ 0 ];
+		}
+
+		double sum = 0;
+		while ( true )
+		{
+			sum += coefficients.get().get() * products[ 0 ];
+
+			int d = 0;
+			for ( ; d < n; ++d )
+			{
+				if ( ++tap[ d ] <= order )
+				{
+					coefficients.fwd( d );
+					products[ d ] = products[ d + 1 ] * weights[ d ][ tap[ d ] ];
+					for ( int e = d - 1; e >= 0; --e )
+						products[ e ] = products[ e + 1 ] * weights[ e ][ 0 ];
+					break;
+				}
+				tap[ d ] = 0;
+				coefficients.move( -order, d );
+			}
+			if ( d == n )
+				break;
+		}
+
+		if ( sum < minValue )
+			sum = minValue;
+		else if ( sum > maxValue )
+			sum = maxValue;
+		interpolatedValue.setReal( sum );
+		return interpolatedValue;
+	}
+
+	/**
+	 * The centered B-spline of the given order at {@code x}.
+	 */
+	public static double kernel( final int order, final double x )
+	{
+		final double a = Math.abs( x );
+		final double a2 = a * a;
+		switch ( order )
+		{
+		case 2:
+			if ( a < 0.5 )
+				return 0.75 - a2;
+			if ( a < 1.5 )
+				return 0.5 * ( 1.5 - a ) * ( 1.5 - a );
+			return 0;
+		case 3:
+			if ( a < 1 )
+				return 2.0 / 3.0 - a2 + 0.5 * a2 * a;
+			if ( a < 2 )
+			{
+				final double b = 2 - a;
+				return b * b * b / 6.0;
+			}
+			return 0;
+		case 4:
+			if ( a < 0.5 )
+				return 115.0 / 192.0 + a2 * ( -5.0 / 8.0 + a2 / 4.0 );
+			if ( a < 1.5 )
+				return 55.0 / 96.0 + a * ( 5.0 / 24.0 + a * ( -5.0 / 4.0 + a * ( 5.0 / 6.0 - a / 6.0 ) ) );
+			if ( a < 2.5 )
+			{
+				final double b = 2.5 - a;
+				final double b2 = b * b;
+				return b2 * b2 / 24.0;
+			}
+			return 0;
+		case 5:
+			if ( a < 1 )
+				return 11.0 / 20.0 + a2 * ( -0.5 + a2 * ( 0.25 - a / 12.0 ) );
+			if ( a < 2 )
+				return 17.0 / 40.0 + a * ( 5.0 / 8.0 + a * ( -7.0 / 4.0 + a * ( 5.0 / 4.0 + a * ( -3.0 / 8.0 + a / 24.0 ) ) ) );
+			if ( a < 3 )
+			{
+				final double b = 3 - a;
+				final double b2 = b * b;
+				return b2 * b2 * b / 120.0;
+			}
+			return 0;
+		default:
+			throw new IllegalArgumentException( "B-spline order must be between 2 and 5, but is " + order + "." );
+		}
+	}
+
+	@Override
+	public BSplineInterpolator< T > copy()
+	{
+		return new BSplineInterpolator<>( this );
+	}
+
+	@Override
+	public BSplineInterpolator< T > copyRealRandomAccess()
+	{
+		return copy();
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealInterval;
+import net.imglib2.interpolation.InterpolatorFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+
+/**
+ * Creates {@link BSplineInterpolator}s of order 2 to 5.
+ * <p>
+ * The coefficients of a source are computed by {@link BSplineCoefficients}
+ * when the first interpolator for it is created, and are shared by all
+ * further interpolators on the same source, e.g., the interpolators of
+ * several threads. By default they are computed eagerly in parallel in the
+ * {@link ForkJoinPool#commonPool() common pool}; with {@link #lazy(int...)}
+ * they are computed per cell on first access instead. Outside of the source
+ * interval, the coefficients are extended by mirroring.
+ * </p>
+ * <p>
+ * The factory keeps the coefficients of every source (compared by identity)
+ * it is used with. A source is not kept alive by the factory, and its
+ * coefficients are held through a {@link SoftReference}, so they are
+ * recomputed if they have been cleared when memory ran low.
+ * </p>
+ */
+public class BSplineInterpolatorFactory< T extends RealType< T > > implements InterpolatorFactory< T, RandomAccessibleInterval< T > >
+{
+	private final int order;
+
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	private int[] cellDimensions = null;
+
+	/**
+	 * Coefficients per source. The coefficients are held softly, because
+	 * lazily computed coefficients refer to their source, which would
+	 * otherwise never be collected.
+	 */
+	private final HashMap< SourceKey, SoftReference< RandomAccessible< DoubleType > > > cache = new HashMap<>();
+
+	private final ReferenceQueue< Object > collectedSources = new ReferenceQueue<>();
+
+	/**
+	 * Creates a factory for cubic B-spline interpolators.
+	 */
+	public BSplineInterpolatorFactory()
+	{
+		this( 3 );
+	}
+
+	public BSplineInterpolatorFactory( final int order )
+	{
+		BSplineCoefficients.poles( order );
+		this.order = order;
+	}
+
+	/**
+	 * Compute the coefficients in the given {@link ForkJoinPool}.
+	 *
+	 * @return this
+	 */
+	public BSplineInterpolatorFactory< T > multiThreaded( final ForkJoinPool pool )
+	{
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Compute the coefficients lazily, in cells of the given dimensions.
+	 *
+	 * @return this
+	 */
+	public BSplineInterpolatorFactory< T > lazy( final int... cellDimensions )
+	{
+		this.cellDimensions = cellDimensions.clone();
+		return this;
+	}
+
+	public int getOrder()
+	{
+		return order;
+	}
+
+	@Override
+	public BSplineInterpolator< T > create( final RandomAccessibleInterval< T > source )
+	{
+		return new BSplineInterpolator<>( coefficients( source ), order, Util.getTypeFromInterval( source ) );
+	}
+
+	@Override
+	public BSplineInterpolator< T > create( final RandomAccessibleInterval< T > source, final RealInterval interval )
+	{
+		return create( source );
+	}
+
+	/**
+	 * Get the (cached) coefficients for {@code source}, extended by mirroring.
+	 */
+	public synchronized RandomAccessible< DoubleType > coefficients( final RandomAccessibleInterval< T > source )
+	{
+		for ( Object collected; ( collected = collectedSources.poll() ) != null; )
+			cache.remove( collected );
+
+		final SourceKey key = new SourceKey( source, collectedSources );
+		final SoftReference< RandomAccessible< DoubleType > > ref = cache.get( key );
+		RandomAccessible< DoubleType > coefficients = ref == null ? null : ref.get();
+		if ( coefficients == null )
+		{
+			coefficients = Views.extendMirrorSingle( cellDimensions == null
+					? BSplineCoefficients.compute( source, order, pool )
+					: BSplineCoefficients.lazy( source, order, cellDimensions ) );
+			cache.put( key, new SoftReference<>( coefficients ) );
+		}
+		return coefficients;
+	}
+
+	/**
+	 * Weak reference to a source, compared by identity of the source.
+	 */
+	private static final class SourceKey extends WeakReference< Object >
+	{
+		private final int hash;
+
+		SourceKey( final Object source, final ReferenceQueue< Object > queue )
+		{
+			super( source, queue );
+			this.hash = System.identityHashCode( source );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals( final Object obj )
+		{
+			if ( this == obj )
+				return true;
+			if ( !( obj instanceof SourceKey ) )
+				return false;
+			final Object source = get();
+			return source != null && source == ( ( SourceKey ) obj ).get();
+		}
+	}
+}
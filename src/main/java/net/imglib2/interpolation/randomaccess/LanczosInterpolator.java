@@ -34,16 +34,24 @@
 
 package net.imglib2.interpolation.randomaccess;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RealRandomAccess;
-import net.imglib2.Sampler;
 import net.imglib2.position.transform.FloorOffset;
 import net.imglib2.type.numeric.RealType;
 
 /**
  * n-dimensional double-based Lanczos Interpolation
- * 
+ * <p>
+ * The kernel is separable. On each {@link #get()}, the 2<em>a</em> weights per
+ * dimension are looked up once in a precomputed table. The neighborhood is
+ * read line by line along dimension 0, each line is reduced by the weights of
+ * dimension 0, and the line sums are then reduced dimension by dimension. No
+ * kernel evaluation happens per tap.
+ * </p>
+ *
  * @author Stephan Preibisch
  * @author Stephan Saalfeld
  */
@@ -51,19 +59,47 @@ public class LanczosInterpolator< T extends RealType< T > > extends FloorOffset<
 {
 	final static protected double piSquare = Math.PI * Math.PI;
 
-	final static protected int lutScale = 10;
+	/**
+	 * Number of table entries per unit distance.
+	 */
+	final static protected int lutScale = 1000;
+
+	/**
+	 * Kernel tables for every alpha used so far.
+	 */
+	final static private ConcurrentHashMap< Integer, double[] > luts = new ConcurrentHashMap<>();
 
 	final protected int alpha;
 
-	final protected T interpolatedValue;
+	/**
+	 * Number of taps per dimension, 2<em>a</em>.
+	 */
+	final protected int size;
 
-	final protected long[] size, max;
+	final protected T interpolatedValue;
 
 	final protected double minValue, maxValue;
 
 	final protected boolean clip;
 
-	final protected double[] lut, products;
+	/**
+	 * Kernel values at {@code i / lutScale}. It is shared by all interpolators
+	 * with the same alpha.
+	 */
+	final protected double[] lut;
+
+	/**
+	 * {@code weights[ d ][ i ]} is the weight of the i-th tap in dimension d.
+	 */
+	final protected double[][] weights;
+
+	/**
+	 * Sums along dimension 0 of the lines of the neighborhood, reduced in
+	 * place along the remaining dimensions.
+	 */
+	final protected double[] lineSums;
+
+	final protected int[] tap;
 
 	final static private long[] createOffset( final int a, final int n )
 	{
@@ -75,7 +111,7 @@ public class LanczosInterpolator< T extends RealType< T > > extends FloorOffset<
 
 	/**
 	 * Creates a new Lanczos-interpolation
-	 * 
+	 *
 	 * @param randomAccessible
 	 *            - the {@link RandomAccessible} to work on
 	 * @param alpha
@@ -93,16 +129,12 @@ public class LanczosInterpolator< T extends RealType< T > > extends FloorOffset<
 		super( randomAccessible.randomAccess(), createOffset( alpha, randomAccessible.numDimensions() ) );
 
 		this.alpha = alpha;
+		this.size = 2 * alpha;
 
-		lut = createLanczosLUT( alpha, lutScale );
-		products = new double[ n + 1 ];
-		products[ n ] = 1.0;
-
-		this.size = new long[ n ];
-		this.max = new long[ n ];
-
-		for ( int d = 0; d < n; ++d )
-			size[ d ] = alpha * 2;
+		lut = luts.computeIfAbsent( alpha, a -> createLanczosLUT( a, lutScale ) );
+		weights = new double[ n ][ size ];
+		lineSums = new double[ lineCount( size, n ) ];
+		tap = new int[ n ];
 
 		this.clip = clip;
 
@@ -122,15 +154,15 @@ public class LanczosInterpolator< T extends RealType< T > > extends FloorOffset<
 
 	public LanczosInterpolator( final LanczosInterpolator< T > interpolator )
 	{
-		super( interpolator.target.copyRandomAccess(), interpolator.offset );
+		super( interpolator, interpolator.target.copyRandomAccess(), interpolator.offset );
 
 		this.alpha = interpolator.alpha;
+		this.size = interpolator.size;
 
-		lut = interpolator.lut.clone();
-		products = interpolator.products.clone();
-
-		this.size = interpolator.size.clone();
-		this.max = interpolator.max.clone();
+		lut = interpolator.lut;
+		weights = new double[ n ][ size ];
+		lineSums = new double[ interpolator.lineSums.length ];
+		tap = new int[ n ];
 
 		this.clip = interpolator.clip;
 
@@ -139,61 +171,86 @@ public class LanczosInterpolator< T extends RealType< T > > extends FloorOffset<
 		this.maxValue = interpolator.maxValue;
 	}
 
+	/**
+	 * @return the number of lines along dimension 0 in the neighborhood.
+	 */
+	final static private int lineCount( final int size, final int n )
+	{
+		int count = 1;
+		for ( int d = 1; d < n; ++d )
+			count *= size;
+		return count;
+	}
+
 	final static private double[] createLanczosLUT( final int max, final int scale )
 	{
 		final double[] lut = new double[ max * scale + 2 ];
 		for ( int i = 0; i < lut.length; ++i )
 		{
-			final double x = ( double ) i / ( double ) lutScale;
-			lut[ i ] = lanczos( x, max );
+			final double x = ( double ) i / ( double ) scale;
+			lut[ i ] = x < max ? lanczos( x, max ) : 0;
 		}
 		return lut;
 	}
 
-	final protected void resetKernel()
-	{
-		for ( int d = n - 1; d >= 0; --d )
-		{
-			final long p = target.getLongPosition( d );
-			max[ d ] = p + size[ d ];
-			products[ d ] = lookUpLanczos( position[ d ] - p ) * products[ d + 1 ];
-		}
-	}
-
-	final protected void accumulate( final int d )
-	{
-		for ( int e = d; e >= 0; --e )
-			products[ e ] = lookUpLanczos( position[ e ] - target.getLongPosition( e ) ) * products[ e + 1 ];
-	}
-
 	@Override
 	public T get()
 	{
-		double convolved = 0;
-
-		resetKernel();
-
-		boolean proceed = true;
+		// the target is at the first tap of the neighborhood
+		for ( int d = 0; d < n; ++d )
+		{
+			final double x = position[ d ] - target.getLongPosition( d );
+			final double[] w = weights[ d ];
+			for ( int i = 0; i < size; ++i )
+				w[ i ] = lookUpLanczos( x - i );
+		}
 
-		A: while ( proceed )
+		// read the neighborhood line by line and reduce along dimension 0
+		final double[] w0 = weights[ 0 ];
+		int line = 0;
+		while ( true )
 		{
-			convolved += target.get().getRealDouble() * products[ 0 ];
+			double sum = 0;
+			for ( int i = 0; i < size; ++i )
+			{
+				sum += w0[ i ] * target.get().getRealDouble();
+				target.fwd( 0 );
+			}
+			target.move( -size, 0 );
+			lineSums[ line++ ] = sum;
 
-			for ( int d = 0; d < n; ++d )
+			int d = 1;
+			for ( ; d < n; ++d )
 			{
-				target.fwd( d );
-				final long p = target.getLongPosition( d );
-				if ( p < max[ d ] )
+				if ( ++tap[ d ] < size )
 				{
-					products[ d ] = lookUpLanczos( position[ d ] - p ) * products[ ++d ];
-					continue A;
+					target.fwd( d );
+					break;
 				}
-				target.move( -size[ d ], d );
-				accumulate( d );
+				tap[ d ] = 0;
+				target.move( 1 - size, d );
 			}
-			proceed = false;
+			if ( d == n )
+				break;
 		}
 
+		// reduce the line sums along the remaining dimensions
+		int count = lineSums.length;
+		for ( int d = 1; d < n; ++d )
+		{
+			final double[] w = weights[ d ];
+			count /= size;
+			for ( int j = 0; j < count; ++j )
+			{
+				double sum = 0;
+				final int o = j * size;
+				for ( int i = 0; i < size; ++i )
+					sum += w[ i ] * lineSums[ o + i ];
+				lineSums[ j ] = sum;
+			}
+		}
+		double convolved = lineSums[ 0 ];
+
 		// do clipping if desired (it should be, except maybe for float or
 		// double input)
 		if ( clip )
@@ -220,19 +277,21 @@ public class LanczosInterpolator< T extends RealType< T > > extends FloorOffset<
 	{
 		final double y = x < 0 ? -lutScale * x : lutScale * x;
 		final int yi = ( int ) y;
+		if ( yi >= lut.length - 1 )
+			return 0;
 		final double d = y - yi;
 		return ( lut[ yi + 1 ] - lut[ yi ] ) * d + lut[ yi ];
 	}
 
 	@Override
-	public Sampler< T > copy()
+	public LanczosInterpolator< T > copy()
 	{
-		return copy();
+		return new LanczosInterpolator< T >( this );
 	}
 
 	@Override
 	public RealRandomAccess< T > copyRealRandomAccess()
 	{
-		return new LanczosInterpolator< T >( this );
+		return copy();
 	}
 }
@@ -0,0 +1,133 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.interpolation.BatchInterpolator;
+import net.imglib2.position.transform.Floor;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * {@link BatchInterpolator} performing multi-linear interpolation, like
+ * {@link NLinearInterpolator}. The corner values are accumulated as
+ * {@code double}, visiting the corners in the same Gray code order.
+ */
+public class NLinearBatchInterpolator implements BatchInterpolator
+{
+	private final RandomAccess< ? extends RealType< ? > > target;
+
+	private final int n;
+
+	/**
+	 * Weights of the <em>2x2x...x2</em> corners, see
+	 * {@link NLinearInterpolator#weights}.
+	 */
+	private final double[] weights;
+
+	public NLinearBatchInterpolator( final RandomAccessible< ? extends RealType< ? > > source )
+	{
+		this( source.randomAccess() );
+	}
+
+	/**
+	 * Create a {@link BatchInterpolator} on the same source as
+	 * {@code interpolator}.
+	 */
+	public NLinearBatchInterpolator( final NLinearInterpolator< ? extends RealType< ? > > interpolator )
+	{
+		this( interpolator.copyTarget() );
+	}
+
+	private NLinearBatchInterpolator( final RandomAccess< ? extends RealType< ? > > target )
+	{
+		this.target = target;
+		this.n = target.numDimensions();
+		this.weights = new double[ 1 << n ];
+	}
+
+	@Override
+	public void interpolate( final double[] positions, final int offset, final int stride, final double[] values, final int valuesOffset, final int count )
+	{
+		for ( int i = 0; i < count; ++i )
+			values[ valuesOffset + i ] = interpolate( positions, offset + i * stride );
+	}
+
+	@Override
+	public void interpolate( final double[][] positions, final double[] values )
+	{
+		for ( int i = 0; i < positions.length; ++i )
+			values[ i ] = interpolate( positions[ i ], 0 );
+	}
+
+	/**
+	 * Interpolate at the point with coordinates starting at
+	 * {@code positions[ o ]}.
+	 */
+	private double interpolate( final double[] positions, final int o )
+	{
+		final int numCorners = weights.length;
+		weights[ 0 ] = 1.0d;
+		for ( int d = n - 1; d >= 0; --d )
+		{
+			final double x = positions[ o + d ];
+			final long f = Floor.floor( x );
+			target.setPosition( f, d );
+			final double w = x - f;
+			final double wInv = 1.0d - w;
+			final int wInvIndexIncrement = 1 << d;
+			final int baseIndexIncrement = wInvIndexIncrement * 2;
+			for ( int baseIndex = 0; baseIndex < numCorners; baseIndex += baseIndexIncrement )
+			{
+				weights[ baseIndex + wInvIndexIncrement ] = weights[ baseIndex ] * w;
+				weights[ baseIndex ] *= wInv;
+			}
+		}
+
+		double sum = weights[ 0 ] * target.get().getRealDouble();
+		int code = 0;
+		for ( int c = 1; c < numCorners; ++c )
+		{
+			final int d = Integer.numberOfTrailingZeros( c );
+			code ^= 1 << d;
+			if ( ( code & ( 1 << d ) ) != 0 )
+				target.fwd( d );
+			else
+				target.bck( d );
+			sum += weights[ code ] * target.get().getRealDouble();
+		}
+		return sum;
+	}
+}
@@ -208,6 +208,15 @@ public class NLinearInterpolator< T extends NumericType< T > > extends Floor< Ra
 		return accumulator;
 	}
 
+	/**
+	 * @return a copy of the {@link RandomAccess} on the source, for
+	 *         {@link NLinearBatchInterpolator}.
+	 */
+	RandomAccess< T > copyTarget()
+	{
+		return target.copyRandomAccess();
+	}
+
 	@Override
 	public NLinearInterpolator< T > copy()
 	{
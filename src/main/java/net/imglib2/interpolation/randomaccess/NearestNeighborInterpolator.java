@@ -81,6 +81,15 @@ public class NearestNeighborInterpolator< T > extends Round< RandomAccess< T > >
 		return target.get();
 	}
 
+	/**
+	 * @return a copy of the {@link RandomAccess} on the source, for
+	 *         {@link NearestNeighborBatchInterpolator}.
+	 */
+	RandomAccess< T > copyTarget()
+	{
+		return target.copyRandomAccess();
+	}
+
 	@Override
 	public NearestNeighborInterpolator< T > copy()
 	{
@@ -0,0 +1,369 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.loops;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.cell.CellTraversal;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+/**
+ * Runs a task on every cell of a cell-gridded image in parallel, e.g.
+ *
+ * <pre>
+ * {@code
+ * CellLoop.cells( img ).forEachCell( ( interval, data ) -> {
+ *     final int[] values = data.getCurrentStorageArray();
+ *     for ( int i = 0; i < values.length; ++i )
+ *         values[ i ] = values[ i ] > threshold ? 1 : 0;
+ * } );
+ * }
+ * </pre>
+ * <p>
+ * The task receives the interval covered by the cell and the cell data: for
+ * {@link #cells(AbstractCellImg)} the storage of the {@link Cell}, for
+ * {@link #blocks(RandomAccessibleInterval, int...)} a view of the block. The
+ * task is called concurrently for different cells and must therefore be
+ * thread-safe.
+ * </p>
+ * <p>
+ * A fixed number of workers is started on an {@link Executor}, by default the
+ * {@link ForkJoinPool#commonPool() common pool}. Each worker repeatedly takes
+ * the next unprocessed cell, so cells that take longer than others are
+ * balanced automatically. Cells of an {@link AbstractCellImg} are handed out
+ * in the order of its {@link CellTraversal}.
+ * </p>
+ * <p>
+ * {@link #forEachCell(CellTask)} blocks until all cells are done.
+ * {@link #submit(CellTask)} returns immediately with a
+ * {@link CompletableFuture}. Cancelling that future stops the workers after
+ * the cells they are currently processing.
+ * </p>
+ *
+ * @param <C>
+ *            cell data passed to the task
+ */
+public class CellLoop< C >
+{
+	/**
+	 * A task on a single cell.
+	 */
+	@FunctionalInterface
+	public interface CellTask< C >
+	{
+		/**
+		 * @param cellInterval
+		 *            the interval covered by the cell.
+		 * @param cell
+		 *            the cell data.
+		 */
+		void run( Interval cellInterval, C cell );
+	}
+
+	/**
+	 * Receives progress updates. It is called from the worker threads, after
+	 * each completed cell.
+	 */
+	@FunctionalInterface
+	public interface ProgressListener
+	{
+		void cellsCompleted( long completed, long total );
+	}
+
+	/**
+	 * The cells to loop over.
+	 */
+	private interface CellSource< C >
+	{
+		long numCells();
+
+		/**
+		 * @return a new, not thread-safe, accessor to the cells.
+		 */
+		CellAccessor< C > accessor();
+	}
+
+	private interface CellAccessor< C >
+	{
+		/**
+		 * Run {@code task} on the {@code i}th cell of the source.
+		 */
+		void run( long i, CellTask< ? super C > task );
+	}
+
+	private final CellSource< C > source;
+
+	private Executor executor = ForkJoinPool.commonPool();
+
+	private int parallelism = ForkJoinPool.commonPool().getParallelism();
+
+	private ProgressListener progress = null;
+
+	private CellLoop( final CellSource< C > source )
+	{
+		this.source = source;
+	}
+
+	/**
+	 * Loop over the cells of {@code img}, passing the storage of each
+	 * {@link Cell} to the task.
+	 */
+	public static < A, C extends Cell< A > > CellLoop< A > cells( final AbstractCellImg< ?, A, C, ? > img )
+	{
+		final CellTraversal traversal = img.getCellTraversal();
+		final long[] gridDimensions = img.getCellGrid().getGridDimensions();
+		final int n = img.numDimensions();
+		return new CellLoop<>( new CellSource< A >()
+		{
+			@Override
+			public long numCells()
+			{
+				return traversal.numCells();
+			}
+
+			@Override
+			public CellAccessor< A > accessor()
+			{
+				final RandomAccess< C > cellAccess = img.getCells().randomAccess();
+				final long[] cellGridPosition = new long[ n ];
+				final long[] min = new long[ n ];
+				final long[] max = new long[ n ];
+				return ( i, task ) -> {
+					IntervalIndexer.indexToPosition( traversal.cellIndex( i ), gridDimensions, cellGridPosition );
+					cellAccess.setPosition( cellGridPosition );
+					final C cell = cellAccess.get();
+					for ( int d = 0; d < n; ++d )
+					{
+						min[ d ] = cell.min( d );
+						max[ d ] = min[ d ] + cell.dimension( d ) - 1;
+					}
+					task.run( new FinalInterval( min, max ), cell.getData() );
+				};
+			}
+		} );
+	}
+
+	/**
+	 * Loop over the blocks of a grid with the given block size, starting at
+	 * the min of {@code img}. Blocks at the max border may be smaller. The
+	 * task gets a view of each block.
+	 *
+	 * @param blockSize
+	 *            the block size. If it has fewer elements than {@code img} has
+	 *            dimensions, the last element is used for the remaining
+	 *            dimensions.
+	 */
+	public static < T > CellLoop< RandomAccessibleInterval< T > > blocks( final RandomAccessibleInterval< T > img, final int... blockSize )
+	{
+		final int n = img.numDimensions();
+		final int[] cellDimensions = new int[ n ];
+		CellImgFactory.verifyDimensions( blockSize );
+		for ( int d = 0; d < n; ++d )
+			cellDimensions[ d ] = blockSize[ Math.min( d, blockSize.length - 1 ) ];
+		final CellGrid grid = new CellGrid( Intervals.dimensionsAsLongArray( img ), cellDimensions );
+		final long[] gridDimensions = grid.getGridDimensions();
+		final long numCells = Intervals.numElements( gridDimensions );
+		return new CellLoop<>( new CellSource< RandomAccessibleInterval< T > >()
+		{
+			@Override
+			public long numCells()
+			{
+				return numCells;
+			}
+
+			@Override
+			public CellAccessor< RandomAccessibleInterval< T > > accessor()
+			{
+				final long[] cellGridPosition = new long[ n ];
+				final long[] min = new long[ n ];
+				final int[] dimensions = new int[ n ];
+				final long[] max = new long[ n ];
+				return ( i, task ) -> {
+					IntervalIndexer.indexToPosition( i, gridDimensions, cellGridPosition );
+					grid.getCellDimensions( cellGridPosition, min, dimensions );
+					for ( int d = 0; d < n; ++d )
+					{
+						min[ d ] += img.min( d );
+						max[ d ] = min[ d ] + dimensions[ d ] - 1;
+					}
+					final FinalInterval interval = new FinalInterval( min, max );
+					task.run( interval, Views.interval( img, interval ) );
+				};
+			}
+		} );
+	}
+
+	/**
+	 * Run all cells in the current thread.
+	 *
+	 * @return this
+	 */
+	public CellLoop< C > singleThreaded()
+	{
+		return executor( Runnable::run, 1 );
+	}
+
+	/**
+	 * Run the cells in the given {@link ForkJoinPool}, with one worker per
+	 * thread of the pool.
+	 *
+	 * @return this
+	 */
+	public CellLoop< C > multiThreaded( final ForkJoinPool pool )
+	{
+		return executor( pool, pool.getParallelism() );
+	}
+
+	/**
+	 * Run the cells on the given {@link Executor}, for example an
+	 * {@link java.util.concurrent.ExecutorService ExecutorService} or an
+	 * executor that starts a new thread per task.
+	 *
+	 * @param parallelism
+	 *            the number of workers submitted to the executor.
+	 * @return this
+	 */
+	public CellLoop< C > executor( final Executor executor, final int parallelism )
+	{
+		if ( parallelism < 1 )
+			throw new IllegalArgumentException( "parallelism must be at least 1, but is " + parallelism + "." );
+		this.executor = executor;
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * Report the number of completed cells to {@code listener}.
+	 *
+	 * @return this
+	 */
+	public CellLoop< C > progress( final ProgressListener listener )
+	{
+		this.progress = listener;
+		return this;
+	}
+
+	/**
+	 * Run {@code task} on every cell and wait until all cells are done.
+	 * Exceptions thrown by the task are rethrown.
+	 */
+	public void forEachCell( final CellTask< ? super C > task )
+	{
+		try
+		{
+			submit( task ).join();
+		}
+		catch ( final CompletionException e )
+		{
+			final Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException )
+				throw ( RuntimeException ) cause;
+			if ( cause instanceof Error )
+				throw ( Error ) cause;
+			throw e;
+		}
+	}
+
+	/**
+	 * Start running {@code task} on every cell.
+	 *
+	 * @return a future that completes when all cells are done, or
+	 *         exceptionally with the first exception thrown by the task.
+	 *         Cancelling it stops the remaining cells from being processed.
+	 */
+	public CompletableFuture< Void > submit( final CellTask< ? super C > task )
+	{
+		final CompletableFuture< Void > future = new CompletableFuture<>();
+		final long numCells = source.numCells();
+		if ( numCells == 0 )
+		{
+			future.complete( null );
+			return future;
+		}
+
+		final AtomicLong nextCell = new AtomicLong();
+		final AtomicLong completed = new AtomicLong();
+		final int numWorkers = ( int ) Math.min( parallelism, numCells );
+		final AtomicInteger runningWorkers = new AtomicInteger( numWorkers );
+		final Runnable worker = () -> {
+			try
+			{
+				final CellAccessor< C > accessor = source.accessor();
+				long i;
+				while ( !future.isDone() && ( i = nextCell.getAndIncrement() ) < numCells )
+				{
+					accessor.run( i, task );
+					final long done = completed.incrementAndGet();
+					if ( progress != null )
+						progress.cellsCompleted( done, numCells );
+				}
+			}
+			catch ( final Throwable t )
+			{
+				future.completeExceptionally( t );
+			}
+			if ( runningWorkers.decrementAndGet() == 0 )
+				future.complete( null );
+		};
+		for ( int w = 0; w < numWorkers && !future.isDone(); ++w )
+		{
+			try
+			{
+				executor.execute( worker );
+			}
+			catch ( final RejectedExecutionException e )
+			{
+				future.completeExceptionally( e );
+			}
+		}
+		return future;
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.loops;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates instances of private copies of a class, one copy per key.
+ * <p>
+ * The JIT compiler collects type profiles per class. If a loop is used with
+ * many different pixel types or containers, the call sites in the loop body
+ * become megamorphic and cannot be inlined anymore. Loading the bytecode of
+ * the class again, in a separate {@link ClassLoader} for every key (e.g. the
+ * combination of container and pixel type classes), gives every combination
+ * its own class and therefore its own, monomorphic, profile.
+ * </p>
+ * <p>
+ * The class to copy must be a public top-level class with a public
+ * constructor, and may only use public classes and members of other classes:
+ * the copy lives in a different runtime package. Only the class itself is
+ * copied, not its superclasses, nested classes or lambdas. Instances are
+ * accessed through an interface (or superclass) {@code T} that is shared by
+ * all copies.
+ * </p>
+ * <p>
+ * Copies are never unloaded, so the number of distinct keys should be
+ * bounded, or a maximum number of copies must be given.
+ * </p>
+ *
+ * @param <T>
+ *            interface implemented by the copied class
+ */
+public class ClassCopyProvider< T >
+{
+	private final Class< ? extends T > clazz;
+
+	private final Class< ? >[] signature;
+
+	private final byte[] bytecode;
+
+	private final int maxCopies;
+
+	private final ConcurrentHashMap< Object, Constructor< ? extends T > > constructors = new ConcurrentHashMap<>();
+
+	private final AtomicInteger numCopies = new AtomicInteger();
+
+	/**
+	 * @param clazz
+	 *            class to copy.
+	 * @param signature
+	 *            parameter types of the constructor to use.
+	 */
+	public ClassCopyProvider( final Class< ? extends T > clazz, final Class< ? >... signature )
+	{
+		this( clazz, Integer.MAX_VALUE, signature );
+	}
+
+	/**
+	 * @param clazz
+	 *            class to copy.
+	 * @param maxCopies
+	 *            maximum number of copies to create.
+	 * @param signature
+	 *            parameter types of the constructor to use.
+	 */
+	public ClassCopyProvider( final Class< ? extends T > clazz, final int maxCopies, final Class< ? >... signature )
+	{
+		if ( !Modifier.isPublic( clazz.getModifiers() ) || clazz.getEnclosingClass() != null )
+			throw new IllegalArgumentException( "Class " + clazz.getName() + " must be a public top-level class." );
+		try
+		{
+			clazz.getConstructor( signature );
+		}
+		catch ( final NoSuchMethodException e )
+		{
+			throw new IllegalArgumentException( "Class " + clazz.getName() + " has no public constructor with the given signature.", e );
+		}
+		if ( maxCopies < 0 )
+			throw new IllegalArgumentException( "maxCopies < 0" );
+		this.clazz = clazz;
+		this.maxCopies = maxCopies;
+		this.signature = signature;
+		this.bytecode = readBytecode( clazz );
+	}
+
+	/**
+	 * Create a new instance of the copy of the class for the given key. The
+	 * copy is created the first time a key is used.
+	 *
+	 * @param key
+	 *            keys are compared with {@link Object#equals(Object)}.
+	 * @param parameters
+	 *            constructor parameters.
+	 * @return the new instance, or {@code null} if there is no copy for
+	 *         {@code key} and the maximum number of copies has been reached.
+	 */
+	public T newInstanceForKey( final Object key, final Object... parameters )
+	{
+		final Constructor< ? extends T > constructor = constructors.computeIfAbsent( key, k -> reserveCopy() ? copyConstructor() : null );
+		if ( constructor == null )
+			return null;
+		try
+		{
+			return constructor.newInstance( parameters );
+		}
+		catch ( final InstantiationException | IllegalAccessException | InvocationTargetException e )
+		{
+			throw new RuntimeException( "Failed to instantiate copy of " + clazz.getName() + ".", e );
+		}
+	}
+
+	/**
+	 * @return the number of copies created so far.
+	 */
+	public int numCopies()
+	{
+		return numCopies.get();
+	}
+
+	/**
+	 * Count a new copy, unless the maximum number of copies has been reached.
+	 * Called from within {@link ConcurrentHashMap#computeIfAbsent}, so that
+	 * concurrent callers with different keys cannot exceed the maximum.
+	 */
+	private boolean reserveCopy()
+	{
+		while ( true )
+		{
+			final int n = numCopies.get();
+			if ( n >= maxCopies )
+				return false;
+			if ( numCopies.compareAndSet( n, n + 1 ) )
+				return true;
+		}
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private Constructor< ? extends T > copyConstructor()
+	{
+		try
+		{
+			final Class< ? > copy = new CopyLoader( clazz, bytecode ).loadClass( clazz.getName() );
+			return ( Constructor< ? extends T > ) copy.getConstructor( signature );
+		}
+		catch ( final ClassNotFoundException | NoSuchMethodException e )
+		{
+			numCopies.decrementAndGet();
+			throw new RuntimeException( "Failed to copy " + clazz.getName() + ".", e );
+		}
+	}
+
+	private static byte[] readBytecode( final Class< ? > clazz )
+	{
+		final String resource = clazz.getName().replace( '.', '/' ) + ".class";
+		final ClassLoader loader = clazz.getClassLoader() != null ? clazz.getClassLoader() : ClassLoader.getSystemClassLoader();
+		try (final InputStream in = loader.getResourceAsStream( resource ))
+		{
+			if ( in == null )
+				throw new IllegalArgumentException( "Bytecode of " + clazz.getName() + " is not available." );
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[ 8192 ];
+			int n;
+			while ( ( n = in.read( buffer ) ) > 0 )
+				out.write( buffer, 0, n );
+			return out.toByteArray();
+		}
+		catch ( final IOException e )
+		{
+			throw new RuntimeException( "Failed to read bytecode of " + clazz.getName() + ".", e );
+		}
+	}
+
+	/**
+	 * Defines the copied class from its bytecode, and delegates everything
+	 * else to the loader of the original class.
+	 */
+	private static class CopyLoader extends ClassLoader
+	{
+		private final String name;
+
+		private final byte[] bytecode;
+
+		CopyLoader( final Class< ? > clazz, final byte[] bytecode )
+		{
+			super( clazz.getClassLoader() );
+			this.name = clazz.getName();
+			this.bytecode = bytecode;
+		}
+
+		@Override
+		protected Class< ? > loadClass( final String className, final boolean resolve ) throws ClassNotFoundException
+		{
+			if ( !className.equals( name ) )
+				return super.loadClass( className, resolve );
+			synchronized ( getClassLoadingLock( className ) )
+			{
+				Class< ? > c = findLoadedClass( className );
+				if ( c == null )
+					c = defineClass( className, bytecode, 0, bytecode.length );
+				if ( resolve )
+					resolveClass( c );
+				return c;
+			}
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.loops;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.util.Intervals;
+
+/**
+ * Runs an action for every line along one dimension of an {@link Interval}.
+ * The lines are partitioned into chunks which are processed in parallel in a
+ * {@link ForkJoinPool}. Chunks are split in halves recursively, down to a
+ * grain of lines that gives every thread of the pool a few chunks.
+ */
+public final class LineChunks
+{
+	/**
+	 * Number of chunks per thread of the pool, to balance the load if some
+	 * chunks take longer than others.
+	 */
+	static final int CHUNKS_PER_THREAD = 4;
+
+	private LineChunks()
+	{}
+
+	/**
+	 * Call a line action with the start position of every line along
+	 * dimension {@code d} of {@code interval}. For every chunk of lines, a new
+	 * line action is obtained from {@code chunkAction}, so that it can hold
+	 * state for the chunk, e.g. {@link RandomAccess}es and buffers. The
+	 * position passed to the line action is reused for the next line, and
+	 * must not be modified.
+	 *
+	 * @param pool
+	 *            the chunks are processed in parallel in this pool, or in the
+	 *            current thread if {@code pool} is {@code null}.
+	 */
+	public static void forEachLine( final Interval interval, final int d, final ForkJoinPool pool, final Supplier< ? extends Consumer< long[] > > chunkAction )
+	{
+		final long numElements = Intervals.numElements( interval );
+		if ( numElements == 0 )
+			return;
+		final long numLines = numElements / interval.dimension( d );
+		if ( pool == null )
+			runChunk( interval, d, chunkAction, 0, numLines );
+		else
+		{
+			final long grain = Math.max( 1, numLines / ( CHUNKS_PER_THREAD * pool.getParallelism() ) );
+			pool.invoke( new Chunk( interval, d, chunkAction, grain, 0, numLines ) );
+		}
+	}
+
+	/**
+	 * Call a new line action from {@code chunkAction} for the lines with flat
+	 * indices {@code [from, to)} in the grid of lines.
+	 */
+	private static void runChunk( final Interval interval, final int d, final Supplier< ? extends Consumer< long[] > > chunkAction, final long from, final long to )
+	{
+		final int n = interval.numDimensions();
+		final long[] position = new long[ n ];
+		long rest = from;
+		for ( int e = 0; e < n; ++e )
+		{
+			if ( e == d )
+				position[ e ] = interval.min( e );
+			else
+			{
+				position[ e ] = interval.min( e ) + rest % interval.dimension( e );
+				rest /= interval.dimension( e );
+			}
+		}
+
+		final Consumer< long[] > lineAction = chunkAction.get();
+		for ( long line = from; line < to; ++line )
+		{
+			lineAction.accept( position );
+			for ( int e = 0; e < n; ++e )
+			{
+				if ( e == d )
+					continue;
+				if ( ++position[ e ] <= interval.max( e ) )
+					break;
+				position[ e ] = interval.min( e );
+			}
+		}
+	}
+
+	private static final class Chunk extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final Interval interval;
+
+		private final int d;
+
+		private final Supplier< ? extends Consumer< long[] > > chunkAction;
+
+		private final long grain;
+
+		private final long from;
+
+		private final long to;
+
+		Chunk( final Interval interval, final int d, final Supplier< ? extends Consumer< long[] > > chunkAction, final long grain, final long from, final long to )
+		{
+			this.interval = interval;
+			this.d = d;
+			this.chunkAction = chunkAction;
+			this.grain = grain;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( to - from > grain )
+			{
+				final long mid = from + ( to - from ) / 2;
+				invokeAll( new Chunk( interval, d, chunkAction, grain, from, mid ), new Chunk( interval, d, chunkAction, grain, mid, to ) );
+				return;
+			}
+			runChunk( interval, d, chunkAction, from, to );
+		}
+	}
+}
@@ -0,0 +1,342 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.loops;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Util;
+
+/**
+ * Pixel-wise loops over several {@link RandomAccessibleInterval}s of equal
+ * dimensions, e.g.
+ *
+ * <pre>
+ * {@code
+ * LoopBuilder.setImages( a, b, sum ).forEachPixel( ( x, y, s ) -> s.setReal( x.getRealDouble() + y.getRealDouble() ) );
+ * }
+ * </pre>
+ * <p>
+ * If all images are {@link IterableInterval}s with equal
+ * {@link IterableInterval#iterationOrder() iteration order} (for example
+ * {@code ArrayImg}s with the same dimensions, or {@code CellImg}s with the same
+ * cell grid), the loop uses synchronized cursors. Otherwise, it moves one
+ * {@link RandomAccess} per image along lines in dimension 0. In both cases the
+ * pixels (or lines) are partitioned into chunks which are processed in
+ * parallel in a {@link ForkJoinPool}, by default the
+ * {@link ForkJoinPool#commonPool() common pool}. The action must therefore be
+ * thread-safe, or {@link #singleThreaded()} must be used.
+ * </p>
+ * <p>
+ * Pixels in different images correspond if they have the same position
+ * relative to the min of their image.
+ * </p>
+ *
+ * @param <T>
+ *            type of the per-pixel action
+ */
+public class LoopBuilder< T >
+{
+	/**
+	 * A per-pixel action on three images.
+	 */
+	@FunctionalInterface
+	public interface TriConsumer< A, B, C >
+	{
+		void accept( A a, B b, C c );
+	}
+
+	/**
+	 * The innermost loops, calling the action with the current samples of the
+	 * images. See {@link PixelLoops}.
+	 */
+	public interface PixelLoop
+	{
+		/**
+		 * Call {@code action} {@code count} times, moving all cursors forward
+		 * before each call.
+		 */
+		void runCursors( Object action, Cursor< ? >[] cursors, long count );
+
+		/**
+		 * Call {@code action} for {@code length} pixels along dimension 0,
+		 * starting at the current positions of the accesses.
+		 */
+		void runLine( Object action, RandomAccess< ? >[] accesses, long length );
+	}
+
+	private static final PixelLoop DEFAULT_LOOP = new PixelLoops();
+
+	/**
+	 * Maximum number of copies of {@link PixelLoops} for {@link #specialized()}
+	 * loops. Further combinations use the shared loop.
+	 */
+	static final int MAX_LOOP_COPIES = 64;
+
+	private static final ClassCopyProvider< PixelLoop > LOOP_COPIES = new ClassCopyProvider<>( PixelLoops.class, MAX_LOOP_COPIES );
+
+	private final RandomAccessibleInterval< ? >[] images;
+
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	private boolean specialized = false;
+
+	private LoopBuilder( final RandomAccessibleInterval< ? >... images )
+	{
+		final Interval first = images[ 0 ];
+		for ( final RandomAccessibleInterval< ? > image : images )
+			if ( !Intervals.equalDimensions( first, image ) )
+				throw new IllegalArgumentException( "LoopBuilder: all images must have the same dimensions, but found "
+						+ Arrays.toString( Intervals.dimensionsAsLongArray( first ) ) + " and "
+						+ Arrays.toString( Intervals.dimensionsAsLongArray( image ) ) + "." );
+		this.images = images;
+	}
+
+	public static < A > LoopBuilder< Consumer< A > > setImages( final RandomAccessibleInterval< A > a )
+	{
+		return new LoopBuilder<>( a );
+	}
+
+	public static < A, B > LoopBuilder< BiConsumer< A, B > > setImages( final RandomAccessibleInterval< A > a, final RandomAccessibleInterval< B > b )
+	{
+		return new LoopBuilder<>( a, b );
+	}
+
+	public static < A, B, C > LoopBuilder< TriConsumer< A, B, C > > setImages( final RandomAccessibleInterval< A > a, final RandomAccessibleInterval< B > b, final RandomAccessibleInterval< C > c )
+	{
+		return new LoopBuilder<>( a, b, c );
+	}
+
+	/**
+	 * Run the loop in the current thread only.
+	 *
+	 * @return this
+	 */
+	public LoopBuilder< T > singleThreaded()
+	{
+		this.pool = null;
+		return this;
+	}
+
+	/**
+	 * Run the loop in the given {@link ForkJoinPool}.
+	 *
+	 * @return this
+	 */
+	public LoopBuilder< T > multiThreaded( final ForkJoinPool pool )
+	{
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Run the innermost loop in a private copy of {@link PixelLoops} for every
+	 * combination of action class, image classes and pixel type classes (see
+	 * {@link ClassCopyProvider}). This keeps the calls from the loop to the
+	 * action, cursors and samplers monomorphic, when the same JVM runs loops
+	 * with many different actions, containers and pixel types. Calls made
+	 * inside the cursors and samplers (e.g. to the accesses of the pixel type)
+	 * are not copied and may still be megamorphic. At most
+	 * {@value #MAX_LOOP_COPIES} copies are created, further combinations use
+	 * the shared loop.
+	 *
+	 * @return this
+	 */
+	public LoopBuilder< T > specialized()
+	{
+		this.specialized = true;
+		return this;
+	}
+
+	/**
+	 * Call {@code action} for every pixel, with the corresponding samples of
+	 * all images as arguments.
+	 *
+	 * @param action
+	 *            per-pixel action.
+	 */
+	public void forEachPixel( final T action )
+	{
+		if ( Intervals.numElements( images[ 0 ] ) == 0 )
+			return;
+		final boolean cursors = useCursors();
+		final PixelLoop loop = specialized ? specializedLoop( action, cursors ) : DEFAULT_LOOP;
+		if ( cursors )
+		{
+			final RecursiveAction task = new CursorChunk( loop, action, 0, Intervals.numElements( images[ 0 ] ) );
+			if ( pool == null )
+				task.invoke();
+			else
+				pool.invoke( task );
+		}
+		else
+			LineChunks.forEachLine( new FinalInterval( Intervals.dimensionsAsLongArray( images[ 0 ] ) ), 0, pool, () -> lineAction( loop, action ) );
+	}
+
+	/**
+	 * The copy of {@link PixelLoops} for the action, image and pixel type
+	 * classes. The key holds class names rather than classes, so that the
+	 * copies do not keep the class loaders of the actions and images alive.
+	 */
+	private PixelLoop specializedLoop( final Object action, final boolean cursors )
+	{
+		final List< String > key = new ArrayList<>();
+		key.add( action.getClass().getName() );
+		for ( final RandomAccessibleInterval< ? > image : images )
+		{
+			key.add( image.getClass().getName() );
+			key.add( ( cursors
+					? ( ( IterableInterval< ? > ) image ).firstElement()
+					: Util.getTypeFromInterval( image ) ).getClass().getName() );
+		}
+		final PixelLoop loop = LOOP_COPIES.newInstanceForKey( key );
+		return loop != null ? loop : DEFAULT_LOOP;
+	}
+
+	/**
+	 * @return the number of copies of {@link PixelLoops} created for
+	 *         {@link #specialized()} loops.
+	 */
+	static int numLoopCopies()
+	{
+		return LOOP_COPIES.numCopies();
+	}
+
+	/**
+	 * Whether all images are {@link IterableInterval}s with the same
+	 * iteration order.
+	 */
+	private boolean useCursors()
+	{
+		for ( final RandomAccessibleInterval< ? > image : images )
+			if ( !( image instanceof IterableInterval ) )
+				return false;
+		final Object order = ( ( IterableInterval< ? > ) images[ 0 ] ).iterationOrder();
+		for ( final RandomAccessibleInterval< ? > image : images )
+			if ( !( ( IterableInterval< ? > ) image ).iterationOrder().equals( order ) )
+				return false;
+		return true;
+	}
+
+	/**
+	 * Smallest chunk size worth splitting off, for a total of {@code size}
+	 * units of work.
+	 */
+	private long grain( final long size )
+	{
+		final int parallelism = pool == null ? 1 : pool.getParallelism();
+		return Math.max( 1, size / ( LineChunks.CHUNKS_PER_THREAD * parallelism ) );
+	}
+
+	/**
+	 * Processes the pixels with iteration indices {@code [from, to)} using
+	 * synchronized cursors.
+	 */
+	private class CursorChunk extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final PixelLoop loop;
+
+		private final T action;
+
+		private final long from;
+
+		private final long to;
+
+		CursorChunk( final PixelLoop loop, final T action, final long from, final long to )
+		{
+			this.loop = loop;
+			this.action = action;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( pool != null && to - from > grain( Intervals.numElements( images[ 0 ] ) ) )
+			{
+				final long mid = from + ( to - from ) / 2;
+				invokeAll( new CursorChunk( loop, action, from, mid ), new CursorChunk( loop, action, mid, to ) );
+				return;
+			}
+
+			final Cursor< ? >[] cursors = new Cursor< ? >[ images.length ];
+			for ( int i = 0; i < images.length; ++i )
+			{
+				cursors[ i ] = ( ( IterableInterval< ? > ) images[ i ] ).cursor();
+				if ( from > 0 )
+					cursors[ i ].jumpFwd( from );
+			}
+			loop.runCursors( action, cursors, to - from );
+		}
+	}
+
+	/**
+	 * Moves one {@link RandomAccess} per image to the start of every line
+	 * (along dimension 0) it is called with, given relative to the image min,
+	 * and runs the loop along the line.
+	 */
+	private Consumer< long[] > lineAction( final PixelLoop loop, final T action )
+	{
+		final int n = images[ 0 ].numDimensions();
+		final long lineLength = images[ 0 ].dimension( 0 );
+		final RandomAccess< ? >[] accesses = new RandomAccess< ? >[ images.length ];
+		for ( int i = 0; i < images.length; ++i )
+			accesses[ i ] = images[ i ].randomAccess();
+		return linePosition -> {
+			for ( int i = 0; i < images.length; ++i )
+			{
+				final RandomAccess< ? > access = accesses[ i ];
+				for ( int d = 0; d < n; ++d )
+					access.setPosition( images[ i ].min( d ) + linePosition[ d ], d );
+			}
+			loop.runLine( action, accesses, lineLength );
+		};
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.loops;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.loops.LoopBuilder.TriConsumer;
+
+/**
+ * The innermost loops of {@link LoopBuilder}. This is a public top-level class
+ * so that {@link LoopBuilder#specialized()} can create private copies of it
+ * with {@link ClassCopyProvider}.
+ */
+public class PixelLoops implements LoopBuilder.PixelLoop
+{
+	@Override
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public void runCursors( final Object action, final Cursor< ? >[] cursors, final long count )
+	{
+		switch ( cursors.length )
+		{
+		case 1:
+		{
+			final Consumer a = ( Consumer ) action;
+			final Cursor< ? > c0 = cursors[ 0 ];
+			for ( long i = 0; i < count; ++i )
+			{
+				c0.fwd();
+				a.accept( c0.get() );
+			}
+			return;
+		}
+		case 2:
+		{
+			final BiConsumer a = ( BiConsumer ) action;
+			final Cursor< ? > c0 = cursors[ 0 ];
+			final Cursor< ? > c1 = cursors[ 1 ];
+			for ( long i = 0; i < count; ++i )
+			{
+				c0.fwd();
+				c1.fwd();
+				a.accept( c0.get(), c1.get() );
+			}
+			return;
+		}
+		case 3:
+		{
+			final TriConsumer a = ( TriConsumer ) action;
+			final Cursor< ? > c0 = cursors[ 0 ];
+			final Cursor< ? > c1 = cursors[ 1 ];
+			final Cursor< ? > c2 = cursors[ 2 ];
+			for ( long i = 0; i < count; ++i )
+			{
+				c0.fwd();
+				c1.fwd();
+				c2.fwd();
+				a.accept( c0.get(), c1.get(), c2.get() );
+			}
+			return;
+		}
+		default:
+			throw new IllegalArgumentException( "Unsupported number of images: " + cursors.length );
+		}
+	}
+
+	@Override
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	public void runLine( final Object action, final RandomAccess< ? >[] accesses, final long length )
+	{
+		switch ( accesses.length )
+		{
+		case 1:
+		{
+			final Consumer a = ( Consumer ) action;
+			final RandomAccess< ? > r0 = accesses[ 0 ];
+			a.accept( r0.get() );
+			for ( long x = 1; x < length; ++x )
+			{
+				r0.fwd( 0 );
+				a.accept( r0.get() );
+			}
+			return;
+		}
+		case 2:
+		{
+			final BiConsumer a = ( BiConsumer ) action;
+			final RandomAccess< ? > r0 = accesses[ 0 ];
+			final RandomAccess< ? > r1 = accesses[ 1 ];
+			a.accept( r0.get(), r1.get() );
+			for ( long x = 1; x < length; ++x )
+			{
+				r0.fwd( 0 );
+				r1.fwd( 0 );
+				a.accept( r0.get(), r1.get() );
+			}
+			return;
+		}
+		case 3:
+		{
+			final TriConsumer a = ( TriConsumer ) action;
+			final RandomAccess< ? > r0 = accesses[ 0 ];
+			final RandomAccess< ? > r1 = accesses[ 1 ];
+			final RandomAccess< ? > r2 = accesses[ 2 ];
+			a.accept( r0.get(), r1.get(), r2.get() );
+			for ( long x = 1; x < length; ++x )
+			{
+				r0.fwd( 0 );
+				r1.fwd( 0 );
+				r2.fwd( 0 );
+				a.accept( r0.get(), r1.get(), r2.get() );
+			}
+			return;
+		}
+		default:
+			throw new IllegalArgumentException( "Unsupported number of images: " + accesses.length );
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import net.imglib2.AbstractLocalizable;
+import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
+import net.imglib2.RealRandomAccess;
+
+/**
+ * {@link RandomAccess} on an {@link AffineRandomAccessible}. It keeps the
+ * integer target position and the corresponding real source position, which
+ * is computed by the inverse transform.
+ * <p>
+ * Only {@link #setPosition(long[]) setPosition} applies the full inverse
+ * matrix. {@link #fwd(int)}, {@link #bck(int)} and {@link #move(long, int)}
+ * add the precomputed source increment of the moved dimension, so iterating a
+ * raster costs <em>n</em> additions per step.
+ * </p>
+ */
+public class AffineRandomAccess< T > extends AbstractLocalizable implements RandomAccess< T >
+{
+	private final RealRandomAccess< T > sourceAccess;
+
+	/**
+	 * Maps target to source coordinates.
+	 */
+	private final AffineTransform targetToSource;
+
+	/**
+	 * {@code increments[ d ]} is the source increment for a step in target
+	 * dimension {@code d}.
+	 */
+	private final double[][] increments;
+
+	private final double[] sourcePosition;
+
+	public AffineRandomAccess( final RealRandomAccess< T > sourceAccess, final AffineTransform targetToSource )
+	{
+		super( targetToSource.numDimensions() );
+		this.sourceAccess = sourceAccess;
+		this.targetToSource = targetToSource;
+		increments = new double[ n ][ n ];
+		for ( int d = 0; d < n; ++d )
+			targetToSource.d( d, increments[ d ] );
+		sourcePosition = new double[ n ];
+		targetToSource.apply( new double[ n ], sourcePosition );
+	}
+
+	protected AffineRandomAccess( final AffineRandomAccess< T > access )
+	{
+		super( access.position.clone() );
+		this.sourceAccess = access.sourceAccess.copyRealRandomAccess();
+		this.targetToSource = access.targetToSource;
+		this.increments = access.increments;
+		this.sourcePosition = access.sourcePosition.clone();
+	}
+
+	/**
+	 * Get the current position in source coordinates.
+	 */
+	public void localizeSource( final double[] position )
+	{
+		System.arraycopy( sourcePosition, 0, position, 0, n );
+	}
+
+	@Override
+	public T get()
+	{
+		sourceAccess.setPosition( sourcePosition );
+		return sourceAccess.get();
+	}
+
+	@Override
+	public void fwd( final int d )
+	{
+		++position[ d ];
+		final double[] increment = increments[ d ];
+		for ( int k = 0; k < n; ++k )
+			sourcePosition[ k ] += increment[ k ];
+	}
+
+	@Override
+	public void bck( final int d )
+	{
+		--position[ d ];
+		final double[] increment = increments[ d ];
+		for ( int k = 0; k < n; ++k )
+			sourcePosition[ k ] -= increment[ k ];
+	}
+
+	@Override
+	public void move( final int distance, final int d )
+	{
+		move( ( long ) distance, d );
+	}
+
+	@Override
+	public void move( final long distance, final int d )
+	{
+		position[ d ] += distance;
+		final double[] increment = increments[ d ];
+		for ( int k = 0; k < n; ++k )
+			sourcePosition[ k ] += distance * increment[ k ];
+	}
+
+	@Override
+	public void move( final Localizable localizable )
+	{
+		for ( int d = 0; d < n; ++d )
+			move( localizable.getLongPosition( d ), d );
+	}
+
+	@Override
+	public void move( final int[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+			move( ( long ) distance[ d ], d );
+	}
+
+	@Override
+	public void move( final long[] distance )
+	{
+		for ( int d = 0; d < n; ++d )
+			move( distance[ d ], d );
+	}
+
+	@Override
+	public void setPosition( final Localizable localizable )
+	{
+		localizable.localize( position );
+		updateSourcePosition();
+	}
+
+	@Override
+	public void setPosition( final int[] pos )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = pos[ d ];
+		updateSourcePosition();
+	}
+
+	@Override
+	public void setPosition( final long[] pos )
+	{
+		for ( int d = 0; d < n; ++d )
+			position[ d ] = pos[ d ];
+		updateSourcePosition();
+	}
+
+	@Override
+	public void setPosition( final int pos, final int d )
+	{
+		move( pos - position[ d ], d );
+	}
+
+	@Override
+	public void setPosition( final long pos, final int d )
+	{
+		move( pos - position[ d ], d );
+	}
+
+	private void updateSourcePosition()
+	{
+		final double[] target = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+			target[ d ] = position[ d ];
+		targetToSource.apply( target, sourcePosition );
+	}
+
+	@Override
+	public AffineRandomAccess< T > copy()
+	{
+		return new AffineRandomAccess<>( this );
+	}
+
+	@Override
+	public AffineRandomAccess< T > copyRandomAccess()
+	{
+		return copy();
+	}
+}
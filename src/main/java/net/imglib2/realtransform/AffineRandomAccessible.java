@@ -0,0 +1,102 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import net.imglib2.AbstractEuclideanSpace;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.View;
+
+/**
+ * A {@link RandomAccessible} that rasterizes a {@link RealRandomAccessible}
+ * after transforming it by an {@link AffineTransform}. The value at integer
+ * target position <em>x</em> is the source value at the real position
+ * <em>T<sup>-1</sup>x</em>.
+ *
+ * @see AffineRandomAccess
+ * @see RealViews#affine(RealRandomAccessible, AffineTransform)
+ */
+public class AffineRandomAccessible< T > extends AbstractEuclideanSpace implements RandomAccessible< T >, View
+{
+	protected final RealRandomAccessible< T > source;
+
+	protected final AffineTransform transform;
+
+	/**
+	 * Inverse of {@link #transform}, mapping target to source coordinates.
+	 */
+	protected final AffineTransform targetToSource;
+
+	/**
+	 * @param transform
+	 *            maps source to target coordinates. It is copied, so later
+	 *            changes do not affect this view.
+	 */
+	public AffineRandomAccessible( final RealRandomAccessible< T > source, final AffineTransform transform )
+	{
+		super( source.numDimensions() );
+		if ( transform.numDimensions() != n )
+			throw new IllegalArgumentException( "Transform has " + transform.numDimensions() + " dimensions, but source has " + n + "." );
+		this.source = source;
+		this.transform = transform.copy();
+		this.targetToSource = transform.inverse();
+	}
+
+	public RealRandomAccessible< T > getSource()
+	{
+		return source;
+	}
+
+	/**
+	 * @return a copy of the transform from source to target coordinates.
+	 */
+	public AffineTransform getTransform()
+	{
+		return transform.copy();
+	}
+
+	@Override
+	public AffineRandomAccess< T > randomAccess()
+	{
+		return new AffineRandomAccess<>( source.realRandomAccess(), targetToSource );
+	}
+
+	@Override
+	public AffineRandomAccess< T > randomAccess( final Interval interval )
+	{
+		return randomAccess();
+	}
+}
@@ -0,0 +1,321 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import java.util.Arrays;
+
+import net.imglib2.EuclideanSpace;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+
+/**
+ * An <em>n</em>-dimensional affine transform <em>x' = Ax + t</em>, stored as
+ * an <em>n</em>&times;(<em>n</em>+1) matrix <em>[A|t]</em> in row-major order.
+ * <p>
+ * Besides applying the transform and its inverse, it provides the
+ * per-dimension increments {@link #d(int, double[])}: moving the source
+ * position by one in dimension <em>d</em> moves the target position by column
+ * <em>d</em> of <em>A</em>. {@link AffineRandomAccess} uses this to step
+ * through a raster without a full matrix multiplication per pixel.
+ * </p>
+ */
+public class AffineTransform implements EuclideanSpace
+{
+	protected final int n;
+
+	/**
+	 * Row-major <em>n</em>&times;(<em>n</em>+1) matrix.
+	 */
+	protected final double[] a;
+
+	/**
+	 * Cached inverse, or {@code null} if not computed yet.
+	 */
+	private AffineTransform inverse;
+
+	/**
+	 * Create an identity transform.
+	 */
+	public AffineTransform( final int n )
+	{
+		this.n = n;
+		this.a = new double[ n * ( n + 1 ) ];
+		for ( int d = 0; d < n; ++d )
+			a[ d * ( n + 1 ) + d ] = 1;
+	}
+
+	/**
+	 * Create a transform from a row-major <em>n</em>&times;(<em>n</em>+1)
+	 * matrix.
+	 */
+	public AffineTransform( final int n, final double... values )
+	{
+		this( n );
+		set( values );
+	}
+
+	protected AffineTransform( final AffineTransform transform )
+	{
+		this.n = transform.n;
+		this.a = transform.a.clone();
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return n;
+	}
+
+	/**
+	 * Set all matrix entries from a row-major <em>n</em>&times;(<em>n</em>+1)
+	 * matrix.
+	 */
+	public void set( final double... values )
+	{
+		if ( values.length != a.length )
+			throw new IllegalArgumentException( "Expected " + a.length + " values for a " + n + "-dimensional affine transform, but got " + values.length + "." );
+		System.arraycopy( values, 0, a, 0, a.length );
+		inverse = null;
+	}
+
+	/**
+	 * Set the matrix entry in the given row and column. Column <em>n</em> is
+	 * the translation.
+	 */
+	public void set( final double value, final int row, final int column )
+	{
+		a[ row * ( n + 1 ) + column ] = value;
+		inverse = null;
+	}
+
+	/**
+	 * Get the matrix entry in the given row and column. Column <em>n</em> is
+	 * the translation.
+	 */
+	public double get( final int row, final int column )
+	{
+		return a[ row * ( n + 1 ) + column ];
+	}
+
+	/**
+	 * @return a copy of the row-major <em>n</em>&times;(<em>n</em>+1) matrix.
+	 */
+	public double[] getRowPackedCopy()
+	{
+		return a.clone();
+	}
+
+	/**
+	 * Get the increment of the target position when the source position moves
+	 * by one in dimension {@code d}, i.e., column {@code d} of <em>A</em>.
+	 */
+	public void d( final int d, final double[] increment )
+	{
+		for ( int r = 0; r < n; ++r )
+			increment[ r ] = a[ r * ( n + 1 ) + d ];
+	}
+
+	/**
+	 * Add {@code translation} to the translation of this transform.
+	 *
+	 * @return this
+	 */
+	public AffineTransform translate( final double... translation )
+	{
+		for ( int r = 0; r < n; ++r )
+			a[ r * ( n + 1 ) + n ] += translation[ r ];
+		inverse = null;
+		return this;
+	}
+
+	public void apply( final double[] source, final double[] target )
+	{
+		assert source != target;
+		for ( int r = 0; r < n; ++r )
+		{
+			final int row = r * ( n + 1 );
+			double x = a[ row + n ];
+			for ( int c = 0; c < n; ++c )
+				x += a[ row + c ] * source[ c ];
+			target[ r ] = x;
+		}
+	}
+
+	public void apply( final RealLocalizable source, final RealPositionable target )
+	{
+		for ( int r = 0; r < n; ++r )
+		{
+			final int row = r * ( n + 1 );
+			double x = a[ row + n ];
+			for ( int c = 0; c < n; ++c )
+				x += a[ row + c ] * source.getDoublePosition( c );
+			target.setPosition( x, r );
+		}
+	}
+
+	public void applyInverse( final double[] source, final double[] target )
+	{
+		cachedInverse().apply( target, source );
+	}
+
+	/**
+	 * @return a new transform that is the inverse of this one.
+	 * @throws IllegalStateException
+	 *             if the transform is singular.
+	 */
+	public AffineTransform inverse()
+	{
+		return cachedInverse().copy();
+	}
+
+	private AffineTransform cachedInverse()
+	{
+		if ( inverse == null )
+			inverse = new AffineTransform( n, invert( a, n ) );
+		return inverse;
+	}
+
+	/**
+	 * Set this to <em>this</em> &#x2218; {@code transform}, i.e., apply
+	 * {@code transform} first.
+	 *
+	 * @return this
+	 */
+	public AffineTransform concatenate( final AffineTransform transform )
+	{
+		set( multiply( a, transform.a, n ) );
+		return this;
+	}
+
+	/**
+	 * Set this to {@code transform} &#x2218; <em>this</em>, i.e., apply
+	 * {@code transform} last.
+	 *
+	 * @return this
+	 */
+	public AffineTransform preConcatenate( final AffineTransform transform )
+	{
+		set( multiply( transform.a, a, n ) );
+		return this;
+	}
+
+	public AffineTransform copy()
+	{
+		return new AffineTransform( this );
+	}
+
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + Arrays.toString( a );
+	}
+
+	/**
+	 * Multiply two row-major <em>n</em>&times;(<em>n</em>+1) affine matrices.
+	 */
+	private static double[] multiply( final double[] x, final double[] y, final int n )
+	{
+		final int w = n + 1;
+		final double[] xy = new double[ n * w ];
+		for ( int r = 0; r < n; ++r )
+		{
+			for ( int c = 0; c < w; ++c )
+			{
+				double v = c == n ? x[ r * w + n ] : 0;
+				for ( int k = 0; k < n; ++k )
+					v += x[ r * w + k ] * y[ k * w + c ];
+				xy[ r * w + c ] = v;
+			}
+		}
+		return xy;
+	}
+
+	/**
+	 * Invert a row-major <em>n</em>&times;(<em>n</em>+1) affine matrix by
+	 * Gauss-Jordan elimination with partial pivoting.
+	 */
+	private static double[] invert( final double[] m, final int n )
+	{
+		final int w = n + 1;
+
+		// [A | I]
+		final double[][] g = new double[ n ][ 2 * n ];
+		for ( int r = 0; r < n; ++r )
+		{
+			for ( int c = 0; c < n; ++c )
+				g[ r ][ c ] = m[ r * w + c ];
+			g[ r ][ n + r ] = 1;
+		}
+
+		for ( int c = 0; c < n; ++c )
+		{
+			int pivot = c;
+			for ( int r = c + 1; r < n; ++r )
+				if ( Math.abs( g[ r ][ c ] ) > Math.abs( g[ pivot ][ c ] ) )
+					pivot = r;
+			if ( g[ pivot ][ c ] == 0 )
+				throw new IllegalStateException( "Affine transform is not invertible." );
+			final double[] tmp = g[ c ];
+			g[ c ] = g[ pivot ];
+			g[ pivot ] = tmp;
+
+			final double s = 1.0 / g[ c ][ c ];
+			for ( int k = 0; k < 2 * n; ++k )
+				g[ c ][ k ] *= s;
+			for ( int r = 0; r < n; ++r )
+			{
+				if ( r == c || g[ r ][ c ] == 0 )
+					continue;
+				final double f = g[ r ][ c ];
+				for ( int k = 0; k < 2 * n; ++k )
+					g[ r ][ k ] -= f * g[ c ][ k ];
+			}
+		}
+
+		// [A^-1 | -A^-1 t]
+		final double[] inv = new double[ n * w ];
+		for ( int r = 0; r < n; ++r )
+		{
+			double t = 0;
+			for ( int c = 0; c < n; ++c )
+			{
+				inv[ r * w + c ] = g[ r ][ n + c ];
+				t -= g[ r ][ n + c ] * m[ c * w + n ];
+			}
+			inv[ r * w + n ] = t;
+		}
+		return inv;
+	}
+}
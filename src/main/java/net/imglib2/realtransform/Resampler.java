@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import java.util.concurrent.ForkJoinPool;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.interpolation.InterpolatorFactory;
+import net.imglib2.loops.LineChunks;
+import net.imglib2.type.Type;
+import net.imglib2.view.Views;
+
+/**
+ * Renders a transformed {@link RealRandomAccessible} into a target image, e.g.
+ *
+ * <pre>
+ * {@code
+ * Resampler.affine( Views.extendZero( img ), new NLinearInterpolatorFactory<>(), transform ).render( target );
+ * }
+ * </pre>
+ * <p>
+ * The target is processed line by line along dimension 0. At the start of
+ * each line the source position is computed by the inverse transform; along
+ * the line it is advanced by the constant per-pixel increment (see
+ * {@link AffineRandomAccess}). The lines are partitioned into chunks (see
+ * {@link LineChunks}) which are rendered in parallel in a
+ * {@link ForkJoinPool}, by default the
+ * {@link ForkJoinPool#commonPool() common pool}. Each chunk uses its own
+ * source access, i.e., its own interpolator.
+ * </p>
+ *
+ * @param <T>
+ *            pixel type of source and target
+ */
+public class Resampler< T extends Type< T > >
+{
+	private final AffineRandomAccessible< T > view;
+
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	private Resampler( final AffineRandomAccessible< T > view )
+	{
+		this.view = view;
+	}
+
+	/**
+	 * Render {@code source} transformed by {@code transform}.
+	 *
+	 * @param transform
+	 *            maps source to target coordinates.
+	 */
+	public static < T extends Type< T > > Resampler< T > affine( final RealRandomAccessible< T > source, final AffineTransform transform )
+	{
+		return new Resampler<>( new AffineRandomAccessible<>( source, transform ) );
+	}
+
+	/**
+	 * Render {@code source}, interpolated by {@code factory} and transformed by
+	 * {@code transform}.
+	 *
+	 * @param transform
+	 *            maps source to target coordinates.
+	 */
+	public static < T extends Type< T > > Resampler< T > affine( final RandomAccessible< T > source, final InterpolatorFactory< T, RandomAccessible< T > > factory, final AffineTransform transform )
+	{
+		return affine( Views.interpolate( source, factory ), transform );
+	}
+
+	/**
+	 * Render in the current thread only.
+	 *
+	 * @return this
+	 */
+	public Resampler< T > singleThreaded()
+	{
+		this.pool = null;
+		return this;
+	}
+
+	/**
+	 * Render in the given {@link ForkJoinPool}.
+	 *
+	 * @return this
+	 */
+	public Resampler< T > multiThreaded( final ForkJoinPool pool )
+	{
+		this.pool = pool;
+		return this;
+	}
+
+	/**
+	 * Set every pixel of {@code target} to the transformed source value at
+	 * its position.
+	 */
+	public void render( final RandomAccessibleInterval< T > target )
+	{
+		if ( target.numDimensions() != view.numDimensions() )
+			throw new IllegalArgumentException( "Target has " + target.numDimensions() + " dimensions, but source has " + view.numDimensions() + "." );
+		LineChunks.forEachLine( target, 0, pool, () -> {
+			final long lineLength = target.dimension( 0 );
+			final AffineRandomAccess< T > sourceAccess = view.randomAccess();
+			final RandomAccess< T > targetAccess = target.randomAccess();
+			return position -> {
+				// full transform once per line, so rounding errors do not accumulate across lines
+				sourceAccess.setPosition( position );
+				targetAccess.setPosition( position );
+				for ( long x = 0; x < lineLength; ++x )
+				{
+					targetAccess.get().set( sourceAccess.get() );
+					sourceAccess.fwd( 0 );
+					targetAccess.fwd( 0 );
+				}
+			};
+		} );
+	}
+}
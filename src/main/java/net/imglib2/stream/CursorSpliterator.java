@@ -0,0 +1,213 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.stream;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.LongUnaryOperator;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+
+/**
+ * {@link Spliterator} over the elements of an {@link IterableInterval},
+ * covering the range {@code [origin, fence)} of iteration indices.
+ * <p>
+ * Every split owns its own {@link Cursor}, obtained by copying the cursor of
+ * the split it was taken from and jumping to its origin. Splitting therefore
+ * relies on {@link Cursor#jumpFwd(long)} being cheap, which is the case for
+ * the cursors of the standard {@code Img} implementations.
+ * </p>
+ * <p>
+ * Split points are aligned to the natural blocks of the underlying container
+ * (planes of a {@code PlanarImg}, cells of a {@code CellImg}, ...) by a
+ * {@code blockStart} function, which maps an iteration index to the
+ * iteration index of the first element of the block containing it. If a
+ * range lies within a single block, it is split at its midpoint instead.
+ * </p>
+ * <p>
+ * Note that, as usual for cursors, the elements handed to the action are
+ * proxies that are reused for every element of a split. They must not be
+ * stored, use {@code copy()} where necessary.
+ * </p>
+ *
+ * @param <T>
+ *            pixel type
+ */
+public class CursorSpliterator< T > implements Spliterator< T >
+{
+	private Cursor< T > cursor;
+
+	/**
+	 * Iteration index of the next element.
+	 */
+	private long index;
+
+	private final long fence;
+
+	private final LongUnaryOperator blockStart;
+
+	/**
+	 * Create a {@link CursorSpliterator} over the iteration indices
+	 * {@code [origin, fence)}.
+	 *
+	 * @param cursor
+	 *            cursor over the elements. Its state is changed and it must
+	 *            not be used otherwise afterwards.
+	 * @param origin
+	 *            iteration index of the first element (inclusive).
+	 * @param fence
+	 *            iteration index of the last element (exclusive).
+	 * @param blockStart
+	 *            maps an iteration index to the iteration index of the first
+	 *            element of the block containing it.
+	 */
+	public CursorSpliterator( final Cursor< T > cursor, final long origin, final long fence, final LongUnaryOperator blockStart )
+	{
+		this.cursor = cursor;
+		this.index = origin;
+		this.fence = fence;
+		this.blockStart = blockStart;
+		cursor.reset();
+		if ( origin > 0 )
+			cursor.jumpFwd( origin );
+	}
+
+	/**
+	 * Create a {@link CursorSpliterator} over all elements of an
+	 * {@link IterableInterval}, which is split at arbitrary iteration indices.
+	 *
+	 * @param iterable
+	 *            the elements.
+	 */
+	public CursorSpliterator( final IterableInterval< T > iterable )
+	{
+		this( iterable.cursor(), 0, iterable.size(), i -> i );
+	}
+
+	/**
+	 * Create a prefix of {@code spliterator}, ending at {@code fence}, that
+	 * takes over its cursor.
+	 */
+	private CursorSpliterator( final CursorSpliterator< T > spliterator, final long fence )
+	{
+		this.cursor = spliterator.cursor;
+		this.index = spliterator.index;
+		this.fence = fence;
+		this.blockStart = spliterator.blockStart;
+	}
+
+	@Override
+	public boolean tryAdvance( final Consumer< ? super T > action )
+	{
+		if ( index < fence )
+		{
+			cursor.fwd();
+			++index;
+			action.accept( cursor.get() );
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void forEachRemaining( final Consumer< ? super T > action )
+	{
+		final Cursor< T > c = cursor;
+		for ( long i = index; i < fence; ++i )
+		{
+			c.fwd();
+			action.accept( c.get() );
+		}
+		index = fence;
+	}
+
+	@Override
+	public Spliterator< T > trySplit()
+	{
+		final long remaining = fence - index;
+		if ( remaining < 2 )
+			return null;
+		final long mid = index + remaining / 2;
+		long split = blockStart.applyAsLong( mid );
+		if ( split <= index )
+		{
+			// try the start of the next block
+			split = nextBlockStart( mid );
+			if ( split >= fence )
+				split = mid;
+		}
+
+		// the prefix takes over our cursor, we continue with a copy
+		final CursorSpliterator< T > prefix = new CursorSpliterator<>( this, split );
+		cursor = cursor.copyCursor();
+		cursor.jumpFwd( split - index );
+		index = split;
+		return prefix;
+	}
+
+	/**
+	 * Find the start of the first block after the block containing
+	 * {@code i}, or {@code fence} if there is none within this range.
+	 */
+	private long nextBlockStart( final long i )
+	{
+		final long start = blockStart.applyAsLong( i );
+		// blocks are contiguous: bisect for the first index of another block
+		long lo = i;
+		long hi = fence;
+		while ( lo + 1 < hi )
+		{
+			final long m = lo + ( hi - lo ) / 2;
+			if ( blockStart.applyAsLong( m ) == start )
+				lo = m;
+			else
+				hi = m;
+		}
+		return hi;
+	}
+
+	@Override
+	public long estimateSize()
+	{
+		return fence - index;
+	}
+
+	@Override
+	public int characteristics()
+	{
+		return ORDERED | SIZED | SUBSIZED | NONNULL;
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.blocks;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.array.BufferArrayImgFactory;
+import net.imglib2.img.cell.BufferCellImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.cell.CompressedCellImg;
+import net.imglib2.img.cell.CompressedCellImgFactory;
+import net.imglib2.img.cell.compress.LZ4StyleCodec;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.complex.ComplexFloatType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.view.Views;
+
+public class PrimitiveBlocksTest
+{
+	private final long[] dimensions = new long[] { 23, 17, 11 };
+
+	private Img< FloatType > createImg( final ImgFactory< FloatType > factory )
+	{
+		final Img< FloatType > img = factory.create( dimensions, new FloatType() );
+		final Random random = new Random( 1 );
+		for ( final FloatType t : img )
+			t.set( random.nextFloat() );
+		return img;
+	}
+
+	private static float[] copyPixels( final RandomAccessible< FloatType > source, final Interval interval )
+	{
+		final float[] expected = new float[ ( int ) Views.interval( source, interval ).size() ];
+		final Cursor< FloatType > c = Views.flatIterable( Views.interval( source, interval ) ).cursor();
+		for ( int i = 0; i < expected.length; ++i )
+			expected[ i ] = c.next().get();
+		return expected;
+	}
+
+	private void checkCopy( final RandomAccessible< FloatType > source, final Interval interval )
+	{
+		final float[] expected = copyPixels( source, interval );
+		final float[] actual = new float[ expected.length ];
+		PrimitiveBlocks.of( source ).copy( interval, actual );
+		assertArrayEquals( expected, actual, 0 );
+	}
+
+	private void checkImg( final Img< FloatType > img )
+	{
+		final Interval block = new FinalInterval( new long[] { 3, 2, 1 }, new long[] { 14, 16, 7 } );
+		final Interval translatedBlock = new FinalInterval( new long[] { -2, 4, 1 }, new long[] { 9, 18, 7 } );
+		checkCopy( img, block );
+		checkCopy( img, img );
+		checkCopy( Views.translate( img, -5, 2, 0 ), translatedBlock );
+		checkCopy( Views.zeroMin( Views.interval( img, block ) ), new FinalInterval( 5, 4, 3 ) );
+		// partially outside of the image
+		checkCopy( Views.extendBorder( img ), new FinalInterval( new long[] { -4, 10, 5 }, new long[] { 3, 20, 6 } ) );
+
+		// write and read back
+		final float[] data = new float[ ( int ) Views.interval( img, block ).size() ];
+		for ( int i = 0; i < data.length; ++i )
+			data[ i ] = i;
+		final PrimitiveBlocks< FloatType > blocks = PrimitiveBlocks.of( Views.translate( img, 1, 1, 1 ) );
+		final Interval shifted = new FinalInterval( new long[] { 4, 3, 2 }, new long[] { 15, 17, 8 } );
+		blocks.write( shifted, data );
+		assertArrayEquals( data, copyPixels( img, block ), 0 );
+		final float[] actual = new float[ data.length ];
+		blocks.copy( shifted, actual );
+		assertArrayEquals( data, actual, 0 );
+	}
+
+	@Test
+	public void testArrayImg()
+	{
+		checkImg( createImg( new ArrayImgFactory< FloatType >() ) );
+	}
+
+	@Test
+	public void testPlanarImg()
+	{
+		checkImg( createImg( new PlanarImgFactory< FloatType >() ) );
+		checkImg( createImg( new PlanarImgFactory< FloatType >( true ) ) );
+	}
+
+	@Test
+	public void testCellImg()
+	{
+		checkImg( createImg( new CellImgFactory< FloatType >( 5 ) ) );
+	}
+
+	@Test
+	public void testBufferImg()
+	{
+		checkImg( createImg( new BufferArrayImgFactory< FloatType >() ) );
+		checkImg( createImg( new BufferCellImgFactory< FloatType >( 5 ) ) );
+	}
+
+	@Test
+	public void testCompressedCellImg()
+	{
+		checkImg( createImg( new CompressedCellImgFactory< FloatType >( new LZ4StyleCodec(), 2, 5 ) ) );
+
+		// written cells must be flagged dirty to survive eviction
+		final CompressedCellImg< FloatType, ? > img = new CompressedCellImgFactory< FloatType >( new LZ4StyleCodec(), 2, 5 ).create( dimensions, new FloatType() );
+		final Interval block = new FinalInterval( new long[] { 3, 2, 1 }, new long[] { 14, 16, 7 } );
+		final float[] data = new float[ ( int ) Views.interval( img, block ).size() ];
+		for ( int i = 0; i < data.length; ++i )
+			data[ i ] = i + 1;
+		PrimitiveBlocks.of( img ).write( block, data );
+		img.compressAll();
+		img.getHotCells().invalidateAll();
+		assertArrayEquals( data, copyPixels( img, block ), 0 );
+	}
+
+	@Test
+	public void testComplexType()
+	{
+		final Img< ComplexFloatType > img = new CellImgFactory< ComplexFloatType >( 4 ).create( dimensions, new ComplexFloatType() );
+		final Cursor< ComplexFloatType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			final float v = IntervalIndexer.positionToIndex( c, img );
+			c.get().set( v, -v );
+		}
+		final Interval block = new FinalInterval( new long[] { 3, 2, 1 }, new long[] { 4, 2, 1 } );
+		final float[] actual = new float[ 4 ];
+		PrimitiveBlocks.of( img ).copy( block, actual );
+		final float v = 3 + 2 * dimensions[ 0 ] + dimensions[ 0 ] * dimensions[ 1 ];
+		assertArrayEquals( new float[] { v, -v, v + 1, -v - 1 }, actual, 0 );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testWrongArrayType()
+	{
+		final Img< FloatType > img = createImg( new ArrayImgFactory< FloatType >() );
+		PrimitiveBlocks.of( img ).copy( new FinalInterval( 2, 2, 2 ), new double[ 8 ] );
+	}
+
+	@Test
+	public void testEmptyInterval()
+	{
+		final Img< FloatType > img = createImg( new ArrayImgFactory< FloatType >() );
+		PrimitiveBlocks.of( img ).copy( new FinalInterval( new long[] { 0, 0, 0 }, new long[] { -1, 0, 0 } ), new float[ 0 ] );
+	}
+}
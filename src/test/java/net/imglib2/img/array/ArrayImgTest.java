@@ -60,4 +60,15 @@ public class ArrayImgTest
 					ImgTestHelper.testImg( dim[ i ], new ArrayImgFactory< FloatType >(), new ArrayImgFactory< FloatType >() ) );
 		}
 	}
+
+	@Test
+	public void testBufferArrayImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			assertTrue( "BufferArrayImg failed for: dim=" + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new BufferArrayImgFactory< FloatType >(), new ArrayImgFactory< FloatType >() ) );
+		}
+	}
 }
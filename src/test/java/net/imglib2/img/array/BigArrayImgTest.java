@@ -0,0 +1,130 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package net.imglib2.img.array;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.Unsigned12BitType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.Util;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link BigArrayImg}.
+ */
+public class BigArrayImgTest
+{
+	@Test
+	public void testBigArrayImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			assertTrue( "BigArrayImg failed for: dim=" + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new BigArrayImgFactory< FloatType >( 5 ), new ArrayImgFactory< FloatType >() ) );
+			assertTrue( "BigArrayImg failed for: dim=" + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new ArrayImgFactory< FloatType >(), new BigArrayImgFactory< FloatType >( 7 ) ) );
+		}
+	}
+
+	@Test
+	public void testChunks()
+	{
+		final BigArrayImg< FloatType, ? > img = new BigArrayImgFactory< FloatType >( 4 ).create( new long[] { 10, 7 }, new FloatType() );
+		assertEquals( 5, img.numChunks() );
+
+		final Cursor< FloatType > c = img.cursor();
+		int i = 0;
+		while ( c.hasNext() )
+			c.next().set( i++ );
+
+		final RandomAccess< FloatType > ra = img.randomAccess();
+		for ( int y = 6; y >= 0; --y )
+			for ( int x = 9; x >= 0; --x )
+			{
+				ra.setPosition( new int[] { x, y } );
+				assertEquals( y * 10 + x, ra.get().get(), 0 );
+			}
+
+		final Cursor< FloatType > jc = img.localizingCursor();
+		jc.jumpFwd( 37 );
+		assertEquals( 36, jc.get().get(), 0 );
+		assertEquals( 6, jc.getLongPosition( 0 ) );
+		assertEquals( 3, jc.getLongPosition( 1 ) );
+		jc.jumpFwd( 20 );
+		assertEquals( 56, jc.get().get(), 0 );
+		jc.fwd();
+		assertEquals( 57, jc.get().get(), 0 );
+		assertEquals( 7, jc.getLongPosition( 0 ) );
+		assertEquals( 5, jc.getLongPosition( 1 ) );
+	}
+
+	@Test
+	public void testSubEntityTypes()
+	{
+		final long[] dim = { 33, 17 };
+		final BigArrayImg< BitType, ? > bits = new BigArrayImgFactory< BitType >( 6 ).create( dim, new BitType() );
+		final Cursor< BitType > b = bits.localizingCursor();
+		while ( b.hasNext() )
+			b.next().set( ( b.getIntPosition( 0 ) + b.getIntPosition( 1 ) ) % 3 == 0 );
+		final RandomAccess< BitType > ra = bits.randomAccess();
+		for ( int y = 0; y < dim[ 1 ]; ++y )
+			for ( int x = 0; x < dim[ 0 ]; ++x )
+			{
+				ra.setPosition( new int[] { x, y } );
+				assertEquals( ( x + y ) % 3 == 0, ra.get().get() );
+			}
+
+		final BigArrayImg< Unsigned12BitType, ? > img = new BigArrayImgFactory< Unsigned12BitType >( 4 ).create( dim, new Unsigned12BitType() );
+		final Cursor< Unsigned12BitType > c = img.cursor();
+		int i = 0;
+		while ( c.hasNext() )
+			c.next().set( i++ % 4096 );
+		final Cursor< Unsigned12BitType > d = img.cursor();
+		i = 0;
+		while ( d.hasNext() )
+			assertEquals( i++ % 4096, d.next().get() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testChunkTooSmallForType()
+	{
+		new BigArrayImgFactory< BitType >( 3 ).create( new long[] { 100 }, new BitType() );
+	}
+}
@@ -196,6 +196,82 @@ public class CellCursorTest
 		assertArrayEquals( p1, p2 );
 	}
 
+	@Test
+	public void testLongJumpsWithCursor()
+	{
+		checkLongJumps( intImg.cursor(), intImg.cursor() );
+		checkLongJumps( intImg.localizingCursor(), intImg.localizingCursor() );
+	}
+
+	private void checkLongJumps( final Cursor< IntType > cursor, final Cursor< IntType > reference )
+	{
+		final long[] p1 = new long[ dimensions.length ];
+		final long[] p2 = new long[ dimensions.length ];
+		final Random random = new Random( 1 );
+		reference.fwd();
+		cursor.fwd();
+		for ( long i = 0; i < numValues; )
+		{
+			final int steps = 1 + random.nextInt( 2000 );
+			if ( i + steps >= numValues )
+				break;
+			for ( int s = 0; s < steps; ++s )
+				reference.fwd();
+			cursor.jumpFwd( steps );
+			i += steps;
+			assertTrue( cursor.get().get() == reference.get().get() );
+			cursor.localize( p1 );
+			reference.localize( p2 );
+			assertArrayEquals( p2, p1 );
+			assertTrue( cursor.hasNext() == reference.hasNext() );
+		}
+	}
+
+	@Test
+	public void testJumpToCell()
+	{
+		final CellCursor< IntType, ? > cursor = intImg.cursor();
+		final CellLocalizingCursor< IntType, ? > localizingCursor = intImg.localizingCursor();
+		final CellGrid grid = intImg.getCellGrid();
+		final long[] gridDimensions = grid.getGridDimensions();
+		final long[] cellGridPosition = new long[ dimensions.length ];
+		final long[] min = new long[ dimensions.length ];
+		final int[] cellDims = new int[ dimensions.length ];
+		final long[] p1 = new long[ dimensions.length ];
+		final long[] p2 = new long[ dimensions.length ];
+
+		final long numCells = intImg.getCells().size();
+		for ( final long cellIndex : new long[] { 5, numCells - 1, 0, 17, 3 } )
+		{
+			final Cell< ? > cell = cursor.jumpToCell( cellIndex );
+			localizingCursor.jumpToCell( cellIndex );
+			assertTrue( cursor.getCellIndex() == cellIndex );
+			assertTrue( localizingCursor.getCellIndex() == cellIndex );
+
+			IntervalIndexer.indexToPosition( cellIndex, gridDimensions, cellGridPosition );
+			grid.getCellDimensions( cellGridPosition, min, cellDims );
+			assertArrayEquals( min, cell.min );
+
+			cursor.fwd();
+			localizingCursor.fwd();
+			cursor.localize( p1 );
+			localizingCursor.localize( p2 );
+			assertArrayEquals( min, p1 );
+			assertArrayEquals( min, p2 );
+			assertTrue( cursor.get().get() == intData[ ( int ) IntervalIndexer.positionToIndex( min, dimensions ) ] );
+		}
+
+		cursor.reset();
+		long count = 0;
+		while ( cursor.hasNextCell() )
+		{
+			cursor.nextCell();
+			++count;
+		}
+		assertTrue( count == numCells - 1 );
+		assertTrue( cursor.getCellIndex() == numCells - 1 );
+	}
+
 	@Test
 	public void testSumWithRandomAccess()
 	{
@@ -34,8 +34,12 @@
 
 package net.imglib2.img.cell;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.compress.LZ4StyleCodec;
 import net.imglib2.type.numeric.real.FloatType;
 import net.imglib2.util.ImgTestHelper;
 import net.imglib2.util.Util;
@@ -65,6 +69,67 @@ public class CellImgTest
 						ImgTestHelper.testImg( dim[ i ], new CellImgFactory< FloatType >(), new ArrayImgFactory< FloatType >() ) );
 				assertTrue( "CellImg vs CellImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
 						ImgTestHelper.testImg( dim[ i ], new CellImgFactory< FloatType >( 5 ), new CellImgFactory< FloatType >() ) );
+				assertTrue( "CellImg vs power-of-two CellImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+						ImgTestHelper.testImg( dim[ i ], new CellImgFactory< FloatType >( 5 ), new CellImgFactory< FloatType >( 8 ) ) );
+			}
+		}
+	}
+
+	@Test
+	public void testPowerOfTwoRandomAccess()
+	{
+		final CellImg< FloatType, ? > img = new CellImgFactory< FloatType >( 8, 4 ).create( new long[] { 37, 13 }, new FloatType() );
+		assertTrue( img.getCellGrid().isPowerOfTwo() );
+		assertTrue( !new CellImgFactory< FloatType >( 8, 6 ).create( new long[] { 37, 13 }, new FloatType() ).getCellGrid().isPowerOfTwo() );
+
+		final Cursor< FloatType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.get().set( c.getIntPosition( 0 ) + 100 * c.getIntPosition( 1 ) );
+		}
+
+		final RandomAccess< FloatType > ra = img.randomAccess();
+		ra.setPosition( new int[] { 20, 7 } );
+		ra.move( -30, 0 );
+		ra.move( -9, 1 );
+		ra.move( 31, 0 );
+		ra.move( 9, 1 );
+		assertEquals( 21 + 700, ra.get().get(), 0 );
+		ra.setPosition( -1, 1 );
+		ra.setPosition( 36, 0 );
+		ra.setPosition( 12, 1 );
+		assertEquals( 36 + 1200, ra.get().get(), 0 );
+		ra.setPosition( new long[] { 3, 5 } );
+		assertEquals( 3 + 500, ra.get().get(), 0 );
+	}
+
+	@Test
+	public void testBufferCellImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			if ( dim[ i ].length > 1 )
+			{
+				assertTrue( "BufferCellImg vs ArrayImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+						ImgTestHelper.testImg( dim[ i ], new BufferCellImgFactory< FloatType >( 5 ), new ArrayImgFactory< FloatType >() ) );
+				assertTrue( "CellImg vs BufferCellImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+						ImgTestHelper.testImg( dim[ i ], new CellImgFactory< FloatType >(), new BufferCellImgFactory< FloatType >() ) );
+			}
+		}
+	}
+
+	@Test
+	public void testCompressedCellImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			if ( dim[ i ].length > 1 )
+			{
+				assertTrue( "CompressedCellImg vs ArrayImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+						ImgTestHelper.testImg( dim[ i ], new CompressedCellImgFactory< FloatType >( new LZ4StyleCodec(), 2, 5 ), new ArrayImgFactory< FloatType >() ) );
 			}
 		}
 	}
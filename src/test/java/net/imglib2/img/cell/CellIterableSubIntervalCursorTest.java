@@ -0,0 +1,132 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.FlatIterationOrder;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.AbstractSubIntervalIterableCursorTest;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.view.IterableRandomAccessibleInterval;
+import net.imglib2.view.Views;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CellIterableSubIntervalCursorTest extends AbstractSubIntervalIterableCursorTest< CellImg< IntType, ? > >
+{
+	private Interval intervalRoi;
+
+	@Before
+	public void createSourceData()
+	{
+		dimensions = new long[] { 23, 31, 11, 7 };
+
+		intervalFast = new FinalInterval( new long[] { dimensions[ 0 ], dimensions[ 1 ], 5, 1 } );
+
+		intervalShifted = new FinalInterval( new long[] { 0, 0, 3, 5 }, new long[] { dimensions[ 0 ] - 1, dimensions[ 1 ] - 1, 4, 5 } );
+
+		intervalRoi = new FinalInterval( new long[] { 3, 4, 2, 1 }, new long[] { 21, 17, 9, 5 } );
+
+		int numValues = 1;
+		for ( int d = 0; d < dimensions.length; ++d )
+			numValues *= dimensions[ d ];
+
+		intData = new int[ numValues ];
+		final Random random = new Random( 0 );
+		for ( int i = 0; i < numValues; ++i )
+			intData[ i ] = random.nextInt();
+
+		img = new CellImgFactory< IntType >( new int[] { 5, 4, 3, 2 } ).create( dimensions, new IntType() );
+
+		final long[] pos = new long[ dimensions.length ];
+		final RandomAccess< IntType > a = img.randomAccess();
+		for ( int i = 0; i < numValues; ++i )
+		{
+			IntervalIndexer.indexToPosition( i, dimensions, pos );
+			a.setPosition( pos );
+			a.get().set( intData[ i ] );
+		}
+	}
+
+	@Test
+	public void testOptimizable()
+	{
+		assertTrue( Views.interval( img, intervalRoi ).cursor() instanceof CellSubIntervalCursor );
+		assertTrue( Views.interval( img, intervalRoi ).localizingCursor() instanceof CellSubIntervalCursor );
+		assertTrue( Views.interval( img, intervalRoi ).iterationOrder() instanceof FlatIterationOrder );
+	}
+
+	@Test
+	public void testIterationRoi()
+	{
+		testCursorIteration( Views.interval( img, intervalRoi ).cursor(), intervalRoi );
+		testCursorIteration( Views.interval( img, intervalRoi ).localizingCursor(), intervalRoi );
+	}
+
+	@Test
+	public void testFlatOrder()
+	{
+		final Cursor< IntType > cursor = Views.interval( img, intervalRoi ).cursor();
+		final Cursor< IntType > reference = new IterableRandomAccessibleInterval<>( Views.interval( img, intervalRoi ) ).cursor();
+		while ( reference.hasNext() )
+			assertEquals( reference.next().get(), cursor.next().get() );
+		assertEquals( reference.hasNext(), cursor.hasNext() );
+	}
+
+	@Test
+	public void testJumpFwdRoi()
+	{
+		final Cursor< IntType > cursor = Views.interval( img, intervalRoi ).cursor();
+		final Cursor< IntType > reference = Views.interval( img, intervalRoi ).cursor();
+		for ( int i = 0; i < 100; ++i )
+			reference.fwd();
+		cursor.jumpFwd( 60 );
+		final Cursor< IntType > copy = cursor.copyCursor();
+		copy.jumpFwd( 40 );
+		assertEquals( reference.get().get(), copy.get().get() );
+		reference.fwd();
+		copy.fwd();
+		assertEquals( reference.get().get(), copy.get().get() );
+	}
+}
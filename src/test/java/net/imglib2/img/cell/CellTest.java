@@ -95,4 +95,24 @@ public class CellTest
 				assertTrue( cell.indexToGlobalPosition( index[ i ], d ) == expectedPosition[ i ][ d ] );
 		}
 	}
+
+	@Test
+	public void testPowerOfTwoGlobalPositionCalculation()
+	{
+		final long[] min = new long[] { 64, 9876543232l, 0 };
+		final Cell< FloatArray > cell = new Cell<>( new int[] { 16, 8, 4 }, min, new FloatArray( 1 ) );
+		final long[] position = new long[ 3 ];
+		final long[] expected = new long[ 3 ];
+		for ( int index = 0; index < cell.size(); ++index )
+		{
+			expected[ 0 ] = min[ 0 ] + index % 16;
+			expected[ 1 ] = min[ 1 ] + ( index / 16 ) % 8;
+			expected[ 2 ] = min[ 2 ] + index / 128;
+			cell.indexToGlobalPosition( index, position );
+			assertArrayEquals( expected, position );
+			for ( int d = 0; d < position.length; ++d )
+				assertTrue( cell.indexToGlobalPosition( index, d ) == expected[ d ] );
+			assertTrue( cell.globalPositionToIndex( position ) == index );
+		}
+	}
 }
@@ -0,0 +1,187 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.IntervalIndexer;
+
+public class CellTraversalTest
+{
+	@Test
+	public void testHilbertCellsAreAdjacent()
+	{
+		for ( final long[] gridDimensions : new long[][] { { 8, 8 }, { 4, 4, 4 } } )
+		{
+			final int n = gridDimensions.length;
+			final long[] imgDimensions = new long[ n ];
+			final int[] cellDimensions = new int[ n ];
+			for ( int d = 0; d < n; ++d )
+			{
+				imgDimensions[ d ] = 2 * gridDimensions[ d ];
+				cellDimensions[ d ] = 2;
+			}
+			final CellTraversal traversal = CellTraversal.create( CellTraversal.Order.HILBERT, new CellGrid( imgDimensions, cellDimensions ) );
+
+			final long[] previous = new long[ n ];
+			final long[] current = new long[ n ];
+			IntervalIndexer.indexToPosition( traversal.cellIndex( 0 ), gridDimensions, previous );
+			for ( long rank = 1; rank < traversal.numCells(); ++rank )
+			{
+				IntervalIndexer.indexToPosition( traversal.cellIndex( rank ), gridDimensions, current );
+				long distance = 0;
+				for ( int d = 0; d < n; ++d )
+					distance += Math.abs( current[ d ] - previous[ d ] );
+				assertEquals( 1, distance );
+				System.arraycopy( current, 0, previous, 0, n );
+			}
+		}
+	}
+
+	@Test
+	public void testRanksArePermutation()
+	{
+		final CellGrid grid = new CellGrid( new long[] { 50, 33, 17 }, new int[] { 8, 5, 4 } );
+		for ( final CellTraversal.Order order : CellTraversal.Order.values() )
+		{
+			final CellTraversal traversal = CellTraversal.create( order, grid );
+			final long numCells = traversal.numCells();
+			final boolean[] seen = new boolean[ ( int ) numCells ];
+			long iterationIndex = 0;
+			for ( long rank = 0; rank < numCells; ++rank )
+			{
+				final long cellIndex = traversal.cellIndex( rank );
+				assertFalse( seen[ ( int ) cellIndex ] );
+				seen[ ( int ) cellIndex ] = true;
+				assertEquals( rank, traversal.rank( cellIndex ) );
+				assertEquals( iterationIndex, traversal.firstIterationIndex( rank ) );
+				assertEquals( rank, traversal.rankOfIterationIndex( iterationIndex ) );
+				final long[] cellPos = new long[ 3 ];
+				final long[] cellMin = new long[ 3 ];
+				final int[] cellDims = new int[ 3 ];
+				IntervalIndexer.indexToPosition( cellIndex, grid.getGridDimensions(), cellPos );
+				grid.getCellDimensions( cellPos, cellMin, cellDims );
+				final long cellSize = ( long ) cellDims[ 0 ] * cellDims[ 1 ] * cellDims[ 2 ];
+				assertEquals( rank, traversal.rankOfIterationIndex( iterationIndex + cellSize - 1 ) );
+				iterationIndex += cellSize;
+			}
+			assertEquals( grid.getImgDimensions()[ 0 ] * grid.getImgDimensions()[ 1 ] * grid.getImgDimensions()[ 2 ], iterationIndex );
+		}
+	}
+
+	@Test
+	public void testCursors()
+	{
+		final long[] dimensions = { 23, 17, 9 };
+		for ( final CellTraversal.Order order : CellTraversal.Order.values() )
+		{
+			final CellImg< IntType, ? > img = new CellImgFactory< IntType >( order, 4, 3, 5 ).create( dimensions, new IntType() );
+			assertEquals( order, img.getCellTraversal().getOrder() );
+
+			final RandomAccess< IntType > a = img.randomAccess();
+			final long[] pos = new long[ 3 ];
+			final int numPixels = ( int ) img.size();
+			for ( int i = 0; i < numPixels; ++i )
+			{
+				IntervalIndexer.indexToPosition( i, dimensions, pos );
+				a.setPosition( pos );
+				a.get().set( i );
+			}
+
+			// every pixel exactly once, cursors agree, and localize is correct
+			final boolean[] seen = new boolean[ numPixels ];
+			final Cursor< IntType > c = img.cursor();
+			final Cursor< IntType > lc = img.localizingCursor();
+			final long[] lpos = new long[ 3 ];
+			while ( c.hasNext() )
+			{
+				final int v = c.next().get();
+				assertEquals( v, lc.next().get() );
+				assertFalse( seen[ v ] );
+				seen[ v ] = true;
+				IntervalIndexer.indexToPosition( v, dimensions, pos );
+				c.localize( lpos );
+				assertArrayEquals( pos, lpos );
+				lc.localize( lpos );
+				assertArrayEquals( pos, lpos );
+			}
+			assertFalse( lc.hasNext() );
+
+			// jumpFwd matches fwd
+			final Random random = new Random( 1 );
+			for ( int i = 0; i < 20; ++i )
+			{
+				final int steps = random.nextInt( numPixels );
+				final Cursor< IntType > c1 = img.cursor();
+				for ( int s = 0; s < steps; ++s )
+					c1.fwd();
+				final Cursor< IntType > c2 = img.cursor();
+				c2.jumpFwd( steps );
+				final Cursor< IntType > c3 = img.localizingCursor();
+				c3.jumpFwd( steps );
+				assertEquals( c1.next().get(), c2.next().get() );
+				assertEquals( c2.get().get(), c3.next().get() );
+				c2.localize( pos );
+				c3.localize( lpos );
+				assertArrayEquals( pos, lpos );
+			}
+
+			final long expected = ( long ) numPixels * ( numPixels - 1 ) / 2;
+			assertEquals( expected, img.parallelStream().mapToLong( IntType::get ).sum() );
+			assertEquals( expected, img.copy().stream().mapToLong( IntType::get ).sum() );
+		}
+	}
+
+	@Test
+	public void testIterationOrder()
+	{
+		final long[] dimensions = { 20, 20 };
+		final CellImg< IntType, ? > flat = new CellImgFactory< IntType >( 4 ).create( dimensions, new IntType() );
+		final CellImg< IntType, ? > flat2 = new CellImgFactory< IntType >( 4 ).create( dimensions, new IntType() );
+		final CellImg< IntType, ? > morton = new CellImgFactory< IntType >( CellTraversal.Order.MORTON, 4 ).create( dimensions, new IntType() );
+		assertTrue( flat.iterationOrder().equals( flat2.iterationOrder() ) );
+		assertFalse( flat.iterationOrder().equals( morton.iterationOrder() ) );
+	}
+}
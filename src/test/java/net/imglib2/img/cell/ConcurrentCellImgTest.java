@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.blocks.PrimitiveBlocks;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.view.Views;
+
+public class ConcurrentCellImgTest
+{
+	private final long[] dimensions = new long[] { 1000, 1000, 100 };
+
+	@Test
+	public void testReadDoesNotAllocate()
+	{
+		final ConcurrentCellImg< IntType, ? > img = new ConcurrentCellImgFactory< IntType >( 32 ).create( dimensions, new IntType() );
+		final RandomAccess< IntType > a = img.randomAccess();
+		a.setPosition( new long[] { 500, 500, 50 } );
+		assertEquals( 0, a.get().get() );
+		a.get().set( 0 );
+		assertEquals( 0, img.numAllocatedCells() );
+
+		final int[] block = new int[ 64 * 64 ];
+		PrimitiveBlocks.of( img ).copy( new FinalInterval( new long[] { 10, 10, 3 }, new long[] { 73, 73, 3 } ), block );
+		assertEquals( 0, img.numAllocatedCells() );
+
+		a.get().set( 7 );
+		assertEquals( 1, img.numAllocatedCells() );
+		assertEquals( 7, a.get().get() );
+	}
+
+	@Test
+	public void testConcurrentWrites() throws InterruptedException
+	{
+		final ConcurrentCellImg< IntType, ? > img = new ConcurrentCellImgFactory< IntType >( 16 ).create( new long[] { 100, 100, 8 }, new IntType() );
+
+		// each thread fills every 8th row, so all threads hit the same cells
+		final int numThreads = 8;
+		final List< Thread > threads = new ArrayList<>();
+		for ( int t = 0; t < numThreads; ++t )
+		{
+			final int offset = t;
+			threads.add( new Thread( () -> {
+				final RandomAccess< IntType > a = img.randomAccess();
+				for ( int z = 0; z < 8; ++z )
+					for ( int y = offset; y < 100; y += numThreads )
+						for ( int x = 0; x < 100; ++x )
+						{
+							a.setPosition( new long[] { x, y, z } );
+							a.get().set( 1 + x + 100 * y + 10000 * z );
+						}
+			} ) );
+		}
+		for ( final Thread thread : threads )
+			thread.start();
+		for ( final Thread thread : threads )
+			thread.join();
+
+		final Cursor< IntType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			assertEquals( 1 + c.getIntPosition( 0 ) + 100 * c.getIntPosition( 1 ) + 10000 * c.getIntPosition( 2 ), c.get().get() );
+		}
+		assertEquals( 7 * 7, img.numAllocatedCells() );
+	}
+
+	@Test
+	public void testSparseWritesAndCopy()
+	{
+		final ConcurrentCellImg< IntType, ? > img = new ConcurrentCellImgFactory< IntType >( CellTraversal.Order.HILBERT, 32 ).create( dimensions, new IntType() );
+		for ( final IntType t : Views.interval( img, new FinalInterval( new long[] { 40, 0, 0 }, new long[] { 70, 10, 0 } ) ) )
+			t.set( 3 );
+		assertEquals( 2, img.numAllocatedCells() );
+
+		final ConcurrentCellImg< IntType, ? > copy = img.copy();
+		assertEquals( CellTraversal.Order.HILBERT, copy.getCellTraversal().getOrder() );
+		assertEquals( 2, copy.numAllocatedCells() );
+		final RandomAccess< IntType > a = copy.randomAccess();
+		a.setPosition( new long[] { 45, 5, 0 } );
+		assertEquals( 3, a.get().get() );
+		a.setPosition( new long[] { 45, 11, 0 } );
+		assertEquals( 0, a.get().get() );
+	}
+}
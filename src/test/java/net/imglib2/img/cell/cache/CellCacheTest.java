@@ -0,0 +1,494 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.Dirty;
+import net.imglib2.img.basictypeaccess.array.DirtyFloatArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileFloatArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.LazyCellImg;
+import net.imglib2.img.cell.LazyCellImg.Get;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Fraction;
+
+/**
+ * Unit tests for {@link LruCellCache} and {@link SoftRefCellCache}.
+ */
+public class CellCacheTest
+{
+	@Test
+	public void testLruEviction()
+	{
+		final AtomicInteger loads = new AtomicInteger();
+		final LruCellCache< Long > cache = new LruCellCache<>( i -> {
+			loads.incrementAndGet();
+			return i;
+		}, 2 );
+
+		cache.get( 0 );
+		cache.get( 1 );
+		cache.get( 0 ); // 1 is now least recently used
+		cache.get( 2 ); // evicts 1
+
+		assertEquals( 3, loads.get() );
+		assertEquals( 2, cache.size() );
+		assertNotNull( cache.getIfPresent( 0 ) );
+		assertNull( cache.getIfPresent( 1 ) );
+		assertNotNull( cache.getIfPresent( 2 ) );
+
+		final CacheStats stats = cache.getStats();
+		assertEquals( 1, stats.hitCount() );
+		assertEquals( 3, stats.missCount() );
+		assertEquals( 1, stats.evictionCount() );
+	}
+
+	@Test
+	public void testMaxBytes()
+	{
+		final CellGrid grid = new CellGrid( new long[] { 100, 100 }, new int[] { 10, 10 } );
+		final Get< Cell< FloatArray > > loader = index -> {
+			final long[] cellMin = new long[ 2 ];
+			final int[] cellDims = new int[ 2 ];
+			grid.getCellDimensions( index, cellMin, cellDims );
+			return new Cell<>( cellDims, cellMin, new FloatArray( cellDims[ 0 ] * cellDims[ 1 ] ) );
+		};
+		// room for 5 cells of 10x10 floats
+		final LruCellCache< Cell< FloatArray > > cache = new LruCellCache<>( loader, 5 * 400, new CellWeigher() );
+		final LazyCellImg< FloatType, FloatArray > img = new LazyCellImg<>( grid, new FloatType(), cache );
+
+		final Cursor< FloatType > c = img.cursor();
+		while ( c.hasNext() )
+			c.next().set( 1 );
+
+		assertEquals( 5, cache.size() );
+		assertEquals( 5 * 400, cache.weight() );
+		assertEquals( 95, cache.getStats().evictionCount() );
+	}
+
+	@Test
+	public void testLoadOnce() throws Exception
+	{
+		final int numThreads = 8;
+		final AtomicInteger loads = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch( 1 );
+		final SoftRefCellCache< Object > cache = new SoftRefCellCache<>( i -> {
+			loads.incrementAndGet();
+			try
+			{
+				Thread.sleep( 50 );
+			}
+			catch ( final InterruptedException e )
+			{}
+			return new Object();
+		} );
+
+		final ExecutorService ex = Executors.newFixedThreadPool( numThreads );
+		final List< Future< Object > > results = new ArrayList<>();
+		for ( int t = 0; t < numThreads; ++t )
+			results.add( ex.submit( () -> {
+				start.await();
+				return cache.get( 42 );
+			} ) );
+		start.countDown();
+
+		final Object first = results.get( 0 ).get();
+		for ( final Future< Object > result : results )
+			assertSame( first, result.get() );
+		ex.shutdown();
+
+		assertEquals( 1, loads.get() );
+		assertEquals( 1, cache.getStats().loadCount() );
+	}
+
+	@Test
+	public void testAsyncVolatile() throws Exception
+	{
+		final CellGrid grid = new CellGrid( new long[] { 40, 10 }, new int[] { 10, 10 } );
+		final CountDownLatch started = new CountDownLatch( 1 );
+		final CountDownLatch release = new CountDownLatch( 1 );
+		final List< Long > loadOrder = Collections.synchronizedList( new ArrayList<>() );
+		final Get< Cell< VolatileFloatArray > > loader = index -> {
+			started.countDown();
+			try
+			{
+				release.await();
+			}
+			catch ( final InterruptedException e )
+			{}
+			loadOrder.add( index );
+			final long[] cellMin = new long[ 2 ];
+			final int[] cellDims = new int[ 2 ];
+			grid.getCellDimensions( index, cellMin, cellDims );
+			return new Cell<>( cellDims, cellMin, new VolatileFloatArray( cellDims[ 0 ] * cellDims[ 1 ], true ) );
+		};
+		final AsyncVolatileCellCache< VolatileFloatArray > cache = new AsyncVolatileCellCache<>(
+				grid, new Fraction(), new VolatileFloatArray( 1, false ), loader, 1 );
+		final CountDownLatch loaded = new CountDownLatch( 4 );
+		cache.setLoadListener( index -> loaded.countDown() );
+
+		// the worker blocks on cell 0, cells 1 to 3 are enqueued
+		assertFalse( cache.get( 0 ).getData().isValid() );
+		assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+		for ( long i = 1; i < 4; ++i )
+			assertFalse( cache.get( i ).getData().isValid() );
+
+		// load highest index first
+		cache.setPriority( index -> -index );
+		release.countDown();
+
+		assertTrue( loaded.await( 10, TimeUnit.SECONDS ) );
+		for ( long i = 0; i < 4; ++i )
+			assertTrue( cache.get( i ).getData().isValid() );
+		assertEquals( 0, cache.numPending() );
+		assertEquals( Arrays.asList( 0l, 3l, 2l, 1l ), loadOrder );
+		cache.shutdown();
+	}
+
+	@Test
+	public void testAsyncVolatileFailure() throws Exception
+	{
+		final CellGrid grid = new CellGrid( new long[] { 30, 10 }, new int[] { 10, 10 } );
+		final ConcurrentHashMap< Long, AtomicInteger > attempts = new ConcurrentHashMap<>();
+		final Get< Cell< VolatileFloatArray > > loader = index -> {
+			attempts.computeIfAbsent( index, i -> new AtomicInteger() ).incrementAndGet();
+			if ( index == 0 )
+				throw new IllegalStateException( "cannot load" );
+			if ( index == 1 )
+				throw new Error( "fatal" );
+			final long[] cellMin = new long[ 2 ];
+			final int[] cellDims = new int[ 2 ];
+			grid.getCellDimensions( index, cellMin, cellDims );
+			return new Cell<>( cellDims, cellMin, new VolatileFloatArray( cellDims[ 0 ] * cellDims[ 1 ], true ) );
+		};
+		final AsyncVolatileCellCache< VolatileFloatArray > cache = new AsyncVolatileCellCache<>(
+				grid, new Fraction(), new VolatileFloatArray( 1, false ), loader, 1 );
+		final Semaphore failed = new Semaphore( 0 );
+		final CountDownLatch loaded = new CountDownLatch( 1 );
+		final List< Long > failedIndices = Collections.synchronizedList( new ArrayList<>() );
+		cache.setFailureListener( ( t, index ) -> {
+			failedIndices.add( index );
+			failed.release();
+		} );
+		cache.setLoadListener( index -> loaded.countDown() );
+
+		// an Error does not stop the worker
+		cache.get( 1 );
+		assertTrue( failed.tryAcquire( 10, TimeUnit.SECONDS ) );
+		assertTrue( cache.getFailure( 1 ) instanceof Error );
+		cache.get( 2 );
+		assertTrue( loaded.await( 10, TimeUnit.SECONDS ) );
+		assertTrue( cache.get( 2 ).getData().isValid() );
+		assertNull( cache.getFailure( 2 ) );
+
+		// a failing cell is retried on request, up to MAX_ATTEMPTS times
+		for ( int i = 0; i < AsyncVolatileCellCache.MAX_ATTEMPTS; ++i )
+		{
+			assertFalse( cache.get( 0 ).getData().isValid() );
+			assertTrue( failed.tryAcquire( 10, TimeUnit.SECONDS ) );
+		}
+		assertFalse( cache.get( 0 ).getData().isValid() );
+		assertEquals( 0, cache.numPending() );
+		assertEquals( AsyncVolatileCellCache.MAX_ATTEMPTS, attempts.get( 0l ).get() );
+		assertTrue( cache.getFailure( 0 ) instanceof IllegalStateException );
+
+		// invalidating forgets the failures
+		cache.invalidate( 0 );
+		assertNull( cache.getFailure( 0 ) );
+		cache.get( 0 );
+		assertTrue( failed.tryAcquire( 10, TimeUnit.SECONDS ) );
+		assertEquals( AsyncVolatileCellCache.MAX_ATTEMPTS + 1, attempts.get( 0l ).get() );
+		assertEquals( AsyncVolatileCellCache.MAX_ATTEMPTS + 2, failedIndices.size() );
+		cache.shutdown();
+	}
+
+	@Test
+	public void testAsyncVolatileListenerFailure() throws Exception
+	{
+		final CellGrid grid = new CellGrid( new long[] { 30, 10 }, new int[] { 10, 10 } );
+		final Get< Cell< VolatileFloatArray > > loader = index -> {
+			final long[] cellMin = new long[ 2 ];
+			final int[] cellDims = new int[ 2 ];
+			grid.getCellDimensions( index, cellMin, cellDims );
+			return new Cell<>( cellDims, cellMin, new VolatileFloatArray( cellDims[ 0 ] * cellDims[ 1 ], true ) );
+		};
+		final AsyncVolatileCellCache< VolatileFloatArray > cache = new AsyncVolatileCellCache<>(
+				grid, new Fraction(), new VolatileFloatArray( 1, false ), loader, 1 );
+		final CountDownLatch loaded = new CountDownLatch( 3 );
+		final RuntimeException first = new IllegalStateException( "first" );
+		cache.setLoadListener( index -> {
+			loaded.countDown();
+			if ( index == 0 )
+				throw first;
+			throw new Error( "later" );
+		} );
+		assertNull( cache.getListenerFailure() );
+
+		// failing listeners do not stop the worker, which loads in request order
+		for ( long i = 0; i < 3; ++i )
+			cache.get( i );
+		assertTrue( loaded.await( 10, TimeUnit.SECONDS ) );
+		for ( long i = 0; i < 3; ++i )
+			assertTrue( cache.get( i ).getData().isValid() );
+		assertSame( first, cache.getListenerFailure() );
+		cache.shutdown();
+	}
+
+	@Test
+	public void testWriteBack() throws Exception
+	{
+		final CellGrid grid = new CellGrid( new long[] { 40, 10 }, new int[] { 10, 10 } );
+		final ConcurrentHashMap< Long, float[] > store = new ConcurrentHashMap<>();
+		final AtomicInteger writes = new AtomicInteger();
+		final Get< Cell< DirtyFloatArray > > loader = index -> {
+			final long[] cellMin = new long[ 2 ];
+			final int[] cellDims = new int[ 2 ];
+			grid.getCellDimensions( index, cellMin, cellDims );
+			final float[] stored = store.get( index );
+			final DirtyFloatArray data = stored == null
+					? new DirtyFloatArray( cellDims[ 0 ] * cellDims[ 1 ] )
+					: new DirtyFloatArray( stored.clone() );
+			return new Cell<>( cellDims, cellMin, data );
+		};
+		final CellWriter< Cell< DirtyFloatArray > > writer = ( index, cell ) -> {
+			writes.incrementAndGet();
+			store.put( index, cell.getData().getCurrentStorageArray().clone() );
+		};
+
+		final WriteBackCellCache< DirtyFloatArray > cache = new WriteBackCellCache<>( loader, writer, 2 );
+		final LazyCellImg< FloatType, DirtyFloatArray > img = new LazyCellImg<>( grid, new FloatType(), cache );
+
+		int i = 0;
+		for ( final FloatType t : img )
+			t.set( i++ );
+		cache.flushAndWait();
+		assertEquals( 4, writes.get() );
+		assertEquals( 4, store.size() );
+
+		// reading does not cause writes
+		for ( final FloatType t : img )
+			t.get();
+		cache.flushAndWait();
+		assertEquals( 4, writes.get() );
+
+		// a fresh cache sees the written values
+		final WriteBackCellCache< DirtyFloatArray > cache2 = new WriteBackCellCache<>( loader, writer, 2 );
+		final LazyCellImg< FloatType, DirtyFloatArray > img2 = new LazyCellImg<>( grid, new FloatType(), cache2 );
+		i = 0;
+		for ( final FloatType t : img2 )
+			assertEquals( i++, t.get(), 0 );
+
+		cache.close();
+		cache2.close();
+	}
+
+	@Test
+	public void testWriteBackFailure() throws Exception
+	{
+		final CellGrid grid = new CellGrid( new long[] { 40, 10 }, new int[] { 10, 10 } );
+		final ConcurrentHashMap< Long, float[] > store = new ConcurrentHashMap<>();
+		final AtomicInteger failuresLeft = new AtomicInteger();
+		final Get< Cell< DirtyFloatArray > > loader = index -> {
+			final long[] cellMin = new long[ 2 ];
+			final int[] cellDims = new int[ 2 ];
+			grid.getCellDimensions( index, cellMin, cellDims );
+			final float[] stored = store.get( index );
+			final DirtyFloatArray data = stored == null
+					? new DirtyFloatArray( cellDims[ 0 ] * cellDims[ 1 ] )
+					: new DirtyFloatArray( stored.clone() );
+			return new Cell<>( cellDims, cellMin, data );
+		};
+		final CellWriter< Cell< DirtyFloatArray > > writer = ( index, cell ) -> {
+			if ( index == 0 && failuresLeft.getAndDecrement() > 0 )
+				throw new IllegalStateException( "write failed" );
+			store.put( index, cell.getData().getCurrentStorageArray().clone() );
+		};
+
+		final WriteBackCellCache< DirtyFloatArray > cache = new WriteBackCellCache<>( loader, writer, 2 );
+		final LazyCellImg< FloatType, DirtyFloatArray > img = new LazyCellImg<>( grid, new FloatType(), cache );
+
+		// a writer that fails once is retried
+		failuresLeft.set( 1 );
+		int i = 0;
+		for ( final FloatType t : img )
+			t.set( i++ );
+		cache.flushAndWait();
+		assertEquals( 4, store.size() );
+		assertEquals( 1, store.get( 0l )[ 1 ], 0 );
+
+		// a cell that cannot be written is kept dirty instead of being reloaded
+		failuresLeft.set( Integer.MAX_VALUE );
+		i = 0;
+		for ( final FloatType t : img )
+			t.set( -i++ );
+		boolean failed = false;
+		try
+		{
+			cache.flushAndWait();
+		}
+		catch ( final IllegalStateException e )
+		{
+			failed = true;
+		}
+		assertTrue( failed );
+		assertEquals( 1, store.get( 0l )[ 1 ], 0 );
+		assertEquals( -1, cache.get( 0 ).getData().getValue( 1 ), 0 );
+
+		// the next flush writes it
+		failuresLeft.set( 0 );
+		cache.flushAndWait();
+		assertEquals( -1, store.get( 0l )[ 1 ], 0 );
+		i = 0;
+		for ( final FloatType t : img )
+			assertEquals( -i++, t.get(), 0 );
+
+		cache.close();
+	}
+
+	/**
+	 * {@link Dirty} data that does not support clearing the dirty flag.
+	 */
+	private static class LegacyDirtyFloatArray extends FloatArray implements Dirty
+	{
+		private boolean dirty;
+
+		LegacyDirtyFloatArray( final int numEntities )
+		{
+			super( numEntities );
+		}
+
+		@Override
+		public boolean isDirty()
+		{
+			return dirty;
+		}
+
+		@Override
+		public void setDirty()
+		{
+			dirty = true;
+		}
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testWriteBackRequiresClearableDirty() throws Exception
+	{
+		final Get< Cell< LegacyDirtyFloatArray > > loader = index -> new Cell<>( new int[] { 4 }, new long[] { 4 * index }, new LegacyDirtyFloatArray( 4 ) );
+		final WriteBackCellCache< LegacyDirtyFloatArray > cache = new WriteBackCellCache<>( loader, ( index, cell ) -> {}, 2 );
+		try
+		{
+			cache.get( 0 );
+		}
+		finally
+		{
+			cache.close();
+		}
+	}
+
+	@Test
+	public void testWriteBackRetryDelayAndError() throws Exception
+	{
+		final Get< Cell< DirtyFloatArray > > loader = index -> new Cell<>( new int[] { 4 }, new long[] { 4 * index }, new DirtyFloatArray( 4 ) );
+		final List< Long > attemptTimes = Collections.synchronizedList( new ArrayList<>() );
+		final ConcurrentHashMap< Long, float[] > store = new ConcurrentHashMap<>();
+		final CellWriter< Cell< DirtyFloatArray > > writer = ( index, cell ) -> {
+			if ( index == 0 )
+			{
+				attemptTimes.add( System.nanoTime() );
+				if ( attemptTimes.size() < WriteBackCellCache.MAX_ATTEMPTS )
+					throw new IllegalStateException( "storage unavailable" );
+			}
+			if ( index == 1 )
+				throw new Error( "fatal" );
+			store.put( index, cell.getData().getCurrentStorageArray().clone() );
+		};
+		final WriteBackCellCache< DirtyFloatArray > cache = new WriteBackCellCache<>( loader, writer, 10 );
+
+		// retries are delayed, and a write that succeeds on the last attempt
+		// is not a failure
+		cache.get( 0 ).getData().setValue( 0, 1 );
+		cache.flushAndWait();
+		assertEquals( WriteBackCellCache.MAX_ATTEMPTS, attemptTimes.size() );
+		for ( int i = 1; i < attemptTimes.size(); ++i )
+		{
+			final long minDelay = TimeUnit.MILLISECONDS.toNanos( WriteBackCellCache.RETRY_DELAY_MILLIS << ( i - 1 ) );
+			assertTrue( attemptTimes.get( i ) - attemptTimes.get( i - 1 ) >= minDelay );
+		}
+		assertEquals( 1, store.get( 0l )[ 0 ], 0 );
+
+		// an Error is reported and does not stop the writer thread
+		cache.get( 1 ).getData().setValue( 0, 1 );
+		boolean failed = false;
+		try
+		{
+			cache.flushAndWait();
+		}
+		catch ( final Error e )
+		{
+			failed = true;
+		}
+		assertTrue( failed );
+		cache.get( 2 ).getData().setValue( 0, 2 );
+		cache.invalidate( 1 );
+		cache.flushAndWait();
+		assertEquals( 2, store.get( 2l )[ 0 ], 0 );
+
+		cache.close();
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.cell.compress;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.cell.CompressedCellImg;
+import net.imglib2.img.cell.CompressedCellImgFactory;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+/**
+ * Unit tests for {@link RunLengthCodec}, {@link LZ4StyleCodec}, and
+ * {@link CompressedCellImg}.
+ */
+public class CellCodecTest
+{
+	private static byte[][] testData()
+	{
+		final Random random = new Random( 1 );
+		final byte[] empty = new byte[ 0 ];
+		final byte[] noise = new byte[ 10000 ];
+		random.nextBytes( noise );
+		final byte[] runs = new byte[ 100000 ];
+		for ( int i = 0; i < runs.length; ++i )
+			runs[ i ] = ( byte ) ( i / 1000 );
+		final byte[] mixed = new byte[ 70000 ];
+		for ( int i = 0; i < mixed.length; ++i )
+			mixed[ i ] = ( i % 7000 < 300 ) ? ( byte ) random.nextInt() : ( byte ) ( i % 13 );
+		return new byte[][] { empty, new byte[] { 5 }, noise, runs, mixed };
+	}
+
+	private static void testRoundTrip( final CellCodec codec, final int bytesPerElement )
+	{
+		for ( final byte[] data : testData() )
+		{
+			final int length = data.length - data.length % bytesPerElement;
+			final byte[] raw = Arrays.copyOf( data, length );
+			final byte[] encoded = codec.encode( raw, bytesPerElement );
+			final byte[] decoded = new byte[ length ];
+			codec.decode( encoded, decoded, bytesPerElement );
+			assertArrayEquals( raw, decoded );
+		}
+	}
+
+	@Test
+	public void testRunLengthCodec()
+	{
+		testRoundTrip( new RunLengthCodec(), 1 );
+		testRoundTrip( new RunLengthCodec(), 2 );
+		testRoundTrip( new RunLengthCodec(), 8 );
+	}
+
+	@Test
+	public void testLZ4StyleCodec()
+	{
+		testRoundTrip( new LZ4StyleCodec(), 1 );
+		final byte[] runs = testData()[ 3 ];
+		assertTrue( new LZ4StyleCodec().encode( runs, 1 ).length < runs.length / 20 );
+	}
+
+	@Test
+	public void testCompressedCellImg()
+	{
+		final long[] dimensions = { 200, 150, 20 };
+		final CompressedCellImgFactory< UnsignedShortType > factory = new CompressedCellImgFactory<>( new RunLengthCodec(), 4, 32 );
+		final CompressedCellImg< UnsignedShortType, ? > img = factory.create( dimensions, new UnsignedShortType() );
+
+		// label-like data
+		final Cursor< UnsignedShortType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.get().set( ( int ) ( c.getLongPosition( 0 ) / 50 + 4 * ( c.getLongPosition( 1 ) / 50 ) ) );
+		}
+		img.compressAll();
+		assertTrue( img.getStore().compressedBytes() * 20 < 200 * 150 * 20 * 2 );
+
+		final CompressedCellImg< UnsignedShortType, ? > copy = img.copy();
+		final Cursor< UnsignedShortType > c2 = copy.localizingCursor();
+		while ( c2.hasNext() )
+		{
+			c2.fwd();
+			assertEquals( c2.getLongPosition( 0 ) / 50 + 4 * ( c2.getLongPosition( 1 ) / 50 ), c2.get().get() );
+		}
+	}
+
+	private static int valueAt( final CompressedCellImg< UnsignedShortType, ? > img, final int... position )
+	{
+		final RandomAccess< UnsignedShortType > ra = img.randomAccess();
+		ra.setPosition( position );
+		return ra.get().get();
+	}
+
+	@Test
+	public void testWritesToEvictedCell()
+	{
+		final CompressedCellImgFactory< UnsignedShortType > factory = new CompressedCellImgFactory<>( new LZ4StyleCodec(), 1, 16 );
+		final CompressedCellImg< UnsignedShortType, ? > img = factory.create( new long[] { 32, 32 }, new UnsignedShortType() );
+
+		// each access holds on to its cell, which is evicted by the other one
+		RandomAccess< UnsignedShortType > a = img.randomAccess();
+		RandomAccess< UnsignedShortType > b = img.randomAccess();
+		for ( int y = 0; y < 16; ++y )
+			for ( int x = 0; x < 16; ++x )
+			{
+				a.setPosition( new int[] { x, y } );
+				a.get().set( 1 + x + 16 * y );
+				b.setPosition( new int[] { 16 + x, 16 + y } );
+				b.get().set( 1000 + x + 16 * y );
+			}
+
+		assertEquals( 1 + 15 + 16 * 15, valueAt( img, 15, 15 ) );
+		assertEquals( 1000 + 15 + 16 * 15, valueAt( img, 31, 31 ) );
+
+		// data that is no longer reachable is compressed
+		a = null;
+		b = null;
+		System.gc();
+		img.compressAll();
+		final Cursor< UnsignedShortType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			final long x = c.getLongPosition( 0 );
+			final long y = c.getLongPosition( 1 );
+			final long expected = x < 16 && y < 16
+					? 1 + x + 16 * y
+					: x >= 16 && y >= 16 ? 1000 + x - 16 + 16 * ( y - 16 ) : 0;
+			assertEquals( expected, c.get().get() );
+		}
+	}
+}
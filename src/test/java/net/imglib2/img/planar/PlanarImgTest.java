@@ -34,8 +34,14 @@
 
 package net.imglib2.img.planar;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.LazyFloatArray;
 import net.imglib2.type.numeric.real.FloatType;
 import net.imglib2.util.ImgTestHelper;
 import net.imglib2.util.Util;
@@ -65,4 +71,44 @@ public class PlanarImgTest
 					ImgTestHelper.testImg( dim[ i ], new PlanarImgFactory< FloatType >(), new PlanarImgFactory< FloatType >() ) );
 		}
 	}
+
+	@Test
+	public void testLazyPlanarImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			assertTrue( "PlanarImg vs lazy PlanarImg failed for dim = " + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new PlanarImgFactory< FloatType >(), new PlanarImgFactory< FloatType >( true ) ) );
+		}
+
+		@SuppressWarnings( "unchecked" )
+		final PlanarImg< FloatType, FloatArray > img = ( PlanarImg< FloatType, FloatArray > ) new PlanarImgFactory< FloatType >( true ).create( new long[] { 10, 10, 3, 4 }, new FloatType() );
+		img.setPlane( 5, new LazyFloatArray( 100, 2.5f ) );
+
+		// reading and writing the constant does not allocate
+		final Cursor< FloatType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			final FloatType t = c.next();
+			final boolean inPlane5 = c.getIntPosition( 2 ) == 2 && c.getIntPosition( 3 ) == 1;
+			assertEquals( inPlane5 ? 2.5f : 0f, t.get(), 0 );
+			t.set( t.get() );
+		}
+		for ( int p = 0; p < img.numSlices(); ++p )
+			assertFalse( img.isPlaneAllocated( p ) );
+
+		final RandomAccess< FloatType > ra = img.randomAccess();
+		ra.setPosition( new int[] { 3, 4, 2, 1 } );
+		ra.get().set( 7 );
+		assertTrue( img.isPlaneAllocated( 5 ) );
+		assertFalse( img.isPlaneAllocated( 4 ) );
+		assertEquals( 7, ra.get().get(), 0 );
+		ra.setPosition( 5, 0 );
+		assertEquals( 2.5f, ra.get().get(), 0 );
+
+		final PlanarImg< FloatType, ? > copy = img.copy();
+		assertTrue( copy.isPlaneAllocated( 5 ) );
+		assertFalse( copy.isPlaneAllocated( 0 ) );
+	}
 }
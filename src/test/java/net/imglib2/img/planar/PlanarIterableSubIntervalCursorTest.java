@@ -40,6 +40,7 @@ import java.util.Random;
 
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
+import net.imglib2.FlatIterationOrder;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccess;
 import net.imglib2.img.AbstractSubIntervalIterableCursorTest;
@@ -64,6 +65,8 @@ public class PlanarIterableSubIntervalCursorTest extends AbstractSubIntervalIter
 
 	private FinalInterval intervalLine;
 
+	private FinalInterval intervalRoi;
+
 	@Before
 	public void createSourceData()
 	{
@@ -71,6 +74,8 @@ public class PlanarIterableSubIntervalCursorTest extends AbstractSubIntervalIter
 
 		intervalLine = new FinalInterval( new long[] { 0, 12, 3, 5, 1 }, new long[] { dimensions[ 0 ] - 1, 13, 3, 5, 1 } );
 
+		intervalRoi = new FinalInterval( new long[] { 3, 5, 2, 1, 0 }, new long[] { 19, 12, 7, 3, 2 } );
+
 		intervalShifted = new FinalInterval( new long[] { 0, 0, 3, 5, 1 }, new long[] { dimensions[ 0 ] - 1, dimensions[ 1 ] - 1, 4, 5, 1 } );
 
 		intervalFast = new FinalInterval( new long[] { dimensions[ 0 ], dimensions[ 1 ], 5, 1, 1 } );
@@ -130,6 +135,30 @@ public class PlanarIterableSubIntervalCursorTest extends AbstractSubIntervalIter
 
 		// Testing Localizing Cursor
 		assertFalse( ( Views.interval( img, intervalFastPart ).localizingCursor() instanceof PlanarPlaneSubsetLocalizingCursor ) );
+
+		// Arbitrary intervals
+		assertTrue( ( Views.interval( img, intervalRoi ).cursor() instanceof PlanarSubIntervalCursor ) );
+		assertTrue( ( Views.interval( img, intervalRoi ).localizingCursor() instanceof PlanarSubIntervalCursor ) );
+	}
+
+	@Test
+	public void testIterationRoi()
+	{
+		testCursorIteration( Views.interval( img, intervalRoi ).cursor(), intervalRoi );
+		testCursorIteration( Views.interval( img, intervalRoi ).localizingCursor(), intervalRoi );
+	}
+
+	@Test
+	public void testJumpFwdRoi()
+	{
+		final Cursor< IntType > cursor = Views.interval( img, intervalRoi ).cursor();
+		final Cursor< IntType > reference = Views.interval( img, intervalRoi ).localizingCursor();
+		for ( int i = 0; i < 40; ++i )
+			reference.fwd();
+		cursor.jumpFwd( 15 );
+		cursor.jumpFwd( 25 );
+		assertTrue( cursor.get().get() == reference.get().get() );
+		assertTrue( Views.iterable( Views.interval( img, intervalRoi ) ).iterationOrder() instanceof FlatIterationOrder );
 	}
 
 	@Test
@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.ImgTestHelper;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Util;
+
+import org.junit.Test;
+
+public class HashImgTest
+{
+	@Test
+	public void testHashImg()
+	{
+		final long[][] dim = ImgTestHelper.dims();
+		for ( int i = 0; i < dim.length; ++i )
+		{
+			assertTrue( "HashImg failed for: dim=" + Util.printCoordinates( dim[ i ] ),
+					ImgTestHelper.testImg( dim[ i ], new HashImgFactory< FloatType >(), new HashImgFactory< FloatType >() ) );
+		}
+	}
+
+	@Test
+	public void testSparseCursor()
+	{
+		final long[] dims = { 1000, 1000, 1000 };
+		final HashImg< UnsignedShortType, ? > img = new HashImgFactory< UnsignedShortType >().create( dims, new UnsignedShortType() );
+
+		final Random random = new Random( 42 );
+		final Map< Long, Integer > expected = new HashMap<>();
+		final RandomAccess< UnsignedShortType > ra = img.randomAccess();
+		final long[] pos = new long[ 3 ];
+		for ( int i = 0; i < 1000; ++i )
+		{
+			for ( int d = 0; d < 3; ++d )
+				pos[ d ] = random.nextInt( 1000 );
+			final int value = 1 + random.nextInt( 1000 );
+			ra.setPosition( pos );
+			ra.get().set( value );
+			expected.put( IntervalIndexer.positionToIndex( pos, dims ), value );
+		}
+		assertEquals( expected.size(), img.numStoredPixels() );
+
+		final Cursor< UnsignedShortType > c = img.sparseCursor();
+		int count = 0;
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( pos );
+			assertEquals( expected.get( IntervalIndexer.positionToIndex( pos, dims ) ).intValue(), c.get().get() );
+			++count;
+		}
+		assertEquals( expected.size(), count );
+
+		// setting stored pixels to the background while iterating removes them
+		final HashImg< UnsignedShortType, ? > copy = img.copy();
+		assertEquals( expected.size(), copy.numStoredPixels() );
+		final Cursor< UnsignedShortType > d = copy.sparseCursor();
+		count = 0;
+		while ( d.hasNext() )
+		{
+			d.next().set( 0 );
+			++count;
+		}
+		assertEquals( expected.size(), count );
+		assertEquals( 0, copy.numStoredPixels() );
+		assertEquals( expected.size(), img.numStoredPixels() );
+	}
+}
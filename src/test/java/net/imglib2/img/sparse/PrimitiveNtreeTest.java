@@ -0,0 +1,163 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.img.sparse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+public class PrimitiveNtreeTest
+{
+	@Test
+	public void testSetGetMerge()
+	{
+		final PrimitiveNtree t = new PrimitiveNtree( new long[] { 256, 257, 100 }, 10 );
+		final long[] pos = new long[] { 27, 38, 99 };
+		final long[] pos2 = new long[] { 28, 38, 99 };
+		assertEquals( 1, t.numNodes() );
+		assertEquals( 10, t.getValue( pos ) );
+
+		t.setValue( pos, 11 );
+		assertEquals( 11, t.getValue( pos ) );
+		assertEquals( 10, t.getValue( pos2 ) );
+		assertEquals( 1 + ( t.numTreeLevels - 1 ) * 8, t.numNodes() );
+
+		t.setValue( pos, 10 );
+		assertEquals( 10, t.getValue( pos ) );
+		assertEquals( 1, t.numNodes() );
+
+		// freed blocks are recycled
+		final int capacity = t.capacity();
+		t.setValue( pos2, -1 );
+		assertEquals( capacity, t.capacity() );
+		t.compact();
+		assertEquals( t.numNodes(), t.capacity() );
+		assertEquals( -1, t.getValue( pos2 ) );
+		assertEquals( 10, t.getValue( pos ) );
+	}
+
+	@Test
+	public void testBuild()
+	{
+		final long[] dims = { 37, 21, 5 };
+		final Random random = new Random( 1 );
+		final PrimitiveNtree incremental = new PrimitiveNtree( dims, 0 );
+		final long[][][] values = new long[ 37 ][ 21 ][ 5 ];
+		final long[] pos = new long[ 3 ];
+		for ( int i = 0; i < 50; ++i )
+		{
+			// a few uniform boxes
+			final int x0 = random.nextInt( 30 ), y0 = random.nextInt( 15 ), z0 = random.nextInt( 5 );
+			final long v = random.nextInt( 3 );
+			for ( int x = x0; x < x0 + 7; ++x )
+				for ( int y = y0; y < y0 + 6; ++y )
+				{
+					values[ x ][ y ][ z0 ] = v;
+					pos[ 0 ] = x;
+					pos[ 1 ] = y;
+					pos[ 2 ] = z0;
+					incremental.setValue( pos, v );
+				}
+		}
+
+		final PrimitiveNtree built = new PrimitiveNtree( dims, 0 );
+		built.build( p -> values[ ( int ) p[ 0 ] ][ ( int ) p[ 1 ] ][ ( int ) p[ 2 ] ] );
+
+		for ( int x = 0; x < 37; ++x )
+			for ( int y = 0; y < 21; ++y )
+				for ( int z = 0; z < 5; ++z )
+				{
+					pos[ 0 ] = x;
+					pos[ 1 ] = y;
+					pos[ 2 ] = z;
+					assertEquals( values[ x ][ y ][ z ], built.getValue( pos ) );
+					assertEquals( values[ x ][ y ][ z ], incremental.getValue( pos ) );
+				}
+		assertTrue( built.numNodes() <= incremental.numNodes() );
+		assertEquals( built.numNodes(), built.capacity() );
+	}
+
+	@Test
+	public void testNtreeImg()
+	{
+		final ArrayImg< FloatType, FloatArray > dense = ArrayImgs.floats( 40, 30 );
+		final Cursor< FloatType > c = dense.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			if ( c.getIntPosition( 0 ) > 20 && c.getIntPosition( 1 ) < 10 )
+				c.get().set( -1.5f );
+		}
+
+		final NtreeImg< FloatType, ? > sparse = new NtreeImgFactory< FloatType >().createFromDense( dense, new FloatType() );
+		final Cursor< FloatType > d = dense.cursor();
+		final Cursor< FloatType > s = sparse.cursor();
+		while ( d.hasNext() )
+			assertEquals( d.next().get(), s.next().get(), 0 );
+
+		final NtreeImg< IntType, ? > labels = new NtreeImgFactory< IntType >().create( new long[] { 64, 64 }, new IntType() );
+		final RandomAccess< IntType > ra = labels.randomAccess();
+		for ( int y = 0; y < 64; ++y )
+			for ( int x = 0; x < 64; ++x )
+			{
+				ra.setPosition( new int[] { x, y } );
+				ra.get().set( x < 32 ? 7 : 0 );
+			}
+		labels.compact();
+		assertEquals( 5, labels.numNodes() );
+		ra.setPosition( new int[] { 3, 60 } );
+		assertEquals( 7, ra.get().get() );
+
+		// the copy has its own tree
+		final NtreeImg< IntType, ? > copy = labels.copy();
+		assertEquals( labels.numNodes(), copy.numNodes() );
+		final RandomAccess< IntType > rc = copy.randomAccess();
+		rc.setPosition( new int[] { 3, 60 } );
+		assertEquals( 7, rc.get().get() );
+		rc.get().set( 1 );
+		assertEquals( 7, ra.get().get() );
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.KDTree;
+import net.imglib2.RealPoint;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.interpolation.neighborsearch.InverseDistanceWeightingInterpolator;
+import net.imglib2.interpolation.neighborsearch.NearestNeighborSearchBatchInterpolator;
+import net.imglib2.interpolation.neighborsearch.NearestNeighborSearchInterpolator;
+import net.imglib2.interpolation.randomaccess.LanczosInterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NLinearBatchInterpolator;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorARGBFactory;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.interpolation.randomaccess.NearestNeighborBatchInterpolator;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.neighborsearch.KNearestNeighborSearchOnKDTree;
+import net.imglib2.neighborsearch.NearestNeighborSearchOnKDTree;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+public class BatchInterpolatorTest
+{
+	private final Random random = new Random( 4321 );
+
+	private Img< DoubleType > randomImg( final long... dims )
+	{
+		final Img< DoubleType > img = new ArrayImgFactory< DoubleType >().create( dims, new DoubleType() );
+		for ( final DoubleType t : img )
+			t.set( random.nextDouble() );
+		return img;
+	}
+
+	private double[][] randomPoints( final int count, final double... max )
+	{
+		final double[][] points = new double[ count ][ max.length ];
+		for ( final double[] p : points )
+			for ( int d = 0; d < max.length; ++d )
+				p[ d ] = random.nextDouble() * max[ d ];
+		return points;
+	}
+
+	/**
+	 * Check batch interpolation against setPosition/get for nested and
+	 * strided flat coordinates, and that the position of {@code access} is
+	 * unchanged.
+	 */
+	private void check( final RealRandomAccess< DoubleType > access, final double[][] points )
+	{
+		final int n = access.numDimensions();
+		final double[] expected = new double[ points.length ];
+		final RealRandomAccess< DoubleType > reference = access.copyRealRandomAccess();
+		for ( int i = 0; i < points.length; ++i )
+		{
+			reference.setPosition( points[ i ] );
+			expected[ i ] = reference.get().get();
+		}
+
+		final double[] start = new double[ n ];
+		for ( int d = 0; d < n; ++d )
+			start[ d ] = 0.3 + d;
+		access.setPosition( start );
+		final double valueAtStart = access.get().get();
+
+		final BatchInterpolator batch = BatchInterpolator.of( access );
+
+		final double[] nested = new double[ points.length ];
+		batch.interpolate( points, nested );
+		assertArrayEquals( expected, nested, 1e-12 );
+
+		final int offset = 3;
+		final int stride = n + 2;
+		final double[] flat = new double[ offset + points.length * stride ];
+		for ( int i = 0; i < points.length; ++i )
+			System.arraycopy( points[ i ], 0, flat, offset + i * stride, n );
+		final double[] strided = new double[ points.length + 1 ];
+		batch.interpolate( flat, offset, stride, strided, 1, points.length );
+		for ( int i = 0; i < points.length; ++i )
+			assertEquals( expected[ i ], strided[ i + 1 ], 1e-12 );
+
+		for ( int d = 0; d < n; ++d )
+			assertEquals( start[ d ], access.getDoublePosition( d ), 0 );
+		assertEquals( valueAtStart, access.get().get(), 0 );
+	}
+
+	@Test
+	public void testNLinear()
+	{
+		final Img< DoubleType > img = randomImg( 12, 9, 5 );
+		final RealRandomAccess< DoubleType > access = Views.interpolate( Views.extendMirrorSingle( img ), new NLinearInterpolatorFactory< DoubleType >() ).realRandomAccess();
+		assertTrue( BatchInterpolator.of( access ) instanceof NLinearBatchInterpolator );
+		check( access, randomPoints( 200, 12, 9, 5 ) );
+	}
+
+	@Test
+	public void testNLinear1D()
+	{
+		final Img< DoubleType > img = randomImg( 20 );
+		final RealRandomAccess< DoubleType > access = Views.interpolate( Views.extendBorder( img ), new NLinearInterpolatorFactory< DoubleType >() ).realRandomAccess();
+		assertTrue( BatchInterpolator.of( access ) instanceof NLinearBatchInterpolator );
+		check( access, randomPoints( 100, 20 ) );
+	}
+
+	@Test
+	public void testNearestNeighbor()
+	{
+		final Img< DoubleType > img = randomImg( 12, 9 );
+		final RealRandomAccess< DoubleType > access = Views.interpolate( Views.extendBorder( img ), new NearestNeighborInterpolatorFactory< DoubleType >() ).realRandomAccess();
+		assertTrue( BatchInterpolator.of( access ) instanceof NearestNeighborBatchInterpolator );
+		check( access, randomPoints( 200, 12, 9 ) );
+	}
+
+	@Test
+	public void testGenericAdapter()
+	{
+		final Img< DoubleType > img = randomImg( 12, 9 );
+		final RealRandomAccess< DoubleType > access = Views.interpolate( Views.extendBorder( img ), new LanczosInterpolatorFactory< DoubleType >() ).realRandomAccess();
+		check( access, randomPoints( 100, 12, 9 ) );
+	}
+
+	private KDTree< DoubleType > randomTree( final int size )
+	{
+		final ArrayList< DoubleType > values = new ArrayList<>();
+		final ArrayList< RealPoint > positions = new ArrayList<>();
+		for ( int i = 0; i < size; ++i )
+		{
+			values.add( new DoubleType( random.nextDouble() ) );
+			positions.add( new RealPoint( random.nextDouble() * 10, random.nextDouble() * 10 ) );
+		}
+		return new KDTree<>( values, positions );
+	}
+
+	@Test
+	public void testNearestNeighborSearch()
+	{
+		final KDTree< DoubleType > tree = randomTree( 300 );
+		final NearestNeighborSearchInterpolator< DoubleType > access = new NearestNeighborSearchInterpolator<>( new NearestNeighborSearchOnKDTree<>( tree ) );
+		assertTrue( BatchInterpolator.of( access ) instanceof NearestNeighborSearchBatchInterpolator );
+		check( access, randomPoints( 200, 10, 10 ) );
+	}
+
+	@Test
+	public void testInverseDistanceWeighting()
+	{
+		final KDTree< DoubleType > tree = randomTree( 300 );
+		final InverseDistanceWeightingInterpolator< DoubleType > access = new InverseDistanceWeightingInterpolator<>( new KNearestNeighborSearchOnKDTree<>( tree, 5 ), 2 );
+		check( access, randomPoints( 200, 10, 10 ) );
+	}
+
+	@Test
+	public void testNonRealTypeInterpolatorsAreNotBatch()
+	{
+		final Img< ARGBType > img = new ArrayImgFactory< ARGBType >().create( new long[] { 4, 4 }, new ARGBType() );
+		final Object nearest = Views.interpolate( Views.extendBorder( img ), new NearestNeighborInterpolatorFactory< ARGBType >() ).realRandomAccess();
+		final Object linear = Views.interpolate( Views.extendBorder( img ), new NLinearInterpolatorARGBFactory() ).realRandomAccess();
+		assertFalse( nearest instanceof BatchInterpolator );
+		assertFalse( linear instanceof BatchInterpolator );
+	}
+
+	@Test
+	public void testSourceFromRandomAccessible()
+	{
+		final Img< DoubleType > img = randomImg( 12, 9 );
+		final double[][] points = randomPoints( 50, 11, 8 );
+		final double[] expected = new double[ points.length ];
+		final double[] actual = new double[ points.length ];
+		BatchInterpolator.of( Views.interpolate( img, new NLinearInterpolatorFactory< DoubleType >() ).realRandomAccess() ).interpolate( points, expected );
+		new NLinearBatchInterpolator( img ).interpolate( points, actual );
+		assertArrayEquals( expected, actual, 0 );
+	}
+}
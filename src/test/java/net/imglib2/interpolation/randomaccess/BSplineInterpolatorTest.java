@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+public class BSplineInterpolatorTest
+{
+	private Img< FloatType > createRandom( final long... dimensions )
+	{
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		final Random random = new Random( 0 );
+		for ( final FloatType t : img )
+			t.set( random.nextFloat() );
+		return img;
+	}
+
+	@Test
+	public void testPartitionOfUnity()
+	{
+		final Random random = new Random( 1 );
+		for ( int order = 2; order <= 5; ++order )
+			for ( int i = 0; i < 100; ++i )
+			{
+				final double t = random.nextDouble();
+				double sum = 0;
+				for ( int k = -4; k <= 4; ++k )
+					sum += BSplineInterpolator.kernel( order, t - k );
+				assertEquals( 1, sum, 1e-12 );
+			}
+	}
+
+	@Test
+	public void testInterpolatesSamples()
+	{
+		final Img< FloatType > img = createRandom( 17, 12, 9 );
+		final RandomAccessibleInterval< FloatType > source = Views.translate( img, 3, -4, 5 );
+		for ( int order = 2; order <= 5; ++order )
+		{
+			final RealRandomAccess< FloatType > interpolator = Views.interpolate( source, new BSplineInterpolatorFactory< FloatType >( order ) ).realRandomAccess();
+			final Cursor< FloatType > c = Views.iterable( source ).localizingCursor();
+			while ( c.hasNext() )
+			{
+				c.fwd();
+				interpolator.setPosition( c );
+				assertEquals( c.get().get(), interpolator.get().get(), 1e-5 );
+			}
+		}
+	}
+
+	@Test
+	public void testReproducesPolynomials()
+	{
+		// away from the mirrored borders, order k reproduces polynomials of degree k
+		final Img< DoubleType > img = new ArrayImgFactory< DoubleType >().create( new long[] { 80, 80 }, new DoubleType() );
+		final Cursor< DoubleType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.get().set( polynomial( c.getDoublePosition( 0 ), c.getDoublePosition( 1 ) ) );
+		}
+		final Random random = new Random( 2 );
+		for ( int order = 2; order <= 5; ++order )
+		{
+			final RealRandomAccess< DoubleType > interpolator = Views.interpolate( img, new BSplineInterpolatorFactory< DoubleType >( order ) ).realRandomAccess();
+			for ( int i = 0; i < 100; ++i )
+			{
+				final double x = 35 + 10 * random.nextDouble();
+				final double y = 35 + 10 * random.nextDouble();
+				interpolator.setPosition( new double[] { x, y } );
+				assertEquals( polynomial( x, y ), interpolator.get().get(), 1e-6 * polynomial( x, y ) );
+			}
+		}
+	}
+
+	private static double polynomial( final double x, final double y )
+	{
+		return 1 + 0.5 * x - 0.25 * y + 0.01 * x * y + 0.02 * x * x;
+	}
+
+	@Test
+	public void testLazyMatchesEager()
+	{
+		final Img< FloatType > img = createRandom( 45, 38, 7 );
+		for ( int order = 2; order <= 5; ++order )
+		{
+			final RandomAccessible< DoubleType > eager = new BSplineInterpolatorFactory< FloatType >( order ).coefficients( img );
+			final RandomAccessible< DoubleType > lazy = new BSplineInterpolatorFactory< FloatType >( order ).lazy( 16, 16, 4 ).coefficients( img );
+			final RandomAccess< DoubleType > a = eager.randomAccess();
+			final RandomAccess< DoubleType > b = lazy.randomAccess();
+			final Cursor< FloatType > c = Views.iterable( Views.expandZero( img, 2, 2, 2 ) ).localizingCursor();
+			while ( c.hasNext() )
+			{
+				c.fwd();
+				a.setPosition( c );
+				b.setPosition( c );
+				assertEquals( a.get().get(), b.get().get(), 1e-7 );
+			}
+		}
+	}
+
+	@Test
+	public void testCoefficientsPerSource()
+	{
+		final Img< FloatType > img1 = createRandom( 20, 20 );
+		final Img< FloatType > img2 = createRandom( 20, 20 );
+		final BSplineInterpolatorFactory< FloatType > factory = new BSplineInterpolatorFactory<>();
+		final RandomAccessible< DoubleType > coefficients1 = factory.coefficients( img1 );
+		final RandomAccessible< DoubleType > coefficients2 = factory.coefficients( img2 );
+		assertNotSame( coefficients1, coefficients2 );
+		assertSame( coefficients1, factory.coefficients( img1 ) );
+		assertSame( coefficients2, factory.coefficients( img2 ) );
+	}
+
+	@Test
+	public void testCopy()
+	{
+		final Img< FloatType > img = createRandom( 20, 20 );
+		final RealRandomAccess< FloatType > a = Views.interpolate( img, new BSplineInterpolatorFactory< FloatType >() ).realRandomAccess();
+		a.setPosition( new double[] { 4.3, 7.8 } );
+		final RealRandomAccess< FloatType > b = a.copyRealRandomAccess();
+		assertEquals( a.get().get(), b.get().get(), 0 );
+		b.move( 1.5, 0 );
+		a.setPosition( new double[] { 5.8, 7.8 } );
+		assertEquals( a.get().get(), b.get().get(), 0 );
+	}
+}
@@ -0,0 +1,147 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.interpolation.randomaccess;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+public class LanczosInterpolatorTest
+{
+	private static double lanczos( final double x, final int a )
+	{
+		if ( x == 0 )
+			return 1;
+		if ( Math.abs( x ) >= a )
+			return 0;
+		return a * Math.sin( Math.PI * x ) * Math.sin( Math.PI * x / a ) / ( Math.PI * Math.PI * x * x );
+	}
+
+	/**
+	 * Direct evaluation of the Lanczos sum.
+	 */
+	private static double reference( final RandomAccessible< DoubleType > source, final double[] x, final int a )
+	{
+		final int n = x.length;
+		final long[] first = new long[ n ];
+		for ( int d = 0; d < n; ++d )
+			first[ d ] = ( long ) Math.floor( x[ d ] ) - a + 1;
+		final RandomAccess< DoubleType > ra = source.randomAccess();
+		final long[] pos = new long[ n ];
+		double sum = 0;
+		final int taps = ( int ) Math.pow( 2 * a, n );
+		for ( int t = 0; t < taps; ++t )
+		{
+			double w = 1;
+			int rest = t;
+			for ( int d = 0; d < n; ++d )
+			{
+				pos[ d ] = first[ d ] + rest % ( 2 * a );
+				rest /= 2 * a;
+				w *= lanczos( x[ d ] - pos[ d ], a );
+			}
+			ra.setPosition( pos );
+			sum += w * ra.get().get();
+		}
+		return sum;
+	}
+
+	@Test
+	public void testAgainstReference()
+	{
+		final Random random = new Random( 0 );
+		for ( int n = 1; n <= 3; ++n )
+		{
+			final long[] dimensions = new long[ n ];
+			for ( int d = 0; d < n; ++d )
+				dimensions[ d ] = 12;
+			final Img< DoubleType > img = new ArrayImgFactory< DoubleType >().create( dimensions, new DoubleType() );
+			for ( final DoubleType t : img )
+				t.set( random.nextDouble() );
+			final RandomAccessible< DoubleType > source = Views.extendMirrorSingle( img );
+
+			for ( int a = 2; a <= 3; ++a )
+			{
+				final RealRandomAccess< DoubleType > interpolator = Views.interpolate( source, new LanczosInterpolatorFactory< DoubleType >( a, false ) ).realRandomAccess();
+				final double[] x = new double[ n ];
+				for ( int i = 0; i < 50; ++i )
+				{
+					for ( int d = 0; d < n; ++d )
+						x[ d ] = -2 + 15 * random.nextDouble();
+					interpolator.setPosition( x );
+					assertEquals( reference( source, x, a ), interpolator.get().get(), 1e-5 );
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCopy()
+	{
+		final Img< DoubleType > img = new ArrayImgFactory< DoubleType >().create( new long[] { 10, 10 }, new DoubleType() );
+		final Random random = new Random( 1 );
+		for ( final DoubleType t : img )
+			t.set( random.nextDouble() );
+		final RealRandomAccess< DoubleType > a = Views.interpolate( Views.extendBorder( img ), new LanczosInterpolatorFactory< DoubleType >() ).realRandomAccess();
+		a.setPosition( new double[] { 3.3, 6.7 } );
+		final RealRandomAccess< DoubleType > b = a.copyRealRandomAccess();
+		assertEquals( 3.3, b.getDoublePosition( 0 ), 0 );
+		assertEquals( a.get().get(), b.get().get(), 0 );
+	}
+
+	@Test
+	public void testSharedTable()
+	{
+		final Img< DoubleType > img = new ArrayImgFactory< DoubleType >().create( new long[] { 10, 10 }, new DoubleType() );
+		final LanczosInterpolator< DoubleType > a = new LanczosInterpolator<>( img, 3, false, 0, 0 );
+		final LanczosInterpolator< DoubleType > b = new LanczosInterpolator<>( img, 3, false, 0, 0 );
+		final LanczosInterpolator< DoubleType > c = new LanczosInterpolator<>( img, 2, false, 0, 0 );
+		assertSame( a.lut, b.lut );
+		assertSame( a.lut, a.copy().lut );
+		assertNotSame( a.lut, c.lut );
+	}
+}
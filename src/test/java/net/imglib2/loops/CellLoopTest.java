@@ -0,0 +1,197 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.loops;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.cell.CellTraversal;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+
+public class CellLoopTest
+{
+	private final long[] dimensions = new long[] { 23, 17, 9 };
+
+	@SuppressWarnings( "unchecked" )
+	private CellImg< IntType, IntArray > createCellImg( final CellTraversal.Order order )
+	{
+		final CellImg< IntType, IntArray > img = ( CellImg< IntType, IntArray > ) new CellImgFactory< IntType >( order, 4, 5, 3 ).create( dimensions, new IntType() );
+		int i = 0;
+		for ( final IntType t : img )
+			t.set( i++ );
+		return img;
+	}
+
+	@Test
+	public void testCells()
+	{
+		for ( final CellTraversal.Order order : CellTraversal.Order.values() )
+		{
+			final CellImg< IntType, IntArray > img = createCellImg( order );
+			final long numCells = Intervals.numElements( img.getCellGrid().getGridDimensions() );
+			final AtomicLong numPixels = new AtomicLong();
+			final AtomicLong progress = new AtomicLong();
+			CellLoop.cells( img )
+					.multiThreaded( new ForkJoinPool( 3 ) )
+					.progress( ( completed, total ) -> {
+						assertEquals( numCells, total );
+						progress.incrementAndGet();
+					} )
+					.forEachCell( ( interval, data ) -> {
+						final int[] values = data.getCurrentStorageArray();
+						assertEquals( Intervals.numElements( interval ), values.length );
+						numPixels.addAndGet( values.length );
+						for ( int i = 0; i < values.length; ++i )
+							values[ i ] = values[ i ] % 2;
+					} );
+			assertEquals( img.size(), numPixels.get() );
+			assertEquals( numCells, progress.get() );
+			int i = 0;
+			for ( final IntType t : img )
+				assertEquals( i++ % 2, t.get() );
+		}
+	}
+
+	@Test
+	public void testBlocks() throws Exception
+	{
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		final ExecutorService executor = Executors.newFixedThreadPool( 4 );
+		try
+		{
+			CellLoop.blocks( Views.translate( img, 5, -3, 2 ), 8, 8 )
+					.executor( executor, 4 )
+					.forEachCell( ( interval, block ) -> {
+						assertTrue( Intervals.contains( block, interval ) && Intervals.contains( interval, block ) );
+						final Cursor< IntType > c = Views.iterable( block ).localizingCursor();
+						while ( c.hasNext() )
+						{
+							c.fwd();
+							c.get().inc();
+							assertTrue( c.getLongPosition( 0 ) >= interval.min( 0 ) && c.getLongPosition( 0 ) <= interval.max( 0 ) );
+						}
+						assertTrue( interval.dimension( 0 ) <= 8 && interval.dimension( 2 ) <= 8 );
+					} );
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		for ( final IntType t : img )
+			assertEquals( 1, t.get() );
+	}
+
+	@Test
+	public void testException()
+	{
+		final CellImg< IntType, IntArray > img = createCellImg( CellTraversal.Order.FLAT );
+		try
+		{
+			CellLoop.cells( img ).forEachCell( ( interval, data ) -> {
+				throw new IllegalStateException( "expected" );
+			} );
+			fail();
+		}
+		catch ( final IllegalStateException e )
+		{
+			assertEquals( "expected", e.getMessage() );
+		}
+	}
+
+	@Test
+	public void testCancel()
+	{
+		final CellImg< IntType, IntArray > img = createCellImg( CellTraversal.Order.HILBERT );
+		final AtomicLong numCells = new AtomicLong();
+		final CompletableFuture< ? >[] future = new CompletableFuture< ? >[ 1 ];
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try
+		{
+			synchronized ( future )
+			{
+				future[ 0 ] = CellLoop.cells( img ).executor( executor, 1 ).submit( ( interval, data ) -> {
+					synchronized ( future )
+					{
+						if ( numCells.incrementAndGet() == 3 )
+							future[ 0 ].cancel( false );
+					}
+				} );
+			}
+			try
+			{
+				future[ 0 ].join();
+				fail();
+			}
+			catch ( final CancellationException e )
+			{}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+		assertTrue( future[ 0 ].isCancelled() );
+		assertTrue( numCells.get() < Intervals.numElements( img.getCellGrid().getGridDimensions() ) );
+	}
+
+	@Test
+	public void testSingleThreaded()
+	{
+		final CellImg< IntType, IntArray > img = createCellImg( CellTraversal.Order.MORTON );
+		final long[] previous = { -1 };
+		CellLoop.cells( img ).singleThreaded().forEachCell( ( interval, data ) -> {
+			final long min = data.getCurrentStorageArray()[ 0 ];
+			assertTrue( min > previous[ 0 ] );
+			previous[ 0 ] = min;
+		} );
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.loops;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+
+public class ClassCopyProviderTest
+{
+	@Test
+	public void testCopiesPerKey()
+	{
+		final ClassCopyProvider< LoopBuilder.PixelLoop > provider = new ClassCopyProvider<>( PixelLoops.class );
+		final LoopBuilder.PixelLoop a = provider.newInstanceForKey( "a" );
+		final LoopBuilder.PixelLoop b = provider.newInstanceForKey( "b" );
+		final LoopBuilder.PixelLoop a2 = provider.newInstanceForKey( "a" );
+
+		assertNotSame( PixelLoops.class, a.getClass() );
+		assertEquals( PixelLoops.class.getName(), a.getClass().getName() );
+		assertNotSame( a.getClass(), b.getClass() );
+		assertSame( a.getClass(), a2.getClass() );
+		assertEquals( 2, provider.numCopies() );
+	}
+
+	@Test
+	public void testCopyWorks()
+	{
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( new long[] { 10, 10 }, new IntType() );
+		final LoopBuilder.PixelLoop loop = new ClassCopyProvider< LoopBuilder.PixelLoop >( PixelLoops.class ).newInstanceForKey( IntType.class );
+		final Consumer< IntType > action = t -> t.set( 7 );
+		loop.runCursors( action, new Cursor< ? >[] { img.cursor() }, img.size() );
+		for ( final IntType t : img )
+			assertEquals( 7, t.get() );
+	}
+
+	@Test
+	public void testMaxCopies() throws InterruptedException
+	{
+		final ClassCopyProvider< LoopBuilder.PixelLoop > provider = new ClassCopyProvider<>( PixelLoops.class, 3 );
+		final Thread[] threads = new Thread[ 8 ];
+		for ( int i = 0; i < threads.length; ++i )
+		{
+			final int key = i;
+			threads[ i ] = new Thread( () -> provider.newInstanceForKey( key ) );
+			threads[ i ].start();
+		}
+		for ( final Thread thread : threads )
+			thread.join();
+		assertEquals( 3, provider.numCopies() );
+
+		int available = 0;
+		for ( int i = 0; i < threads.length; ++i )
+			if ( provider.newInstanceForKey( i ) != null )
+				++available;
+		assertEquals( 3, available );
+		assertNull( provider.newInstanceForKey( "new" ) );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testNestedClassIsRejected()
+	{
+		new ClassCopyProvider<>( LoopBuilder.TriConsumer.class );
+	}
+}
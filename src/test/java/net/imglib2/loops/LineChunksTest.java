@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.loops;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.util.IntervalIndexer;
+
+public class LineChunksTest
+{
+	private final Interval interval = new FinalInterval( new long[] { -3, 2, 5 }, new long[] { 9, 8, 14 } );
+
+	private final long[] dims = new long[] { 13, 7, 10 };
+
+	/**
+	 * Count how often every pixel of {@link #interval} is at the start of a
+	 * line along {@code d}.
+	 */
+	private AtomicIntegerArray countLineStarts( final int d, final ForkJoinPool pool )
+	{
+		final AtomicIntegerArray counts = new AtomicIntegerArray( 13 * 7 * 10 );
+		LineChunks.forEachLine( interval, d, pool, () -> {
+			final long[] offset = new long[ 3 ];
+			return position -> {
+				for ( int e = 0; e < 3; ++e )
+					offset[ e ] = position[ e ] - interval.min( e );
+				counts.incrementAndGet( ( int ) IntervalIndexer.positionToIndex( offset, dims ) );
+			};
+		} );
+		return counts;
+	}
+
+	private void checkLineStarts( final int d, final ForkJoinPool pool )
+	{
+		final AtomicIntegerArray counts = countLineStarts( d, pool );
+		final long[] offset = new long[ 3 ];
+		for ( int i = 0; i < counts.length(); ++i )
+		{
+			IntervalIndexer.indexToPosition( i, dims, offset );
+			assertEquals( offset[ d ] == 0 ? 1 : 0, counts.get( i ) );
+		}
+	}
+
+	@Test
+	public void testEveryLineOnce()
+	{
+		final ForkJoinPool pool = new ForkJoinPool( 3 );
+		for ( int d = 0; d < 3; ++d )
+		{
+			checkLineStarts( d, pool );
+			checkLineStarts( d, null );
+		}
+	}
+
+	@Test
+	public void testEmptyInterval()
+	{
+		LineChunks.forEachLine( new FinalInterval( 0, 5 ), 1, null, () -> {
+			throw new AssertionError( "no chunk expected" );
+		} );
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.loops;
+
+import java.util.function.BiConsumer;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.BenchmarkHelper;
+
+/**
+ * Compares the shared loop of {@link LoopBuilder} with
+ * {@link LoopBuilder#specialized() specialized} copies, after the shared loop
+ * has seen several different actions. The shared loop's call to the action is
+ * then megamorphic, while every specialized copy only sees its own action.
+ */
+public class LoopBuilderBenchmark
+{
+	private final Img< FloatType > a;
+
+	private final Img< FloatType > b;
+
+	private final BiConsumer< FloatType, FloatType > copy = ( x, y ) -> y.set( x );
+
+	private final BiConsumer< FloatType, FloatType > add = ( x, y ) -> y.add( x );
+
+	private final BiConsumer< FloatType, FloatType > mul = ( x, y ) -> y.mul( x );
+
+	private final BiConsumer< FloatType, FloatType > sub = ( x, y ) -> y.sub( x );
+
+	public LoopBuilderBenchmark()
+	{
+		final long[] dimensions = new long[] { 200, 200, 100 };
+		a = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		b = new ArrayImgFactory< FloatType >().create( dimensions, new FloatType() );
+		for ( final FloatType t : a )
+			t.set( 1 );
+	}
+
+	public void run( final BiConsumer< FloatType, FloatType > action, final boolean specialized )
+	{
+		final LoopBuilder< BiConsumer< FloatType, FloatType > > loop = LoopBuilder.setImages( a, b ).singleThreaded();
+		if ( specialized )
+			loop.specialized();
+		loop.forEachPixel( action );
+	}
+
+	public static void main( final String[] args )
+	{
+		final LoopBuilderBenchmark benchmark = new LoopBuilderBenchmark();
+
+		// make the call to the action in the shared loop megamorphic
+		for ( int i = 0; i < 20; ++i )
+		{
+			benchmark.run( benchmark.copy, false );
+			benchmark.run( benchmark.add, false );
+			benchmark.run( benchmark.mul, false );
+			benchmark.run( benchmark.sub, false );
+		}
+
+		System.out.println( "benchmarking shared loop" );
+		BenchmarkHelper.benchmarkAndPrint( 20, false, () -> benchmark.run( benchmark.add, false ) );
+
+		// the specialized copies of the other actions do not affect the copy for add
+		for ( int i = 0; i < 20; ++i )
+		{
+			benchmark.run( benchmark.copy, true );
+			benchmark.run( benchmark.mul, true );
+			benchmark.run( benchmark.sub, true );
+		}
+
+		System.out.println( "benchmarking specialized loop" );
+		BenchmarkHelper.benchmarkAndPrint( 20, false, () -> benchmark.run( benchmark.add, true ) );
+	}
+}
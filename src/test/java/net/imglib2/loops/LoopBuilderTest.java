@@ -0,0 +1,161 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.loops;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.view.Views;
+
+public class LoopBuilderTest
+{
+	private final long[] dimensions = new long[] { 13, 7, 9 };
+
+	private Img< IntType > createImg( final int offset )
+	{
+		final Img< IntType > img = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		final Cursor< IntType > c = img.localizingCursor();
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.get().set( offset + c.getIntPosition( 0 ) + 100 * c.getIntPosition( 1 ) + 10000 * c.getIntPosition( 2 ) );
+		}
+		return img;
+	}
+
+	private void assertSum( final RandomAccessibleInterval< IntType > a, final RandomAccessibleInterval< IntType > b, final RandomAccessibleInterval< IntType > sum )
+	{
+		final Cursor< IntType > c = Views.iterable( sum ).localizingCursor();
+		final RandomAccess< IntType > ra = a.randomAccess();
+		final RandomAccess< IntType > rb = b.randomAccess();
+		final long[] pos = new long[ dimensions.length ];
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			for ( int d = 0; d < pos.length; ++d )
+			{
+				pos[ d ] = c.getLongPosition( d ) - sum.min( d );
+				ra.setPosition( pos[ d ] + a.min( d ), d );
+				rb.setPosition( pos[ d ] + b.min( d ), d );
+			}
+			assertEquals( ra.get().get() + rb.get().get(), c.get().get() );
+		}
+	}
+
+	@Test
+	public void testSynchronizedCursors()
+	{
+		final Img< IntType > a = createImg( 0 );
+		final Img< IntType > b = createImg( 7 );
+		final Img< IntType > sum = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		LoopBuilder.setImages( a, b, sum ).forEachPixel( ( x, y, s ) -> s.set( x.get() + y.get() ) );
+		assertSum( a, b, sum );
+	}
+
+	@Test
+	public void testRandomAccessFallback()
+	{
+		final Img< IntType > a = createImg( 0 );
+		final RandomAccessibleInterval< IntType > b = Views.translate( createImg( 3 ), 5, -2, 1 );
+		final Img< IntType > sum = new CellImgFactory< IntType >( 4 ).create( dimensions, new IntType() );
+		LoopBuilder.setImages( a, b, sum ).multiThreaded( new ForkJoinPool( 3 ) ).forEachPixel( ( x, y, s ) -> s.set( x.get() + y.get() ) );
+		assertSum( a, b, sum );
+	}
+
+	@Test
+	public void testSingleThreaded()
+	{
+		final Img< IntType > a = createImg( 0 );
+		final long[] count = new long[ 1 ];
+		LoopBuilder.setImages( a ).singleThreaded().forEachPixel( x -> ++count[ 0 ] );
+		assertEquals( a.size(), count[ 0 ] );
+
+		final Img< IntType > b = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		LoopBuilder.setImages( a, b ).singleThreaded().forEachPixel( ( x, y ) -> y.set( x ) );
+		final Cursor< IntType > ca = a.cursor();
+		final Cursor< IntType > cb = b.cursor();
+		while ( ca.hasNext() )
+			assertEquals( ca.next().get(), cb.next().get() );
+	}
+
+	@Test
+	public void testSpecialized()
+	{
+		final Img< IntType > a = createImg( 0 );
+		final Img< IntType > b = createImg( 7 );
+		final Img< IntType > sum = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		LoopBuilder.setImages( a, b, sum ).specialized().forEachPixel( ( x, y, s ) -> s.set( x.get() + y.get() ) );
+		assertSum( a, b, sum );
+
+		final RandomAccessibleInterval< IntType > c = Views.translate( createImg( 3 ), 5, -2, 1 );
+		LoopBuilder.setImages( a, c, sum ).specialized().forEachPixel( ( x, y, s ) -> s.set( x.get() + y.get() ) );
+		assertSum( a, c, sum );
+	}
+
+	@Test
+	public void testSpecializedCopiesPerAction()
+	{
+		final Img< IntType > a = createImg( 0 );
+		final Img< IntType > b = new ArrayImgFactory< IntType >().create( dimensions, new IntType() );
+		for ( int i = 0; i < 2; ++i )
+			LoopBuilder.setImages( a, b ).specialized().forEachPixel( ( x, y ) -> y.set( x ) );
+		final int copies = LoopBuilder.numLoopCopies();
+		// a different lambda on the same image and pixel classes
+		LoopBuilder.setImages( a, b ).specialized().forEachPixel( ( x, y ) -> y.set( x.get() + 1 ) );
+		assertEquals( Math.min( copies + 1, LoopBuilder.MAX_LOOP_COPIES ), LoopBuilder.numLoopCopies() );
+		final Cursor< IntType > ca = a.cursor();
+		final Cursor< IntType > cb = b.cursor();
+		while ( ca.hasNext() )
+			assertEquals( ca.next().get() + 1, cb.next().get() );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testDimensionMismatch()
+	{
+		final Img< IntType > a = createImg( 0 );
+		final Img< IntType > b = new ArrayImgFactory< IntType >().create( new long[] { 13, 7 }, new IntType() );
+		LoopBuilder.setImages( a, b );
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.view.Views;
+
+public class AffineRandomAccessibleTest
+{
+	private final AffineTransform transform = new AffineTransform( 3,
+			0.9, -0.3, 0.1, 2.5,
+			0.2, 1.1, 0.05, -1.0,
+			-0.1, 0.15, 1.3, 0.7 );
+
+	@Test
+	public void testInverseAndConcatenate()
+	{
+		final double[] x = { 1.5, -2, 3.25 };
+		final double[] y = new double[ 3 ];
+		final double[] z = new double[ 3 ];
+		transform.apply( x, y );
+		transform.applyInverse( z, y );
+		assertArrayEquals( x, z, 1e-12 );
+
+		final AffineTransform identity = transform.copy().concatenate( transform.inverse() );
+		assertArrayEquals( new AffineTransform( 3 ).getRowPackedCopy(), identity.getRowPackedCopy(), 1e-12 );
+
+		final AffineTransform t = new AffineTransform( 3 ).translate( 1, 2, 3 );
+		t.preConcatenate( transform );
+		t.apply( x, z );
+		transform.apply( new double[] { x[ 0 ] + 1, x[ 1 ] + 2, x[ 2 ] + 3 }, y );
+		assertArrayEquals( y, z, 1e-12 );
+	}
+
+	@Test( expected = IllegalStateException.class )
+	public void testSingular()
+	{
+		new AffineTransform( 2, 1, 2, 0, 2, 4, 0 ).inverse();
+	}
+
+	@Test
+	public void testSteppingMatchesSetPosition()
+	{
+		final RealRandomAccessible< DoubleType > source = Views.interpolate( Views.extendZero( createRamp() ), new NLinearInterpolatorFactory< DoubleType >() );
+		final AffineRandomAccessible< DoubleType > view = RealViews.affine( source, transform );
+		final AffineRandomAccess< DoubleType > stepping = view.randomAccess();
+		final AffineRandomAccess< DoubleType > direct = view.randomAccess();
+		final double[] p1 = new double[ 3 ];
+		final double[] p2 = new double[ 3 ];
+		final long[] pos = new long[ 3 ];
+
+		final Random random = new Random( 0 );
+		for ( int i = 0; i < 1000; ++i )
+		{
+			final int d = random.nextInt( 3 );
+			switch ( random.nextInt( 3 ) )
+			{
+			case 0:
+				stepping.fwd( d );
+				break;
+			case 1:
+				stepping.bck( d );
+				break;
+			default:
+				stepping.move( random.nextInt( 9 ) - 4, d );
+			}
+			stepping.localize( pos );
+			direct.setPosition( pos );
+			stepping.localizeSource( p1 );
+			direct.localizeSource( p2 );
+			assertArrayEquals( p2, p1, 1e-9 );
+			assertEquals( direct.get().get(), stepping.get().get(), 1e-9 );
+		}
+	}
+
+	@Test
+	public void testValues()
+	{
+		// linear interpolation reproduces the ramp exactly inside the image
+		final RealRandomAccessible< DoubleType > source = Views.interpolate( createRamp(), new NLinearInterpolatorFactory< DoubleType >() );
+		final RandomAccess< DoubleType > a = RealViews.affine( source, transform ).randomAccess();
+		final double[] target = new double[ 3 ];
+		final double[] s = new double[ 3 ];
+		for ( int z = 4; z < 12; ++z )
+			for ( int y = 4; y < 12; ++y )
+				for ( int x = 4; x < 12; ++x )
+				{
+					a.setPosition( new long[] { x, y, z } );
+					target[ 0 ] = x;
+					target[ 1 ] = y;
+					target[ 2 ] = z;
+					transform.applyInverse( s, target );
+					assertEquals( ramp( s ), a.get().get(), 1e-9 );
+				}
+	}
+
+	private static double ramp( final double[] p )
+	{
+		return 3 * p[ 0 ] - 2 * p[ 1 ] + 0.5 * p[ 2 ];
+	}
+
+	private static Img< DoubleType > createRamp()
+	{
+		final Img< DoubleType > img = new ArrayImgFactory< DoubleType >().create( new long[] { 20, 20, 20 }, new DoubleType() );
+		final Cursor< DoubleType > c = img.localizingCursor();
+		final double[] p = new double[ 3 ];
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( p );
+			c.get().set( ramp( p ) );
+		}
+		return img;
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.realtransform;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+public class ResamplerTest
+{
+	private final AffineTransform transform = new AffineTransform( 3,
+			0.8, -0.4, 0.1, 3.5,
+			0.35, 0.9, 0.05, -2.0,
+			-0.1, 0.2, 1.2, 0.7 );
+
+	private Img< FloatType > createSource()
+	{
+		final Img< FloatType > img = new ArrayImgFactory< FloatType >().create( new long[] { 31, 27, 19 }, new FloatType() );
+		final Random random = new Random( 0 );
+		for ( final FloatType t : img )
+			t.set( random.nextFloat() );
+		return img;
+	}
+
+	@Test
+	public void testRender()
+	{
+		final Img< FloatType > source = createSource();
+		final RealRandomAccessible< FloatType > interpolated = Views.interpolate( Views.extendZero( source ), new NLinearInterpolatorFactory< FloatType >() );
+
+		final Img< FloatType > target = new ArrayImgFactory< FloatType >().create( new long[] { 40, 35, 22 }, new FloatType() );
+		final RandomAccessibleInterval< FloatType > translated = Views.translate( target, -5, 3, -2 );
+		Resampler.affine( Views.extendZero( source ), new NLinearInterpolatorFactory< FloatType >(), transform )
+				.multiThreaded( new ForkJoinPool( 4 ) )
+				.render( translated );
+
+		// reference: full inverse transform per pixel
+		final RealRandomAccess< FloatType > reference = interpolated.realRandomAccess();
+		final Cursor< FloatType > c = Views.iterable( translated ).localizingCursor();
+		final double[] t = new double[ 3 ];
+		final double[] s = new double[ 3 ];
+		while ( c.hasNext() )
+		{
+			c.fwd();
+			c.localize( t );
+			transform.applyInverse( s, t );
+			reference.setPosition( s );
+			assertEquals( reference.get().get(), c.get().get(), 1e-5 );
+		}
+	}
+
+	@Test
+	public void testSingleThreaded()
+	{
+		final Img< FloatType > source = createSource();
+		final Img< FloatType > single = new ArrayImgFactory< FloatType >().create( new long[] { 20, 21, 22 }, new FloatType() );
+		final Img< FloatType > multi = new ArrayImgFactory< FloatType >().create( new long[] { 20, 21, 22 }, new FloatType() );
+		Resampler.affine( Views.extendBorder( source ), new NLinearInterpolatorFactory< FloatType >(), transform ).singleThreaded().render( single );
+		Resampler.affine( Views.extendBorder( source ), new NLinearInterpolatorFactory< FloatType >(), transform ).render( multi );
+		final Cursor< FloatType > cs = single.cursor();
+		final Cursor< FloatType > cm = multi.cursor();
+		while ( cs.hasNext() )
+			assertEquals( cs.next().get(), cm.next().get(), 0 );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testDimensionMismatch()
+	{
+		final Img< FloatType > target = new ArrayImgFactory< FloatType >().create( new long[] { 20, 21 }, new FloatType() );
+		Resampler.affine( Views.extendZero( createSource() ), new NLinearInterpolatorFactory< FloatType >(), transform ).render( target );
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * ImgLib2: a general-purpose, multidimensional image processing library.
+ * %%
+ * Copyright (C) 2009 - 2016 Tobias Pietzsch, Stephan Preibisch, Stephan Saalfeld,
+ * John Bogovic, Albert Cardona, Barry DeZonia, Christian Dietz, Jan Funke,
+ * Aivar Grislis, Jonathan Hale, Grant Harris, Stefan Helfrich, Mark Hiner,
+ * Martin Horn, Steffen Jaensch, Lee Kamentsky, Larry Lindsey, Melissa Linkert,
+ * Mark Longair, Brian Northan, Nick Perry, Curtis Rueden, Johannes Schindelin,
+ * Jean-Yves Tinevez and Michael Zinsmaier.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+
+package net.imglib2.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.integer.IntType;
+
+public class CursorSpliteratorTest
+{
+	private final long[] dimensions = new long[] { 23, 17, 11, 3 };
+
+	private static Img< IntType > fill( final Img< IntType > img )
+	{
+		int i = 0;
+		for ( final IntType t : img )
+			t.set( i++ );
+		return img;
+	}
+
+	private static long expectedSum( final Img< IntType > img )
+	{
+		long sum = 0;
+		for ( final IntType t : img )
+			sum += t.get();
+		return sum;
+	}
+
+	private void checkStreams( final Img< IntType > img )
+	{
+		final long sum = expectedSum( img );
+		assertEquals( sum, img.stream().mapToLong( IntType::get ).sum() );
+		assertEquals( sum, img.parallelStream().mapToLong( IntType::get ).sum() );
+		assertEquals( img.size(), img.parallelStream().count() );
+
+		img.parallelStream().forEach( t -> t.set( t.get() + 1 ) );
+		assertEquals( sum + img.size(), expectedSum( img ) );
+	}
+
+	@Test
+	public void testArrayImg()
+	{
+		checkStreams( fill( new ArrayImgFactory< IntType >().create( dimensions, new IntType() ) ) );
+	}
+
+	@Test
+	public void testPlanarImg()
+	{
+		final Img< IntType > img = fill( new PlanarImgFactory< IntType >().create( dimensions, new IntType() ) );
+		checkStreams( img );
+
+		final long planeSize = dimensions[ 0 ] * dimensions[ 1 ];
+		final Spliterator< IntType > suffix = img.spliterator();
+		final Spliterator< IntType > prefix = suffix.trySplit();
+		assertNotNull( prefix );
+		assertEquals( 0, prefix.estimateSize() % planeSize );
+		assertEquals( img.size(), prefix.estimateSize() + suffix.estimateSize() );
+	}
+
+	@Test
+	public void testCellImg()
+	{
+		final CellImg< IntType, ? > img = new CellImgFactory< IntType >( 5 ).create( dimensions, new IntType() );
+		fill( img );
+		checkStreams( img );
+
+		final CellGrid grid = img.getCellGrid();
+		final long[] cellGridPosition = new long[ dimensions.length ];
+		final Spliterator< IntType > suffix = img.spliterator();
+		final Spliterator< IntType > prefix = suffix.trySplit();
+		assertNotNull( prefix );
+		assertEquals( 0, grid.iterationIndexToCell( prefix.estimateSize(), cellGridPosition ) );
+
+		// the elements of a split are the elements at its iteration indices
+		final Spliterator< IntType > prefixOfSuffix = suffix.trySplit();
+		final Cursor< IntType > cursor = img.cursor();
+		cursor.jumpFwd( prefix.estimateSize() );
+		final AtomicLong mismatches = new AtomicLong();
+		prefixOfSuffix.forEachRemaining( t -> {
+			if ( cursor.next().get() != t.get() )
+				mismatches.incrementAndGet();
+		} );
+		assertEquals( 0, mismatches.get() );
+	}
+
+	@Test
+	public void testSplitWithinBlock()
+	{
+		final Img< IntType > img = fill( new PlanarImgFactory< IntType >().create( new long[] { 10, 10 }, new IntType() ) );
+		final Spliterator< IntType > suffix = img.spliterator();
+		final Spliterator< IntType > prefix = suffix.trySplit();
+		assertNotNull( prefix );
+		assertEquals( 50, prefix.estimateSize() );
+		final long[] first = new long[ 1 ];
+		suffix.tryAdvance( t -> first[ 0 ] = t.get() );
+		assertEquals( 50, first[ 0 ] );
+	}
+}